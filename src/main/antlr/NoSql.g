@@ -37,6 +37,7 @@ tokens {
 	TABLE_CLAUSE;
 	DELETE_COLUMN;
 	ORDERBY_CLAUSE;
+	AGGREGATE;
 
 	DOT	=	'.';
 	EQ	=	'=';
@@ -91,9 +92,15 @@ selectClause: SELECT resultList -> ^(SELECT_CLAUSE resultList);
 
 resultList
  : STAR          -> ^(SELECT_RESULTS STAR)
+ | aggregateList -> ^(SELECT_RESULTS aggregateList)
  | columnList -> ^(SELECT_RESULTS columnList)
  ;
 
+//COUNT, MIN, MAX and SUM are matched as ID and checked by the compiler so they stay legal column names
+aggregateList: aggregate (COMMA! aggregate)*;
+aggregate: ID LPAREN aggregateArg RPAREN -> ^(AGGREGATE[$ID.text] aggregateArg);
+aggregateArg: STAR | column;
+
 columnList:	simpleColumn (COMMA! simpleColumn)* | aliasedColumn (COMMA! aliasedColumn)*;
 
 // UPDATE statement
@@ -19,10 +19,30 @@ public abstract class Bootstrap {
 	public static final String CASSANDRA_THRIFT_PORT = "nosql.cassandra.thriftport";
 	public static final String CASSANDRA_DEFAULT_CONSISTENCY_LEVEL = "nosql.cassandra.cl";
 	public static final String CASSANDRA_CF_CREATE_CALLBACK = SpiConstants.CASSANDRA_CF_CREATE_CALLBACK;
+	/**
+	 * Number of batches of rows read ahead asynchronously while you iterate over query results.
+	 * Defaults to 0 which reads the next batch only once you are done with the current one
+	 */
+	public static final String CASSANDRA_PREFETCH_DEPTH = SpiConstants.CASSANDRA_PREFETCH_DEPTH;
+	/**
+	 * Rough limit on bytes of rows being prefetched at once.  Defaults to 16MB
+	 */
+	public static final String CASSANDRA_PREFETCH_MAX_BYTES = SpiConstants.CASSANDRA_PREFETCH_MAX_BYTES;
+	/**
+	 * Max number of requests one batch of a multi-key find is split into.  Keys are grouped by
+	 * token range so each request can go to a replica owning its keys.  Defaults to 1 which sends
+	 * each batch as a single request
+	 */
+	public static final String CASSANDRA_FIND_PARALLELISM = SpiConstants.CASSANDRA_FIND_PARALLELISM;
 	
 	public static final String MONGODB_CLUSTERNAME = "nosql.mongodb.clusterName";
 	public static final String MONGODB_KEYSPACE = "nosql.mongodb.keyspace";
 	public static final String MONGODB_SEEDS = "nosql.mongodb.seeds";
+	/**
+	 * WriteConcern used for every write, either the WriteConcern itself or its name like
+	 * "UNACKNOWLEDGED" for ingest that doesn't wait on each write.  Defaults to ACKNOWLEDGED
+	 */
+	public static final String MONGODB_WRITE_CONCERN = "nosql.mongodb.writeConcern";
 
 	public static final String HBASE_CLUSTERNAME = "nosql.hbase.clusterName";
 	public static final String HBASE_KEYSPACE = "nosql.hbase.keyspace";
@@ -31,6 +51,87 @@ public abstract class Bootstrap {
 	public static final String CQL_CLUSTERNAME = "nosql.cql.clusterName";
 	public static final String CQL_KEYSPACE = "nosql.cql.keyspace";
 	public static final String CQL_SEEDS = "nosql.cql.seeds";
+	/**
+	 * Max number of writes to the same row sent as one unlogged batch on flush.  Defaults to 16
+	 */
+	public static final String CQL_MAX_BATCH_SIZE = SpiConstants.CQL_MAX_BATCH_SIZE;
+	/**
+	 * Max number of batches of one flush waiting on the database at once.  Defaults to 64
+	 */
+	public static final String CQL_MAX_IN_FLIGHT = SpiConstants.CQL_MAX_IN_FLIGHT;
+
+	/**
+	 * Max number of rows kept in the second level cache shared by all NoSqlEntityManagers of
+	 * the factory.  If not set, there is no second level cache
+	 */
+	public static final String SECOND_LEVEL_CACHE_SIZE = "nosql.cache.maxRows";
+	/**
+	 * How long a row may live in the second level cache before it is read from the database
+	 * again.  If not set, rows live until evicted or written
+	 */
+	public static final String SECOND_LEVEL_CACHE_TTL_MILLIS = "nosql.cache.ttlMillis";
+
+	/**
+	 * Turns on write behind.  Once an entity manager has this many unflushed writes it flushes
+	 * them on its own so bulk loads don't need to call flush themselves
+	 */
+	public static final String WRITE_BEHIND_MAX_ACTIONS = "nosql.writeBehind.maxActions";
+	/**
+	 * Turns on write behind.  Once the unflushed writes of an entity manager are roughly this many
+	 * bytes, it flushes them on its own
+	 */
+	public static final String WRITE_BEHIND_MAX_BYTES = "nosql.writeBehind.maxBytes";
+	/**
+	 * Number of threads sending write behind flushes in the background.  Defaults to 0 which
+	 * flushes on the thread that did the write.  NoSqlEntityManager.flush() still waits for all
+	 * background flushes of that manager and throws if one of them failed
+	 */
+	public static final String WRITE_BEHIND_THREADS = "nosql.writeBehind.threads";
+	/**
+	 * Max number of background flushes one entity manager may have queued before writes block
+	 * until the database catches up.  Defaults to 2
+	 */
+	public static final String WRITE_BEHIND_MAX_PENDING_BATCHES = "nosql.writeBehind.maxPendingBatches";
+
+	/**
+	 * Set to false to send every write of a flush as is instead of merging the writes to the same
+	 * row and index entry first.  Defaults to true
+	 */
+	public static final String COALESCE_WRITES = "nosql.coalesceWrites";
+
+	/**
+	 * Number of query results whose ManyToOne proxies are loaded together.  Touching one such proxy
+	 * loads all proxies of the same type from those results with one find.  Defaults to 100 and 1
+	 * loads every proxy on its own
+	 */
+	public static final String TO_ONE_BATCH_SIZE = "nosql.toOneBatchSize";
+
+	/**
+	 * Directory for DbTypeEnum.IN_MEMORY to keep its data in so it survives restarts and can hold more
+	 * than the heap.  Rows and indexes go to sorted memory mapped segment files with only recent writes
+	 * and a sparse index on the heap.  Not set means everything stays on the heap and is gone on restart.
+	 */
+	public static final String IN_MEMORY_DATA_DIR = "nosql.inmemory.dataDir";
+	/**
+	 * Bytes of recent writes kept on the heap before they are written to a new segment file when
+	 * IN_MEMORY_DATA_DIR is set.  Defaults to 32MB
+	 */
+	public static final String IN_MEMORY_MEMTABLE_BYTES = "nosql.inmemory.memtableBytes";
+	/**
+	 * Once a table has more segment files than this they are merged into one.  Defaults to 8
+	 */
+	public static final String IN_MEMORY_MAX_SEGMENTS = "nosql.inmemory.maxSegments";
+	/**
+	 * true keeps the integer and decimal indexes of DbTypeEnum.IN_MEMORY re-encoded so they sort with a
+	 * plain byte compare, faster inserts and range scans for a bit more memory per entry.  Only for the
+	 * heap, not with IN_MEMORY_DATA_DIR.  Defaults to false
+	 */
+	public static final String IN_MEMORY_SORTABLE_KEYS = "nosql.inmemory.sortableKeys";
+	/**
+	 * Milliseconds between the background sweeps that remove expired columns, rows and index entries
+	 * from the heap of DbTypeEnum.IN_MEMORY, so how late after its ttl something goes away.  Defaults to 100
+	 */
+	public static final String IN_MEMORY_TTL_TICK_MILLIS = "nosql.inmemory.ttlTickMillis";
 
 	private static final String OUR_IMPL = "com.alvazan.orm.impl.bindings.BootstrapImpl";
 	public static final String SPI_IMPL = "nosql.spi.implementation";
@@ -4,7 +4,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 public enum DbTypeEnum {
-	CASSANDRA("cassandra"), IN_MEMORY("inmemory"), MONGODB("mongodb"), HBASE("hbase"),CQL("cql");
+	CASSANDRA("cassandra", true, true), IN_MEMORY("inmemory", true, true), MONGODB("mongodb", false, false),
+	HBASE("hbase", false, true),CQL("cql", true, true);
 
 	private static final Map<String, DbTypeEnum> LOOKUP = new HashMap<String, DbTypeEnum>();
 	
@@ -16,9 +17,27 @@ public enum DbTypeEnum {
 	}
 	
 	private String value;
+	private boolean indexSortedByValue;
+	private boolean valueSortedByPrimaryKey;
 	
-	private DbTypeEnum(String val) {
+	private DbTypeEnum(String val, boolean indexSortedByValue, boolean valueSortedByPrimaryKey) {
 		this.value = val;
+		this.indexSortedByValue = indexSortedByValue;
+		this.valueSortedByPrimaryKey = valueSortedByPrimaryKey;
+	}
+
+	/**
+	 * @return true if an index scan comes back sorted by indexed value
+	 */
+	public boolean isIndexSortedByValue() {
+		return indexSortedByValue;
+	}
+
+	/**
+	 * @return true if the index entries of one value come back sorted by primary key
+	 */
+	public boolean isValueSortedByPrimaryKey() {
+		return valueSortedByPrimaryKey;
 	}
 
 	private String getValue() {
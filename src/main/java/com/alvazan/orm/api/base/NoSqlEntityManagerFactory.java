@@ -1,6 +1,10 @@
 package com.alvazan.orm.api.base;
 
 import java.util.List;
+import java.util.Map;
+
+import com.alvazan.orm.api.z8spi.CacheStats;
+import com.alvazan.orm.api.z8spi.CoalesceStats;
 
 public interface NoSqlEntityManagerFactory {
 	
@@ -9,6 +13,18 @@ public interface NoSqlEntityManagerFactory {
 	@SuppressWarnings("rawtypes")
 	void rescan(List<Class> classes, ClassLoader cl);
 
+	/**
+	 * @return hit/miss counters of the second level cache keyed by column family or an empty
+	 * map if Bootstrap.SECOND_LEVEL_CACHE_SIZE was not configured
+	 */
+	Map<String, CacheStats> getCacheStats();
+
+	/**
+	 * @return how many actions flushes wrote and how many were left after merging writes to the
+	 * same row or index entry.  Both are equal if Bootstrap.COALESCE_WRITES is turned off
+	 */
+	CoalesceStats getCoalesceStats();
+
 	/**
 	 * Releases the entire pool of connections and disconnects from the nosql store.
 	 */
@@ -66,6 +66,18 @@ public interface Query<T> {
 	 * @return List of the entities
 	 */
 	public List<T> getResultList(int firstResult, Integer maxResults);
+
+	/**
+	 * Reads one page of at most maxResults entities starting right after where the previous page
+	 * ended.  Unlike getResultList(firstResult, maxResults) the entities of earlier pages are never
+	 * read again so page 1000 is as fast as page 1.  Pass null for the first page and then the
+	 * token of the page before.  The token is only valid for the same query and parameters.
+	 * 
+	 * @param pageToken null or ResultPage.getNextPageToken() of the previous page
+	 * @param maxResults 1 or larger
+	 * @return the page with a null token if there are no more results
+	 */
+	public ResultPage<T> getPage(String pageToken, int maxResults);
 	
 	/**
 	 * The rate at which we pull from the nosql store.  The default is 500.  We grab 500 entities
@@ -75,4 +87,13 @@ public interface Query<T> {
 	 * @param batchSize
 	 */
 	public void setBatchSize(int batchSize);
+
+	/**
+	 * Loads the listed ManyToOne and OneToMany fields of each batch of results along with the batch
+	 * using one find per field instead of one find per entity when you later touch them.  Names are
+	 * the column names which are the field names unless NoSqlColumn renamed them.
+	 * 
+	 * @param fieldNames
+	 */
+	public void setFetchPaths(String... fieldNames);
 }
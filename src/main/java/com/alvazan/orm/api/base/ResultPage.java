@@ -0,0 +1,30 @@
+package com.alvazan.orm.api.base;
+
+import java.util.List;
+
+/**
+ * One page of query results plus the token to pass to Query.getPage for the page after it.
+ *
+ * @param <T>
+ */
+public class ResultPage<T> {
+
+	private List<T> results;
+	private String nextPageToken;
+
+	public ResultPage(List<T> results, String nextPageToken) {
+		this.results = results;
+		this.nextPageToken = nextPageToken;
+	}
+
+	public List<T> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return the token for the next page or null if this is the last page
+	 */
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+}
@@ -0,0 +1,188 @@
+package com.alvazan.orm.api.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+
+/**
+ * Micro benchmark of ByteArray as a map key using the key shapes PlayOrm really produces.  For
+ * each shape we time a hash join (build a HashMap from one side, probe with the other like
+ * CursorForAnd does) and in-memory lookups like Table.keyToRow, once with the old additive hash
+ * and once with ByteArray itself.
+ */
+public class PerformanceByteArrayTest {
+
+	private static final Logger log = LoggerFactory.getLogger(PerformanceByteArrayTest.class);
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) {
+		int numKeys = 100000;
+		if(args.length > 0)
+			numKeys = Integer.parseInt(args[0]);
+		new PerformanceByteArrayTest().start(numKeys);
+	}
+
+	private void start(int numKeys) {
+		Random r = new Random(1);
+		run("uuid", uuidKeys(r, numKeys));
+		run("composite", compositeKeys(r, numKeys));
+		run("virtualPrefixed", prefixedKeys(numKeys));
+	}
+
+	private void run(String shape, List<byte[]> keys) {
+		if (log.isInfoEnabled())
+			log.info("shape="+shape+" keys="+keys.size()+" distinctHashes(old)="+distinctOldHashes(keys)+" distinctHashes(new)="+distinctNewHashes(keys));
+
+		for(int i = 0; i < WARMUP_ROUNDS; i++) {
+			joinOld(keys);
+			joinNew(keys);
+			treeMap(keys);
+		}
+
+		long oldJoin = 0;
+		long newJoin = 0;
+		long tree = 0;
+		for(int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			joinOld(keys);
+			long mid = System.nanoTime();
+			joinNew(keys);
+			long mid2 = System.nanoTime();
+			treeMap(keys);
+			long end = System.nanoTime();
+			oldJoin += mid - start;
+			newJoin += mid2 - mid;
+			tree += end - mid2;
+		}
+
+		if (log.isInfoEnabled())
+			log.info("shape="+shape+" avg ms join(oldHash)="+(oldJoin/ROUNDS/1000000.0)+" join(ByteArray)="+(newJoin/ROUNDS/1000000.0)
+					+" treeMap put+get="+(tree/ROUNDS/1000000.0));
+	}
+
+	private int joinOld(List<byte[]> keys) {
+		Map<OldHashKey, byte[]> map = new HashMap<OldHashKey, byte[]>();
+		for(byte[] k : keys) {
+			map.put(new OldHashKey(k), k);
+		}
+		int matches = 0;
+		for(byte[] k : keys) {
+			if(map.get(new OldHashKey(k)) != null)
+				matches++;
+		}
+		return matches;
+	}
+
+	private int joinNew(List<byte[]> keys) {
+		Map<ByteArray, byte[]> map = new HashMap<ByteArray, byte[]>();
+		for(byte[] k : keys) {
+			map.put(new ByteArray(k), k);
+		}
+		int matches = 0;
+		for(byte[] k : keys) {
+			if(map.get(new ByteArray(k)) != null)
+				matches++;
+		}
+		return matches;
+	}
+
+	private int treeMap(List<byte[]> keys) {
+		TreeMap<ByteArray, byte[]> map = new TreeMap<ByteArray, byte[]>();
+		for(byte[] k : keys) {
+			map.put(new ByteArray(k), k);
+		}
+		int matches = 0;
+		for(byte[] k : keys) {
+			if(map.get(new ByteArray(k)) != null)
+				matches++;
+		}
+		return matches;
+	}
+
+	private int distinctOldHashes(List<byte[]> keys) {
+		Set<Integer> hashes = new HashSet<Integer>();
+		for(byte[] k : keys) {
+			hashes.add(new OldHashKey(k).hashCode());
+		}
+		return hashes.size();
+	}
+
+	private int distinctNewHashes(List<byte[]> keys) {
+		Set<Integer> hashes = new HashSet<Integer>();
+		for(byte[] k : keys) {
+			hashes.add(new ByteArray(k).hashCode());
+		}
+		return hashes.size();
+	}
+
+	private List<byte[]> uuidKeys(Random r, int num) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for(int i = 0; i < num; i++) {
+			byte[] key = new byte[16];
+			r.nextBytes(key);
+			keys.add(key);
+		}
+		return keys;
+	}
+
+	private List<byte[]> compositeKeys(Random r, int num) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for(int i = 0; i < num; i++) {
+			byte[] account = StandardConverters.convertToBytes("account"+r.nextInt(100));
+			byte[] time = StandardConverters.convertToBytes((long) i);
+			byte[] key = new byte[account.length+time.length];
+			System.arraycopy(account, 0, key, 0, account.length);
+			System.arraycopy(time, 0, key, account.length, time.length);
+			keys.add(key);
+		}
+		return keys;
+	}
+
+	private List<byte[]> prefixedKeys(int num) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for(int i = 0; i < num; i++) {
+			keys.add(StandardConverters.convertToBytes("User:"+i));
+		}
+		return keys;
+	}
+
+	/**
+	 * The hash ByteArray used to have
+	 */
+	private static final class OldHashKey {
+		private final byte[] key;
+
+		OldHashKey(byte[] key) {
+			this.key = key;
+		}
+
+		@Override
+		public int hashCode() {
+			long hash = 0;
+			for(int i = 0; i < key.length;i++) {
+				hash += key[i];
+			}
+			return (int) (hash / 2);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof OldHashKey))
+				return false;
+			return Arrays.equals(key, ((OldHashKey) obj).key);
+		}
+	}
+}
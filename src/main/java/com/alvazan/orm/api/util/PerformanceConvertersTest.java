@@ -0,0 +1,113 @@
+package com.alvazan.orm.api.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.z8spi.conv.Converters;
+import com.alvazan.orm.api.z8spi.conv.Converters.BaseConverter;
+
+/**
+ * Micro benchmark of the primitive converters against the BigInteger/BigDecimal round trip they
+ * used to do, per type.  Each round writes and reads back the same values both ways.
+ */
+public class PerformanceConvertersTest {
+
+	private static final Logger log = LoggerFactory.getLogger(PerformanceConvertersTest.class);
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	private long sink;
+
+	public static void main(String[] args) {
+		int numValues = 1000000;
+		if(args.length > 0)
+			numValues = Integer.parseInt(args[0]);
+		new PerformanceConvertersTest().start(numValues);
+	}
+
+	private void start(int numValues) {
+		Random r = new Random(1);
+		Object[] bytes = new Object[numValues];
+		Object[] shorts = new Object[numValues];
+		Object[] ints = new Object[numValues];
+		Object[] longs = new Object[numValues];
+		Object[] floats = new Object[numValues];
+		Object[] doubles = new Object[numValues];
+		for(int i = 0; i < numValues; i++) {
+			bytes[i] = (byte) r.nextInt();
+			shorts[i] = (short) r.nextInt();
+			ints[i] = r.nextInt();
+			longs[i] = r.nextLong() >> r.nextInt(64);
+			//half whole numbers, half with a couple of decimals like prices
+			floats[i] = i % 2 == 0 ? (float) r.nextInt(100000) : r.nextInt(100000) / 100.0f;
+			doubles[i] = i % 2 == 0 ? (double) r.nextInt(10000000) : r.nextInt(10000000) / 100.0;
+		}
+
+		run("byte", bytes, Converters.BYTE_CONVERTER, false);
+		run("short", shorts, Converters.SHORT_CONVERTER, false);
+		run("int", ints, Converters.INT_CONVERTER, false);
+		run("long", longs, Converters.LONG_CONVERTER, false);
+		run("float", floats, Converters.FLOAT_CONVERTER, true);
+		run("double", doubles, Converters.DOUBLE_CONVERTER, true);
+		if (log.isDebugEnabled())
+			log.debug("sink="+sink);
+	}
+
+	private void run(String type, Object[] values, BaseConverter converter, boolean decimal) {
+		for(int i = 0; i < WARMUP_ROUNDS; i++) {
+			sink += old(values, decimal);
+			sink += current(values, converter);
+		}
+
+		long oldNanos = 0;
+		long newNanos = 0;
+		for(int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			sink += old(values, decimal);
+			long mid = System.nanoTime();
+			sink += current(values, converter);
+			long end = System.nanoTime();
+			oldNanos += mid - start;
+			newNanos += end - mid;
+		}
+
+		if (log.isInfoEnabled())
+			log.info("type="+type+" round trips/sec old="+perSec(values.length, oldNanos)+" new="+perSec(values.length, newNanos));
+	}
+
+	private long perSec(int numValues, long nanos) {
+		return (long) (numValues / (nanos/ROUNDS/1e9));
+	}
+
+	private long current(Object[] values, BaseConverter converter) {
+		long total = 0;
+		for(Object v : values) {
+			byte[] data = converter.convertToNoSql(v);
+			total += converter.convertFromNoSql(data).hashCode();
+		}
+		return total;
+	}
+
+	/**
+	 * What the converters did before, through BigInteger or a String and BigDecimal
+	 */
+	private long old(Object[] values, boolean decimal) {
+		long total = 0;
+		for(Object v : values) {
+			if(decimal) {
+				BigDecimal dec = new BigDecimal(v+"");
+				byte[] data = Converters.BIGDECIMAL_CONVERTER.convertToNoSql(dec);
+				BigDecimal back = (BigDecimal) Converters.BIGDECIMAL_CONVERTER.convertFromNoSql(data);
+				total += Double.valueOf(back.doubleValue()).hashCode();
+			} else {
+				byte[] data = BigInteger.valueOf(((Number) v).longValue()).toByteArray();
+				total += Long.valueOf(new BigInteger(data).longValue()).hashCode();
+			}
+		}
+		return total;
+	}
+}
@@ -0,0 +1,204 @@
+package com.alvazan.orm.api.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.base.DbTypeEnum;
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z8spi.Key;
+import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.ScanInfo;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.iter.ProxyTempCursor;
+import com.alvazan.orm.api.z8spi.meta.DboColumnCommonMeta;
+import com.alvazan.orm.api.z8spi.meta.DboColumnIdMeta;
+import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+
+/**
+ * Multi threaded benchmark of the in memory database.  Every thread mixes writes (a row plus its
+ * index entry per flush), finds of a few keys and index range scans against one shared factory.  We run
+ * with 1, 2, 4... up to the given number of threads so you can see how throughput scales.
+ */
+public class PerformanceInMemoryTest {
+
+	private static final Logger log = LoggerFactory.getLogger(PerformanceInMemoryTest.class);
+	private static final int NUM_KEYS = 10000;
+	private static final int SCAN_WIDTH = 20;
+	private static final int FIND_SIZE = 10;
+
+	private DboTableMeta table;
+	//long columns are stored as BigInteger
+	private DboColumnCommonMeta valueCol;
+	private volatile boolean shouldRun;
+
+	public static void main(String[] args) {
+		int maxThreads = 8;
+		int seconds = 5;
+		if(args.length > 0)
+			maxThreads = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			seconds = Integer.parseInt(args[1]);
+		new PerformanceInMemoryTest().start(maxThreads, seconds);
+	}
+
+	private void start(int maxThreads, int seconds) {
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put(Bootstrap.AUTO_CREATE_KEY, "create");
+		NoSqlEntityManagerFactory factory = Bootstrap.create(DbTypeEnum.IN_MEMORY, props, null, null);
+		try {
+			setupMetaData(factory);
+			load(factory);
+			//warm up the jit before measuring
+			run(factory, maxThreads, 1);
+			for(int threads = 1; threads <= maxThreads; threads *= 2) {
+				long ops = run(factory, threads, seconds);
+				if (log.isInfoEnabled())
+					log.info("threads="+threads+" ops/sec="+(ops/seconds));
+			}
+		} finally {
+			factory.close();
+		}
+	}
+
+	private void setupMetaData(NoSqlEntityManagerFactory factory) {
+		NoSqlEntityManager mgr = factory.createEntityManager();
+		DboDatabaseMeta meta = mgr.find(DboDatabaseMeta.class, DboDatabaseMeta.META_DB_ROWKEY);
+		if(meta == null)
+			meta = new DboDatabaseMeta();
+
+		table = new DboTableMeta();
+		table.setup(null, "perfInMemory", false, false);
+		DboColumnIdMeta idMeta = new DboColumnIdMeta();
+		idMeta.setup(table, "id", String.class, false);
+		valueCol = new DboColumnCommonMeta();
+		valueCol.setup(table, "value", long.class, true, false);
+		meta.addMetaClassDbo(table);
+
+		mgr.put(valueCol);
+		mgr.put(idMeta);
+		mgr.put(table);
+		mgr.put(meta);
+		mgr.flush();
+	}
+
+	private void load(NoSqlEntityManagerFactory factory) {
+		NoSqlSession session = factory.createEntityManager().getSession();
+		for(int i = 0; i < NUM_KEYS; i++) {
+			write(session, i, i);
+			if(i % 500 == 0)
+				session.flush();
+		}
+		session.flush();
+	}
+
+	private long run(NoSqlEntityManagerFactory factory, int numThreads, int seconds) {
+		AtomicLong ops = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(numThreads);
+		shouldRun = true;
+		for(int i = 0; i < numThreads; i++) {
+			Thread t = new Thread(new Worker(factory, i, ops, done), "perfInMemory"+i);
+			t.setDaemon(true);
+			t.start();
+		}
+
+		try {
+			Thread.sleep(seconds*1000L);
+			shouldRun = false;
+			done.await();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		return ops.get();
+	}
+
+	private void write(NoSqlSession session, int id, long value) {
+		byte[] key = table.getIdColumnMeta().convertToStorage2("key"+id);
+		Column c = new Column();
+		c.setName(valueCol.getColumnNameAsBytes());
+		c.setValue(valueCol.convertToStorage2(BigInteger.valueOf(value)));
+		List<Column> cols = new ArrayList<Column>();
+		cols.add(c);
+		session.put(table, key, cols);
+
+		IndexColumn ind = new IndexColumn();
+		ind.setColumnName(valueCol.getColumnName());
+		ind.setIndexedValue(valueCol.convertToStorage2(BigInteger.valueOf(value)));
+		ind.setPrimaryKey(key);
+		byte[] indexRowKey = table.getIdColumnMeta().convertToStorage2(valueCol.getIndexRowKey(null, null));
+		session.persistIndex(table, valueCol.getIndexTableName(), indexRowKey, ind);
+	}
+
+	private class Worker implements Runnable {
+		private NoSqlEntityManagerFactory factory;
+		private Random r;
+		private AtomicLong ops;
+		private CountDownLatch done;
+
+		public Worker(NoSqlEntityManagerFactory factory, int threadNum, AtomicLong ops, CountDownLatch done) {
+			this.factory = factory;
+			this.r = new Random(threadNum);
+			this.ops = ops;
+			this.done = done;
+		}
+
+		@Override
+		public void run() {
+			try {
+				long count = 0;
+				while(shouldRun) {
+					NoSqlSession session = factory.createEntityManager().getSession();
+					int op = r.nextInt(10);
+					if(op < 2) {
+						write(session, r.nextInt(NUM_KEYS), r.nextInt(NUM_KEYS));
+						session.flush();
+					} else if(op < 8) {
+						find(session);
+					} else {
+						scan(session, r.nextInt(NUM_KEYS));
+					}
+					count++;
+				}
+				ops.addAndGet(count);
+			} finally {
+				done.countDown();
+			}
+		}
+
+		private void find(NoSqlSession session) {
+			List<byte[]> keys = new ArrayList<byte[]>();
+			for(int i = 0; i < FIND_SIZE; i++) {
+				keys.add(table.getIdColumnMeta().convertToStorage2("key"+r.nextInt(NUM_KEYS)));
+			}
+			AbstractCursor<KeyValue<Row>> cursor = session.find(table, new ProxyTempCursor<byte[]>(keys), true, false, null);
+			while(cursor.next()) {
+				cursor.getCurrent();
+			}
+		}
+
+		private void scan(NoSqlSession session, long from) {
+			ScanInfo info = ScanInfo.createScanInfo(valueCol, null, null);
+			Key start = new Key(valueCol.convertToStorage2(BigInteger.valueOf(from)), true);
+			Key end = new Key(valueCol.convertToStorage2(BigInteger.valueOf(from+SCAN_WIDTH)), true);
+			AbstractCursor<IndexColumn> cursor = session.scanIndex(info, start, end, 500);
+			while(cursor.next()) {
+				cursor.getCurrent();
+			}
+		}
+	}
+}
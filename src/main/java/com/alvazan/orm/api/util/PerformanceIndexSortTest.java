@@ -0,0 +1,143 @@
+package com.alvazan.orm.api.util;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.base.DbTypeEnum;
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z8spi.Key;
+import com.alvazan.orm.api.z8spi.ScanInfo;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.meta.DboColumnCommonMeta;
+import com.alvazan.orm.api.z8spi.meta.DboColumnIdMeta;
+import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+
+/**
+ * Benchmark of integer and decimal index inserts and range scans in the in memory database, once
+ * with the default comparators and once with Bootstrap.IN_MEMORY_SORTABLE_KEYS.
+ */
+public class PerformanceIndexSortTest {
+
+	private static final Logger log = LoggerFactory.getLogger(PerformanceIndexSortTest.class);
+	private static final int ROUNDS = 5;
+	private static final int NUM_SCANS = 20000;
+	private static final int SCAN_WIDTH = 50;
+
+	private DboTableMeta table;
+	private DboColumnCommonMeta valueCol;
+
+	public static void main(String[] args) {
+		int numEntries = 200000;
+		if(args.length > 0)
+			numEntries = Integer.parseInt(args[0]);
+		for(Class<?> type : new Class<?>[] {long.class, BigDecimal.class}) {
+			for(boolean sortable : new boolean[] {false, true}) {
+				new PerformanceIndexSortTest().start(type, sortable, numEntries);
+			}
+		}
+	}
+
+	private void start(Class<?> type, boolean sortable, int numEntries) {
+		long insertNanos = 0;
+		long scanNanos = 0;
+		long found = 0;
+		//the first round warms up the jit
+		for(int i = 0; i <= ROUNDS; i++) {
+			Map<String, Object> props = new HashMap<String, Object>();
+			props.put(Bootstrap.AUTO_CREATE_KEY, "create");
+			props.put(Bootstrap.IN_MEMORY_SORTABLE_KEYS, ""+sortable);
+			NoSqlEntityManagerFactory factory = Bootstrap.create(DbTypeEnum.IN_MEMORY, props, null, null);
+			try {
+				setupMetaData(factory, type);
+				long start = System.nanoTime();
+				insert(factory, numEntries);
+				long mid = System.nanoTime();
+				found = scan(factory, numEntries);
+				long end = System.nanoTime();
+				if(i == 0)
+					continue;
+				insertNanos += mid - start;
+				scanNanos += end - mid;
+			} finally {
+				factory.close();
+			}
+		}
+
+		if (log.isInfoEnabled())
+			log.info("type="+type.getSimpleName()+" sortableKeys="+sortable+" entries="+numEntries
+					+" inserts/sec="+(long) (numEntries / (insertNanos/ROUNDS/1e9))
+					+" scans/sec="+(long) (NUM_SCANS / (scanNanos/ROUNDS/1e9))+" entriesScanned="+found);
+	}
+
+	private void setupMetaData(NoSqlEntityManagerFactory factory, Class<?> type) {
+		NoSqlEntityManager mgr = factory.createEntityManager();
+		DboDatabaseMeta meta = mgr.find(DboDatabaseMeta.class, DboDatabaseMeta.META_DB_ROWKEY);
+		if(meta == null)
+			meta = new DboDatabaseMeta();
+
+		table = new DboTableMeta();
+		table.setup(null, "perfIndexSort", false, false);
+		DboColumnIdMeta idMeta = new DboColumnIdMeta();
+		idMeta.setup(table, "id", String.class, false);
+		valueCol = new DboColumnCommonMeta();
+		valueCol.setup(table, "value", type, true, false);
+		meta.addMetaClassDbo(table);
+
+		mgr.put(valueCol);
+		mgr.put(idMeta);
+		mgr.put(table);
+		mgr.put(meta);
+		mgr.flush();
+	}
+
+	private void insert(NoSqlEntityManagerFactory factory, int numEntries) {
+		NoSqlSession session = factory.createEntityManager().getSession();
+		byte[] indexRowKey = table.getIdColumnMeta().convertToStorage2(valueCol.getIndexRowKey(null, null));
+		Random r = new Random(1);
+		for(int i = 0; i < numEntries; i++) {
+			IndexColumn ind = new IndexColumn();
+			ind.setColumnName(valueCol.getColumnName());
+			ind.setIndexedValue(toBytes(r.nextInt(numEntries)));
+			ind.setPrimaryKey(table.getIdColumnMeta().convertToStorage2("key"+i));
+			session.persistIndex(table, valueCol.getIndexTableName(), indexRowKey, ind);
+			if(i % 1000 == 0)
+				session.flush();
+		}
+		session.flush();
+	}
+
+	private long scan(NoSqlEntityManagerFactory factory, int numEntries) {
+		NoSqlSession session = factory.createEntityManager().getSession();
+		ScanInfo info = ScanInfo.createScanInfo(valueCol, null, null);
+		Random r = new Random(2);
+		long found = 0;
+		for(int i = 0; i < NUM_SCANS; i++) {
+			long from = r.nextInt(numEntries);
+			Key start = new Key(toBytes(from), true);
+			Key end = new Key(toBytes(from+SCAN_WIDTH), false);
+			AbstractCursor<IndexColumn> cursor = session.scanIndex(info, start, end, 500);
+			while(cursor.next()) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	private byte[] toBytes(long val) {
+		//stripped so the scales differ like they do for real decimals
+		if(valueCol.getClassType() == BigDecimal.class)
+			return valueCol.convertToStorage2(BigDecimal.valueOf(val, 2).stripTrailingZeros());
+		return valueCol.convertToStorage2(BigInteger.valueOf(val));
+	}
+}
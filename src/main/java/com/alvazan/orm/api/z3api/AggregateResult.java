@@ -0,0 +1,41 @@
+package com.alvazan.orm.api.z3api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alvazan.orm.api.z5api.PartialAggregate;
+
+/**
+ * The values of the COUNT, MIN, MAX and SUM of a select clause in the order they were written
+ */
+public class AggregateResult {
+
+	private List<String> names = new ArrayList<String>();
+	private List<Object> values = new ArrayList<Object>();
+
+	public AggregateResult(List<PartialAggregate> aggregates) {
+		for(PartialAggregate agg : aggregates) {
+			names.add(agg.getInfo().getTextInSql());
+			values.add(agg.getResult());
+		}
+	}
+
+	/**
+	 * @return the aggregates as written in the query like COUNT(*) or MAX(e.price)
+	 */
+	public List<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * @return a Long for COUNT, BigInteger or BigDecimal for SUM and the column's type for MIN and MAX.
+	 * MIN, MAX and SUM are null if no row had a value
+	 */
+	public List<Object> getValues() {
+		return values;
+	}
+
+	public Object getValue(int index) {
+		return values.get(index);
+	}
+}
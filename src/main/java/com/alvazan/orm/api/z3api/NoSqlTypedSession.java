@@ -57,6 +57,30 @@ public interface NoSqlTypedSession {
 	public QueryResult createQueryCursor(String query, int batchSize);
 
 	public int executeQuery(String query);
+
+	/**
+	 * Runs an UPDATE, DELETE or DELETECOLUMN query, flushing every batchSize changed rows so very large
+	 * updates never hold more than one batch of rows and writes in memory.  Rows already holding the
+	 * values an UPDATE sets are not rewritten or counted.
+	 * 
+	 * @param query			S-SQL UPDATE, DELETE or DELETECOLUMN
+	 * @param batchSize		rows to read and to write per flush
+	 * @param listener		told the count so far after each flush, may be null
+	 * @return the number of rows changed or deleted
+	 */
+	public int executeQuery(String query, int batchSize, ProgressListener listener);
+
+	/**
+	 * Runs a query whose select clause is only aggregates like SELECT COUNT(*), MAX(e.price) FROM ...
+	 * COUNT, MIN, MAX and SUM are answered from the index alone when the where clause is a single
+	 * comparison on the aggregated column or there is none, otherwise they are added up as the rows
+	 * stream by so no rows are held in memory.
+	 * 
+	 * @param query		S-SQL query with only aggregates in the select clause
+	 * @param batchSize		Size of the batch
+	 * @return one value per aggregate in the order of the select clause
+	 */
+	public AggregateResult aggregate(String query, int batchSize);
 	
 	public void flush();
 
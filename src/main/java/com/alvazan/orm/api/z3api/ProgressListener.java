@@ -0,0 +1,12 @@
+package com.alvazan.orm.api.z3api;
+
+/**
+ * Told how far a bulk UPDATE or DELETE has gotten each time it flushes a batch.
+ */
+public interface ProgressListener {
+
+	/**
+	 * @param rowCount the rows changed or deleted so far, all of which are now flushed
+	 */
+	public void flushed(int rowCount);
+}
@@ -1,5 +1,6 @@
 package com.alvazan.orm.api.z5api;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,6 +29,10 @@ public class IndexColumnInfo {
 		return colNameToValue.get(view);
 	}
 
+	public Collection<ViewInfo> getViews() {
+		return colNameToValue.keySet();
+	}
+
 	public ByteArray getPrimaryKey(ViewInfo leftView) {
 		return new ByteArray(getPrimaryKeyRaw(leftView));
 	}
@@ -0,0 +1,84 @@
+package com.alvazan.orm.api.z5api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Where the previous page of a query ended, the indexed value and primary key of its last entry.
+ * Handed to the caller as an opaque url safe string.
+ */
+public class PageToken {
+
+	private static final int VERSION = 1;
+
+	private byte[] indexedValue;
+	private byte[] primaryKey;
+
+	public PageToken(byte[] indexedValue, byte[] primaryKey) {
+		if(primaryKey == null)
+			throw new IllegalArgumentException("primaryKey cannot be null");
+		this.indexedValue = indexedValue;
+		this.primaryKey = primaryKey;
+	}
+
+	public static PageToken parse(String token) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.decodeBase64(token)));
+			if(in.readByte() != VERSION)
+				throw new IllegalArgumentException("not a page token="+token);
+			byte[] value = readBytes(in);
+			byte[] pk = readBytes(in);
+			return new PageToken(value, pk);
+		} catch(IOException e) {
+			throw new IllegalArgumentException("not a page token="+token, e);
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		if(len < 0)
+			return null;
+		byte[] data = new byte[len];
+		in.readFully(data);
+		return data;
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+		if(data == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	public String format() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(VERSION);
+			writeBytes(out, indexedValue);
+			writeBytes(out, primaryKey);
+			out.flush();
+			return Base64.encodeBase64URLSafeString(bytes.toByteArray());
+		} catch(IOException e) {
+			throw new RuntimeException("bug, writing to memory should not fail", e);
+		}
+	}
+
+	/**
+	 * @return the indexed value of the last entry or null if it did not come from an index
+	 */
+	public byte[] getIndexedValue() {
+		return indexedValue;
+	}
+
+	public byte[] getPrimaryKey() {
+		return primaryKey;
+	}
+}
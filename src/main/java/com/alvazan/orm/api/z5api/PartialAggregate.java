@@ -0,0 +1,76 @@
+package com.alvazan.orm.api.z5api;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import com.alvazan.orm.api.z8spi.conv.StorageTypeEnum;
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
+
+/**
+ * The running value of one aggregate.  Values are added one at a time while the query streams so
+ * neither rows nor values are ever collected.  Like sql, null values are only counted by COUNT(*)
+ */
+public class PartialAggregate {
+
+	private AggregateInfo info;
+	private long count;
+	private Object extreme;
+	private BigInteger integerSum = BigInteger.ZERO;
+	private BigDecimal decimalSum = BigDecimal.ZERO;
+
+	public PartialAggregate(AggregateInfo info) {
+		this.info = info;
+	}
+
+	public AggregateInfo getInfo() {
+		return info;
+	}
+
+	public void add(Object value) {
+		if(value == null && info.getColumn() != null)
+			return;
+		count++;
+		switch(info.getType()) {
+		case MIN:
+			if(extreme == null || compare(value, extreme) < 0)
+				extreme = value;
+			break;
+		case MAX:
+			if(extreme == null || compare(value, extreme) > 0)
+				extreme = value;
+			break;
+		case SUM:
+			if(info.getColumn().getStorageType() == StorageTypeEnum.INTEGER)
+				integerSum = integerSum.add(new BigInteger(value.toString()));
+			else
+				decimalSum = decimalSum.add(new BigDecimal(value.toString()));
+			break;
+		default:
+			break;
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private int compare(Object value, Object current) {
+		return ((Comparable) value).compareTo(current);
+	}
+
+	/**
+	 * @return a Long for COUNT, BigInteger or BigDecimal for SUM and the column's type for MIN and
+	 * MAX which are null if there were no values
+	 */
+	public Object getResult() {
+		switch(info.getType()) {
+		case COUNT:
+			return count;
+		case SUM:
+			if(count == 0)
+				return null;
+			else if(info.getColumn().getStorageType() == StorageTypeEnum.INTEGER)
+				return integerSum;
+			return decimalSum;
+		default:
+			return extreme;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package com.alvazan.orm.api.z5api;
 
 import java.util.List;
 
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
+import com.alvazan.orm.api.z8spi.meta.OrderByInfo;
 import com.alvazan.orm.api.z8spi.meta.TypeInfo;
 import com.alvazan.orm.api.z8spi.meta.TypedColumn;
 import com.alvazan.orm.api.z8spi.meta.ViewInfo;
@@ -44,5 +46,15 @@ public interface SpiMetaQuery {
 	public List<TypedColumn> getUpdateList();
 
 	public String getQueryType();
+
+	/**
+	 * @return The COUNT, MIN, MAX and SUM of the select clause in order or an empty list if it has none
+	 */
+	public List<AggregateInfo> getAggregates();
+
+	/**
+	 * @return The ORDER BY column and direction or null if the query has no ORDER BY
+	 */
+	public OrderByInfo getOrderBy();
 	
 }
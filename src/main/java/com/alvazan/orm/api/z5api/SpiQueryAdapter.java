@@ -1,5 +1,6 @@
 package com.alvazan.orm.api.z5api;
 
+import java.util.List;
 import java.util.Set;
 
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
@@ -19,6 +20,17 @@ public interface SpiQueryAdapter {
 	 */
 	public DirectCursor<IndexColumnInfo> getResultList(Set<ViewInfo> alreadyJoinedViews, String indexedColumn);
 
+	/**
+	 * Same as getResultList but starts right after the entry the token points at.  A query on one
+	 * index seeks straight to the token's indexed value.  Queries with AND or OR skip the keys up to
+	 * the token's primary key without reading any entity rows, so that entity must still be in the
+	 * results.
+	 * 
+	 * @param alreadyJoinedViews an EMPTY Set we fill in like getResultList does
+	 * @param after where the previous page ended or null to start at the beginning
+	 */
+	public DirectCursor<IndexColumnInfo> getResultListAfter(Set<ViewInfo> alreadyJoinedViews, PageToken after);
+
 	/**
 	 * The Iterable from getResults() is only loaded with 'batchSize' at a time from the nosql store so as you iterate
 	 * GC should be releasing memory for the previous 500 while the Iterable loads the next 500.
@@ -27,4 +39,21 @@ public interface SpiQueryAdapter {
 	 */
 	public void setBatchSize(int batchSize);
 
+	/**
+	 * The most results the caller will read or null for all of them.  An ORDER BY that has to sort
+	 * then only keeps that many results in memory.
+	 * 
+	 * @param limit
+	 */
+	public void setLimit(Integer limit);
+
+	/**
+	 * Adds the values of the aggregates straight from index rows without reading any entity rows,
+	 * ie. MIN and MAX come from the ends of a sorted index slice.
+	 * 
+	 * @param aggregates one per aggregate of the select clause
+	 * @return false if the aggregates need the entity rows in which case nothing was added
+	 */
+	public boolean aggregateFromIndexes(List<PartialAggregate> aggregates);
+
 }
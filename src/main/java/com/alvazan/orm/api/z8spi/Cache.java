@@ -8,6 +8,11 @@ public interface Cache {
 
 	RowHolder<Row> fromCache(DboTableMeta colFamily, byte[] key);
 
+	/**
+	 * Like fromCache but only looks at the rows of this session, never the second level cache
+	 */
+	RowHolder<Row> fromSessionCache(DboTableMeta colFamily, byte[] key);
+
 	void cacheRow(DboTableMeta colFamily, byte[] b, Row value);
 
 }
@@ -0,0 +1,69 @@
+package com.alvazan.orm.api.z8spi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit/miss counters of the shared second level cache for a single column family.  Counters are
+ * updated concurrently by every NoSqlEntityManager created from the same factory.
+ */
+public class CacheStats {
+
+	private final String columnFamily;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	public CacheStats(String columnFamily) {
+		this.columnFamily = columnFamily;
+	}
+
+	public void recordHit() {
+		hits.incrementAndGet();
+	}
+
+	public void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	public void recordEviction() {
+		evictions.incrementAndGet();
+	}
+
+	public void recordInvalidation() {
+		invalidations.incrementAndGet();
+	}
+
+	public String getColumnFamily() {
+		return columnFamily;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		if(total == 0)
+			return 0;
+		return ((double) h) / total;
+	}
+
+	@Override
+	public String toString() {
+		return "[cf="+columnFamily+" hits="+hits+" misses="+misses+" evictions="+evictions+" invalidations="+invalidations+"]";
+	}
+}
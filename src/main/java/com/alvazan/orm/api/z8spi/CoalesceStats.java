@@ -0,0 +1,36 @@
+package com.alvazan.orm.api.z8spi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How many actions flushes handed to the write coalescing and how many of them were actually
+ * sent to the database.  Counters are updated concurrently by every NoSqlEntityManager created
+ * from the same factory.
+ */
+public class CoalesceStats {
+
+	private final AtomicLong actionsIn = new AtomicLong();
+	private final AtomicLong actionsOut = new AtomicLong();
+
+	public void recordFlush(int in, int out) {
+		actionsIn.addAndGet(in);
+		actionsOut.addAndGet(out);
+	}
+
+	public long getActionsIn() {
+		return actionsIn.get();
+	}
+
+	public long getActionsOut() {
+		return actionsOut.get();
+	}
+
+	public long getActionsCoalesced() {
+		return actionsIn.get() - actionsOut.get();
+	}
+
+	@Override
+	public String toString() {
+		return "[actionsIn="+actionsIn+" actionsOut="+actionsOut+"]";
+	}
+}
@@ -3,6 +3,7 @@ package com.alvazan.orm.api.z8spi;
 public class Key {
 	private byte[] key;
 	private boolean inclusive;
+	private byte[] afterPrimaryKey;
 	
 	public Key() {};
 	public Key(byte[] key, boolean inclusive) {
@@ -22,6 +23,18 @@ public class Key {
 	public void setInclusive(boolean inclusive) {
 		this.inclusive = inclusive;
 	}
+
+	public byte[] getAfterPrimaryKey() {
+		return afterPrimaryKey;
+	}
+
+	/**
+	 * For a from key of a scan of one value, start right after the entry of this primary key instead
+	 * of at the first entry of the value.  Databases that can't jump to a primary key may ignore it.
+	 */
+	public void setAfterPrimaryKey(byte[] afterPrimaryKey) {
+		this.afterPrimaryKey = afterPrimaryKey;
+	}
 	
 	
 }
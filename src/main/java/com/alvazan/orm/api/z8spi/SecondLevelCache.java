@@ -0,0 +1,47 @@
+package com.alvazan.orm.api.z8spi;
+
+import java.util.Map;
+
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+
+/**
+ * A row cache shared by all NoSqlEntityManagers of one NoSqlEntityManagerFactory.  Unlike the
+ * per-manager cache, rows here are seen by many threads at once so implementations must be
+ * thread safe and must never hand out a Row instance that a caller could modify.
+ */
+public interface SecondLevelCache {
+
+	/**
+	 * Reads the Bootstrap.SECOND_LEVEL_CACHE_* properties.  If no size is configured, the cache
+	 * stays disabled and every lookup is a miss
+	 */
+	void start(Map<String, Object> properties);
+
+	boolean isEnabled();
+
+	RowHolder<Row> fromCache(DboTableMeta colFamily, byte[] key);
+
+	/**
+	 * @return a stamp to take before reading rows from the database that are then handed to cacheRow
+	 */
+	long startFill();
+
+	/**
+	 * Caches a row read from the database unless it was invalidated after fillStamp was taken, the
+	 * read may then have seen the row from before that write
+	 */
+	void cacheRow(DboTableMeta colFamily, byte[] key, Row value, long fillStamp);
+
+	/**
+	 * Called after rows are written to or removed from the nosql store so no other manager reads
+	 * the stale row
+	 */
+	void invalidate(DboTableMeta colFamily, byte[] rowKey);
+
+	void clear();
+
+	/**
+	 * @return counters keyed by column family name
+	 */
+	Map<String, CacheStats> getStats();
+}
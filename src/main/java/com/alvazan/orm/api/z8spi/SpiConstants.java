@@ -1,10 +1,31 @@
 package com.alvazan.orm.api.z8spi;
 
+import java.util.Map;
+
 public class SpiConstants {
 
 	public static final String CASSANDRA_BUILDER = "nosql.cassandra.builder";
 	public static final String CASSANDRA_CF_CREATE_CALLBACK = "nosql.cassandra.createcfcallback";
+	public static final String CASSANDRA_PREFETCH_DEPTH = "nosql.cassandra.prefetchDepth";
+	public static final String CASSANDRA_PREFETCH_MAX_BYTES = "nosql.cassandra.prefetchMaxBytes";
+	public static final String CASSANDRA_FIND_PARALLELISM = "nosql.cassandra.findParallelism";
+	public static final String CQL_MAX_BATCH_SIZE = "nosql.cql.maxBatchSize";
+	public static final String CQL_MAX_IN_FLIGHT = "nosql.cql.maxInFlight";
 
     public static final String NULL_STRING_FORCQL3 = "_n";
 
+	/**
+	 * Reads a numeric property that may be given as a Number or a String
+	 */
+	public static long readLong(Map<String, Object> properties, String key, long defaultVal) {
+		Object val = properties.get(key);
+		if(val == null)
+			return defaultVal;
+		else if(val instanceof Number)
+			return ((Number) val).longValue();
+		else if(val instanceof String)
+			return Long.parseLong((String) val);
+		throw new IllegalArgumentException(key+" key in map has a value of type="+val.getClass()+" but that must be a String or a Number");
+	}
+
 }
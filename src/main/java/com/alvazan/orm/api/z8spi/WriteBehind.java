@@ -0,0 +1,14 @@
+package com.alvazan.orm.api.z8spi;
+
+/**
+ * The thread pool that write behind flushes run on.  One instance is shared by all
+ * NoSqlEntityManagers of one NoSqlEntityManagerFactory.
+ */
+public interface WriteBehind {
+
+	/**
+	 * Waits for the background flushes already queued to reach the database then stops the
+	 * threads.  Throws if a background flush failed and no NoSqlEntityManager has reported it yet.
+	 */
+	void close();
+}
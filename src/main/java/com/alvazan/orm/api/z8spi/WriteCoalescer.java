@@ -0,0 +1,22 @@
+package com.alvazan.orm.api.z8spi;
+
+import java.util.List;
+import java.util.Map;
+
+import com.alvazan.orm.api.z8spi.action.Action;
+
+/**
+ * Shrinks the actions of one flush before they are sent to the database.  One instance is shared
+ * by all NoSqlEntityManagers of one NoSqlEntityManagerFactory so it must be thread safe.
+ */
+public interface WriteCoalescer {
+
+	/**
+	 * Reads Bootstrap.COALESCE_WRITES.  Coalescing is on unless that is set to false
+	 */
+	void start(Map<String, Object> properties);
+
+	List<Action> coalesce(List<Action> actions);
+
+	CoalesceStats getStats();
+}
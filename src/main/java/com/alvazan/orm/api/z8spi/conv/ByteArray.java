@@ -6,7 +6,9 @@ import java.util.Arrays;
 
 
 public class ByteArray implements Comparable<ByteArray> {
+	private static final int MURMUR_SEED = 0x9747b28c;
 	private byte[] key;
+	private int hash;
 	
 	public ByteArray(byte[] key) {
 		this.key = key;
@@ -16,18 +18,58 @@ public class ByteArray implements Comparable<ByteArray> {
 		return key;
 	}
 	
+	/**
+	 * Murmur3 (x86, 32 bit) over the bytes, computed once and then cached like String does.  The
+	 * old hash summed the bytes so keys with the same bytes in any order (uuids, composite keys,
+	 * prefixed virtual keys) landed in the same bucket and HashMap lookups became linear scans.
+	 * NOTE: this assumes nobody changes the byte[] after wrapping it which is true everywhere in
+	 * PlayOrm since a key is never modified once created
+	 */
 	@Override
 	public int hashCode() {
-		if(key == null)
-			return 0;
-		
-		long hash = 0;
-		for(int i = 0; i < key.length;i++) {
-			hash += key[i];
+		int h = hash;
+		if(h == 0 && key != null) {
+			h = murmurHash(key);
+			hash = h;
 		}
-		
-		return (int) (hash / 2);
+		return h;
+	}
+
+	private static int murmurHash(byte[] data) {
+		int h = MURMUR_SEED;
+		int len = data.length;
+		int roundedEnd = len & 0xfffffffc;
+		for(int i = 0; i < roundedEnd; i += 4) {
+			int k = (data[i] & 0xff) | ((data[i+1] & 0xff) << 8) | ((data[i+2] & 0xff) << 16) | (data[i+3] << 24);
+			h ^= mixK(k);
+			h = Integer.rotateLeft(h, 13);
+			h = h*5+0xe6546b64;
+		}
+
+		//the 1 to 3 bytes left over, little endian like the words above
+		if(roundedEnd < len) {
+			int k = 0;
+			for(int i = roundedEnd; i < len; i++) {
+				k |= (data[i] & 0xff) << (8 * (i - roundedEnd));
+			}
+			h ^= mixK(k);
+		}
+
+		h ^= len;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	private static int mixK(int k) {
+		int result = k * 0xcc9e2d51;
+		result = Integer.rotateLeft(result, 15);
+		return result * 0x1b873593;
 	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -43,13 +85,31 @@ public class ByteArray implements Comparable<ByteArray> {
 			return false;
 		return true;
 	}
+	/**
+	 * Unsigned lexicographic compare.  We compare 8 bytes at a time as one long and only drop
+	 * down to single bytes for the tail of the shorter array
+	 */
 	@Override
 	public int compareTo(ByteArray o) {
-		byte[] right = o.key;
-		byte[] left = this.key;
-		
+		return compare(this.key, o.key);
+	}
+
+	public static int compare(byte[] left, byte[] right) {
 		int min = Math.min(right.length, left.length);
-		for(int i = 0; i < min; i++) {
+		int wordEnd = min & ~7;
+		int i = 0;
+		for(; i < wordEnd; i += 8) {
+			long leftWord = readLong(left, i);
+			long rightWord = readLong(right, i);
+			if(leftWord != rightWord) {
+				//flipping the sign bit turns a signed compare into an unsigned one
+				if((leftWord ^ Long.MIN_VALUE) < (rightWord ^ Long.MIN_VALUE))
+					return -1;
+				return 1;
+			}
+		}
+
+		for(; i < min; i++) {
 			//very annoying but in java, we need the int for the unsigned byte so we can compare the
 			//unsigned bytes...
 			int leftUnsignedByte = javaSignedByteToUnsigned(left[i]);
@@ -70,6 +130,17 @@ public class ByteArray implements Comparable<ByteArray> {
 		//else right > left length
 		return 1;
 	}
+
+	private static long readLong(byte[] data, int offset) {
+		return ((long) (data[offset] & 0xff) << 56)
+				| ((long) (data[offset+1] & 0xff) << 48)
+				| ((long) (data[offset+2] & 0xff) << 40)
+				| ((long) (data[offset+3] & 0xff) << 32)
+				| ((long) (data[offset+4] & 0xff) << 24)
+				| ((data[offset+5] & 0xff) << 16)
+				| ((data[offset+6] & 0xff) << 8)
+				| (data[offset+7] & 0xff);
+	}
 	
 	//Java has no unsigned byte and we need the unsigned byte value so we can compare..
 	public static int javaSignedByteToUnsigned(byte b) {
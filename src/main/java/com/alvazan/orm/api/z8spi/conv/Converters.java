@@ -1,11 +1,10 @@
 package com.alvazan.orm.api.z8spi.conv;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Hex;
@@ -38,42 +37,68 @@ public class Converters {
 	public static final BaseConverter LOCAL_TIME = new LocalTimeConverter();
 	public static final BaseConverter UUID_CONVERTER = new UUIDConverter();
 
-	private static byte[] intToBytes(int val) {
-		try {
-			ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
-			DataOutputStream out = new DataOutputStream(outBytes);
-			out.writeInt(val);
-			byte[] outData = outBytes.toByteArray();
-			return outData;
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+	private static final double[] DOUBLE_POWERS_OF_TEN = new double[23];
+	private static final float[] FLOAT_POWERS_OF_TEN = new float[11];
+	static {
+		DOUBLE_POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < DOUBLE_POWERS_OF_TEN.length; i++) {
+			DOUBLE_POWERS_OF_TEN[i] = DOUBLE_POWERS_OF_TEN[i-1]*10;
 		}
+		FLOAT_POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < FLOAT_POWERS_OF_TEN.length; i++) {
+			FLOAT_POWERS_OF_TEN[i] = FLOAT_POWERS_OF_TEN[i-1]*10;
+		}
+	}
+
+	/**
+	 * The same bytes as BigInteger.valueOf(val).toByteArray(), the shortest big endian two's complement
+	 */
+	public static byte[] longToBytes(long val) {
+		//bits needed without the sign bit, the same as BigInteger.bitLength()
+		int bitLength = 64 - Long.numberOfLeadingZeros(val < 0 ? ~val : val);
+		byte[] bytes = new byte[bitLength/8 + 1];
+		writeLong(val, bytes, 0, bytes.length);
+		return bytes;
+	}
+
+	/**
+	 * The same as new BigInteger(bytes).longValue() for that part of the array, the low 64 bits sign
+	 * extended
+	 */
+	public static long bytesToLong(byte[] data, int offset, int len) {
+		long val = data[offset]; //sign extends
+		for(int i = offset+1; i < offset+len; i++) {
+			val = (val << 8) | (data[i] & 0xFF);
+		}
+		return val;
+	}
+
+	private static void writeLong(long val, byte[] dest, int offset, int len) {
+		for(int i = 0; i < len; i++) {
+			dest[offset+len-1-i] = (byte) (val >> (8*i));
+		}
+	}
+
+	private static byte[] decimalToBytes(BigInteger unscaled, int scale) {
+		byte[] bibytes = unscaled.toByteArray();
+		byte[] bytes = new byte[bibytes.length+4];
+		writeLong(scale, bytes, 0, 4);
+		System.arraycopy(bibytes, 0, bytes, 4, bibytes.length);
+		return bytes;
 	}
 	
 	public static class BigDecimalConverter extends BaseConverter {
 		@Override
 		public byte[] convertToNoSqlImpl(Object input) {
 			BigDecimal value = (BigDecimal) input;
-			BigInteger bi = value.unscaledValue();
-			Integer scale = value.scale();
-			byte[] bibytes = bi.toByteArray();
-			byte[] sbytes = intToBytes(scale);
-			byte[] bytes = new byte[bi.toByteArray().length+4];
-			
-			for (int i = 0 ; i < 4 ; i++) bytes[i] = sbytes[i];
-			for (int i = 4 ; i < bibytes.length+4 ; i++) bytes[i] = bibytes[i-4];
-
-			return bytes;
+			return decimalToBytes(value.unscaledValue(), value.scale());
 		}
 
 		@Override
 		public Object convertFromNoSqlImpl(byte[] value) {
 			ByteBuffer buf = ByteBuffer.wrap(value);
 			int scale = buf.getInt();
-			byte[] bibytes = new byte[buf.remaining()];
-			buf.get(bibytes);
-			 
-			BigInteger bi = new BigInteger(bibytes);
+			BigInteger bi = new BigInteger(Arrays.copyOfRange(value, 4, value.length));
 			return new BigDecimal(bi,scale);
 		}
 
@@ -171,30 +196,57 @@ public class Converters {
 		}
 	}
 	
+	/**
+	 * Float and double in BigDecimal byte form.  Whole numbers below 10^7 (which toString prints as 12.0)
+	 * are written without going through a String and BigDecimal and values whose unscaled part fits a
+	 * long are read back with one exact division, the rest goes through BigDecimal like it always did.
+	 */
 	public static abstract class DecimalConverter extends BaseConverter {
 		public byte[] convertToNoSqlImpl(Object value) {
+			double d = ((Number) value).doubleValue();
+			if(d == Math.rint(d) && Math.abs(d) < 1e7) {
+				//toString gives 12.0 so BigDecimal has unscaled 120 and scale 1
+				byte[] unscaled = longToBytes(((long) d)*10);
+				byte[] bytes = new byte[unscaled.length+4];
+				writeLong(1, bytes, 0, 4);
+				System.arraycopy(unscaled, 0, bytes, 4, unscaled.length);
+				return bytes;
+			}
 			BigDecimal dec = convertToForSmallStorage(value);
 			return BIGDECIMAL_CONVERTER.convertToNoSql(dec);
 		}
 		public Object convertFromNoSqlImpl(byte[] data) {
+			if(data.length > 4 && data.length <= 12) {
+				int scale = (int) bytesToLong(data, 0, 4);
+				Object result = convertFromUnscaled(bytesToLong(data, 4, data.length-4), scale);
+				if(result != null)
+					return result;
+			}
 			BigDecimal bigD = (BigDecimal) BIGDECIMAL_CONVERTER.convertFromNoSql(data);
 			return convertFromForSmallStorage(bigD);
 		}
+		/**
+		 * @return the value if it can be worked out exactly without BigDecimal or null
+		 */
+		protected abstract Object convertFromUnscaled(long unscaled, int scale);
 		protected abstract Object convertFromForSmallStorage(BigDecimal bigD);
 		protected abstract BigDecimal convertToForSmallStorage(Object value);
 	}
 
+	/**
+	 * byte, short, int and long in BigInteger byte form, written and read straight from the long value
+	 */
 	public static abstract class IntegerConverter extends BaseConverter {
 		public byte[] convertToNoSqlImpl(Object value) {
-			BigInteger dec = convertToForSmallStorage(value);
-			return BIGINTEGER_CONVERTER.convertToNoSql(dec);
+			return longToBytes(((Number) value).longValue());
 		}
 		public Object convertFromNoSqlImpl(byte[] data) {
-			BigInteger bigD = (BigInteger) BIGINTEGER_CONVERTER.convertFromNoSql(data);
-			return convertFromForSmallStorage(bigD);
+			return convertFromLong(bytesToLong(data, 0, data.length));
 		}
-		protected abstract Object convertFromForSmallStorage(BigInteger bigD);
-		protected abstract BigInteger convertToForSmallStorage(Object value);
+		/**
+		 * @param val the low 64 bits of what was stored, narrow it like BigInteger.intValue() does
+		 */
+		protected abstract Object convertFromLong(long val);
 	}
 	
 	public static class StringConverter extends BaseConverter {
@@ -230,14 +282,8 @@ public class Converters {
 			return Byte.parseByte(value);
 		}
 		@Override
-		protected Object convertFromForSmallStorage(BigInteger bigD) {
-			return bigD.byteValue();
-		}
-
-		@Override
-		protected BigInteger convertToForSmallStorage(Object value) {
-			Byte b = (Byte)value;
-			return BigInteger.valueOf(b.byteValue());
+		protected Object convertFromLong(long val) {
+			return (byte) val;
 		}
 	}
 	
@@ -247,13 +293,8 @@ public class Converters {
 			return Short.parseShort(value);
 		}
 		@Override
-		protected Object convertFromForSmallStorage(BigInteger bigD) {
-			return bigD.shortValue();
-		}
-		@Override
-		protected BigInteger convertToForSmallStorage(Object value) {
-			Short s = (Short)value;
-			return BigInteger.valueOf(s);
+		protected Object convertFromLong(long val) {
+			return (short) val;
 		}
 	}
 	
@@ -263,13 +304,8 @@ public class Converters {
 			return Integer.parseInt(value);
 		}
 		@Override
-		protected Object convertFromForSmallStorage(BigInteger bigD) {
-			return bigD.intValue();
-		}
-		@Override
-		protected BigInteger convertToForSmallStorage(Object value) {
-			Integer val = (Integer)value;
-			return BigInteger.valueOf(val.intValue());
+		protected Object convertFromLong(long val) {
+			return (int) val;
 		}
 	}
 
@@ -279,13 +315,8 @@ public class Converters {
 			return Long.parseLong(value);
 		}
 		@Override
-		protected Object convertFromForSmallStorage(BigInteger bigD) {
-			return bigD.longValue();
-		}
-		@Override
-		protected BigInteger convertToForSmallStorage(Object value) {
-			Long val = (Long)value;
-			return BigInteger.valueOf(val);
+		protected Object convertFromLong(long val) {
+			return val;
 		}
 /*		This is issue #83
         @Override
@@ -324,6 +355,16 @@ public class Converters {
 			return Float.parseFloat(value);
 		}
 
+		@Override
+		protected Object convertFromUnscaled(long unscaled, int scale) {
+			//both exact as floats so the one rounding is the same as BigDecimal.floatValue()
+			if(Math.abs(unscaled) >= (1 << 24) || Math.abs(scale) >= FLOAT_POWERS_OF_TEN.length)
+				return null;
+			else if(scale >= 0)
+				return unscaled / FLOAT_POWERS_OF_TEN[scale];
+			return unscaled * FLOAT_POWERS_OF_TEN[-scale];
+		}
+
 		@Override
 		protected Object convertFromForSmallStorage(BigDecimal bigD) {
 			return bigD.floatValue();
@@ -344,6 +385,16 @@ public class Converters {
 			return Double.parseDouble(value);
 		}
 
+		@Override
+		protected Object convertFromUnscaled(long unscaled, int scale) {
+			//both exact as doubles so the one rounding is the same as BigDecimal.doubleValue()
+			if(Math.abs(unscaled) >= (1L << 53) || Math.abs(scale) >= DOUBLE_POWERS_OF_TEN.length)
+				return null;
+			else if(scale >= 0)
+				return unscaled / DOUBLE_POWERS_OF_TEN[scale];
+			return unscaled * DOUBLE_POWERS_OF_TEN[-scale];
+		}
+
 		@Override
 		protected Object convertFromForSmallStorage(BigDecimal bigD) {
 			return bigD.doubleValue();
@@ -363,13 +414,13 @@ public class Converters {
 		public byte[] convertToNoSqlImpl(Object value) {
 			Boolean b = (Boolean) value;
 			if(b)
-				return StandardConverters.convertToBytes(1);
-			return StandardConverters.convertToBytes(0);
+				return longToBytes(1);
+			return longToBytes(0);
 		}
 		
 		@Override
 		public Object convertFromNoSqlImpl(byte[] bytes) {
-			Integer value = StandardConverters.convertFromBytes(Integer.class, bytes);
+			int value = (int) bytesToLong(bytes, 0, bytes.length);
 			if(value == 1)
 				return true;
 			return false;
@@ -388,12 +439,12 @@ public class Converters {
 		public byte[] convertToNoSqlImpl(Object value) {
 			LocalDateTime dt = (LocalDateTime) value;
 			long milliseconds = dt.toDate().getTime();
-			return StandardConverters.convertToBytes(milliseconds);
+			return longToBytes(milliseconds);
 		}
 
 		@Override
 		public Object convertFromNoSqlImpl(byte[] value) {
-			Long time = StandardConverters.convertFromBytes(Long.class, value);
+			long time = bytesToLong(value, 0, value.length);
 			LocalDateTime dt = new LocalDateTime(time);
 			return dt;
 		}
@@ -418,12 +469,12 @@ public class Converters {
 		public byte[] convertToNoSqlImpl(Object value) {
 			LocalDate dt = (LocalDate) value;
 			long milliseconds = dt.toDate().getTime();
-			return StandardConverters.convertToBytes(milliseconds);
+			return longToBytes(milliseconds);
 		}
 
 		@Override
 		public Object convertFromNoSqlImpl(byte[] value) {
-			Long time = StandardConverters.convertFromBytes(Long.class, value);
+			long time = bytesToLong(value, 0, value.length);
 			LocalDate dt = new LocalDate(time);
 			return dt;
 		}
@@ -448,12 +499,12 @@ public class Converters {
 		public byte[] convertToNoSqlImpl(Object value) {
 			LocalTime dt = (LocalTime) value;
 			long milliseconds = dt.getMillisOfDay();
-			return StandardConverters.convertToBytes(milliseconds);
+			return longToBytes(milliseconds);
 		}
 
 		@Override
 		public Object convertFromNoSqlImpl(byte[] value) {
-			Long time = StandardConverters.convertFromBytes(Long.class, value);
+			long time = bytesToLong(value, 0, value.length);
 			LocalTime dt = LocalTime.fromMillisOfDay(time);
 			return dt;
 		}
@@ -478,12 +529,12 @@ public class Converters {
 		public byte[] convertToNoSqlImpl(Object value) {
 			DateTime dt = (DateTime) value;
 			long milliseconds = dt.toDate().getTime();
-			return StandardConverters.convertToBytes(milliseconds);
+			return longToBytes(milliseconds);
 		}
 
 		@Override
 		public Object convertFromNoSqlImpl(byte[] value) {
-			Long time = StandardConverters.convertFromBytes(Long.class, value);
+			long time = bytesToLong(value, 0, value.length);
 			DateTime dt = new DateTime(time);
 			return dt;
 		}
@@ -519,12 +570,10 @@ public class Converters {
 		@Override
 		public Object convertFromNoSqlImpl(byte[] value) {
 			try {
-				byte[] timeArray = new byte[8];
-				byte[] clockSeqAndNodeArray=new byte[8];
-				System.arraycopy(value,0,timeArray,0,8);
-				System.arraycopy(value,8,clockSeqAndNodeArray,0,8);
-				long time = StandardConverters.convertFromBytes(Long.class, timeArray);
-				long clockSeqAndNode = StandardConverters.convertFromBytes(Long.class, clockSeqAndNodeArray);
+				if(value.length < 16)
+					throw new IllegalArgumentException("a uuid needs 16 bytes");
+				long time = bytesToLong(value, 0, 8);
+				long clockSeqAndNode = bytesToLong(value, 8, 8);
 				UUID ud = new UUID(time,clockSeqAndNode);
 				return ud;
 			} catch(Exception e) {
@@ -0,0 +1,40 @@
+package com.alvazan.orm.api.z8spi.meta;
+
+/**
+ * One COUNT, MIN, MAX or SUM from the select clause.  The column and view are null for COUNT(*)
+ */
+public class AggregateInfo {
+
+	private AggregateTypeEnum type;
+	private ViewInfo view;
+	private DboColumnMeta column;
+	private String textInSql;
+
+	public AggregateInfo(AggregateTypeEnum type, ViewInfo view, DboColumnMeta column, String textInSql) {
+		this.type = type;
+		this.view = view;
+		this.column = column;
+		this.textInSql = textInSql;
+	}
+
+	public AggregateTypeEnum getType() {
+		return type;
+	}
+
+	public ViewInfo getView() {
+		return view;
+	}
+
+	public DboColumnMeta getColumn() {
+		return column;
+	}
+
+	public String getTextInSql() {
+		return textInSql;
+	}
+
+	@Override
+	public String toString() {
+		return textInSql;
+	}
+}
@@ -0,0 +1,14 @@
+package com.alvazan.orm.api.z8spi.meta;
+
+public enum AggregateTypeEnum {
+
+	COUNT, MIN, MAX, SUM;
+
+	public static AggregateTypeEnum lookup(String function) {
+		for(AggregateTypeEnum type : values()) {
+			if(type.name().equalsIgnoreCase(function))
+				return type;
+		}
+		return null;
+	}
+}
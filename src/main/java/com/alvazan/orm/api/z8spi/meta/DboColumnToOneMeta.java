@@ -88,7 +88,7 @@ public class DboColumnToOneMeta extends DboColumnMeta {
 		row.getColumns().add(col);
 
 		TypedColumn column = entity.getColumn(getColumnName());
-		if (column != null) {
+		if (column != null && column.getValue() != null) {
 			byte[] byteVal = convertToStorage2(column.getValue());
 			byte[] prefix = StandardConverters.convertToBytes(getColumnName());
 
@@ -6,6 +6,7 @@ import java.util.Map;
 
 import javax.inject.Singleton;
 
+import com.alvazan.orm.api.base.anno.NoSqlEmbedded;
 import com.alvazan.orm.api.base.anno.NoSqlEntity;
 import com.alvazan.orm.api.base.anno.NoSqlId;
 import com.alvazan.orm.api.base.anno.NoSqlOneToMany;
@@ -24,6 +25,12 @@ public class DboDatabaseMeta {
 	
 	@NoSqlOneToMany(keyFieldForMap="columnFamily")
 	private Map<String, DboTableMeta> colFamilyToMeta = new HashMap<String, DboTableMeta>();
+
+	/**
+	 * A fingerprint of the meta rows of each table so startup only writes the tables that changed
+	 */
+	@NoSqlEmbedded
+	private Map<String, String> fingerprints = new HashMap<String, String>();
 	
 	public String getId() {
 		return id;
@@ -44,4 +51,12 @@ public class DboDatabaseMeta {
 	public Collection<DboTableMeta> getAllTables() {
 		return colFamilyToMeta.values();
 	}
+
+	public String getFingerprint(String tableName) {
+		return fingerprints.get(tableName);
+	}
+
+	public void setFingerprint(String tableName, String fingerprint) {
+		fingerprints.put(tableName, fingerprint);
+	}
 }
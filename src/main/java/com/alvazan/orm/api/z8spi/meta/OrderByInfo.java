@@ -0,0 +1,38 @@
+package com.alvazan.orm.api.z8spi.meta;
+
+/**
+ * The column and direction of the ORDER BY clause
+ */
+public class OrderByInfo {
+
+	private ViewInfo view;
+	private DboColumnMeta column;
+	private boolean descending;
+	private String textInSql;
+
+	public OrderByInfo(ViewInfo view, DboColumnMeta column, boolean descending, String textInSql) {
+		this.view = view;
+		this.column = column;
+		this.descending = descending;
+		this.textInSql = textInSql;
+	}
+
+	public ViewInfo getView() {
+		return view;
+	}
+
+	public DboColumnMeta getColumn() {
+		return column;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	@Override
+	public String toString() {
+		if(descending)
+			return textInSql+" DESC";
+		return textInSql;
+	}
+}
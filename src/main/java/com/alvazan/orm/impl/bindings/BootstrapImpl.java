@@ -6,8 +6,11 @@ import com.alvazan.orm.api.base.Bootstrap;
 import com.alvazan.orm.api.base.DbTypeEnum;
 import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
 import com.alvazan.orm.api.z8spi.NoSqlRawSession;
+import com.alvazan.orm.api.z8spi.SecondLevelCache;
+import com.alvazan.orm.api.z8spi.WriteCoalescer;
 import com.alvazan.orm.api.z8spi.conv.Converter;
 import com.alvazan.orm.layer0.base.BaseEntityManagerFactoryImpl;
+import com.alvazan.orm.layer5.nosql.cache.WriteBehindConfig;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
@@ -55,6 +58,11 @@ public class BootstrapImpl extends Bootstrap {
 		Key<NoSqlRawSession> key = Key.get(NoSqlRawSession.class, named);
 		NoSqlRawSession inst = injector.getInstance(key);
 		inst.start(properties);
+
+		SecondLevelCache secondLevelCache = injector.getInstance(SecondLevelCache.class);
+		secondLevelCache.start(properties);
+		injector.getInstance(WriteBehindConfig.class).start(properties);
+		injector.getInstance(WriteCoalescer.class).start(properties);
 		
 		//why not just add setInjector() and setup() in NoSqlEntityManagerFactory
 		BaseEntityManagerFactoryImpl impl = (BaseEntityManagerFactoryImpl)factory;
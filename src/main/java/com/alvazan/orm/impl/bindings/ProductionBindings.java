@@ -4,10 +4,16 @@ import com.alvazan.orm.api.base.DbTypeEnum;
 import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
 import com.alvazan.orm.api.z5api.NoSqlSession;
 import com.alvazan.orm.api.z8spi.NoSqlRawSession;
+import com.alvazan.orm.api.z8spi.SecondLevelCache;
+import com.alvazan.orm.api.z8spi.WriteBehind;
+import com.alvazan.orm.api.z8spi.WriteCoalescer;
 import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
 import com.alvazan.orm.layer0.base.BaseEntityManagerFactoryImpl;
+import com.alvazan.orm.layer5.nosql.cache.MutationCoalescer;
 import com.alvazan.orm.layer5.nosql.cache.NoSqlReadCacheImpl;
 import com.alvazan.orm.layer5.nosql.cache.NoSqlWriteCacheImpl;
+import com.alvazan.orm.layer5.nosql.cache.SecondLevelCacheImpl;
+import com.alvazan.orm.layer5.nosql.cache.WriteBehindConfig;
 import com.alvazan.orm.layer9z.spi.db.cassandra.CassandraSession;
 import com.alvazan.orm.layer9z.spi.db.cassandracql3.CqlSession;
 import com.alvazan.orm.layer9z.spi.db.hbase.HbaseSession;
@@ -42,8 +48,13 @@ public class ProductionBindings implements Module {
 			bindRawSession("main", binder);
 		}
 
+		binder.bind(DbTypeEnum.class).toInstance(type);
 		binder.bind(NoSqlEntityManagerFactory.class).to(BaseEntityManagerFactoryImpl.class);
 		binder.bind(DboDatabaseMeta.class).asEagerSingleton();
+		binder.bind(SecondLevelCache.class).to(SecondLevelCacheImpl.class).asEagerSingleton();
+		binder.bind(WriteBehindConfig.class).asEagerSingleton();
+		binder.bind(WriteBehind.class).to(WriteBehindConfig.class);
+		binder.bind(WriteCoalescer.class).to(MutationCoalescer.class).asEagerSingleton();
 		
 		binder.bind(NoSqlRawSession.class).annotatedWith(Names.named("logger")).to(NoSqlRawLogger.class).asEagerSingleton();
 		binder.bind(NoSqlSession.class).annotatedWith(Names.named("writecachelayer")).to(NoSqlWriteCacheImpl.class);
@@ -0,0 +1,18 @@
+package com.alvazan.orm.impl.meta.data;
+
+/**
+ * Implemented by the classes ScannerForClass generates so reading and writing the fields of an
+ * entity is plain field access instead of reflection.  index is the position of the field in the
+ * generated class.  getLong and setLong are only for byte, short, int and long fields and box nothing.
+ */
+public interface EntityAccessor {
+
+	Object get(int index, Object entity);
+
+	void set(int index, Object entity, Object value);
+
+	long getLong(int index, Object entity);
+
+	void setLong(int index, Object entity, long value);
+
+}
@@ -0,0 +1,100 @@
+package com.alvazan.orm.impl.meta.data;
+
+import java.lang.reflect.Field;
+
+import com.alvazan.orm.api.exc.TypeMismatchException;
+import com.alvazan.orm.api.z8spi.meta.ReflectionUtil;
+
+/**
+ * Reads and writes one field of an entity.  Starts out using reflection and switches to a
+ * generated EntityAccessor if ScannerForClass could create one for the field (it can't for private
+ * fields).
+ */
+public class FieldAccessor {
+
+	private Field field;
+	private EntityAccessor generated;
+	private int index;
+	private boolean integral;
+
+	public FieldAccessor(Field field) {
+		this.field = field;
+		Class<?> type = field.getType();
+		integral = type == long.class || type == int.class || type == short.class || type == byte.class;
+	}
+
+	public Field getField() {
+		return field;
+	}
+
+	public void setGenerated(EntityAccessor generated, int index) {
+		this.generated = generated;
+		this.index = index;
+	}
+
+	public boolean isGenerated() {
+		return generated != null;
+	}
+
+	/**
+	 * @return true if the field is a byte, short, int or long so getLong/setLong can be used
+	 */
+	public boolean isIntegral() {
+		return integral;
+	}
+
+	public Object get(Object entity) {
+		if(generated == null)
+			return ReflectionUtil.fetchFieldValue(entity, field);
+		try {
+			return generated.get(index, entity);
+		} catch(ClassCastException e) {
+			throw new TypeMismatchException("Entity='"+entity.getClass()+"' was passed to field of a different type.  field='"+field+"'", e);
+		}
+	}
+
+	public void set(Object entity, Object value) {
+		if(generated == null) {
+			ReflectionUtil.putFieldValue(entity, field, value);
+			return;
+		}
+		try {
+			generated.set(index, entity, value);
+		} catch(ClassCastException e) {
+			throw new RuntimeException("could not set field="+field+" to value="+value, e);
+		} catch(NullPointerException e) {
+			//null into a primitive field
+			throw new RuntimeException("could not set field="+field+" to value="+value, e);
+		}
+	}
+
+	public long getLong(Object entity) {
+		if(generated == null)
+			return ((Number) ReflectionUtil.fetchFieldValue(entity, field)).longValue();
+		try {
+			return generated.getLong(index, entity);
+		} catch(ClassCastException e) {
+			throw new TypeMismatchException("Entity='"+entity.getClass()+"' was passed to field of a different type.  field='"+field+"'", e);
+		}
+	}
+
+	/**
+	 * Narrows the value to the type of the field like a cast does
+	 */
+	public void setLong(Object entity, long value) {
+		if(generated != null) {
+			generated.setLong(index, entity, value);
+			return;
+		}
+
+		Class<?> type = field.getType();
+		if(type == int.class)
+			ReflectionUtil.putFieldValue(entity, field, (int) value);
+		else if(type == short.class)
+			ReflectionUtil.putFieldValue(entity, field, (short) value);
+		else if(type == byte.class)
+			ReflectionUtil.putFieldValue(entity, field, (byte) value);
+		else
+			ReflectionUtil.putFieldValue(entity, field, value);
+	}
+}
@@ -9,7 +9,6 @@ import com.alvazan.orm.api.z5api.SpiMetaQuery;
 import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.conv.Converter;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
-import com.alvazan.orm.api.z8spi.meta.ReflectionUtil;
 import com.alvazan.orm.impl.meta.data.collections.CacheLoadCallback;
 
 public abstract class MetaAbstractClass<T> implements MetaClass<T> {
@@ -33,7 +32,7 @@ public abstract class MetaAbstractClass<T> implements MetaClass<T> {
 	public Object fetchId(T entity) {
 		if(entity == null || idField == null)
 			return null;
-		return ReflectionUtil.fetchFieldValue(entity, idField.getField());
+		return idField.getAccessor().get(entity);
 	}
 	
 //	public byte[] convertIdToNoSql(Object entityId) {
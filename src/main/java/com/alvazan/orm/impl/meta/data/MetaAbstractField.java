@@ -10,18 +10,22 @@ import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.IndexData;
 import com.alvazan.orm.api.z8spi.meta.InfoForIndex;
 import com.alvazan.orm.api.z8spi.meta.PartitionTypeInfo;
-import com.alvazan.orm.api.z8spi.meta.ReflectionUtil;
 import com.alvazan.orm.api.z8spi.meta.RowToPersist;
 
 @SuppressWarnings("unchecked")
 public abstract class MetaAbstractField<OWNER> implements MetaField<OWNER> {
 
 	protected Field field;
+	protected FieldAccessor accessor;
 	protected String columnName;
 	
 	public Field getField() {
 		return field;
 	}
+
+	public FieldAccessor getAccessor() {
+		return accessor;
+	}
 	
 	public abstract DboColumnMeta getMetaDbo();
 	
@@ -36,6 +40,7 @@ public abstract class MetaAbstractField<OWNER> implements MetaField<OWNER> {
 	public void setup(Field field2, String colName) {
 		this.field = field2;
 		this.field.setAccessible(true);
+		this.accessor = new FieldAccessor(field2);
 		this.columnName = colName;
 	}
 	
@@ -148,7 +153,7 @@ public abstract class MetaAbstractField<OWNER> implements MetaField<OWNER> {
 
 	@Override
 	public Object getFieldRawValue(OWNER entity) {
-		Object value = ReflectionUtil.fetchFieldValue(entity, field);
+		Object value = accessor.get(entity);
 		return value;
 		//return unwrapIfNeeded(value);
 	}
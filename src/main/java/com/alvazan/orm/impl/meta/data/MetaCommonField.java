@@ -7,6 +7,8 @@ import com.alvazan.orm.api.z5api.NoSqlSession;
 import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.conv.Converter;
+import com.alvazan.orm.api.z8spi.conv.Converters;
+import com.alvazan.orm.api.z8spi.conv.Converters.IntegerConverter;
 import com.alvazan.orm.api.z8spi.conv.StandardConverters;
 import com.alvazan.orm.api.z8spi.conv.StorageTypeEnum;
 import com.alvazan.orm.api.z8spi.meta.DboColumnCommonMeta;
@@ -14,7 +16,6 @@ import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
 import com.alvazan.orm.api.z8spi.meta.IndexData;
 import com.alvazan.orm.api.z8spi.meta.InfoForIndex;
-import com.alvazan.orm.api.z8spi.meta.ReflectionUtil;
 import com.alvazan.orm.api.z8spi.meta.RowToPersist;
 
 public class MetaCommonField<OWNER> extends MetaAbstractField<OWNER> {
@@ -38,8 +39,21 @@ public class MetaCommonField<OWNER> extends MetaAbstractField<OWNER> {
 			column = new Column();
 		}
 		
-		Object value = converter.convertFromNoSql(column.getValue());
-		ReflectionUtil.putFieldValue(entity, field, value);
+		byte[] bytes = column.getValue();
+		if(isPrimitivePath() && bytes != null && bytes.length > 0) {
+			accessor.setLong(entity, Converters.bytesToLong(bytes, 0, bytes.length));
+			return;
+		}
+		Object value = converter.convertFromNoSql(bytes);
+		accessor.set(entity, value);
+	}
+
+	/**
+	 * byte, short, int and long fields with the standard converter go straight between the field and
+	 * the bytes without boxing
+	 */
+	private boolean isPrimitivePath() {
+		return accessor.isIntegral() && converter instanceof IntegerConverter;
 	}
 	@Override
 	public void translateToColumn(InfoForIndex<OWNER> info) {
@@ -49,8 +63,16 @@ public class MetaCommonField<OWNER> extends MetaAbstractField<OWNER> {
 		Column col = new Column();
 		row.getColumns().add(col);
 
-		Object value = ReflectionUtil.fetchFieldValue(entity, field);
-		byte[] byteVal = translateValue(value);
+		Object value;
+		byte[] byteVal;
+		if(isPrimitivePath() && !metaDbo.isIndexed()) {
+			//the value is only needed for the index
+			value = null;
+			byteVal = Converters.longToBytes(accessor.getLong(entity));
+		} else {
+			value = accessor.get(entity);
+			byteVal = translateValue(value);
+		}
 		byte[] colBytes = StandardConverters.convertToBytes(columnName);
 		col.setName(colBytes);
 		col.setValue(byteVal);
@@ -62,7 +84,7 @@ public class MetaCommonField<OWNER> extends MetaAbstractField<OWNER> {
 	
 	@Override
 	public Object fetchField(Object entity) {
-		return ReflectionUtil.fetchFieldValue(entity, field);
+		return accessor.get(entity);
 	}
 
 	@Override
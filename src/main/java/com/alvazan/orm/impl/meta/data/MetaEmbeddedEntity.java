@@ -63,7 +63,7 @@ public class MetaEmbeddedEntity<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 			proxy = translateFromSingleEntity(row, session);
 		}
 
-		ReflectionUtil.putFieldValue(entity, field, proxy);
+		accessor.set(entity, proxy);
 	}
 
 	private Object translateFromSingleEntity(Row row, NoSqlSession session) {
@@ -175,15 +175,14 @@ public class MetaEmbeddedEntity<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 	@SuppressWarnings("unchecked")
 	private void translateToColumn(OWNER entity, RowToPersist row) {
 		Collection<PROXY> value = new ArrayList<PROXY>();
-		value.add((PROXY)ReflectionUtil.fetchFieldValue(entity, field));
+		value.add((PROXY)accessor.get(entity));
 		Collection<PROXY> toBeRemoved = new ArrayList<PROXY>();
 		translateToColumnImpl(value, row, toBeRemoved);
 	}
 
 	@SuppressWarnings("unchecked")
 	private void translateToColumnList(OWNER entity, RowToPersist row) {
-		Collection<PROXY> values = (Collection<PROXY>) ReflectionUtil
-				.fetchFieldValue(entity, field);
+		Collection<PROXY> values = (Collection<PROXY>) accessor.get(entity);
 		Collection<PROXY> toBeAdded = values;
 		// all values in the list get
 		// added if not an
@@ -199,7 +198,7 @@ public class MetaEmbeddedEntity<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private void translateToColumnMap(OWNER entity, RowToPersist row) {
-		Map mapOfProxies = (Map) ReflectionUtil.fetchFieldValue(entity, field);
+		Map mapOfProxies = (Map) accessor.get(entity);
 		Collection<PROXY> toBeAdded = mapOfProxies.values();
 		Collection<PROXY> toBeRemoved = new ArrayList<PROXY>();
 		if (mapOfProxies instanceof SimpleAbstractCollection) {
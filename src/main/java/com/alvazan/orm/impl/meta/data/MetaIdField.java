@@ -46,7 +46,7 @@ public class MetaIdField<OWNER> extends MetaAbstractField<OWNER> {
 		byte[] virtKey = row.getKey();
 		byte[] nonVirtKey = metaDbo.unformVirtRowKey(virtKey);
 		Object entityId = converter.convertFromNoSql(nonVirtKey);
-		ReflectionUtil.putFieldValue(entity, field, entityId);
+		accessor.set(entity, entityId);
 	}
 	
 	@Override
@@ -84,7 +84,7 @@ public class MetaIdField<OWNER> extends MetaAbstractField<OWNER> {
 	}
 	
 	public Object fillInAndFetchId(OWNER entity) {
-		Object idInEntity = ReflectionUtil.fetchFieldValue(entity, field);
+		Object idInEntity = accessor.get(entity);
 		Object id = idInEntity;
 		if(!useGenerator) {
 			if(id == null)
@@ -108,7 +108,7 @@ public class MetaIdField<OWNER> extends MetaAbstractField<OWNER> {
 			newId = new UUID();
 		else 
 			newId = generator.generateNewKey(entity);
-		ReflectionUtil.putFieldValue(entity, field, newId);
+		accessor.set(entity, newId);
 		return newId;
 	}
 
@@ -136,7 +136,7 @@ public class MetaIdField<OWNER> extends MetaAbstractField<OWNER> {
 		if(entityId == null)
 			return null;
 		OWNER proxy = createProxy(entityId, session, cacheLoadCallback, clazz);
-		ReflectionUtil.putFieldValue(proxy, field, entityId);
+		accessor.set(proxy, entityId);
 		return proxy;
 	}
 	
@@ -1,6 +1,7 @@
 package com.alvazan.orm.impl.meta.data;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -16,11 +17,10 @@ import com.alvazan.orm.api.z8spi.meta.DboColumnToOneMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
 import com.alvazan.orm.api.z8spi.meta.IndexData;
 import com.alvazan.orm.api.z8spi.meta.InfoForIndex;
-import com.alvazan.orm.api.z8spi.meta.ReflectionUtil;
 import com.alvazan.orm.api.z8spi.meta.RowToPersist;
 import com.alvazan.orm.impl.meta.data.collections.ToOneProviderProxy;
 
-public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
+public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> implements MetaRelationField {
 
 	//ClassMeta Will eventually have the idField that has the converter!!!
 	//once it is scanned
@@ -54,7 +54,7 @@ public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 			if (proxy == null)
 				proxy = convertIdToProxy(row, column.getValue(), session);
 		}
-		ReflectionUtil.putFieldValue(entity, field, proxy);
+		accessor.set(entity, proxy);
 	}
 	
 	private Object translateFromToProxy(Row row, byte[] value,
@@ -64,17 +64,8 @@ public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 	}
 
 	private Object translateFromToComposite(Row row, NoSqlSession session) {
-		byte[] bytes = StandardConverters.convertToBytes(columnName);
-		Collection<Column> columns = row.columnByPrefix(bytes);
-		if (columns != null && !columns.isEmpty()) {
-			Column column = columns.iterator().next();
-			byte[] fullName = column.getName();
-			//strip off the prefix to get the foreign key
-			int pkLen = fullName.length-bytes.length;
-			byte[] fk = new byte[pkLen];
-			for(int i = bytes.length; i < fullName.length; i++) {
-				fk[i-bytes.length] =  fullName[i];
-			}
+		byte[] fk = fetchCompositeKey(row);
+		if (fk != null) {
 			ToOneProvider<PROXY> toOne = new ToOneProviderProxy(classMeta, fk, session);
 			return toOne;
 		}
@@ -83,22 +74,46 @@ public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 	}
 
 	private Object convertIdToProxyComposite(Row row, NoSqlSession session) {
+		byte[] fk = fetchCompositeKey(row);
+		if (fk != null)
+			return convertIdToProxy(row, fk, session);
+		else 
+			return null;
+	}
+
+	private byte[] fetchCompositeKey(Row row) {
 		byte[] bytes = StandardConverters.convertToBytes(columnName);
 		Collection<Column> columns = row.columnByPrefix(bytes);
-		if (columns != null && !columns.isEmpty()) {
-			Column column = columns.iterator().next();
-			byte[] fullName = column.getName();
-			//strip off the prefix to get the foreign key
-			int pkLen = fullName.length-bytes.length;
-			byte[] fk = new byte[pkLen];
-			for(int i = bytes.length; i < fullName.length; i++) {
-				fk[i-bytes.length] =  fullName[i];
-			}
-			Tuple<PROXY> tuple = classMeta.convertIdToProxy(row, session, fk, null);
-			return tuple.getProxy();
-		}
-		else 
+		if (columns == null || columns.isEmpty())
 			return null;
+		Column column = columns.iterator().next();
+		byte[] fullName = column.getName();
+		//strip off the prefix to get the foreign key
+		int pkLen = fullName.length-bytes.length;
+		byte[] fk = new byte[pkLen];
+		for(int i = bytes.length; i < fullName.length; i++) {
+			fk[i-bytes.length] =  fullName[i];
+		}
+		return fk;
+	}
+
+	@Override
+	public MetaAbstractClass<?> getRelatedClassMeta() {
+		return classMeta;
+	}
+
+	@Override
+	public List<byte[]> fetchRelatedKeys(Row row) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		byte[] fk = fetchCompositeKey(row);
+		if(fk == null) {
+			Column column = row.getColumn(StandardConverters.convertToBytes(columnName));
+			if(column != null)
+				fk = column.getValue();
+		}
+		if(fk != null && fk.length > 0)
+			keys.add(fk);
+		return keys;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -108,7 +123,7 @@ public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 		Column col = new Column();
 		row.getColumns().add(col);
 
-		PROXY value = (PROXY) ReflectionUtil.fetchFieldValue(entity, field);
+		PROXY value = (PROXY) accessor.get(entity);
 		
 		if(value instanceof ToOneProvider) {
 			value = (PROXY) ((ToOneProvider)value).get();
@@ -159,7 +174,7 @@ public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 	@SuppressWarnings("unchecked")
 	@Override
 	public Object fetchField(Object entity) {
-		PROXY value = (PROXY) ReflectionUtil.fetchFieldValue(entity, field);
+		PROXY value = (PROXY) accessor.get(entity);
 		return value;
 		//throw new UnsupportedOperationException("only used for partitioning and multivalue column can't partition.  easy to implement if anyone else starts using this though, but for now unsupported");
 	}
@@ -192,6 +207,9 @@ public class MetaProxyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
 	}
 	
 	public PROXY convertIdToProxy(Row row, byte[] nonVirtFk, NoSqlSession session) {
+		ToOneBatch batch = ToOneBatch.getCurrent();
+		if(batch != null && nonVirtFk != null)
+			return batch.createProxy(row, classMeta, nonVirtFk);
 		Tuple<PROXY> tuple = classMeta.convertIdToProxy(row, session, nonVirtFk, null);
 		return tuple.getProxy();
 	}
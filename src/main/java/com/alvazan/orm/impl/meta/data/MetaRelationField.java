@@ -0,0 +1,21 @@
+package com.alvazan.orm.impl.meta.data;
+
+import java.util.List;
+
+import com.alvazan.orm.api.z8spi.Row;
+
+/**
+ * A field holding other entities by their keys like a ManyToOne or a OneToMany
+ */
+public interface MetaRelationField {
+
+	public String getColumnName();
+
+	public MetaAbstractClass<?> getRelatedClassMeta();
+
+	/**
+	 * @return the keys(not virtual) of the entities the owning row points at
+	 */
+	public List<byte[]> fetchRelatedKeys(Row row);
+
+}
@@ -17,14 +17,13 @@ import com.alvazan.orm.api.z8spi.meta.DboColumnToManyMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
 import com.alvazan.orm.api.z8spi.meta.IndexData;
 import com.alvazan.orm.api.z8spi.meta.InfoForIndex;
-import com.alvazan.orm.api.z8spi.meta.ReflectionUtil;
 import com.alvazan.orm.api.z8spi.meta.RowToPersist;
 import com.alvazan.orm.impl.meta.data.collections.ListProxyFetchAll;
 import com.alvazan.orm.impl.meta.data.collections.MapProxyFetchAll;
 import com.alvazan.orm.impl.meta.data.collections.OurAbstractCollection;
 import com.alvazan.orm.impl.meta.data.collections.SetProxyFetchAll;
 
-public final class MetaToManyField<OWNER, PROXY> extends MetaAbstractField<OWNER> {
+public final class MetaToManyField<OWNER, PROXY> extends MetaAbstractField<OWNER> implements MetaRelationField {
 
 	private MetaAbstractClass<PROXY> classMeta;
 	private Field fieldForKey;
@@ -48,7 +47,7 @@ public final class MetaToManyField<OWNER, PROXY> extends MetaAbstractField<OWNER
 		else
 			throw new RuntimeException("bug, we do not support type="+field.getType());
 			
-		ReflectionUtil.putFieldValue(entity, field, proxy);
+		accessor.set(entity, proxy);
 	}
 
 	private Object translateFromColumnSet(Row row, OWNER entity,
@@ -100,6 +99,16 @@ public final class MetaToManyField<OWNER, PROXY> extends MetaAbstractField<OWNER
 		return entities;
 	}
 
+	@Override
+	public MetaAbstractClass<?> getRelatedClassMeta() {
+		return classMeta;
+	}
+
+	@Override
+	public List<byte[]> fetchRelatedKeys(Row row) {
+		return parseColNamePostfix(columnName, row);
+	}
+
 	@Override
 	public Object fetchField(Object entity) {
 		throw new UnsupportedOperationException("only used for partitioning and multivalue column can't partition.  easy to implement if anyone else starts using this though, but for now unsupported");
@@ -123,7 +132,7 @@ public final class MetaToManyField<OWNER, PROXY> extends MetaAbstractField<OWNER
 
 	@SuppressWarnings("unchecked")
 	private void translateToColumnList(OWNER entity, RowToPersist row) {
-		Collection<PROXY> values = (Collection<PROXY>) ReflectionUtil.fetchFieldValue(entity, field);
+		Collection<PROXY> values = (Collection<PROXY>) accessor.get(entity);
 		Collection<PROXY> toBeAdded = values; //all values in the list get added if not an OurAbstractCollection
 		Collection<PROXY> toBeRemoved = new ArrayList<PROXY>();
 		if(values instanceof OurAbstractCollection) {
@@ -137,7 +146,7 @@ public final class MetaToManyField<OWNER, PROXY> extends MetaAbstractField<OWNER
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private void translateToColumnMap(OWNER entity, RowToPersist row) {
-		Map mapOfProxies = (Map) ReflectionUtil.fetchFieldValue(entity, field);
+		Map mapOfProxies = (Map) accessor.get(entity);
 		Collection<PROXY> toBeAdded = mapOfProxies.values();
 		Collection<PROXY> toBeRemoved = new ArrayList<PROXY>();
 		if(mapOfProxies instanceof MapProxyFetchAll) {
@@ -33,6 +33,8 @@ public class NoSqlProxyImpl<T> implements MethodHandler {
 	private MetaAbstractClass<T> classMeta;
 	private boolean isInitialized = false;
 	private CacheLoadCallback cacheLoadCallback;
+	private ToOneBatch.Loader<T> batchLoader;
+	private byte[] batchKey;
 	private Map<Field, Object> indexFieldToOriginalValue = new HashMap<Field, Object>();
 	
 	public NoSqlProxyImpl(NoSqlSession session, MetaAbstractClass<T> classMeta, Object entityId, CacheLoadCallback cacheLoadCallback) {
@@ -85,6 +87,9 @@ public class NoSqlProxyImpl<T> implements MethodHandler {
 			//the database in ONE single call instead.
 			if(cacheLoadCallback != null) {
 				cacheLoadCallback.loadCacheIfNeeded();
+			} else if(batchLoader != null) {
+				//same for the proxies of the ManyToOne fields of one batch of query results
+				batchLoader.load(entityId, batchKey);
 			} else {
 				fillInThisOneInstance(self);
 			}
@@ -96,6 +101,11 @@ public class NoSqlProxyImpl<T> implements MethodHandler {
         return subclassProxyMethod.invoke(self, args);  // execute the original method.
 	}
 
+	void setBatchLoader(ToOneBatch.Loader<T> loader, byte[] nonVirtKey) {
+		this.batchLoader = loader;
+		this.batchKey = nonVirtKey;
+	}
+
 	private Map<Field, Object> getOriginalValues() {
 		return indexFieldToOriginalValue;
 	}
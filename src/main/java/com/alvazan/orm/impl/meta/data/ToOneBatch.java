@@ -0,0 +1,132 @@
+package com.alvazan.orm.impl.meta.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javassist.util.proxy.ProxyObject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.exc.RowNotFoundException;
+import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.IndiceToVirtual;
+import com.alvazan.orm.api.z8spi.iter.ListWrappingCursor;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+
+/**
+ * The ManyToOne proxies created while translating one batch of query results.  The first proxy of a
+ * type that is touched loads all proxies of that type in the batch that are not loaded yet with one
+ * find instead of one find per proxy.
+ */
+public class ToOneBatch {
+
+	private static final ThreadLocal<ToOneBatch> CURRENT = new ThreadLocal<ToOneBatch>();
+
+	private NoSqlSession session;
+	@SuppressWarnings("rawtypes")
+	private Map<MetaAbstractClass, Loader> loaders = new HashMap<MetaAbstractClass, Loader>();
+
+	public ToOneBatch(NoSqlSession session) {
+		this.session = session;
+	}
+
+	/**
+	 * @return the batch proxies created on this thread right now join or null to load each one alone
+	 */
+	public static ToOneBatch getCurrent() {
+		return CURRENT.get();
+	}
+
+	public static void setCurrent(ToOneBatch batch) {
+		if(batch == null)
+			CURRENT.remove();
+		else
+			CURRENT.set(batch);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T createProxy(Row row, MetaAbstractClass<T> classMeta, byte[] nonVirtKey) {
+		Tuple<T> tuple = classMeta.convertIdToProxy(row, session, nonVirtKey, null);
+		T proxy = tuple.getProxy();
+		if(proxy == null)
+			return null;
+		Loader<T> loader = loaders.get(classMeta);
+		if(loader == null) {
+			loader = new Loader<T>(session, classMeta);
+			loaders.put(classMeta, loader);
+		}
+		loader.add(nonVirtKey, proxy);
+		return proxy;
+	}
+
+	static class Loader<T> {
+		private static final Logger log = LoggerFactory.getLogger(ToOneBatch.class);
+		private NoSqlSession session;
+		private MetaAbstractClass<T> classMeta;
+		private Map<ByteArray, List<T>> pending = new LinkedHashMap<ByteArray, List<T>>();
+		private Set<ByteArray> missing = new HashSet<ByteArray>();
+
+		Loader(NoSqlSession session, MetaAbstractClass<T> classMeta) {
+			this.session = session;
+			this.classMeta = classMeta;
+		}
+
+		@SuppressWarnings("unchecked")
+		void add(byte[] nonVirtKey, T proxy) {
+			ByteArray key = new ByteArray(nonVirtKey);
+			List<T> proxies = pending.get(key);
+			if(proxies == null) {
+				proxies = new ArrayList<T>();
+				pending.put(key, proxies);
+			}
+			proxies.add(proxy);
+			NoSqlProxyImpl<T> handler = (NoSqlProxyImpl<T>) ((ProxyObject) proxy).getHandler();
+			handler.setBatchLoader(this, nonVirtKey);
+		}
+
+		void load(Object entityId, byte[] nonVirtKey) {
+			ByteArray key = new ByteArray(nonVirtKey);
+			if(pending.containsKey(key))
+				loadPending();
+			if(missing.contains(key))
+				throw new RowNotFoundException("row for type="+classMeta.getMetaClass().getName()+" not found for key="+entityId);
+		}
+
+		private void loadPending() {
+			List<ByteArray> keys = new ArrayList<ByteArray>(pending.keySet());
+			List<byte[]> rowKeys = new ArrayList<byte[]>();
+			for(ByteArray key : keys) {
+				rowKeys.add(key.getKey());
+			}
+			DboTableMeta metaDbo = classMeta.getMetaDbo();
+			IndiceToVirtual virtKeys = new IndiceToVirtual(metaDbo, new ListWrappingCursor<byte[]>(rowKeys));
+			AbstractCursor<KeyValue<Row>> rows = session.find(metaDbo, virtKeys, false, true, null);
+			if (log.isDebugEnabled())
+				log.debug("loading "+keys.size()+" rows of type="+classMeta.getMetaClass().getName()+" in one find");
+			int counter = 0;
+			for(Holder<KeyValue<Row>> holder = rows.nextImpl(); holder != null; holder = rows.nextImpl()) {
+				ByteArray key = keys.get(counter++);
+				Row row = holder.getValue().getValue();
+				if(row == null) {
+					missing.add(key);
+					continue;
+				}
+				for(T proxy : pending.get(key)) {
+					classMeta.fillInInstance(row, session, proxy);
+				}
+			}
+			pending.clear();
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package com.alvazan.orm.impl.meta.scan;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.impl.meta.data.EntityAccessor;
+import com.alvazan.orm.impl.meta.data.FieldAccessor;
+import com.alvazan.orm.impl.meta.data.MetaAbstractField;
+import com.alvazan.orm.impl.meta.data.MetaClassSingle;
+import com.alvazan.orm.impl.meta.data.MetaField;
+
+/**
+ * Generates one EntityAccessor per declaring class that reads and writes the fields with plain
+ * getfield/putfield instead of reflection.  The accessor is defined in the package and classloader
+ * of the entity so it can only reach fields that are not private or final, the rest stay on
+ * reflection.  If anything goes wrong generating it, everything stays on reflection.
+ */
+public class AccessorGenerator {
+
+	private static final Logger log = LoggerFactory.getLogger(AccessorGenerator.class);
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	public void generate(MetaClassSingle<?> meta) {
+		Map<Class<?>, List<FieldAccessor>> byClass = new LinkedHashMap<Class<?>, List<FieldAccessor>>();
+		add(byClass, meta.getIdField());
+		for(MetaField<?> f : meta.getMetaFields()) {
+			add(byClass, f);
+		}
+
+		for(Map.Entry<Class<?>, List<FieldAccessor>> entry : byClass.entrySet()) {
+			generate(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void add(Map<Class<?>, List<FieldAccessor>> byClass, MetaField<?> metaField) {
+		if(!(metaField instanceof MetaAbstractField))
+			return;
+		MetaAbstractField<?> f = (MetaAbstractField<?>) metaField;
+		if(f.getAccessor() == null || f.getAccessor().isGenerated() || !isReachable(f.getField()))
+			return;
+
+		Class<?> declaring = f.getField().getDeclaringClass();
+		List<FieldAccessor> fields = byClass.get(declaring);
+		if(fields == null) {
+			fields = new ArrayList<FieldAccessor>();
+			byClass.put(declaring, fields);
+		}
+		fields.add(f.getAccessor());
+	}
+
+	public static boolean isReachable(Field field) {
+		Class<?> declaring = field.getDeclaringClass();
+		int mod = field.getModifiers();
+		if(Modifier.isPrivate(mod) || Modifier.isFinal(mod) || Modifier.isStatic(mod))
+			return false;
+		else if(declaring.getClassLoader() == null || declaring.getPackage() == null)
+			return false;
+
+		Class<?> type = field.getType();
+		while(type.isArray()) {
+			type = type.getComponentType();
+		}
+		if(type.isPrimitive() || Modifier.isPublic(type.getModifiers()))
+			return true;
+		return type.getClassLoader() == declaring.getClassLoader() && type.getPackage() == declaring.getPackage();
+	}
+
+	/**
+	 * All the accessors must be for reachable fields declared in the given class
+	 */
+	public void generate(Class<?> declaring, List<FieldAccessor> accessors) {
+		try {
+			ClassLoader loader = declaring.getClassLoader();
+			ClassPool pool = new ClassPool(true);
+			pool.insertClassPath(new LoaderClassPath(EntityAccessor.class.getClassLoader()));
+			pool.insertClassPath(new LoaderClassPath(loader));
+
+			String name = declaring.getName()+"$$PlayOrmAccessor"+COUNTER.incrementAndGet();
+			CtClass ct = pool.makeClass(name);
+			ct.addInterface(pool.get(EntityAccessor.class.getName()));
+			ct.addConstructor(CtNewConstructor.defaultConstructor(ct));
+
+			String owner = declaring.getName();
+			StringBuilder get = new StringBuilder();
+			StringBuilder set = new StringBuilder();
+			StringBuilder getLong = new StringBuilder();
+			StringBuilder setLong = new StringBuilder();
+			for(int i = 0; i < accessors.size(); i++) {
+				Field field = accessors.get(i).getField();
+				Class<?> type = field.getType();
+				String ref = "(("+owner+") entity)."+field.getName();
+				get.append("case "+i+": return "+box(type, ref)+";\n");
+				set.append("case "+i+": "+ref+" = "+unbox(type, "value")+"; return;\n");
+				if(accessors.get(i).isIntegral()) {
+					getLong.append("case "+i+": return (long) "+ref+";\n");
+					setLong.append("case "+i+": "+ref+" = ("+type.getName()+") value; return;\n");
+				}
+			}
+
+			ct.addMethod(CtNewMethod.make("public Object get(int index, Object entity) {"
+					+switchOn(get)+"}", ct));
+			ct.addMethod(CtNewMethod.make("public void set(int index, Object entity, Object value) {"
+					+switchOn(set)+"}", ct));
+			ct.addMethod(CtNewMethod.make("public long getLong(int index, Object entity) {"
+					+switchOn(getLong)+"}", ct));
+			ct.addMethod(CtNewMethod.make("public void setLong(int index, Object entity, long value) {"
+					+switchOn(setLong)+"}", ct));
+
+			Class<?> clazz = ct.toClass(loader, declaring.getProtectionDomain());
+			ct.detach();
+			EntityAccessor accessor = newInstance(clazz);
+			for(int i = 0; i < accessors.size(); i++) {
+				accessors.get(i).setGenerated(accessor, i);
+			}
+			if (log.isDebugEnabled())
+				log.debug("generated field accessor for "+accessors.size()+" fields of class="+owner);
+		} catch(CannotCompileException e) {
+			log.warn("Could not generate field accessor for class="+declaring.getName()+", using reflection instead", e);
+		} catch(NotFoundException e) {
+			log.warn("Could not generate field accessor for class="+declaring.getName()+", using reflection instead", e);
+		} catch(RuntimeException e) {
+			log.warn("Could not generate field accessor for class="+declaring.getName()+", using reflection instead", e);
+		}
+	}
+
+	private EntityAccessor newInstance(Class<?> clazz) {
+		try {
+			return (EntityAccessor) clazz.newInstance();
+		} catch (InstantiationException e) {
+			throw new RuntimeException("Could not create accessor="+clazz, e);
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException("Could not create accessor="+clazz, e);
+		}
+	}
+
+	private String switchOn(StringBuilder cases) {
+		String body = "";
+		if(cases.length() > 0)
+			body = "switch(index) {\n"+cases+"}\n";
+		return body+"throw new IllegalArgumentException(\"no field at index=\"+index);";
+	}
+
+	private String box(Class<?> type, String ref) {
+		if(!type.isPrimitive())
+			return ref;
+		return wrapper(type)+".valueOf("+ref+")";
+	}
+
+	private String unbox(Class<?> type, String value) {
+		if(type == boolean.class)
+			return "((Boolean) "+value+").booleanValue()";
+		else if(type == char.class)
+			return "((Character) "+value+").charValue()";
+		else if(type.isPrimitive())
+			return "((Number) "+value+")."+type.getName()+"Value()";
+		return "("+sourceName(type)+") "+value;
+	}
+
+	private String wrapper(Class<?> type) {
+		if(type == int.class)
+			return "Integer";
+		else if(type == char.class)
+			return "Character";
+		String name = type.getName();
+		return Character.toUpperCase(name.charAt(0))+name.substring(1);
+	}
+
+	private String sourceName(Class<?> type) {
+		if(type.isArray())
+			return sourceName(type.getComponentType())+"[]";
+		return type.getName();
+	}
+}
@@ -0,0 +1,126 @@
+package com.alvazan.orm.impl.meta.scan;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes the classes annotated with @NoSqlEntity or @NoSqlEmbeddable of a compile into
+ * INDEX_RESOURCE, one binary class name per line, so the entity manager factory can load them
+ * instead of scanning every class of the jar or folder.  It is registered in META-INF/services so
+ * it runs for anyone compiling with playorm on the classpath.  Entries of an earlier compile are
+ * kept as long as the class still exists and is still annotated, so incremental compiles of a few
+ * classes don't lose the rest.
+ */
+@SupportedAnnotationTypes({NoSqlEntityProcessor.ENTITY, NoSqlEntityProcessor.EMBEDDABLE})
+public class NoSqlEntityProcessor extends AbstractProcessor {
+
+	public static final String INDEX_RESOURCE = "META-INF/playorm/entities";
+	static final String ENTITY = "com.alvazan.orm.api.base.anno.NoSqlEntity";
+	static final String EMBEDDABLE = "com.alvazan.orm.api.base.anno.NoSqlEmbeddable";
+
+	private Set<String> classNames = new TreeSet<String>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if(roundEnv.processingOver()) {
+			writeIndex();
+			return false;
+		}
+
+		for(TypeElement annotation : annotations) {
+			for(Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if(element instanceof TypeElement && isAnnotated(element))
+					classNames.add(binaryName((TypeElement) element));
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Only the annotations on the class itself like the classpath scan, not inherited ones
+	 */
+	private boolean isAnnotated(Element element) {
+		for(AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+			if(ENTITY.equals(name) || EMBEDDABLE.equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private String binaryName(TypeElement element) {
+		return processingEnv.getElementUtils().getBinaryName(element).toString();
+	}
+
+	private void writeIndex() {
+		if(classNames.isEmpty())
+			return;
+		try {
+			addPreviousEntries();
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+			Writer writer = file.openWriter();
+			try {
+				for(String name : classNames) {
+					writer.write(name);
+					writer.write("\n");
+				}
+			} finally {
+				writer.close();
+			}
+		} catch(IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+					"Could not write "+INDEX_RESOURCE+" so the classes will be scanned at startup instead. "+e);
+		}
+	}
+
+	private void addPreviousEntries() {
+		BufferedReader reader = null;
+		try {
+			FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+			reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), "UTF-8"));
+			for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+				String name = line.trim();
+				if(name.length() == 0 || classNames.contains(name))
+					continue;
+				TypeElement element = processingEnv.getElementUtils().getTypeElement(name.replace('$', '.'));
+				if(element != null && isAnnotated(element))
+					classNames.add(name);
+			}
+		} catch(IOException e) {
+			//there is no index from an earlier compile
+			return;
+		} finally {
+			close(reader);
+		}
+	}
+
+	private void close(BufferedReader reader) {
+		if(reader == null)
+			return;
+		try {
+			reader.close();
+		} catch(IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Could not close "+INDEX_RESOURCE+" "+e);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.alvazan.orm.impl.meta.scan;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.impl.meta.data.FieldAccessor;
+
+/**
+ * Micro benchmark of reading and writing every field of a wide entity through reflection against
+ * the accessors AccessorGenerator creates, boxed and through getLong/setLong for the integral fields.
+ */
+public class PerformanceAccessorTest {
+
+	private static final Logger log = LoggerFactory.getLogger(PerformanceAccessorTest.class);
+	private static final int WARMUP_ROUNDS = 5;
+	private static final int ROUNDS = 10;
+
+	private long sink;
+
+	public static void main(String[] args) {
+		int numEntities = 100000;
+		if(args.length > 0)
+			numEntities = Integer.parseInt(args[0]);
+		new PerformanceAccessorTest().start(numEntities);
+	}
+
+	private void start(int numEntities) {
+		WideEntity[] entities = new WideEntity[numEntities];
+		for(int i = 0; i < numEntities; i++) {
+			entities[i] = new WideEntity();
+		}
+
+		List<FieldAccessor> reflection = createAccessors();
+		List<FieldAccessor> generated = createAccessors();
+		new AccessorGenerator().generate(WideEntity.class, generated);
+		if(!generated.get(0).isGenerated())
+			throw new RuntimeException("accessor was not generated, check the logs");
+
+		for(int i = 0; i < WARMUP_ROUNDS; i++) {
+			sink += run(entities, reflection, false);
+			sink += run(entities, generated, false);
+			sink += run(entities, generated, true);
+		}
+
+		long reflectionNanos = 0;
+		long generatedNanos = 0;
+		long primitiveNanos = 0;
+		for(int i = 0; i < ROUNDS; i++) {
+			long start = System.nanoTime();
+			sink += run(entities, reflection, false);
+			long mid = System.nanoTime();
+			sink += run(entities, generated, false);
+			long mid2 = System.nanoTime();
+			sink += run(entities, generated, true);
+			long end = System.nanoTime();
+			reflectionNanos += mid - start;
+			generatedNanos += mid2 - mid;
+			primitiveNanos += end - mid2;
+		}
+
+		if (log.isInfoEnabled())
+			log.info("fields="+reflection.size()+" entity copies/sec reflection="+perSec(numEntities, reflectionNanos)
+					+" generated="+perSec(numEntities, generatedNanos)+" generatedPrimitive="+perSec(numEntities, primitiveNanos)+" sink="+sink);
+	}
+
+	private long perSec(int numEntities, long nanos) {
+		return (long) (numEntities / (nanos/ROUNDS/1e9));
+	}
+
+	private List<FieldAccessor> createAccessors() {
+		List<FieldAccessor> accessors = new ArrayList<FieldAccessor>();
+		for(Field f : WideEntity.class.getDeclaredFields()) {
+			if(!AccessorGenerator.isReachable(f))
+				continue;
+			f.setAccessible(true);
+			accessors.add(new FieldAccessor(f));
+		}
+		return accessors;
+	}
+
+	/**
+	 * Reads every field of each entity and writes it into the next one like translateToRow and
+	 * translateFromRow do
+	 */
+	private long run(WideEntity[] entities, List<FieldAccessor> accessors, boolean primitive) {
+		long total = 0;
+		for(int i = 1; i < entities.length; i++) {
+			WideEntity from = entities[i-1];
+			WideEntity to = entities[i];
+			for(FieldAccessor a : accessors) {
+				if(primitive && a.isIntegral()) {
+					long val = a.getLong(from);
+					a.setLong(to, val+1);
+					total += val;
+				} else {
+					Object val = a.get(from);
+					a.set(to, val);
+					total += val.hashCode();
+				}
+			}
+		}
+		return total;
+	}
+
+	//not private on purpose, private fields can't use the generated accessor
+	static class WideEntity {
+		protected long l0 = 1, l1 = 2, l2 = 3, l3 = 4, l4 = 5, l5 = 6, l6 = 7, l7 = 8, l8 = 9, l9 = 10;
+		protected int i0 = 1, i1 = 2, i2 = 3, i3 = 4, i4 = 5, i5 = 6, i6 = 7, i7 = 8, i8 = 9, i9 = 10;
+		protected short s0 = 1, s1 = 2, s2 = 3, s3 = 4, s4 = 5;
+		protected double d0 = 1.5, d1 = 2.5, d2 = 3.5, d3 = 4.5, d4 = 5.5, d5 = 6.5, d6 = 7.5, d7 = 8.5, d8 = 9.5, d9 = 10.5;
+		protected boolean b0 = true, b1, b2 = true, b3, b4 = true;
+		protected String t0 = "a", t1 = "b", t2 = "c", t3 = "d", t4 = "e", t5 = "f", t6 = "g", t7 = "h", t8 = "i", t9 = "j";
+	}
+}
@@ -53,6 +53,8 @@ public class ScannerForClass {
 	private MetaInfo metaInfo;
 	@Inject
 	private DboDatabaseMeta databaseInfo;
+	@Inject
+	private AccessorGenerator accessorGenerator;
 
 	public void addClassForQueries(Class<?> clazz) {
 		MetaClassSingle classMeta = (MetaClassSingle)metaInfo.findOrCreate(clazz);
@@ -133,6 +135,7 @@ public class ScannerForClass {
 		Class<? extends T> proxyClass = createTheProxy(classMeta.getMetaClass());
 		classMeta.setProxyClass(proxyClass);
 		scanFields(classMeta, metaDbo);
+		accessorGenerator.generate(classMeta);
 	}
 	
 	@SuppressWarnings("unchecked")
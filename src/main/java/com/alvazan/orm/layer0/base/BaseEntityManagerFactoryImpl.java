@@ -1,11 +1,17 @@
 package com.alvazan.orm.layer0.base;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -20,12 +26,19 @@ import com.alvazan.orm.api.base.anno.NoSqlQueries;
 import com.alvazan.orm.api.base.anno.NoSqlQuery;
 import com.alvazan.orm.api.z5api.QueryParser;
 import com.alvazan.orm.api.z5api.SpiMetaQuery;
+import com.alvazan.orm.api.z8spi.CacheStats;
+import com.alvazan.orm.api.z8spi.CoalesceStats;
+import com.alvazan.orm.api.z8spi.SecondLevelCache;
+import com.alvazan.orm.api.z8spi.SpiConstants;
+import com.alvazan.orm.api.z8spi.WriteBehind;
+import com.alvazan.orm.api.z8spi.WriteCoalescer;
 import com.alvazan.orm.api.z8spi.conv.Converter;
 import com.alvazan.orm.impl.meta.data.MetaAbstractClass;
 import com.alvazan.orm.impl.meta.data.MetaClass;
 import com.alvazan.orm.impl.meta.data.MetaClassInheritance;
 import com.alvazan.orm.impl.meta.data.MetaClassSingle;
 import com.alvazan.orm.impl.meta.data.MetaInfo;
+import com.alvazan.orm.impl.meta.scan.NoSqlEntityProcessor;
 import com.alvazan.orm.impl.meta.scan.ScannerForField;
 import com.alvazan.orm.layer3.typed.CachedMeta;
 import com.impetus.annovention.ClasspathDiscoverer;
@@ -50,8 +63,15 @@ public class BaseEntityManagerFactoryImpl implements NoSqlEntityManagerFactory {
 	private MetaInfo metaInfo;
 	@Inject
 	private CachedMeta cache;
+	@Inject
+	private SecondLevelCache secondLevelCache;
+	@Inject
+	private WriteCoalescer coalescer;
+	@Inject
+	private WriteBehind writeBehind;
 	
 	private Object injector;
+	private int toOneBatchSize = 100;
 
 	@Override
 	public NoSqlEntityManager createEntityManager() {
@@ -59,6 +79,7 @@ public class BaseEntityManagerFactoryImpl implements NoSqlEntityManagerFactory {
 			throw new IllegalStateException("Must call scanForEntities first");
 		BaseEntityManagerImpl mgr = entityMgrProvider.get();
 		mgr.setup();
+		mgr.setToOneBatchSize(toOneBatchSize);
 		return mgr;
 	}
 
@@ -72,14 +93,30 @@ public class BaseEntityManagerFactoryImpl implements NoSqlEntityManagerFactory {
 		
 		listener.setClassLoader(cl);
 		
-		//TODO: Fork annovention, it is a very small library AND then copy from
-		//http://code.google.com/p/reflections/source/browse/trunk/reflections/src/main/java/org/reflections/util/ClasspathHelper.java?r=103
-		//so that we only scan classes that are in a certain package instead of all classes on the classpath!!!!
 		discoverer.setFilter(new OurFilter());
         // Add class annotation listener (optional)
         discoverer.addAnnotationListener(listener);
-        // Fire it
-        discoverer.discover(cl);
+        // Jars and folders compiled with NoSqlEntityProcessor list their entities so only the
+        // others are scanned, in parallel
+        URL[] resources = discoverer.findResources(cl);
+        List<URL> toScan = new ArrayList<URL>();
+        Set<String> indexed = new HashSet<String>();
+        for(URL res : resources) {
+        	if(indexed.contains(res.getPath()))
+        		continue;
+        	List<String> classNames = readIndex(res);
+        	if(classNames == null) {
+        		toScan.add(res);
+        		continue;
+        	}
+        	indexed.add(res.getPath());
+        	if (log.isInfoEnabled())
+        		log.info("loading "+classNames.size()+" classes from the entity index of "+res);
+        	for(String name : classNames) {
+        		listener.discovered(name, NoSqlEntityProcessor.INDEX_RESOURCE);
+        	}
+        }
+        discoverer.discover(toScan.toArray(new URL[toScan.size()]));
         
         for(Class c : classes) {
 			listener.scanClass(c);
@@ -89,7 +126,6 @@ public class BaseEntityManagerFactoryImpl implements NoSqlEntityManagerFactory {
 		}
         
         if(log.isTraceEnabled()) {
-        	URL[] resources = discoverer.findResources(cl);
         	for(URL res : resources) {
         		if(log.isTraceEnabled())
         			log.trace("jar="+res);
@@ -113,6 +149,46 @@ public class BaseEntityManagerFactoryImpl implements NoSqlEntityManagerFactory {
 			log.info("Finished saving meta data, complelety done initializing");
 	}
 	
+	/**
+	 * The class names in the entity index of the jar or folder or null if it has none
+	 */
+	private List<String> readIndex(URL root) {
+		String base = root.toString();
+		if(!base.endsWith("/"))
+			base += "/";
+		List<String> classNames = new ArrayList<String>();
+		BufferedReader reader = null;
+		try {
+			URLConnection conn = new URL(base+NoSqlEntityProcessor.INDEX_RESOURCE).openConnection();
+			//don't keep the jar open
+			conn.setUseCaches(false);
+			reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
+			for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+				String name = line.trim();
+				if(name.length() > 0)
+					classNames.add(name);
+			}
+			return classNames;
+		} catch(IOException e) {
+			if (log.isDebugEnabled())
+				log.debug("no entity index in="+root+" so scanning it", e);
+			return null;
+		} finally {
+			close(reader);
+		}
+	}
+
+	private void close(BufferedReader reader) {
+		if(reader == null)
+			return;
+		try {
+			reader.close();
+		} catch(IOException e) {
+			if (log.isWarnEnabled())
+				log.warn("could not close entity index", e);
+		}
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public void setup(Map<String, Object> properties, Map<Class, Converter> converters, ClassLoader cl) {
 		if(isScanned)
@@ -127,6 +203,11 @@ public class BaseEntityManagerFactoryImpl implements NoSqlEntityManagerFactory {
 		if(autoCreate == null)
 			throw new IllegalArgumentException("Property NoSqlEntityManagerFactory.AUTO_CREATE_KEY can only have values validate,update, or create");
 		
+		long batchSize = SpiConstants.readLong(properties, Bootstrap.TO_ONE_BATCH_SIZE, toOneBatchSize);
+		if(batchSize < 1 || batchSize > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(Bootstrap.TO_ONE_BATCH_SIZE+" must be 1 or greater and is="+batchSize);
+		toOneBatchSize = (int) batchSize;
+
 		inspectorField.setCustomConverters(converters);
 		
 		if (log.isInfoEnabled())
@@ -206,9 +287,25 @@ public class BaseEntityManagerFactoryImpl implements NoSqlEntityManagerFactory {
 		this.injector = injector;
 	}
 
+	@Override
+	public Map<String, CacheStats> getCacheStats() {
+		return secondLevelCache.getStats();
+	}
+
+	@Override
+	public CoalesceStats getCoalesceStats() {
+		return coalescer.getStats();
+	}
+
 	@Override
 	public void close() {
-		this.noSqlSessionFactory.close();
+		try {
+			//queued write behind batches still need the database and invalidate the cache
+			writeBehind.close();
+		} finally {
+			secondLevelCache.clear();
+			this.noSqlSessionFactory.close();
+		}
 	}
 
 }
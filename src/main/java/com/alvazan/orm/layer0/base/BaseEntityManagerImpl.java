@@ -1,6 +1,10 @@
 package com.alvazan.orm.layer0.base;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -31,7 +35,6 @@ import com.alvazan.orm.api.z8spi.iter.IndiceToVirtual;
 import com.alvazan.orm.api.z8spi.iter.IterToVirtual;
 import com.alvazan.orm.api.z8spi.iter.IterableWrappingCursor;
 import com.alvazan.orm.api.z8spi.meta.DboColumnIdMeta;
-import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
 import com.alvazan.orm.api.z8spi.meta.IndexData;
@@ -40,6 +43,7 @@ import com.alvazan.orm.api.z8spi.meta.ViewInfo;
 import com.alvazan.orm.impl.meta.data.MetaClass;
 import com.alvazan.orm.impl.meta.data.MetaIdField;
 import com.alvazan.orm.impl.meta.data.MetaInfo;
+import com.alvazan.orm.impl.meta.data.MetaRelationField;
 import com.alvazan.orm.impl.meta.data.NoSqlProxy;
 import com.alvazan.orm.layer3.typed.IndiceCursorProxy;
 import com.alvazan.orm.layer3.typed.NoSqlTypedSessionImpl;
@@ -63,6 +67,7 @@ public class BaseEntityManagerImpl implements NoSqlEntityManager, MetaLookup, Me
 	private MetaLayerImpl metaImpl;
 	
 	private boolean isTypedSessionInitialized = false;
+	private int toOneBatchSize = 1;
 	
 	@SuppressWarnings("rawtypes")
 	public void put(Object entity, boolean isInsert) {
@@ -173,23 +178,25 @@ public class BaseEntityManagerImpl implements NoSqlEntityManager, MetaLookup, Me
 		
 		//we pass in null for batch size such that we do infinite size or basically all keys passed into this method in one
 		//shot
-		return findAllImpl2(meta, new IterableWrappingCursor<byte[]>(virtKeys), null, true, null);
+		return findAllImpl2(meta, new IterableWrappingCursor<byte[]>(virtKeys), null, true, null, null);
 	}
 	
-	<T> AbstractCursor<KeyValue<T>> findAllImpl2(MetaClass<T> meta, ViewInfo mainView, DirectCursor<IndexColumnInfo> keys, String query, boolean cacheResults, Integer batchSize) {
+	<T> AbstractCursor<KeyValue<T>> findAllImpl2(MetaClass<T> meta, ViewInfo mainView, DirectCursor<IndexColumnInfo> keys, String query, boolean cacheResults, Integer batchSize, List<MetaRelationField> fetchPaths) {
 		//OKAY, so this gets interesting.  The noSqlKeys could be a proxy iterable to 
 		//millions of keys with some batch size.  We canNOT do a find inline here but must do the find in
 		//batches as well
 		IndiceCursorProxy indiceCursor = new IndiceCursorProxy(mainView, keys);
 		DirectCursor<byte[]> virtKeys = new IndiceToVirtual(meta.getMetaDbo(), indiceCursor);
-		return findAllImpl2(meta, virtKeys, query, cacheResults, batchSize);
+		return findAllImpl2(meta, virtKeys, query, cacheResults, batchSize, fetchPaths);
 	}
 	
 	
-	<T> AbstractCursor<KeyValue<T>> findAllImpl2(MetaClass<T> meta, DirectCursor<byte[]> keys, String query, boolean cacheResults, Integer batchSize) {
+	<T> AbstractCursor<KeyValue<T>> findAllImpl2(MetaClass<T> meta, DirectCursor<byte[]> keys, String query, boolean cacheResults, Integer batchSize, List<MetaRelationField> fetchPaths) {
 		boolean skipCache = query != null;
 		AbstractCursor<KeyValue<Row>> cursor = session.find(meta.getMetaDbo(), keys, skipCache, cacheResults, batchSize);
-		return new CursorRow<T>(session, meta, cursor, query);
+		if(fetchPaths != null && fetchPaths.size() > 0)
+			cursor = new CursorFetchPaths(session, cursor, fetchPaths, batchSize);
+		return new CursorRow<T>(session, meta, cursor, query, toOneBatchSize);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -266,25 +273,13 @@ public class BaseEntityManagerImpl implements NoSqlEntityManager, MetaLookup, Me
 		saveMetaData();
 	}
 
+	/**
+	 * Writes the meta rows of only the tables whose fingerprint differs from the one stored in the
+	 * DboDatabaseMeta row, so restarting nodes with an unchanged schema read that one row and write
+	 * nothing.
+	 */
 	void saveMetaData() {
 		BaseEntityManagerImpl tempMgr = this;
-        //DboDatabaseMeta existing = tempMgr.find(DboDatabaseMeta.class, DboDatabaseMeta.META_DB_ROWKEY);
-//        if(existing != null)
-//        	throw new IllegalStateException("Your property NoSqlEntityManagerFactory.AUTO_CREATE_KEY is set to 'create' which only creates meta data if none exist already but meta already exists");
-		
-        for(DboTableMeta table : databaseInfo.getAllTables()) {
-        	
-        	for(DboColumnMeta col : table.getAllColumns()) {
-        		tempMgr.put(col);
-        	}
-			if (!table.isEmbeddable() && table.getIdColumnMeta() != null)
-				tempMgr.put(table.getIdColumnMeta());
-        	
-        	tempMgr.put(table);
-        }
-        
-        databaseInfo.setId(DboDatabaseMeta.META_DB_ROWKEY);
-        
         //NOW, on top of the ORM entites, we have 3 special index column families of String, BigInteger and BigDecimal
         //which are one of the types in the composite column name.(the row keys are all strings).  The column names
         //are <value being indexed of String or BigInteger or BigDecimal><primarykey><length of first value> so we can
@@ -307,20 +302,92 @@ public class BaseEntityManagerImpl implements NoSqlEntityManager, MetaLookup, Me
         	DboColumnIdMeta idMeta = new DboColumnIdMeta();
         	idMeta.setup(cf, "id", String.class, false);
         	
-        	tempMgr.put(idMeta);
-        	tempMgr.put(cf);
-        	
         	databaseInfo.addMetaClassDbo(cf);
         }
         
+        databaseInfo.setId(DboDatabaseMeta.META_DB_ROWKEY);
+        DboDatabaseMeta existing = tempMgr.find(DboDatabaseMeta.class, DboDatabaseMeta.META_DB_ROWKEY);
+
+        int changed = 0;
+        for(DboTableMeta table : databaseInfo.getAllTables()) {
+        	List<Object> metaRows = new ArrayList<Object>();
+        	metaRows.addAll(table.getAllColumns());
+			if (!table.isEmbeddable() && table.getIdColumnMeta() != null)
+				metaRows.add(table.getIdColumnMeta());
+        	metaRows.add(table);
+
+        	String fingerprint = fingerprint(metaRows);
+        	databaseInfo.setFingerprint(table.getColumnFamily(), fingerprint);
+        	if(existing != null && fingerprint.equals(existing.getFingerprint(table.getColumnFamily())))
+        		continue;
+
+        	for(Object row : metaRows) {
+        		tempMgr.put(row);
+        	}
+        	changed++;
+        }
+
+        if(existing != null && changed == 0) {
+        	if (log.isInfoEnabled())
+        		log.info("meta data of all "+databaseInfo.getAllTables().size()+" tables is unchanged, not writing it");
+        	return;
+        }
+        if (log.isInfoEnabled())
+        	log.info("writing meta data of "+changed+" changed tables");
         tempMgr.put(databaseInfo);
         tempMgr.flush();
 	}
+
+	/**
+	 * MD5 of the columns every meta entity would be written as.  The columns are sorted since the
+	 * order they come out of the maps in the meta can change between runs.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private String fingerprint(List<Object> metaRows) {
+		List<String> columns = new ArrayList<String>();
+		for(Object entity : metaRows) {
+			MetaClass metaClass = metaInfo.getMetaClass(entity.getClass());
+			RowToPersist row = metaClass.translateToRow(entity);
+			String key = toHex(row.getKey());
+			for(Column col : row.getColumns()) {
+				columns.add(key+":"+toHex(col.getName())+"="+toHex(col.getValue()));
+			}
+		}
+		Collections.sort(columns);
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			for(String col : columns) {
+				digest.update(col.getBytes("UTF-8"));
+				digest.update((byte) '\n');
+			}
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("MD5 is always there in the jdk", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException("UTF-8 is always there in the jdk", e);
+		}
+	}
+
+	private String toHex(byte[] data) {
+		if(data == null)
+			return "null";
+		StringBuilder builder = new StringBuilder(data.length*2);
+		for(byte b : data) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
 	
 	public void setup() {
 		session.setOrmSessionForMeta(this);		
 	}
 
+	public void setToOneBatchSize(int toOneBatchSize) {
+		this.toOneBatchSize = toOneBatchSize;
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public void remove(Object entity) {
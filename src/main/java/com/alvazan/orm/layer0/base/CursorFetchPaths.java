@@ -0,0 +1,147 @@
+package com.alvazan.orm.layer0.base;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.iter.IndiceToVirtual;
+import com.alvazan.orm.api.z8spi.iter.ListWrappingCursor;
+import com.alvazan.orm.api.z8spi.iter.StringLocal;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.impl.meta.data.MetaRelationField;
+
+/**
+ * Reads a batch of rows ahead and loads the entities the fetch paths of those rows point at into
+ * the session cache with one find per path.  The proxies and collections of those paths are then
+ * filled in from the cache instead of going to the database one entity at a time.
+ */
+public class CursorFetchPaths extends AbstractCursor<KeyValue<Row>> {
+
+	private static final Logger log = LoggerFactory.getLogger(CursorFetchPaths.class);
+
+	private NoSqlSession session;
+	private AbstractCursor<KeyValue<Row>> cursor;
+	private List<MetaRelationField> fetchPaths;
+	private int batchSize;
+	private LinkedList<KeyValue<Row>> buffer = new LinkedList<KeyValue<Row>>();
+	private boolean bufferIsForward = true;
+
+	public CursorFetchPaths(NoSqlSession session, AbstractCursor<KeyValue<Row>> cursor, List<MetaRelationField> fetchPaths, Integer batchSize) {
+		this.session = session;
+		this.cursor = cursor;
+		this.fetchPaths = fetchPaths;
+		if(batchSize == null)
+			this.batchSize = 500;
+		else
+			this.batchSize = batchSize;
+	}
+
+	@Override
+	public void beforeFirst() {
+		buffer.clear();
+		cursor.beforeFirst();
+	}
+
+	@Override
+	public void afterLast() {
+		buffer.clear();
+		cursor.afterLast();
+	}
+
+	@Override
+	public Holder<KeyValue<Row>> nextImpl() {
+		if(!bufferIsForward)
+			turnAround();
+		if(buffer.isEmpty())
+			readAhead(true);
+		if(buffer.isEmpty())
+			return null;
+		return new Holder<KeyValue<Row>>(buffer.removeFirst());
+	}
+
+	@Override
+	public Holder<KeyValue<Row>> previousImpl() {
+		if(bufferIsForward)
+			turnAround();
+		if(buffer.isEmpty())
+			readAhead(false);
+		if(buffer.isEmpty())
+			return null;
+		return new Holder<KeyValue<Row>>(buffer.removeFirst());
+	}
+
+	/**
+	 * The cursor below us is ahead by what is still buffered so move it back to where the caller is
+	 */
+	private void turnAround() {
+		for(int i = 0; i < buffer.size(); i++) {
+			if(bufferIsForward)
+				cursor.previousImpl();
+			else
+				cursor.nextImpl();
+		}
+		buffer.clear();
+		bufferIsForward = !bufferIsForward;
+	}
+
+	private void readAhead(boolean forward) {
+		for(int i = 0; i < batchSize; i++) {
+			Holder<KeyValue<Row>> holder;
+			if(forward)
+				holder = cursor.nextImpl();
+			else
+				holder = cursor.previousImpl();
+			if(holder == null)
+				break;
+			buffer.add(holder.getValue());
+		}
+
+		for(MetaRelationField path : fetchPaths) {
+			prefetch(path);
+		}
+	}
+
+	private void prefetch(MetaRelationField path) {
+		Map<ByteArray, byte[]> keys = new LinkedHashMap<ByteArray, byte[]>();
+		for(KeyValue<Row> kv : buffer) {
+			Row row = kv.getValue();
+			if(row == null)
+				continue;
+			for(byte[] key : path.fetchRelatedKeys(row)) {
+				keys.put(new ByteArray(key), key);
+			}
+		}
+		if(keys.size() == 0)
+			return;
+
+		DboTableMeta metaDbo = path.getRelatedClassMeta().getMetaDbo();
+		List<byte[]> rowKeys = new ArrayList<byte[]>(keys.values());
+		IndiceToVirtual virtKeys = new IndiceToVirtual(metaDbo, new ListWrappingCursor<byte[]>(rowKeys));
+		//reading through the rows is what puts them in the cache
+		AbstractCursor<KeyValue<Row>> rows = session.find(metaDbo, virtKeys, false, true, null);
+		int counter = 0;
+		while(rows.nextImpl() != null) {
+			counter++;
+		}
+		if (log.isDebugEnabled())
+			log.debug("fetched "+counter+" rows of "+metaDbo.getColumnFamily()+" for path="+path.getColumnName());
+	}
+
+	@Override
+	public String toString() {
+		String tabs = StringLocal.getAndAdd();
+		String retVal = "CursorFetchPaths["+tabs+cursor+tabs+"]";
+		StringLocal.set(tabs.length());
+		return retVal;
+	}
+}
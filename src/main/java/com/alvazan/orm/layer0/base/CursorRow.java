@@ -11,6 +11,7 @@ import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
 import com.alvazan.orm.api.z8spi.iter.StringLocal;
 import com.alvazan.orm.impl.meta.data.MetaClass;
 import com.alvazan.orm.impl.meta.data.MetaIdField;
+import com.alvazan.orm.impl.meta.data.ToOneBatch;
 
 public class CursorRow<T> extends AbstractCursor<KeyValue<T>>{
 
@@ -20,24 +21,30 @@ public class CursorRow<T> extends AbstractCursor<KeyValue<T>>{
 	private String query;
 	private AbstractCursor<KeyValue<Row>> cursor;
 	private NoSqlSession session;
+	private int toOneBatchSize;
+	private ToOneBatch batch;
+	private int rowsInBatch;
 	
 	public CursorRow(NoSqlSession session, MetaClass<T> meta2, AbstractCursor<KeyValue<Row>> cursor,
-			String query2) {
+			String query2, int toOneBatchSize) {
 		this.session = session;
 		this.meta = meta2;
 		this.cursor = cursor;
 		this.query = query2;
+		this.toOneBatchSize = toOneBatchSize;
 	}
 
 	@Override
 	public void beforeFirst() {
 		cursor.beforeFirst();
+		batch = null;
 	}
 	
 	
 	@Override
 	public void afterLast() {
 		cursor.afterLast();
+		batch = null;
 	}
 	
 	@Override
@@ -82,12 +89,31 @@ public class CursorRow<T> extends AbstractCursor<KeyValue<T>>{
 			}
 			keyVal.setKey(obj);
 		} else {
-			keyVal = meta.translateFromRow(row, session);
+			keyVal = translateWithBatch(row);
 		}
 		
 		return keyVal;
 	}
 
+	private KeyValue<T> translateWithBatch(Row row) {
+		if(toOneBatchSize <= 1)
+			return meta.translateFromRow(row, session);
+		if(batch == null || rowsInBatch >= toOneBatchSize) {
+			batch = new ToOneBatch(session);
+			rowsInBatch = 0;
+		}
+		rowsInBatch++;
+
+		//the ManyToOne proxies of this row join the batch so touching one loads them all
+		ToOneBatch previous = ToOneBatch.getCurrent();
+		ToOneBatch.setCurrent(batch);
+		try {
+			return meta.translateFromRow(row, session);
+		} finally {
+			ToOneBatch.setCurrent(previous);
+		}
+	}
+
 	@Override
 	public String toString() {
 		String tabs = StringLocal.getAndAdd();
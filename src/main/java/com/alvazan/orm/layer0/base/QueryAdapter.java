@@ -12,24 +12,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alvazan.orm.api.base.Query;
+import com.alvazan.orm.api.base.ResultPage;
 import com.alvazan.orm.api.exc.RowNotFoundException;
 import com.alvazan.orm.api.exc.StorageMissingEntitesException;
 import com.alvazan.orm.api.exc.TooManyResultException;
 import com.alvazan.orm.api.exc.TypeMismatchException;
 import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z5api.PageToken;
 import com.alvazan.orm.api.z5api.SpiMetaQuery;
 import com.alvazan.orm.api.z5api.SpiQueryAdapter;
 import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
 import com.alvazan.orm.api.z8spi.iter.Cursor;
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
+import com.alvazan.orm.api.z8spi.iter.ListWrappingCursor;
 import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.TypeInfo;
 import com.alvazan.orm.api.z8spi.meta.ViewInfo;
 import com.alvazan.orm.impl.meta.data.MetaClass;
 import com.alvazan.orm.impl.meta.data.MetaField;
 import com.alvazan.orm.impl.meta.data.MetaInfo;
+import com.alvazan.orm.impl.meta.data.MetaRelationField;
 import com.alvazan.orm.layer3.typed.IterableProxy;
 
 public class QueryAdapter<T> implements Query<T> {
@@ -46,6 +51,7 @@ public class QueryAdapter<T> implements Query<T> {
 	private MetaClass<T> mainMetaClass;
 	private ViewInfo mainView;
 	private Class targetSubclass;
+	private List<MetaRelationField> fetchPaths = new ArrayList<MetaRelationField>();
 
 	public void setup(MetaClass<T> target, SpiMetaQuery metaQuery, SpiQueryAdapter indexQuery, BaseEntityManagerImpl entityMgr, Class clazz) {
 		this.mainMetaClass = target;
@@ -127,11 +133,9 @@ public class QueryAdapter<T> implements Query<T> {
 		
 		//DirectCursor<IndexColumnInfo> debugCursor = new DebugCursor(indice);
 		
-		//BIG NOTE: Here, we could return all the keys from the join so we can eagerly fetch other entities as well
-		//instead of waiting for the user to loop through those entities AND if user accesses those entites, we could block
-		//while the load is happening too in the background
+		//The entities of the fetch paths are loaded one batch of results at a time as the results are read
 		String query = meta.getQuery();
-		AbstractCursor<KeyValue<T>> results = mgr.findAllImpl2(mainMetaClass, mainView, indice, query, cacheResults, batchSize);
+		AbstractCursor<KeyValue<T>> results = mgr.findAllImpl2(mainMetaClass, mainView, indice, query, cacheResults, batchSize, fetchPaths);
 
 		return results;
 	}
@@ -144,7 +148,15 @@ public class QueryAdapter<T> implements Query<T> {
 		if(maxResults != null && !batchSizeSetByUser)
 			setBatchSize(maxResults);
 		
-		AbstractCursor<KeyValue<T>> all = (AbstractCursor<KeyValue<T>>) getResults();
+		//an ORDER BY that has to sort only needs to keep the rows up to the last one we return
+		AbstractCursor<KeyValue<T>> all;
+		if(maxResults != null)
+			indexQuery.setLimit(firstResult+maxResults);
+		try {
+			all = (AbstractCursor<KeyValue<T>>) getResults();
+		} finally {
+			indexQuery.setLimit(null);
+		}
 		List<T> foundElements = new ArrayList<T>();
 		try {
 			return getEntities(all, foundElements, firstResult, maxResults);
@@ -155,6 +167,50 @@ public class QueryAdapter<T> implements Query<T> {
 		}
 	}
 	
+	@Override
+	public ResultPage<T> getPage(String pageToken, int maxResults) {
+		if(maxResults <= 0)
+			throw new IllegalArgumentException("maxResults must be 1 or larger");
+		PageToken after = null;
+		if(pageToken != null)
+			after = PageToken.parse(pageToken);
+		//read one extra key so we know if there is a next page
+		if(!batchSizeSetByUser)
+			indexQuery.setBatchSize(maxResults+1);
+
+		DirectCursor<IndexColumnInfo> indice = indexQuery.getResultListAfter(new HashSet<ViewInfo>(), after);
+		List<IndexColumnInfo> keys = new ArrayList<IndexColumnInfo>();
+		boolean hasMore = false;
+		for(Holder<IndexColumnInfo> holder = indice.nextImpl(); holder != null; holder = indice.nextImpl()) {
+			if(holder.getValue() == null)
+				continue;
+			else if(keys.size() == maxResults) {
+				hasMore = true;
+				break;
+			}
+			keys.add(holder.getValue());
+		}
+
+		AbstractCursor<KeyValue<T>> all = mgr.findAllImpl2(mainMetaClass, mainView, new ListWrappingCursor<IndexColumnInfo>(keys), meta.getQuery(), false, maxResults, fetchPaths);
+		List<T> foundElements = new ArrayList<T>();
+		List<T> entities;
+		try {
+			entities = getEntities(all, foundElements, 0, maxResults);
+		} catch(RowNotFoundException e) {
+			if(log.isTraceEnabled())
+				log.trace("converting row not found into stored entities missing", e);
+			throw new StorageMissingEntitesException(foundElements, "Your index refers to rows that no longer exist in the nosql store", e);
+		}
+
+		String next = null;
+		if(hasMore) {
+			IndexColumnInfo last = keys.get(keys.size()-1);
+			IndexColumn col = last.getIndexNode(mainView).getCol();
+			next = new PageToken(col.getIndexedValue(), col.getPrimaryKey()).format();
+		}
+		return new ResultPage<T>(entities, next);
+	}
+
 	private List<T> getEntities(AbstractCursor<KeyValue<T>> all, List<T> foundElements, int firstResult, Integer maxResults){
 		List<T> entities = new ArrayList<T>();
 		RowNotFoundException exc = null;
@@ -196,6 +252,20 @@ public class QueryAdapter<T> implements Query<T> {
 		this.indexQuery.setBatchSize(batchSize);
 	}
 
+	@Override
+	public void setFetchPaths(String... fieldNames) {
+		List<MetaRelationField> paths = new ArrayList<MetaRelationField>();
+		for(String name : fieldNames) {
+			MetaField<T> metaField = mainMetaClass.getMetaFieldByCol(targetSubclass, name);
+			if(metaField == null)
+				throw new IllegalArgumentException("fetch path='"+name+"' is not a field of "+mainMetaClass.getMetaClass().getName());
+			else if(!(metaField instanceof MetaRelationField))
+				throw new IllegalArgumentException("fetch path='"+name+"' must be a ManyToOne or a OneToMany field(not a CursorToMany) but is "+metaField);
+			paths.add((MetaRelationField) metaField);
+		}
+		fetchPaths = paths;
+	}
+
 	@Override
 	public Iterable<KeyValue<T>> getResultsIter() {
 		return getResultsIter(false);
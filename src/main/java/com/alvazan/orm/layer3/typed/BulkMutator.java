@@ -0,0 +1,233 @@
+package com.alvazan.orm.layer3.typed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.alvazan.orm.api.z3api.ProgressListener;
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z5api.IndexColumnInfo.Wrapper;
+import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z5api.SpiMetaQuery;
+import com.alvazan.orm.api.z5api.SpiQueryAdapter;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.ScanInfo;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.Cursor;
+import com.alvazan.orm.api.z8spi.iter.DirectCursor;
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.api.z8spi.meta.IndexData;
+import com.alvazan.orm.api.z8spi.meta.RowToPersist;
+import com.alvazan.orm.api.z8spi.meta.TypedColumn;
+import com.alvazan.orm.api.z8spi.meta.TypedRow;
+import com.alvazan.orm.api.z8spi.meta.ViewInfo;
+
+/**
+ * Runs an UPDATE, DELETE or DELETECOLUMN over the keys a query streams back and flushes every
+ * batchSize rows so neither rows nor pending writes pile up in memory.  An UPDATE only writes the
+ * columns it sets plus their index changes and skips rows that already have the new values, which
+ * also keeps it from visiting a row twice when the new value lands further along the index being
+ * scanned.  A DELETE on a table with at most the one index being scanned never reads the rows.
+ */
+public class BulkMutator {
+
+	private NoSqlTypedSessionImpl typedSession;
+	private NoSqlSession session;
+	private SpiMetaQuery metaQuery;
+	private int batchSize;
+	private ProgressListener listener;
+	private int rowCount;
+	private int notFlushed;
+
+	public BulkMutator(NoSqlTypedSessionImpl typedSession, SpiMetaQuery metaQuery, int batchSize, ProgressListener listener) {
+		if(batchSize <= 0)
+			throw new IllegalArgumentException("batchSize must be 1 or greater");
+		this.typedSession = typedSession;
+		this.session = typedSession.getRawSession();
+		this.metaQuery = metaQuery;
+		this.batchSize = batchSize;
+		this.listener = listener;
+	}
+
+	/**
+	 * @return the number of rows deleted or changed
+	 */
+	public int execute(SpiQueryAdapter spiQueryAdapter) {
+		String queryType = metaQuery.getQueryType();
+		if(queryType == null)
+			throw new IllegalArgumentException("Only UPDATE, DELETE and DELETECOLUMN can be executed.  query="+metaQuery.getQuery());
+		spiQueryAdapter.setBatchSize(batchSize);
+		DirectCursor<IndexColumnInfo> keys = spiQueryAdapter.getResultList(new HashSet<ViewInfo>(), null);
+
+		if("DELETE".equalsIgnoreCase(queryType) && canDeleteFromKeys())
+			deleteFromKeys(keys);
+		else
+			mutateRows(keys, queryType);
+		flushBatch();
+		return rowCount;
+	}
+
+	private boolean canDeleteFromKeys() {
+		if(metaQuery.getTargetViews().size() != 1)
+			return false;
+		DboTableMeta meta = metaQuery.getTargetViews().get(0).getTableMeta();
+		return meta.getPartitionedColumns().size() == 0 && !meta.getIdColumnMeta().isIndexed()
+				&& meta.getIndexedColumns().size() <= 1;
+	}
+
+	private void deleteFromKeys(DirectCursor<IndexColumnInfo> keys) {
+		ViewInfo view = metaQuery.getTargetViews().get(0);
+		DboTableMeta meta = view.getTableMeta();
+		DboColumnMeta indexed = null;
+		if(meta.getIndexedColumns().size() == 1)
+			indexed = meta.getIndexedColumns().get(0);
+
+		for(Holder<IndexColumnInfo> holder = keys.nextImpl(); holder != null; holder = keys.nextImpl()) {
+			IndexColumnInfo info = holder.getValue();
+			byte[] pk = info.getPrimaryKeyRaw(view);
+			Wrapper node = info.getIndexNode(view);
+			if(indexed == null) {
+				session.remove(meta, meta.getIdColumnMeta().formVirtRowKey(pk));
+			} else if(indexed.getColumnName().equals(node.getColMeta().getColumnName())) {
+				//the entry we scanned is the only index entry the row has
+				removeIndexEntry(meta, indexed, node.getCol());
+				session.remove(meta, meta.getIdColumnMeta().formVirtRowKey(pk));
+			} else if(!deleteRow(meta, pk)) {
+				continue;
+			}
+			rowDone();
+		}
+	}
+
+	private void removeIndexEntry(DboTableMeta meta, DboColumnMeta indexed, IndexColumn scanned) {
+		ScanInfo info = ScanInfo.createScanInfo(indexed, null, null);
+		IndexColumn col = new IndexColumn();
+		col.setIndexedValue(scanned.getIndexedValue());
+		col.setPrimaryKey(scanned.getPrimaryKey());
+		session.removeFromIndex(meta, info.getIndexColFamily(), info.getRowKey(), col);
+	}
+
+	private boolean deleteRow(DboTableMeta meta, byte[] pk) {
+		Row row = session.find(meta, meta.getIdColumnMeta().formVirtRowKey(pk));
+		if(row == null)
+			return false;
+		TypedRow typedRow = meta.translateFromRow(row).getValue();
+		typedSession.remove(meta.getColumnFamily(), typedRow);
+		return true;
+	}
+
+	private void mutateRows(DirectCursor<IndexColumnInfo> keys, String queryType) {
+		List<TypedColumn> updateList = metaQuery.getUpdateList();
+		if("UPDATE".equalsIgnoreCase(queryType) && updateList.size() == 0)
+			throw new IllegalArgumentException("UPDATE should have some values to set");
+
+		Cursor<List<TypedRow>> cursor = new CursorAllViews(typedSession, metaQuery, keys, batchSize);
+		while(cursor.next()) {
+			List<TypedRow> joinedRow = cursor.getCurrent();
+			boolean changed;
+			if("DELETE".equalsIgnoreCase(queryType))
+				changed = deleteJoinedRow(joinedRow);
+			else if("UPDATE".equalsIgnoreCase(queryType))
+				changed = updateJoinedRow(joinedRow, updateList);
+			else
+				changed = deleteColumn(joinedRow, updateList);
+			if(changed)
+				rowDone();
+		}
+	}
+
+	private boolean deleteJoinedRow(List<TypedRow> joinedRow) {
+		for(TypedRow r : joinedRow) {
+			if(r.getRowKey() == null)
+				continue; //nothing joined in a left join
+			DboTableMeta meta = r.getView().getTableMeta();
+			typedSession.remove(meta.getColumnFamily(), r);
+		}
+		return true;
+	}
+
+	private boolean updateJoinedRow(List<TypedRow> joinedRow, List<TypedColumn> updateList) {
+		boolean changed = false;
+		for(TypedRow r : joinedRow) {
+			if(r.getRowKey() != null && updateRow(r, updateList))
+				changed = true;
+		}
+		return changed;
+	}
+
+	private boolean updateRow(TypedRow r, List<TypedColumn> updateList) {
+		DboTableMeta meta = r.getView().getTableMeta();
+		Set<ByteArray> names = new HashSet<ByteArray>();
+		for(TypedColumn update : updateList) {
+			DboColumnMeta colMeta = update.getColumnMeta();
+			if(!meta.getColumnFamily().equals(colMeta.getOwner().getColumnFamily()))
+				continue;
+			TypedColumn current = r.getColumn(colMeta.getColumnName());
+			if(current != null && Arrays.equals(current.getValueRaw(), update.getValueRaw()))
+				continue;
+			r.addColumn(colMeta, colMeta.getColumnNameAsBytes(), update.getValueRaw(), null);
+			names.add(new ByteArray(colMeta.getColumnNameAsBytes()));
+		}
+		if(names.size() == 0)
+			return false;
+
+		//the proxy remembers the values as read so only the indexes of the columns set change
+		RowToPersist row = meta.translateToRow(r);
+		for(IndexData ind : row.getIndexToRemove()) {
+			session.removeFromIndex(meta, ind.getColumnFamilyName(), ind.getRowKeyBytes(), ind.getIndexColumn());
+		}
+		for(IndexData ind : row.getIndexToAdd()) {
+			session.persistIndex(meta, ind.getColumnFamilyName(), ind.getRowKeyBytes(), ind.getIndexColumn());
+		}
+		List<Column> columns = new ArrayList<Column>();
+		for(Column c : row.getColumns()) {
+			if(names.contains(new ByteArray(c.getName())))
+				columns.add(c);
+		}
+		session.put(meta, row.getVirtualKey(), columns);
+		return true;
+	}
+
+	private boolean deleteColumn(List<TypedRow> typeRowList, List<TypedColumn> deleteList) {
+		for (TypedRow r : typeRowList) {
+			ViewInfo view = r.getView();
+			DboTableMeta metaClass = view.getTableMeta();
+			for(TypedColumn c : r.getColumnsAsColl()) {
+				for (TypedColumn columnforDelete : deleteList ) {
+					if (columnforDelete.getName().equals(c.getName())) {
+						session.removeColumn(metaClass, StandardConverters.convertToBytes(r.getRowKey()), c.getNameRaw());
+						return true;
+					}
+					else if (c.getName().equals(columnforDelete.getName()+"."+StandardConverters.convertToString(columnforDelete.getValue()))) {
+						session.removeColumn(metaClass, StandardConverters.convertToBytes(r.getRowKey()), c.getNameRaw());
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private void rowDone() {
+		rowCount++;
+		notFlushed++;
+		if(notFlushed >= batchSize)
+			flushBatch();
+	}
+
+	private void flushBatch() {
+		if(notFlushed == 0)
+			return;
+		session.flush();
+		notFlushed = 0;
+		if(listener != null)
+			listener.flushed(rowCount);
+	}
+}
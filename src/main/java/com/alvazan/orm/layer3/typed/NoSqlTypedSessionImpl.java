@@ -8,12 +8,15 @@ import java.util.Set;
 
 import javax.inject.Inject;
 
+import com.alvazan.orm.api.z3api.AggregateResult;
 import com.alvazan.orm.api.z3api.NoSqlTypedSession;
+import com.alvazan.orm.api.z3api.ProgressListener;
 import com.alvazan.orm.api.z3api.QueryResult;
 import com.alvazan.orm.api.z3api.TimeValColumn;
 import com.alvazan.orm.api.z5api.IndexColumnInfo;
 import com.alvazan.orm.api.z5api.IndexPoint;
 import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z5api.PartialAggregate;
 import com.alvazan.orm.api.z5api.QueryParser;
 import com.alvazan.orm.api.z5api.SpiMetaQuery;
 import com.alvazan.orm.api.z5api.SpiQueryAdapter;
@@ -23,12 +26,12 @@ import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.ScanInfo;
 import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
-import com.alvazan.orm.api.z8spi.conv.StandardConverters;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
 import com.alvazan.orm.api.z8spi.iter.Cursor;
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
 import com.alvazan.orm.api.z8spi.iter.IndiceToVirtual;
 import com.alvazan.orm.api.z8spi.iter.IterableWrappingCursor;
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
 import com.alvazan.orm.api.z8spi.meta.DboColumnIdMeta;
 import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
@@ -230,6 +233,8 @@ public class NoSqlTypedSessionImpl implements NoSqlTypedSession {
 	@Override
 	public QueryResult createQueryCursor(String query, int batchSize) {
 		SpiMetaQuery metaQuery = noSqlSessionFactory.parseQueryForAdHoc(query, mgr);
+		if(metaQuery.getAggregates().size() > 0)
+			throw new IllegalArgumentException("The query has COUNT, MIN, MAX or SUM so use aggregate instead.  query="+query);
 		
 		SpiQueryAdapter spiQueryAdapter = metaQuery.createQueryInstanceFromQuery(session); 
 		
@@ -254,89 +259,65 @@ public class NoSqlTypedSessionImpl implements NoSqlTypedSession {
 
 	@Override
 	public int executeQuery(String query) {
-		int batchSize = 250;
-		QueryResult result = createQueryCursor(query, batchSize);
-		Cursor<List<TypedRow>> cursor = result.getAllViewsCursor();
-		return updateBatch(cursor, result);
+		return executeQuery(query, 500, null);
 	}
 
-	private int updateBatch(Cursor<List<TypedRow>> cursor, QueryResult result) {
-		int rowCount = 0;
-		QueryResultImpl impl = (QueryResultImpl) result;
-		SpiMetaQuery metaQuery = impl.getMetaQuery();
-		String queryType = metaQuery.getQueryType();
-		List<TypedColumn> updateList = metaQuery.getUpdateList();
-		if (queryType.equalsIgnoreCase("DELETE")) {
-			while (cursor.next()) {
-				List<TypedRow> joinedRow = cursor.getCurrent();
-				deleteRow(joinedRow);
-				rowCount++;
-			}
-			return rowCount;
-		} else if(queryType.equalsIgnoreCase("UPDATE")) {
-			if (updateList.size() == 0)
-				throw new IllegalArgumentException("UPDATE should have some values to set");
-			else {
-				while (cursor.next()) {
-					List<TypedRow> joinedRow = cursor.getCurrent();
-					updateRow(joinedRow, updateList);
-					rowCount++;
-				}
-				return rowCount;
-			}
-		} else if(queryType.equalsIgnoreCase("DELETECOLUMN")) {
-			while (cursor.next()) {
-				List<TypedRow> joinedRow = cursor.getCurrent();
-				if(deleteColumn(joinedRow, updateList))
-					rowCount++;
-			}
-			return rowCount;
-		}
-		return rowCount;
+	@Override
+	public int executeQuery(String query, int batchSize, ProgressListener listener) {
+		SpiMetaQuery metaQuery = noSqlSessionFactory.parseQueryForAdHoc(query, mgr);
+		if(metaQuery.getAggregates().size() > 0)
+			throw new IllegalArgumentException("The query has COUNT, MIN, MAX or SUM so use aggregate instead.  query="+query);
+		SpiQueryAdapter spiQueryAdapter = metaQuery.createQueryInstanceFromQuery(session);
+		BulkMutator mutator = new BulkMutator(this, metaQuery, batchSize, listener);
+		return mutator.execute(spiQueryAdapter);
 	}
 
-	private void updateRow(List<TypedRow> joinedRow, List<TypedColumn> updateList) {
-		for(TypedRow r: joinedRow) {
-			ViewInfo view = r.getView();
-			DboTableMeta meta = view.getTableMeta();
-			for(TypedColumn c : r.getColumnsAsColl()) {
-				for (TypedColumn columnforUpdate : updateList ) {
-					if (columnforUpdate.getName().equals(c.getName())) {
-						Object value = columnforUpdate.getValue();
-						c.setValue(value);
-					}
-				}
-			}
-			put(meta.getColumnFamily(), r);	
-		}
+	@Override
+	public AggregateResult aggregate(String query, int batchSize) {
+		SpiMetaQuery metaQuery = noSqlSessionFactory.parseQueryForAdHoc(query, mgr);
+		SpiQueryAdapter spiQueryAdapter = metaQuery.createQueryInstanceFromQuery(session);
+		return aggregate(metaQuery, spiQueryAdapter, batchSize);
 	}
 
-	private void deleteRow(List<TypedRow> typeRowList) {
-		for (TypedRow r : typeRowList) {
-			ViewInfo view = r.getView();
-			DboTableMeta meta = view.getTableMeta();
-			remove(meta.getColumnFamily(), r);
+	private AggregateResult aggregate(SpiMetaQuery metaQuery, SpiQueryAdapter spiQueryAdapter, int batchSize) {
+		if(metaQuery.getAggregates().size() == 0)
+			throw new IllegalArgumentException("The select clause has no COUNT, MIN, MAX or SUM.  query="+metaQuery.getQuery());
+		spiQueryAdapter.setBatchSize(batchSize);
+		List<PartialAggregate> aggregates = new ArrayList<PartialAggregate>();
+		for(AggregateInfo info : metaQuery.getAggregates()) {
+			aggregates.add(new PartialAggregate(info));
 		}
+		
+		if(!spiQueryAdapter.aggregateFromIndexes(aggregates)) {
+			//the values are only in the rows so add each row in as it streams by
+			DirectCursor<IndexColumnInfo> iter = spiQueryAdapter.getResultList(new HashSet<ViewInfo>(), null);
+			QueryResult result = new QueryResultImpl(metaQuery, this, iter, batchSize);
+			Cursor<List<TypedRow>> cursor = result.getAllViewsCursor();
+			while(cursor.next()) {
+				List<TypedRow> joinedRow = cursor.getCurrent();
+				for(PartialAggregate agg : aggregates) {
+					agg.add(valueOf(agg.getInfo(), joinedRow));
+				}
+			}
+		}
+		return new AggregateResult(aggregates);
 	}
 
-	private boolean deleteColumn(List<TypedRow> typeRowList, List<TypedColumn> deleteList) {
-		for (TypedRow r : typeRowList) {
-			ViewInfo view = r.getView();
-	        DboTableMeta metaClass = view.getTableMeta();
-	        for(TypedColumn c : r.getColumnsAsColl()) {
-	        	for (TypedColumn columnforDelete : deleteList ) {
-	        		if (columnforDelete.getName().equals(c.getName())) {
-	        			session.removeColumn(metaClass, StandardConverters.convertToBytes(r.getRowKey()), c.getNameRaw());
-	        			return true;
-	        		}
-	        		else if (c.getName().equals(columnforDelete.getName()+"."+StandardConverters.convertToString(columnforDelete.getValue()))) {
-	        			session.removeColumn(metaClass, StandardConverters.convertToBytes(r.getRowKey()), c.getNameRaw());
-	        			return true;
-	        		}
-	            }
-	        }
+	private Object valueOf(AggregateInfo info, List<TypedRow> joinedRow) {
+		DboColumnMeta colMeta = info.getColumn();
+		if(colMeta == null)
+			return null;
+		for(TypedRow row : joinedRow) {
+			if(row == null || !info.getView().equals(row.getView()))
+				continue;
+			else if(colMeta instanceof DboColumnIdMeta)
+				return row.getRowKey();
+			TypedColumn col = row.getColumn(colMeta.getColumnName());
+			if(col == null)
+				return null;
+			return col.getValue();
 		}
-		return false;
+		return null;
 	}
 
 	public int count(String columnFamily, String indexedColName, Object value) {
@@ -348,29 +329,17 @@ public class NoSqlTypedSessionImpl implements NoSqlTypedSession {
 			throw new IllegalArgumentException("Column="+indexedColName+" not found on meta info for column family="+columnFamily);
 		else if(!colMeta.isIndexed())
 			throw new IllegalArgumentException("Column="+indexedColName+" is not an indexed column");
-		String query = "SELECT * FROM " +  columnFamily + " WHERE " + indexedColName + " = ";
-		String valueString = new String();
-		if (value != null) {
-			if (value instanceof String)
-				valueString = "\"" + value.toString() + "\"";
-			else if (value instanceof Integer)
-				valueString = ""+ (((Integer)value).intValue()); 
-			else if (value instanceof Double)
-				valueString = ""+ (((Double)value).doubleValue());
-			else if (value instanceof Long)
-				valueString = ""+ (((Long)value).longValue());
-			else if (value instanceof Float)
-				valueString = ""+ (((Float)value).floatValue());
-		}
-		else 
-			valueString = null;
-		int batchSize = 250;
-		QueryResult result = createQueryCursor(query+valueString,batchSize);
-		Cursor<IndexColumnInfo> cursor = result.getCursor();
-		int rowCount = 0;
-		while(cursor.next())
-			rowCount++;
-		return rowCount;
+		String query = "SELECT COUNT(*) FROM " +  columnFamily + " WHERE " + indexedColName + " = :value";
+		SpiMetaQuery metaQuery = noSqlSessionFactory.parseQueryForAdHoc(query, mgr);
+		SpiQueryAdapter spiQueryAdapter = metaQuery.createQueryInstanceFromQuery(session);
+		//the typed schema stores BigInteger, BigDecimal, String, etc. so an int or a float goes through its string
+		Object typedValue = null;
+		if(value != null)
+			typedValue = colMeta.convertStringToType(value.toString());
+		spiQueryAdapter.setParameter("value", colMeta.convertToStorage2(typedValue));
+		AggregateResult result = aggregate(metaQuery, spiQueryAdapter, 250);
+		Long count = (Long) result.getValue(0);
+		return count.intValue();
 	}
 
 	@Override
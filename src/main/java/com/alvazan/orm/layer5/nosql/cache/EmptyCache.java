@@ -26,6 +26,13 @@ public class EmptyCache implements Cache {
 		return realCache.fromCache(colFamily, key);
 	}
 
+	@Override
+	public RowHolder<Row> fromSessionCache(DboTableMeta colFamily, byte[] key) {
+		if(skipCache)
+			return null;
+		return realCache.fromSessionCache(colFamily, key);
+	}
+
 	//For queries we want to cache every row still....we just get all values from database
 	@Override
 	public void cacheRow(DboTableMeta colFamily, byte[] b, Row value) {
@@ -0,0 +1,263 @@
+package com.alvazan.orm.layer5.nosql.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.z8spi.CoalesceStats;
+import com.alvazan.orm.api.z8spi.WriteCoalescer;
+import com.alvazan.orm.api.z8spi.action.Action;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.action.Persist;
+import com.alvazan.orm.api.z8spi.action.Remove;
+import com.alvazan.orm.api.z8spi.action.RemoveColumn;
+import com.alvazan.orm.api.z8spi.action.RemoveEnum;
+import com.alvazan.orm.api.z8spi.action.RemoveIndex;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+
+/**
+ * Shrinks the actions of one flush before they are sent to the database
+ * <ul>
+ *   <li>all Persists of one row following each other become one Persist where later columns win</li>
+ *   <li>removing columns drops them from the Persist for that row that came before</li>
+ *   <li>removing a whole row drops everything written to that row before the remove</li>
+ *   <li>only the last write of an index entry is sent.  An entry added and then removed still
+ *   sends the remove since the entry may have been in the database already(ie. a detached entity
+ *   put again) and removing an entry that is not there is harmless</li>
+ * </ul>
+ * Actions of different rows and index entries stay in the order they first showed up.
+ */
+public class MutationCoalescer implements WriteCoalescer {
+
+	private static final Logger log = LoggerFactory.getLogger(MutationCoalescer.class);
+
+	private boolean enabled = true;
+	private CoalesceStats stats = new CoalesceStats();
+
+	@Override
+	public void start(Map<String, Object> properties) {
+		Object val = properties.get(Bootstrap.COALESCE_WRITES);
+		if(val == null)
+			return;
+		else if(val instanceof Boolean)
+			enabled = (Boolean) val;
+		else if(val instanceof String)
+			enabled = Boolean.parseBoolean((String) val);
+		else
+			throw new IllegalArgumentException(Bootstrap.COALESCE_WRITES+" key in map has a value of type="+val.getClass()+" but that must be a String or a Boolean");
+	}
+
+	@Override
+	public CoalesceStats getStats() {
+		return stats;
+	}
+
+	@Override
+	public List<Action> coalesce(List<Action> actions) {
+		if(!enabled) {
+			stats.recordFlush(actions.size(), actions.size());
+			return actions;
+		}
+
+		//every slot is a RowActions, an IndexEntry or an action we don't know how to merge
+		List<Object> slots = new ArrayList<Object>();
+		Map<RowId, RowActions> rows = new HashMap<RowId, RowActions>();
+		Map<IndexId, IndexEntry> indexes = new HashMap<IndexId, IndexEntry>();
+
+		for(Action action : actions) {
+			if(action instanceof RemoveIndex) {
+				//NOTE: PersistIndex extends RemoveIndex so this covers both
+				RemoveIndex ind = (RemoveIndex) action;
+				IndexId id = new IndexId(ind);
+				IndexEntry entry = indexes.get(id);
+				if(entry == null) {
+					entry = new IndexEntry();
+					indexes.put(id, entry);
+					slots.add(entry);
+				}
+				entry.last = ind;
+			} else if(action instanceof Persist || action instanceof Remove || action instanceof RemoveColumn) {
+				RowId id = new RowId(action.getColFamily().getColumnFamily(), rowKeyOf(action));
+				RowActions row = rows.get(id);
+				if(row == null) {
+					row = new RowActions();
+					rows.put(id, row);
+					slots.add(row);
+				}
+				row.add(action);
+			} else {
+				slots.add(action);
+			}
+		}
+
+		List<Action> result = new ArrayList<Action>();
+		for(Object slot : slots) {
+			if(slot instanceof RowActions)
+				result.addAll(((RowActions) slot).actions);
+			else if(slot instanceof IndexEntry)
+				result.add(((IndexEntry) slot).last);
+			else
+				result.add((Action) slot);
+		}
+
+		stats.recordFlush(actions.size(), result.size());
+		if (log.isDebugEnabled())
+			log.debug("coalesced "+actions.size()+" actions into "+result.size());
+		return result;
+	}
+
+	private static byte[] rowKeyOf(Action action) {
+		if(action instanceof Persist)
+			return ((Persist) action).getRowKey();
+		else if(action instanceof Remove)
+			return ((Remove) action).getRowKey();
+		return ((RemoveColumn) action).getRowKey();
+	}
+
+	private static class RowActions {
+		private List<Action> actions = new ArrayList<Action>();
+
+		private void add(Action action) {
+			Action last = null;
+			if(actions.size() > 0)
+				last = actions.get(actions.size()-1);
+
+			if(action instanceof Persist) {
+				if(last instanceof Persist)
+					actions.set(actions.size()-1, merge((Persist) last, (Persist) action));
+				else
+					actions.add(action);
+			} else if(action instanceof Remove && ((Remove) action).getAction() == RemoveEnum.REMOVE_ENTIRE_ROW) {
+				actions.clear();
+				actions.add(action);
+			} else if(!isRowRemove(last)) {
+				//if the row is removed already, the columns are gone too
+				removeColumns(last, action);
+			}
+		}
+
+		private void removeColumns(Action last, Action action) {
+			Collection<byte[]> names;
+			if(action instanceof Remove)
+				names = ((Remove) action).getColumns();
+			else
+				names = Collections.singletonList(((RemoveColumn) action).getColumn());
+			if(last instanceof Persist) {
+				actions.remove(actions.size()-1);
+				Persist remaining = without((Persist) last, names);
+				if(remaining != null)
+					actions.add(remaining);
+			}
+			actions.add(action);
+		}
+
+		private boolean isRowRemove(Action action) {
+			return action instanceof Remove && ((Remove) action).getAction() == RemoveEnum.REMOVE_ENTIRE_ROW;
+		}
+
+		private Persist merge(Persist first, Persist second) {
+			Map<ByteArray, Column> columns = new LinkedHashMap<ByteArray, Column>();
+			for(Column c : first.getColumns()) {
+				columns.put(new ByteArray(c.getName()), c);
+			}
+			for(Column c : second.getColumns()) {
+				columns.put(new ByteArray(c.getName()), c);
+			}
+			return copy(second, new ArrayList<Column>(columns.values()));
+		}
+
+		private Persist without(Persist persist, Collection<byte[]> names) {
+			Set<ByteArray> toRemove = new HashSet<ByteArray>();
+			for(byte[] name : names) {
+				toRemove.add(new ByteArray(name));
+			}
+			List<Column> columns = new ArrayList<Column>();
+			for(Column c : persist.getColumns()) {
+				if(!toRemove.contains(new ByteArray(c.getName())))
+					columns.add(c);
+			}
+			if(columns.size() == 0)
+				return null;
+			return copy(persist, columns);
+		}
+
+		private Persist copy(Persist persist, List<Column> columns) {
+			Persist p = new Persist();
+			p.setColFamily(persist.getColFamily());
+			p.setRowKey(persist.getRowKey());
+			p.setTimestamp(persist.getTimestamp());
+			p.setColumns(columns);
+			return p;
+		}
+	}
+
+	private static class IndexEntry {
+		private RemoveIndex last;
+	}
+
+	private static final class RowId {
+		private final String cf;
+		private final ByteArray key;
+
+		RowId(String cf, byte[] key) {
+			this.cf = cf;
+			this.key = new ByteArray(key);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * cf.hashCode() + key.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof RowId))
+				return false;
+			RowId other = (RowId) obj;
+			return cf.equals(other.cf) && key.equals(other.key);
+		}
+	}
+
+	private static final class IndexId {
+		private final String indexCf;
+		private final ByteArray rowKey;
+		private final ByteArray indexedValue;
+		private final ByteArray pk;
+
+		IndexId(RemoveIndex ind) {
+			IndexColumn col = ind.getColumn();
+			this.indexCf = ind.getIndexCfName();
+			this.rowKey = new ByteArray(ind.getRowKey());
+			this.indexedValue = new ByteArray(col.getIndexedValue());
+			this.pk = new ByteArray(col.getPrimaryKey());
+		}
+
+		@Override
+		public int hashCode() {
+			int h = indexCf.hashCode();
+			h = 31 * h + rowKey.hashCode();
+			h = 31 * h + indexedValue.hashCode();
+			return 31 * h + pk.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof IndexId))
+				return false;
+			IndexId other = (IndexId) obj;
+			return indexCf.equals(other.indexCf) && rowKey.equals(other.rowKey)
+					&& indexedValue.equals(other.indexedValue) && pk.equals(other.pk);
+		}
+	}
+}
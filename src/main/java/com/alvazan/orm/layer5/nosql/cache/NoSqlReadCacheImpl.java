@@ -22,6 +22,7 @@ import com.alvazan.orm.api.z8spi.NoSqlRawSession;
 import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.RowHolder;
 import com.alvazan.orm.api.z8spi.ScanInfo;
+import com.alvazan.orm.api.z8spi.SecondLevelCache;
 import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
 import com.alvazan.orm.api.z8spi.conv.ByteArray;
@@ -29,7 +30,7 @@ import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
 
-public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
+public class NoSqlReadCacheImpl implements NoSqlSession {
 
 	private static final Logger log = LoggerFactory.getLogger(NoSqlReadCacheImpl.class);
 	
@@ -38,6 +39,8 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 	private Map<TheKey, RowHolder<Row>> cache = new HashMap<TheKey, RowHolder<Row>>();
 	@Inject
 	private Provider<Row> rowProvider;
+	@Inject
+	private SecondLevelCache secondLevelCache;
 	
 	@Override
 	public void put(DboTableMeta colFamily, byte[] rowKey, List<Column> columns) {
@@ -53,7 +56,7 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 		
 		value.setKey(rowKey);
 		value.addColumns(columns);
-		cacheRow(colFamily, rowKey, value);
+		cacheLocal(colFamily, rowKey, value);
 	}
 
 	@Override
@@ -70,7 +73,7 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 	@Override
 	public void remove(DboTableMeta colFamily, byte[] rowKey) {
 		session.remove(colFamily, rowKey);
-		cacheRow(colFamily, rowKey, null);
+		cacheLocal(colFamily, rowKey, null);
 	}
 
 	@Override
@@ -94,15 +97,16 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 		if(result != null)
 			return result.getValue(); //This may return the cached null value!!
 		
+		long fillStamp = secondLevelCache.startFill();
 		Row row = session.find(colFamily, rowKey);
-		cacheRow(colFamily, rowKey, row);
+		cacheRow(colFamily, rowKey, row, fillStamp);
 		return row;
 	}
 	
 	@Override
 	public AbstractCursor<KeyValue<Row>> find(DboTableMeta colFamily,
 			DirectCursor<byte[]> rowKeys, boolean skipCache, boolean cacheResults, Integer batchSize) {
-		Cache c = new EmptyCache(this, skipCache, cacheResults);
+		Cache c = new EmptyCache(new FillCache(secondLevelCache.startFill()), skipCache, cacheResults);
 		
 		//NOTE: I would put a finally to clear out the threadlocal normally BUT sometimes log statements may
 		//cause further finds to be called which come in here as well and on their way BACK up the stack, they set
@@ -119,12 +123,30 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 			throw new IllegalArgumentException("CF="+colFamily+" key is null and shouldn't be....(this should be trapped in higher level exception telling us which index is corrupt");
 		TheKey k = new TheKey(colFamily.getColumnFamily(), key);
 		RowHolder<Row> holder = cache.get(k);
-		if(holder != null && log.isInfoEnabled())
-			log.info("cache hit(need to optimize this even further)");
+		if(holder != null) {
+			if(log.isInfoEnabled())
+				log.info("cache hit(need to optimize this even further)");
+			return holder;
+		}
+
+		//The second level cache hands us our own copy of the row so we can keep it in this
+		//manager's cache and modify it on put() without other managers seeing that
+		holder = secondLevelCache.fromCache(colFamily, key);
+		if(holder != null)
+			cache.put(k, holder);
 		return holder;
 	}
 
-	public void cacheRow(DboTableMeta colFamily, byte[] key, Row r) {
+	/**
+	 * Rows coming in here were read from the database so they are shared with other managers
+	 * through the second level cache as well
+	 */
+	private void cacheRow(DboTableMeta colFamily, byte[] key, Row r, long fillStamp) {
+		cacheLocal(colFamily, key, r);
+		secondLevelCache.cacheRow(colFamily, key, r, fillStamp);
+	}
+
+	private void cacheLocal(DboTableMeta colFamily, byte[] key, Row r) {
 		//NOTE: We cache null rows as on a user.getYYYEntites(), the loaded entities may be null though the user
 		//get a List<YYYEntity> and all are there but he can check if they are really there with
 		//mgr.checkRowExists(entity) and that will just hit the cache
@@ -133,6 +155,32 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 		cache.put(k, holder);
 	}
 
+	/**
+	 * The cache the cursor of one find fills, stamped with when the find started
+	 */
+	private class FillCache implements Cache {
+		private long fillStamp;
+
+		public FillCache(long fillStamp) {
+			this.fillStamp = fillStamp;
+		}
+
+		@Override
+		public RowHolder<Row> fromCache(DboTableMeta colFamily, byte[] key) {
+			return NoSqlReadCacheImpl.this.fromCache(colFamily, key);
+		}
+
+		@Override
+		public RowHolder<Row> fromSessionCache(DboTableMeta colFamily, byte[] key) {
+			return cache.get(new TheKey(colFamily.getColumnFamily(), key));
+		}
+
+		@Override
+		public void cacheRow(DboTableMeta colFamily, byte[] key, Row value) {
+			NoSqlReadCacheImpl.this.cacheRow(colFamily, key, value, fillStamp);
+		}
+	}
+
 	static final class TheKey {
 		private final String colFamily;
 		private final ByteArray key;
@@ -158,6 +206,10 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
             return hash;
         }
 
+		String getColFamily() {
+			return colFamily;
+		}
+
 		@Override
 		public boolean equals(Object obj) {
 			if (this == obj)
@@ -201,6 +253,7 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 	@Override
 	public void clearDb() {
 		session.clearDb();
+		secondLevelCache.clear();
 	}
 
 	@Override
@@ -232,7 +285,7 @@ public class NoSqlReadCacheImpl implements NoSqlSession, Cache {
 	public void removeColumn(DboTableMeta colFamily, byte[] rowKey,
 			byte[] columnName) {
 		session.removeColumn(colFamily, rowKey, columnName);
-		cacheRow(colFamily, rowKey, null);
+		cacheLocal(colFamily, rowKey, null);
 	}
 
 	@Override
@@ -3,10 +3,16 @@ package com.alvazan.orm.layer5.nosql.cache;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.alvazan.orm.api.z5api.NoSqlSession;
 import com.alvazan.orm.api.z8spi.ColumnSliceInfo;
 import com.alvazan.orm.api.z8spi.Key;
@@ -15,6 +21,8 @@ import com.alvazan.orm.api.z8spi.MetaLookup;
 import com.alvazan.orm.api.z8spi.NoSqlRawSession;
 import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.ScanInfo;
+import com.alvazan.orm.api.z8spi.SecondLevelCache;
+import com.alvazan.orm.api.z8spi.WriteCoalescer;
 import com.alvazan.orm.api.z8spi.action.Action;
 import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
@@ -29,14 +37,31 @@ import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
 import com.alvazan.orm.api.z8spi.iter.IterableWrappingCursor;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
+import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
 
 public class NoSqlWriteCacheImpl implements NoSqlSession {
 
+	private static final Logger log = LoggerFactory.getLogger(NoSqlWriteCacheImpl.class);
+
 	@Inject
 	@Named("logger")
 	private NoSqlRawSession rawSession;
+	@Inject
+	private SecondLevelCache secondLevelCache;
+	@Inject
+	private WriteBehindConfig writeBehind;
+	@Inject
+	private WriteCoalescer coalescer;
+	@Inject
+	private DboDatabaseMeta databaseInfo;
 	private List<Action> actions = new ArrayList<Action>();
+	private long actionBytes;
+	private boolean holdsMetaChanges;
+	private Future<?> lastBackgroundFlush;
+	private Semaphore pendingBatches;
+	private volatile Throwable backgroundFailure;
 	private MetaLookup ormSession;
 	private List<byte[]> newTables = new ArrayList<byte[]>();
 	
@@ -49,7 +74,11 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
 		persist.setColFamily(colFamily);
 		persist.setRowKey(rowKey);
 		persist.setColumns(columns);
-		actions.add(persist);
+		long bytes = rowKey.length;
+		for(Column c : columns) {
+			bytes += sizeOf(c.getName()) + sizeOf(c.getValue());
+		}
+		add(persist, bytes);
 	}
 
 	@Override
@@ -58,7 +87,7 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
 		remove.setAction(RemoveEnum.REMOVE_ENTIRE_ROW);
 		remove.setColFamily(colFamily);
 		remove.setRowKey(rowKey);
-		actions.add(remove);			
+		add(remove, rowKey.length);
 	}
 	
 	@Override
@@ -68,7 +97,11 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
 		remove.setColFamily(colFamily);
 		remove.setRowKey(rowKey);
 		remove.setColumns(columnNames);
-		actions.add(remove);		
+		long bytes = rowKey.length;
+		for(byte[] name : columnNames) {
+			bytes += sizeOf(name);
+		}
+		add(remove, bytes);
 	}
 
 	@Override
@@ -81,7 +114,7 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
 		Integer ttl = column.getTtl();
 		if (ttl != null)
 			persist.setRowTtl(ttl);
-		actions.add(persist);
+		add(persist, rowKey.length + sizeOf(column));
 	}
 
 	@Override
@@ -90,7 +123,7 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
      	removeColumn.setColFamily(colFamily);
      	removeColumn.setRowKey(rowKey);
      	removeColumn.setColumn(columnName);
-		actions.add(removeColumn);
+		add(removeColumn, rowKey.length + sizeOf(columnName));
 	}
 
 	@Override
@@ -101,7 +134,116 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
 		remove.setIndexCfName(indexColFamily);
 		remove.setRowKey(rowKeyBytes);
 		remove.setColumn(c);
-		actions.add(remove);
+		add(remove, rowKeyBytes.length + sizeOf(c));
+	}
+
+	private void add(Action action, long bytes) {
+		actions.add(action);
+		actionBytes += bytes;
+		if(isMeta(action.getColFamily()))
+			holdsMetaChanges = true;
+		//tables are created from the meta data in the same flush so never split schema changes
+		if(!holdsMetaChanges && writeBehind.isFull(actions.size(), actionBytes))
+			autoFlush();
+	}
+
+	private static boolean isMeta(DboTableMeta cf) {
+		String name = cf.getColumnFamily();
+		return DboTableMeta.class.getSimpleName().equals(name)
+				|| DboColumnMeta.class.getSimpleName().equals(name)
+				|| DboDatabaseMeta.class.getSimpleName().equals(name);
+	}
+
+	private static long sizeOf(byte[] data) {
+		if(data == null)
+			return 0;
+		return data.length;
+	}
+
+	private static long sizeOf(IndexColumn c) {
+		return sizeOf(c.getIndexedValue()) + sizeOf(c.getPrimaryKey()) + sizeOf(c.getValue());
+	}
+
+	/**
+	 * Write behind hit its limit so send what we have.  The NoSqlReadCacheImpl above us still
+	 * has every row we wrote so reads in this session see our writes either way
+	 */
+	private void autoFlush() {
+		checkBackgroundFailure();
+		final List<Action> toSend = actions;
+		actions = new ArrayList<Action>();
+		actionBytes = 0;
+		holdsMetaChanges = false;
+
+		if(writeBehind.getExecutor() == null) {
+			send(toSend, ormSession);
+			return;
+		}
+
+		if(pendingBatches == null)
+			pendingBatches = new Semaphore(writeBehind.getMaxPendingBatches());
+		//backpressure, we block here if the database can't keep up with us
+		pendingBatches.acquireUninterruptibly();
+		final Future<?> previous = lastBackgroundFlush;
+		final Semaphore permits = pendingBatches;
+		final MetaLookup lookup = new ResolvedMetaLookup(toSend, databaseInfo, ormSession);
+		lastBackgroundFlush = writeBehind.getExecutor().submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					//batches must hit the database in the order they were written
+					waitFor(previous);
+					if(backgroundFailure == null)
+						send(toSend, lookup);
+				} catch(Throwable e) {
+					if(backgroundFailure == null) {
+						backgroundFailure = e;
+						writeBehind.backgroundFlushFailed(e);
+					}
+					log.warn("Exception flushing in background, next call to flush will throw it", e);
+				} finally {
+					permits.release();
+				}
+			}
+		});
+	}
+
+	private void waitForBackgroundFlushes() {
+		Future<?> last = lastBackgroundFlush;
+		lastBackgroundFlush = null;
+		//each flush waits on the one before it so waiting on the last waits for all of them
+		waitFor(last);
+		checkBackgroundFailure();
+	}
+
+	private void checkBackgroundFailure() {
+		Throwable e = backgroundFailure;
+		if(e == null)
+			return;
+		backgroundFailure = null;
+		writeBehind.failureReported(e);
+		throw new RuntimeException("A background flush failed so some writes before this point may not be in the database", e);
+	}
+
+	private static void waitFor(Future<?> future) {
+		if(future == null)
+			return;
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void send(List<Action> toSend, MetaLookup lookup) {
+		try {
+			rawSession.sendChanges(coalescer.coalesce(toSend), lookup);
+		} finally {
+			//even on failure, some of the rows may have been written so drop them all
+			invalidateSecondLevel(toSend);
+		}
 	}
 
 	@Override
@@ -138,8 +280,12 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
 	public void flush() {
 		//if(log.isDebugEnabled())
 		//	logInformation();
-		rawSession.sendChanges(actions, ormSession);
+		waitForBackgroundFlushes();
+		List<Action> toSend = actions;
 		actions = new ArrayList<Action>();
+		actionBytes = 0;
+		holdsMetaChanges = false;
+		send(toSend, ormSession);
 		
 		//special case here...if any persists were of the DboTableMeta, we should create table now
 		for(byte[] key : newTables) {
@@ -149,6 +295,23 @@ public class NoSqlWriteCacheImpl implements NoSqlSession {
 		newTables.clear();
 	}
 
+	private void invalidateSecondLevel(List<Action> sent) {
+		if(!secondLevelCache.isEnabled())
+			return;
+		for(Action action : sent) {
+			if(action instanceof Persist || action instanceof Remove || action instanceof RemoveColumn)
+				secondLevelCache.invalidate(action.getColFamily(), rowKeyOf(action));
+		}
+	}
+
+	private byte[] rowKeyOf(Action action) {
+		if(action instanceof Persist)
+			return ((Persist) action).getRowKey();
+		else if(action instanceof Remove)
+			return ((Remove) action).getRowKey();
+		return ((RemoveColumn) action).getRowKey();
+	}
+
 //	private void insertTime(Action action, long time) {
 //		if(action instanceof Persist) {
 //			((Persist)action).setTimestamp(time);
@@ -0,0 +1,49 @@
+package com.alvazan.orm.layer5.nosql.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alvazan.orm.api.z8spi.MetaLookup;
+import com.alvazan.orm.api.z8spi.action.Action;
+import com.alvazan.orm.api.z8spi.action.RemoveIndex;
+import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+
+/**
+ * The meta lookups a background flush may need, resolved up front on the thread that owns the
+ * entity manager.  The entity manager's caches are not thread safe so the flush thread must never
+ * call into it.
+ */
+public class ResolvedMetaLookup implements MetaLookup {
+
+	private Map<String, DboTableMeta> tables = new HashMap<String, DboTableMeta>();
+
+	public ResolvedMetaLookup(List<Action> actions, DboDatabaseMeta databaseInfo, MetaLookup ormSession) {
+		for(Action action : actions) {
+			DboTableMeta cf = action.getColFamily();
+			if(cf != null)
+				tables.put(cf.getColumnFamily(), cf);
+			if(action instanceof RemoveIndex) {
+				String indexCf = ((RemoveIndex) action).getIndexCfName();
+				if(!tables.containsKey(indexCf))
+					tables.put(indexCf, resolve(indexCf, databaseInfo, ormSession));
+			}
+		}
+	}
+
+	private static DboTableMeta resolve(String cf, DboDatabaseMeta databaseInfo, MetaLookup ormSession) {
+		DboTableMeta meta = databaseInfo.getMeta(cf);
+		if(meta != null)
+			return meta;
+		return ormSession.find(DboTableMeta.class, cf);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> T find(Class<T> type, Object colFamily) {
+		if(type != DboTableMeta.class || !tables.containsKey(colFamily))
+			throw new IllegalStateException("background flush needed "+type.getSimpleName()+"="+colFamily+" which was not resolved before handing the flush off");
+		return (T) tables.get(colFamily);
+	}
+}
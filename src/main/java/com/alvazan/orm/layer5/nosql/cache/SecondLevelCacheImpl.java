@@ -0,0 +1,215 @@
+package com.alvazan.orm.layer5.nosql.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.z8spi.CacheStats;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.RowHolder;
+import com.alvazan.orm.api.z8spi.SecondLevelCache;
+import com.alvazan.orm.api.z8spi.SpiConstants;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.layer5.nosql.cache.NoSqlReadCacheImpl.TheKey;
+
+/**
+ * Bounded LRU cache of rows shared across all entity managers of a factory.  The rows are split
+ * over a fixed number of segments each guarded by its own lock so threads reading different
+ * rows rarely contend.  Every segment is an access ordered LinkedHashMap that evicts its least
+ * recently used row once it holds more than its share of the maximum size.  Rows are copied
+ * on the way in and on the way out since the per-manager cache modifies the rows it holds.
+ * 
+ * A reader can load a row, lose the race to a writer that flushes and invalidates it, and only then
+ * try to cache what it read.  Each segment remembers when keys were last invalidated, striped by
+ * hash, and a fill whose read started before that is dropped.
+ */
+public class SecondLevelCacheImpl implements SecondLevelCache {
+
+	private static final Logger log = LoggerFactory.getLogger(SecondLevelCacheImpl.class);
+	private static final int NUM_SEGMENTS = 16;
+	private static final int STRIPES_PER_SEGMENT = 256;
+
+	private Segment[] segments;
+	private long ttlMillis;
+	private volatile boolean enabled;
+	//bumped by every invalidate and clear, fills compare against it
+	private final AtomicLong clock = new AtomicLong();
+	private volatile long clearedAt;
+	private final ConcurrentMap<String, CacheStats> stats = new ConcurrentHashMap<String, CacheStats>();
+
+	@Override
+	public void start(Map<String, Object> properties) {
+		long maxRows = SpiConstants.readLong(properties, Bootstrap.SECOND_LEVEL_CACHE_SIZE, 0);
+		ttlMillis = SpiConstants.readLong(properties, Bootstrap.SECOND_LEVEL_CACHE_TTL_MILLIS, 0);
+		if(maxRows <= 0) {
+			enabled = false;
+			return;
+		} else if(maxRows > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(Bootstrap.SECOND_LEVEL_CACHE_SIZE+" is too large="+maxRows);
+
+		int perSegment = (int) Math.max(1, maxRows / NUM_SEGMENTS);
+		segments = new Segment[NUM_SEGMENTS];
+		for(int i = 0; i < NUM_SEGMENTS; i++) {
+			segments[i] = new Segment(perSegment, this);
+		}
+		enabled = true;
+		if (log.isInfoEnabled())
+			log.info("second level cache enabled, maxRows="+maxRows+" ttlMillis="+ttlMillis);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public RowHolder<Row> fromCache(DboTableMeta colFamily, byte[] key) {
+		if(!enabled)
+			return null;
+		String cf = colFamily.getColumnFamily();
+		TheKey k = new TheKey(cf, key);
+		Segment segment = segmentFor(k);
+		Entry entry;
+		synchronized(segment) {
+			entry = segment.get(k);
+			if(entry != null && entry.isExpired(System.currentTimeMillis())) {
+				segment.remove(k);
+				entry = null;
+			}
+		}
+
+		CacheStats s = statsFor(cf);
+		if(entry == null) {
+			s.recordMiss();
+			return null;
+		}
+		s.recordHit();
+		return new RowHolder<Row>(key, entry.row.deepCopy());
+	}
+
+	@Override
+	public long startFill() {
+		return clock.get();
+	}
+
+	/**
+	 * Only rows read from the database should come in here, never rows with unflushed changes
+	 */
+	@Override
+	public void cacheRow(DboTableMeta colFamily, byte[] key, Row value, long fillStamp) {
+		//we don't cache rows that don't exist as another server may create them and we have no
+		//way of hearing about it
+		if(!enabled || value == null || fillStamp < clearedAt)
+			return;
+		TheKey k = new TheKey(colFamily.getColumnFamily(), key);
+		long expireAt = 0;
+		if(ttlMillis > 0)
+			expireAt = System.currentTimeMillis() + ttlMillis;
+		Entry entry = new Entry(value.deepCopy(), expireAt);
+		Segment segment = segmentFor(k);
+		synchronized(segment) {
+			if(segment.invalidatedAt[stripeFor(k)] > fillStamp)
+				return;
+			segment.put(k, entry);
+		}
+	}
+
+	@Override
+	public void invalidate(DboTableMeta colFamily, byte[] rowKey) {
+		if(!enabled)
+			return;
+		String cf = colFamily.getColumnFamily();
+		TheKey k = new TheKey(cf, rowKey);
+		Segment segment = segmentFor(k);
+		Entry removed;
+		synchronized(segment) {
+			segment.invalidatedAt[stripeFor(k)] = clock.incrementAndGet();
+			removed = segment.remove(k);
+		}
+		if(removed != null)
+			statsFor(cf).recordInvalidation();
+	}
+
+	@Override
+	public void clear() {
+		if(!enabled)
+			return;
+		clearedAt = clock.incrementAndGet();
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	@Override
+	public Map<String, CacheStats> getStats() {
+		return Collections.unmodifiableMap(stats);
+	}
+
+	private Segment segmentFor(TheKey k) {
+		int h = k.hashCode();
+		h ^= (h >>> 16);
+		return segments[h & (NUM_SEGMENTS-1)];
+	}
+
+	private int stripeFor(TheKey k) {
+		int h = k.hashCode();
+		h ^= (h >>> 16);
+		return (h >>> 4) & (STRIPES_PER_SEGMENT-1);
+	}
+
+	private CacheStats statsFor(String cf) {
+		CacheStats s = stats.get(cf);
+		if(s != null)
+			return s;
+		CacheStats newStats = new CacheStats(cf);
+		CacheStats existing = stats.putIfAbsent(cf, newStats);
+		if(existing != null)
+			return existing;
+		return newStats;
+	}
+
+	private static final class Entry {
+		private final Row row;
+		private final long expireAt;
+
+		Entry(Row row, long expireAt) {
+			this.row = row;
+			this.expireAt = expireAt;
+		}
+
+		boolean isExpired(long now) {
+			return expireAt > 0 && now >= expireAt;
+		}
+	}
+
+	private static final class Segment extends LinkedHashMap<TheKey, Entry> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+		private final transient SecondLevelCacheImpl owner;
+		//clock value of the last invalidate of the keys of each stripe
+		private final long[] invalidatedAt = new long[STRIPES_PER_SEGMENT];
+
+		Segment(int maxSize, SecondLevelCacheImpl owner) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.owner = owner;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<TheKey, Entry> eldest) {
+			if(size() <= maxSize)
+				return false;
+			owner.statsFor(eldest.getKey().getColFamily()).recordEviction();
+			return true;
+		}
+	}
+}
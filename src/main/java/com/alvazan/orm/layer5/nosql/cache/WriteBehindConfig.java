@@ -0,0 +1,129 @@
+package com.alvazan.orm.layer5.nosql.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.z8spi.SpiConstants;
+import com.alvazan.orm.api.z8spi.WriteBehind;
+
+/**
+ * Write behind settings shared by all entity managers of one factory plus the thread pool that
+ * background flushes run on.  Write behind is off unless a max number of actions or max bytes
+ * is configured.
+ */
+public class WriteBehindConfig implements WriteBehind {
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindConfig.class);
+
+	private int maxActions = Integer.MAX_VALUE;
+	private long maxBytes = Long.MAX_VALUE;
+	private int maxPendingBatches = 2;
+	private boolean enabled;
+	private ExecutorService executor;
+	//background flush failures no entity manager has thrown yet
+	private Set<Throwable> unreported = Collections.newSetFromMap(new ConcurrentHashMap<Throwable, Boolean>());
+
+	public void start(Map<String, Object> properties) {
+		long actions = SpiConstants.readLong(properties, Bootstrap.WRITE_BEHIND_MAX_ACTIONS, 0);
+		long bytes = SpiConstants.readLong(properties, Bootstrap.WRITE_BEHIND_MAX_BYTES, 0);
+		if(actions < 0 || actions > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(Bootstrap.WRITE_BEHIND_MAX_ACTIONS+" is out of range="+actions);
+		if(actions > 0)
+			maxActions = (int) actions;
+		if(bytes > 0)
+			maxBytes = bytes;
+		enabled = actions > 0 || bytes > 0;
+		if(!enabled)
+			return;
+
+		int threads = (int) SpiConstants.readLong(properties, Bootstrap.WRITE_BEHIND_THREADS, 0);
+		maxPendingBatches = (int) SpiConstants.readLong(properties, Bootstrap.WRITE_BEHIND_MAX_PENDING_BATCHES, maxPendingBatches);
+		if(maxPendingBatches < 1)
+			throw new IllegalArgumentException(Bootstrap.WRITE_BEHIND_MAX_PENDING_BATCHES+" must be 1 or greater");
+		if(threads > 0) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory());
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+
+		if (log.isInfoEnabled())
+			log.info("write behind enabled, maxActions="+actions+" maxBytes="+bytes+" threads="+threads+" maxPendingBatches="+maxPendingBatches);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean isFull(int numActions, long numBytes) {
+		return enabled && (numActions >= maxActions || numBytes >= maxBytes);
+	}
+
+	/**
+	 * @return the pool for background flushes or null if flushes happen on the writing thread
+	 */
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	public int getMaxPendingBatches() {
+		return maxPendingBatches;
+	}
+
+	public void backgroundFlushFailed(Throwable e) {
+		unreported.add(e);
+	}
+
+	public void failureReported(Throwable e) {
+		unreported.remove(e);
+	}
+
+	@Override
+	public void close() {
+		if(executor == null)
+			return;
+		executor.shutdown();
+		try {
+			while(!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				if (log.isInfoEnabled())
+					log.info("waiting for write behind flushes to finish before closing");
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+
+		if(unreported.isEmpty())
+			return;
+		Throwable first = null;
+		for(Throwable e : unreported) {
+			if(first == null)
+				first = e;
+			else
+				log.warn("Another background flush failed before close", e);
+		}
+		unreported.clear();
+		throw new RuntimeException("A background flush failed before close so some writes may not be in the database", first);
+	}
+
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private AtomicInteger count = new AtomicInteger();
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "playorm-writebehind-"+count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
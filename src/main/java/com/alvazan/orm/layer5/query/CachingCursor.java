@@ -23,12 +23,25 @@ public class CachingCursor<T> implements DirectCursor<IndexColumnInfo> {
 	private List<IndexColumnInfo> cached = new ArrayList<IndexColumnInfo>();
 	private ListIterator<IndexColumnInfo> cachedIter;
 	private boolean cacheEnabled = false;
+	private boolean orderedByPrimaryKey = false;
 	
 	public CachingCursor(DirectCursor<IndexColumnInfo> cursor) {
 		Precondition.check(cursor, "cursor");
 		this.cursor = cursor;
 	}
 
+	/**
+	 * true if the cursor below us returns rows sorted by primary key like an index scan for a
+	 * single value does
+	 */
+	public boolean isOrderedByPrimaryKey() {
+		return orderedByPrimaryKey;
+	}
+
+	public void setOrderedByPrimaryKey(boolean orderedByPrimaryKey) {
+		this.orderedByPrimaryKey = orderedByPrimaryKey;
+	}
+
 	@Override
 	public String toString() {
 		String tabs = StringLocal.getAndAdd();
@@ -0,0 +1,109 @@
+package com.alvazan.orm.layer5.query;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z5api.IndexColumnInfo.Wrapper;
+import com.alvazan.orm.api.z5api.PageToken;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.DirectCursor;
+import com.alvazan.orm.api.z8spi.iter.StringLocal;
+import com.alvazan.orm.api.z8spi.meta.ViewInfo;
+
+/**
+ * Skips the keys up to and including the entry a PageToken points at.  When the entries of the
+ * token's value are sorted by primary key(an EQ scan) and the token's entry is gone by now, we
+ * resume at the first primary key after the token's.  When the cursor below us seeked to the
+ * token's indexed value but the order within the value is unknown, the entries of that value are
+ * returned again rather than lost.  Otherwise every key is skipped until the token's primary key
+ * shows up and if it never does there is nothing to resume from so we fail rather than silently
+ * ending the paging.  Only goes forward.
+ */
+public class CursorAfterToken implements DirectCursor<IndexColumnInfo> {
+
+	private DirectCursor<IndexColumnInfo> cursor;
+	private ViewInfo view;
+	private PageToken token;
+	private boolean seeked;
+	private boolean pkOrdered;
+	private boolean positioned;
+	private LinkedList<IndexColumnInfo> pending = new LinkedList<IndexColumnInfo>();
+
+	public CursorAfterToken(ViewInfo view, DirectCursor<IndexColumnInfo> cursor, PageToken token, boolean seeked, boolean pkOrdered) {
+		this.view = view;
+		this.cursor = cursor;
+		this.token = token;
+		this.seeked = seeked;
+		this.pkOrdered = pkOrdered;
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> nextImpl() {
+		if(!positioned)
+			position();
+		if(!pending.isEmpty())
+			return new Holder<IndexColumnInfo>(pending.removeFirst());
+		return cursor.nextImpl();
+	}
+
+	private void position() {
+		positioned = true;
+		LinkedList<IndexColumnInfo> sameValue = new LinkedList<IndexColumnInfo>();
+		for(Holder<IndexColumnInfo> holder = cursor.nextImpl(); holder != null; holder = cursor.nextImpl()) {
+			IndexColumnInfo info = holder.getValue();
+			Wrapper node = null;
+			if(info != null)
+				node = info.getIndexNode(view);
+			boolean isTokenValue = node != null && Arrays.equals(token.getIndexedValue(), node.getCol().getIndexedValue());
+			if(node != null && Arrays.equals(token.getPrimaryKey(), node.getCol().getPrimaryKey())) {
+				return;
+			} else if(pkOrdered && isTokenValue && ByteArray.compare(node.getCol().getPrimaryKey(), token.getPrimaryKey()) > 0) {
+				//the token's entry was deleted, this is the one that came after it
+				pending.add(info);
+				return;
+			} else if(!seeked) {
+				continue;
+			} else if(!isTokenValue) {
+				//we are past the token's value without finding its entry
+				if(!pkOrdered)
+					pending.addAll(sameValue);
+				pending.add(info);
+				return;
+			}
+			sameValue.add(info);
+		}
+
+		if(seeked && !pkOrdered)
+			pending.addAll(sameValue);
+		else if(!seeked && !pkOrdered)
+			throw new IllegalArgumentException("The entry of the page token is gone(the row was deleted or " +
+					"its indexed value changed) and this query has no order to resume from.  Start again from the first page");
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> previousImpl() {
+		throw new UnsupportedOperationException("results after a page token can only be read forward");
+	}
+
+	@Override
+	public void beforeFirst() {
+		cursor.beforeFirst();
+		pending.clear();
+		positioned = false;
+	}
+
+	@Override
+	public void afterLast() {
+		throw new UnsupportedOperationException("results after a page token can only be read forward");
+	}
+
+	@Override
+	public String toString() {
+		String tabs = StringLocal.getAndAdd();
+		String retVal = "CursorAfterToken["+tabs+cursor+tabs+"]";
+		StringLocal.set(tabs.length());
+		return retVal;
+	}
+}
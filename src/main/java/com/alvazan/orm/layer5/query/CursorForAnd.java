@@ -1,25 +1,43 @@
 package com.alvazan.orm.layer5.query;
 
-import java.util.HashMap;
-import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.alvazan.orm.api.z5api.IndexColumnInfo;
-import com.alvazan.orm.api.z8spi.conv.ByteArray;
 import com.alvazan.orm.api.z8spi.conv.Precondition;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
 import com.alvazan.orm.api.z8spi.iter.StringLocal;
 import com.alvazan.orm.api.z8spi.meta.ViewInfo;
 
+/**
+ * Intersects the left and right results by primary key.  We used to re-read the right side
+ * from the database for every left row once it had more than 500 rows.  Now we read up to
+ * maxInMemoryRows of each side first and pick the cheapest join that reads each side once
+ * <ol>
+ *   <li>left side fits in memory - hash the left side, stream the right side</li>
+ *   <li>right side fits in memory - hash the right side, stream the left side</li>
+ *   <li>both big and both sorted by primary key - merge join</li>
+ *   <li>both big and not sorted - grace hash join spilling partitions to temp files</li>
+ * </ol>
+ */
 public class CursorForAnd implements DirectCursor<IndexColumnInfo> {
 
+	private static final Logger log = LoggerFactory.getLogger(CursorForAnd.class);
+	private static final int DEFAULT_MAX_IN_MEMORY_ROWS = 10000;
+	private static final int NUM_SPILL_PARTITIONS = 32;
+
 	private DirectCursor<IndexColumnInfo> leftResults;
 	private DirectCursor<IndexColumnInfo> rightResults;
 	private ViewInfo leftView;
 	private ViewInfo rightView;
-	private Map<ByteArray, IndexColumnInfo> cachedMap;
-	private boolean ranFullInnerLoopTo500Once = false;
-	
+	private boolean leftOrderedByPk;
+	private boolean rightOrderedByPk;
+	private int maxInMemoryRows = DEFAULT_MAX_IN_MEMORY_ROWS;
+	private JoinPlan plan;
+	private boolean planIsReverse;
+	private boolean planDone;
+
 	public CursorForAnd(ViewInfo leftView2, DirectCursor<IndexColumnInfo> leftResults,
 			ViewInfo rightView2, DirectCursor<IndexColumnInfo> rightResults) {
 		Precondition.check(leftView2, "leftView2");
@@ -32,6 +50,21 @@ public class CursorForAnd implements DirectCursor<IndexColumnInfo> {
 		this.rightResults = rightResults;
 	}
 
+	/**
+	 * Tell us if each side comes back sorted by primary key so we can merge join them when they
+	 * are too big for memory
+	 */
+	public void setOrderedByPrimaryKey(boolean leftOrdered, boolean rightOrdered) {
+		this.leftOrderedByPk = leftOrdered;
+		this.rightOrderedByPk = rightOrdered;
+	}
+
+	public void setMaxInMemoryRows(int maxInMemoryRows) {
+		if(maxInMemoryRows <= 0)
+			throw new IllegalArgumentException("maxInMemoryRows must be 1 or greater");
+		this.maxInMemoryRows = maxInMemoryRows;
+	}
+
 	@Override
 	public String toString() {
 		String tabs = StringLocal.getAndAdd();
@@ -40,176 +73,85 @@ public class CursorForAnd implements DirectCursor<IndexColumnInfo> {
 		return retVal;
 	}
 
-
 	@Override
 	public Holder<IndexColumnInfo> nextImpl() {
-		while(true) {
-			Holder<IndexColumnInfo> nextFromCursor = leftResults.nextImpl();
-			if(nextFromCursor == null)
-				break;
-			IndexColumnInfo next = nextFromCursor.getValue();
-
-			if(cachedMap != null) {
-				Holder<IndexColumnInfo> result = quickHashLookup(next);
-				if(result != null)
-					return result;
-			} else if(!ranFullInnerLoopTo500Once) {
-				rightResults.beforeFirst();
-				Holder<IndexColumnInfo> result = runFullInnerLoopOnce(next);
-				if(result != null)
-					return result;				
-			} else {
-				//Need to change to lookahead joining here as well as switch join types on the fly
-				//This stinks as we have to re-read from the database every 1000 rows!!!! We should find out if
-				//we can do any kind of counting or something so we don't have to go back to database every time
-				rightResults.beforeFirst();
-				Holder<IndexColumnInfo> result = runInnerLoop(next);
-				if(result != null)
-					return result;
-			}
-		}
-		return null;
+		return fetch(false);
 	}
-	
+
 	@Override
 	public Holder<IndexColumnInfo> previousImpl() {
-		while(true) {
-			Holder<IndexColumnInfo> prevFromCursor = leftResults.previousImpl();
-			if(prevFromCursor == null)
-				break;
-			IndexColumnInfo next = prevFromCursor.getValue();
-
-			if(cachedMap != null) {
-				Holder<IndexColumnInfo> result = quickHashLookup(next);
-				if(result != null)
-					return result;
-			} else if(!ranFullInnerLoopTo500Once) {
+		return fetch(true);
+	}
+
+	/**
+	 * The join plans read ahead of the rows they hand out and the hash joins do not hand them
+	 * out in the order of either side, so we can't turn around part way through.  Once a plan
+	 * has run off one end though, reading the other way is the same as starting from that end.
+	 */
+	private Holder<IndexColumnInfo> fetch(boolean reverse) {
+		if(plan != null && planIsReverse != reverse) {
+			if(!planDone)
+				throw new UnsupportedOperationException("AND results can only change direction once read to the end, call beforeFirst() or afterLast() first");
+			closePlan();
+			if(reverse) {
+				leftResults.afterLast();
 				rightResults.afterLast();
-				Holder<IndexColumnInfo> result = runFullInnerLoopOnceBackward(next);
-				if(result != null)
-					return result;				
 			} else {
-				//Need to change to lookahead joining here as well as switch join types on the fly
-				//This stinks as we have to re-read from the database every 1000 rows!!!! We should find out if
-				//we can do any kind of counting or something so we don't have to go back to database every time
-				rightResults.afterLast();
-				Holder<IndexColumnInfo> result = runInnerLoopBackward(next);
-				if(result != null)
-					return result;
+				leftResults.beforeFirst();
+				rightResults.beforeFirst();
 			}
 		}
-		return null;
-	}
 
-	private Holder<IndexColumnInfo> runFullInnerLoopOnce(IndexColumnInfo next) {
-		Map<ByteArray, IndexColumnInfo> pkToRightSide = new HashMap<ByteArray, IndexColumnInfo>();
-		Holder<IndexColumnInfo> matchedResult = null;
-		while(true) {
-			Holder<IndexColumnInfo> nextFromCursor = rightResults.nextImpl();
-			if(nextFromCursor == null)
-				break;
-			IndexColumnInfo andedInfo = nextFromCursor.getValue();
-			ByteArray key1 = next.getPrimaryKey(leftView);
-			ByteArray key2 = andedInfo.getPrimaryKey(rightView);
-			if(pkToRightSide.size() < 500)
-				pkToRightSide.put(key2, andedInfo);
-			if(matchedResult == null && key1.equals(key2)) {
-				next.mergeResults(andedInfo);
-				matchedResult = new Holder<IndexColumnInfo>(next);
-			}
-			
-			if(matchedResult != null && pkToRightSide.size()>=500) {
-				//we have exceeded cache size so we can't switch to a Hash join :(
-				return matchedResult;
-			}
-		}
-		
-		if(pkToRightSide.size() < 500)
-			cachedMap = pkToRightSide;
-		return matchedResult;
-	}
-	
-	private Holder<IndexColumnInfo> runFullInnerLoopOnceBackward(IndexColumnInfo previous) {
-		Map<ByteArray, IndexColumnInfo> pkToRightSide = new HashMap<ByteArray, IndexColumnInfo>();
-		Holder<IndexColumnInfo> matchedResult = null;
-		while(true) {
-			Holder<IndexColumnInfo> previousFromCursor = rightResults.previousImpl();
-			if(previousFromCursor == null)
-				break;
-			IndexColumnInfo andedInfo = previousFromCursor.getValue();
-			ByteArray key1 = previous.getPrimaryKey(leftView);
-			ByteArray key2 = andedInfo.getPrimaryKey(rightView);
-			if(pkToRightSide.size() < 500)
-				pkToRightSide.put(key2, andedInfo);
-			if(matchedResult == null && key1.equals(key2)) {
-				previous.mergeResults(andedInfo);
-				matchedResult = new Holder<IndexColumnInfo>(previous);
-			}
-			
-			if(matchedResult != null && pkToRightSide.size()>=500) {
-				//we have exceeded cache size so we can't switch to a Hash join :(
-				return matchedResult;
-			}
+		if(plan == null) {
+			plan = createPlan(reverse);
+			planIsReverse = reverse;
+			planDone = false;
 		}
-		
-		if(pkToRightSide.size() < 500)
-			cachedMap = pkToRightSide;
-		return matchedResult;
+		Holder<IndexColumnInfo> result = plan.next();
+		if(result == null)
+			planDone = true;
+		return result;
 	}
 
+	private JoinPlan createPlan(boolean reverse) {
+		JoinSide left = new JoinSide(leftResults, leftView, reverse);
+		JoinSide right = new JoinSide(rightResults, rightView, reverse);
 
-	private Holder<IndexColumnInfo> quickHashLookup(IndexColumnInfo next) {
-		ByteArray key1 = next.getPrimaryKey(leftView);
-		IndexColumnInfo andedInfo = cachedMap.get(key1);
-		if(andedInfo == null)
-			return null;
-		next.mergeResults(andedInfo);
-		return new Holder<IndexColumnInfo>(next);
-	}
+		left.fill(maxInMemoryRows);
+		if(left.isExhausted())
+			return HashJoin.buildOnLeft(left, right);
 
-	private Holder<IndexColumnInfo> runInnerLoop(IndexColumnInfo next) {
-		while(true) {
-			Holder<IndexColumnInfo> nextFromCursor = rightResults.nextImpl();
-			if(nextFromCursor == null)
-				break;
-			IndexColumnInfo andedInfo = nextFromCursor.getValue();
-			ByteArray key1 = next.getPrimaryKey(leftView);
-			ByteArray key2 = andedInfo.getPrimaryKey(rightView);
-			if(key1.equals(key2)) {
-				next.mergeResults(andedInfo);
-				return new Holder<IndexColumnInfo>(next);
-			}
-		}
-		
-		return null;
-	}
-	
-	private Holder<IndexColumnInfo> runInnerLoopBackward(IndexColumnInfo previous) {
-		while(true) {
-			Holder<IndexColumnInfo> prevFromCursor = rightResults.previousImpl();
-			if(prevFromCursor == null)
-				break;
-			IndexColumnInfo andedInfo = prevFromCursor.getValue();
-			ByteArray key1 = previous.getPrimaryKey(leftView);
-			ByteArray key2 = andedInfo.getPrimaryKey(rightView);
-			if(key1.equals(key2)) {
-				previous.mergeResults(andedInfo);
-				return new Holder<IndexColumnInfo>(previous);
-			}
+		right.fill(maxInMemoryRows);
+		if(right.isExhausted())
+			return HashJoin.buildOnRight(left, right);
+
+		if(leftOrderedByPk && rightOrderedByPk && left.isBufferSorted() && right.isBufferSorted()) {
+			if (log.isInfoEnabled())
+				log.info("both sides of AND have more than "+maxInMemoryRows+" rows, using merge join");
+			return new MergeJoin(left, right, NUM_SPILL_PARTITIONS, maxInMemoryRows);
 		}
-		
-		return null;
+
+		if (log.isInfoEnabled())
+			log.info("both sides of AND have more than "+maxInMemoryRows+" rows, using grace hash join");
+		return new GraceHashJoin(left, right, NUM_SPILL_PARTITIONS, maxInMemoryRows);
 	}
 
+	private void closePlan() {
+		if(plan != null)
+			plan.close();
+		plan = null;
+	}
 
 	@Override
 	public void beforeFirst() {
+		closePlan();
 		leftResults.beforeFirst();
 		rightResults.beforeFirst();
 	}
-	
+
 	@Override
 	public void afterLast() {
+		closePlan();
 		leftResults.afterLast();
 		rightResults.afterLast();
 	}
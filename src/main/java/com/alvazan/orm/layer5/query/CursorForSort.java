@@ -0,0 +1,314 @@
+package com.alvazan.orm.layer5.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z5api.IndexColumnInfo.Wrapper;
+import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.conv.Precondition;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.DirectCursor;
+import com.alvazan.orm.api.z8spi.iter.IterableWrappingCursor;
+import com.alvazan.orm.api.z8spi.iter.StringLocal;
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.api.z8spi.meta.OrderByInfo;
+
+/**
+ * Sorts the results for an ORDER BY that the index scan does not already return in order.  The
+ * values come from the index entries when the scanned index is the ORDER BY column and otherwise
+ * from the rows which are read one batch at a time.  With a limit only the first 'limit' results
+ * are kept in a heap.  Without one, every maxInMemoryRows results are sorted and written to a
+ * temp file and the files are merged as the results are read.
+ */
+public class CursorForSort implements DirectCursor<IndexColumnInfo> {
+
+	private static final Logger log = LoggerFactory.getLogger(CursorForSort.class);
+	private static final int DEFAULT_MAX_IN_MEMORY_ROWS = 10000;
+
+	private DirectCursor<IndexColumnInfo> keys;
+	private OrderByInfo orderBy;
+	private NoSqlSession session;
+	private Integer limit;
+	private int batchSize;
+	private int maxInMemoryRows = DEFAULT_MAX_IN_MEMORY_ROWS;
+	private IndexColumnInfoCodec codec = new IndexColumnInfoCodec();
+	private Comparator<SortEntry> comparator;
+
+	private boolean sorted;
+	private boolean spilled;
+	private long seq;
+	private List<SortEntry> inMemory;
+	private ListIterator<SortEntry> iterator;
+	private List<SortRunFile> runs = new ArrayList<SortRunFile>();
+	private PriorityQueue<SortRunFile> merge;
+	private SpillFiles spillFiles = new SpillFiles(this, "playorm-sort-");
+
+	public CursorForSort(OrderByInfo orderBy, DirectCursor<IndexColumnInfo> keys, NoSqlSession session, Integer limit, Integer batchSize) {
+		Precondition.check(orderBy, "orderBy");
+		Precondition.check(keys, "keys");
+		this.orderBy = orderBy;
+		this.keys = keys;
+		this.session = session;
+		this.limit = limit;
+		this.batchSize = 500;
+		if(batchSize != null)
+			this.batchSize = batchSize;
+		this.comparator = new SortComparator(orderBy.isDescending());
+	}
+
+	public void setMaxInMemoryRows(int maxInMemoryRows) {
+		if(maxInMemoryRows <= 0)
+			throw new IllegalArgumentException("maxInMemoryRows must be 1 or greater");
+		this.maxInMemoryRows = maxInMemoryRows;
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> nextImpl() {
+		if(!sorted)
+			sort();
+		if(spilled)
+			return nextFromRuns();
+		else if(!iterator.hasNext())
+			return null;
+		return new Holder<IndexColumnInfo>(iterator.next().getInfo().copy());
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> previousImpl() {
+		if(!sorted)
+			sort();
+		if(spilled)
+			throw new UnsupportedOperationException("ORDER BY results that were too many to sort in memory can only be read forward");
+		else if(!iterator.hasPrevious())
+			return null;
+		return new Holder<IndexColumnInfo>(iterator.previous().getInfo().copy());
+	}
+
+	@Override
+	public void beforeFirst() {
+		if(!sorted)
+			return;
+		else if(!spilled) {
+			iterator = inMemory.listIterator();
+			return;
+		}
+		//the runs are deleted as they are merged so sort again from the start
+		closeRuns();
+		sorted = false;
+		keys.beforeFirst();
+	}
+
+	@Override
+	public void afterLast() {
+		if(!sorted)
+			sort();
+		if(spilled)
+			throw new UnsupportedOperationException("ORDER BY results that were too many to sort in memory can only be read forward");
+		iterator = inMemory.listIterator(inMemory.size());
+	}
+
+	private void sort() {
+		sorted = true;
+		seq = 0;
+		PriorityQueue<SortEntry> heap = null;
+		if(limit != null)
+			heap = new PriorityQueue<SortEntry>(limit+1, Collections.reverseOrder(comparator));
+		List<SortEntry> buffer = new ArrayList<SortEntry>();
+		List<IndexColumnInfo> batch = new ArrayList<IndexColumnInfo>();
+		for(Holder<IndexColumnInfo> holder = keys.nextImpl(); holder != null; holder = keys.nextImpl()) {
+			if(holder.getValue() == null)
+				continue;
+			batch.add(holder.getValue());
+			if(batch.size() >= batchSize) {
+				addBatch(batch, heap, buffer);
+				batch.clear();
+			}
+		}
+		addBatch(batch, heap, buffer);
+
+		if(heap != null)
+			buffer.addAll(heap);
+		Collections.sort(buffer, comparator);
+		if(runs.size() == 0) {
+			spilled = false;
+			inMemory = buffer;
+			iterator = inMemory.listIterator();
+			return;
+		}
+
+		spilled = true;
+		runs.add(new SortRunFile(codec, orderBy.getColumn(), spillFiles, buffer));
+		if (log.isInfoEnabled())
+			log.info("sorted "+seq+" rows for ORDER BY "+orderBy+" in "+runs.size()+" runs spilled to temp files");
+		merge = new PriorityQueue<SortRunFile>(runs.size(), new RunComparator(comparator));
+		for(SortRunFile run : runs) {
+			run.open();
+			if(run.getHead() != null)
+				merge.add(run);
+		}
+	}
+
+	private void addBatch(List<IndexColumnInfo> batch, PriorityQueue<SortEntry> heap, List<SortEntry> buffer) {
+		Map<ByteArray, Row> rows = readRows(batch);
+		for(IndexColumnInfo info : batch) {
+			SortEntry entry = new SortEntry(fetchValue(info, rows), orderBy.getColumn(), info, seq++);
+			if(heap != null) {
+				heap.add(entry);
+				if(heap.size() > limit)
+					heap.poll();
+				continue;
+			}
+			buffer.add(entry);
+			if(buffer.size() >= maxInMemoryRows) {
+				Collections.sort(buffer, comparator);
+				runs.add(new SortRunFile(codec, orderBy.getColumn(), spillFiles, buffer));
+				buffer.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return the rows we need to read the ORDER BY column from keyed by virtual row key
+	 */
+	private Map<ByteArray, Row> readRows(List<IndexColumnInfo> batch) {
+		Map<ByteArray, Row> rows = new HashMap<ByteArray, Row>();
+		DboTableMeta meta = orderBy.getView().getTableMeta();
+		List<byte[]> virtKeys = new ArrayList<byte[]>();
+		for(IndexColumnInfo info : batch) {
+			Wrapper wrapper = info.getIndexNode(orderBy.getView());
+			if(wrapper != null && !isOrderColumn(wrapper.getColMeta()) && !isOrderColumn(meta.getIdColumnMeta()))
+				virtKeys.add(meta.getIdColumnMeta().formVirtRowKey(wrapper.getCol().getPrimaryKey()));
+		}
+		if(virtKeys.size() == 0)
+			return rows;
+
+		AbstractCursor<KeyValue<Row>> cursor = session.find(meta, new IterableWrappingCursor<byte[]>(virtKeys), false, false, batchSize);
+		for(Holder<KeyValue<Row>> holder = cursor.nextImpl(); holder != null; holder = cursor.nextImpl()) {
+			KeyValue<Row> kv = holder.getValue();
+			if(kv.getValue() != null)
+				rows.put(new ByteArray((byte[]) kv.getKey()), kv.getValue());
+		}
+		return rows;
+	}
+
+	private byte[] fetchValue(IndexColumnInfo info, Map<ByteArray, Row> rows) {
+		DboTableMeta meta = orderBy.getView().getTableMeta();
+		Wrapper wrapper = info.getIndexNode(orderBy.getView());
+		if(wrapper == null)
+			return null; //nothing joined in a left join
+		else if(isOrderColumn(meta.getIdColumnMeta()))
+			return wrapper.getCol().getPrimaryKey();
+		else if(isOrderColumn(wrapper.getColMeta()))
+			return wrapper.getCol().getIndexedValue();
+
+		Row row = rows.get(new ByteArray(meta.getIdColumnMeta().formVirtRowKey(wrapper.getCol().getPrimaryKey())));
+		if(row == null)
+			return null;
+		Column col = row.getColumn(orderBy.getColumn().getColumnNameAsBytes());
+		if(col == null)
+			return null;
+		return col.getValue();
+	}
+
+	private boolean isOrderColumn(DboColumnMeta colMeta) {
+		//the index entries and rows we look at are all from the ORDER BY view
+		return colMeta != null && colMeta.getColumnName().equals(orderBy.getColumn().getColumnName());
+	}
+
+	private Holder<IndexColumnInfo> nextFromRuns() {
+		if(merge == null)
+			return null;
+		SortRunFile run = merge.poll();
+		if(run == null) {
+			closeRuns();
+			return null;
+		}
+		SortEntry entry = run.getHead();
+		run.advance();
+		if(run.getHead() != null)
+			merge.add(run);
+		return new Holder<IndexColumnInfo>(entry.getInfo());
+	}
+
+	private void closeRuns() {
+		for(SortRunFile run : runs) {
+			run.close();
+		}
+		runs.clear();
+		merge = null;
+	}
+
+	@Override
+	public String toString() {
+		String tabs = StringLocal.getAndAdd();
+		String retVal = "CursorForSort(orderBy="+orderBy+" limit="+limit+")["+tabs+keys+tabs+"]";
+		StringLocal.set(tabs.length());
+		return retVal;
+	}
+
+	private static class SortComparator implements Comparator<SortEntry> {
+		private boolean descending;
+
+		public SortComparator(boolean descending) {
+			this.descending = descending;
+		}
+
+		@Override
+		public int compare(SortEntry o1, SortEntry o2) {
+			int result = compareValues(o1, o2);
+			if(descending)
+				result = -result;
+			if(result != 0)
+				return result;
+			else if(o1.getSeq() < o2.getSeq())
+				return -1;
+			else if(o1.getSeq() > o2.getSeq())
+				return 1;
+			return 0;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private int compareValues(SortEntry o1, SortEntry o2) {
+			Object v1 = o1.getValue();
+			Object v2 = o2.getValue();
+			if(v1 == null && v2 == null)
+				return 0;
+			else if(v1 == null)
+				return -1; //nulls sort first like an index does
+			else if(v2 == null)
+				return 1;
+			else if(v1 instanceof Comparable)
+				return ((Comparable) v1).compareTo(v2);
+			return new ByteArray(o1.getRawValue()).compareTo(new ByteArray(o2.getRawValue()));
+		}
+	}
+
+	private static class RunComparator implements Comparator<SortRunFile> {
+		private Comparator<SortEntry> comparator;
+
+		public RunComparator(Comparator<SortEntry> comparator) {
+			this.comparator = comparator;
+		}
+
+		@Override
+		public int compare(SortRunFile o1, SortRunFile o2) {
+			return comparator.compare(o1.getHead(), o2.getHead());
+		}
+	}
+}
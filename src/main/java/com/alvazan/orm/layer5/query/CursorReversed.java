@@ -0,0 +1,48 @@
+package com.alvazan.orm.layer5.query;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.DirectCursor;
+import com.alvazan.orm.api.z8spi.iter.StringLocal;
+
+/**
+ * Walks the cursor below us from the end to the beginning which turns an index scan into a
+ * descending scan.
+ */
+public class CursorReversed implements DirectCursor<IndexColumnInfo> {
+
+	private DirectCursor<IndexColumnInfo> cursor;
+
+	public CursorReversed(DirectCursor<IndexColumnInfo> cursor) {
+		this.cursor = cursor;
+		cursor.afterLast();
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> nextImpl() {
+		return cursor.previousImpl();
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> previousImpl() {
+		return cursor.nextImpl();
+	}
+
+	@Override
+	public void beforeFirst() {
+		cursor.afterLast();
+	}
+
+	@Override
+	public void afterLast() {
+		cursor.beforeFirst();
+	}
+
+	@Override
+	public String toString() {
+		String tabs = StringLocal.getAndAdd();
+		String retVal = "CursorReversed["+tabs+cursor+tabs+"]";
+		StringLocal.set(tabs.length());
+		return retVal;
+	}
+}
@@ -0,0 +1,308 @@
+package com.alvazan.orm.layer5.query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.meta.ViewInfo;
+
+/**
+ * Used when both sides are too big for memory and are not sorted by primary key.  Both sides
+ * are split by the hash of the primary key into partitions in temp files.  A row can only
+ * match rows of the other side in the same partition, so we then join one partition at a time.
+ * The right side of a partition goes in a HashMap and the left side is streamed from its file,
+ * so only maxInMemoryRows rows are ever in memory.  A partition whose right side has more rows
+ * than that is split again with a different hash into as many partitions as it needs.  Results
+ * come out grouped by partition, not in the order of the left side.
+ *
+ * A MergeJoin that finds out part way through that its sides are not sorted falls back to us
+ * after handing out the matches between the first rows of each side.  Each spilled row records
+ * whether it was one of those rows so we can skip the pairs the MergeJoin already returned.
+ */
+public class GraceHashJoin implements JoinPlan {
+
+	private static final Logger log = LoggerFactory.getLogger(GraceHashJoin.class);
+	//we have this many files open at once while splitting
+	private static final int MAX_PARTITIONS = 256;
+	//rows with the same primary key always land in the same partition so splitting stops somewhere
+	private static final int MAX_DEPTH = 8;
+
+	private IndexColumnInfoCodec codec = new IndexColumnInfoCodec();
+	private SpillFiles spillFiles = new SpillFiles(this, "playorm-join-");
+	private ViewInfo leftView;
+	private ViewInfo rightView;
+	private int maxInMemoryRows;
+	private LinkedList<Partition> partitions = new LinkedList<Partition>();
+	private Partition current;
+	private Map<ByteArray, SpilledRow> rightByPk;
+	private DataInputStream probe;
+
+	public GraceHashJoin(JoinSide left, JoinSide right, int numPartitions, int maxInMemoryRows) {
+		this(left, right, numPartitions, maxInMemoryRows, 0, 0);
+	}
+
+	/**
+	 * @param leftAlreadyJoined a pair is skipped if its left row is within this many first rows of the left side...
+	 * @param rightAlreadyJoined ...and its right row is within this many first rows of the right side
+	 */
+	public GraceHashJoin(JoinSide left, JoinSide right, int numPartitions, int maxInMemoryRows, long leftAlreadyJoined, long rightAlreadyJoined) {
+		this.leftView = left.getView();
+		this.rightView = right.getView();
+		this.maxInMemoryRows = maxInMemoryRows;
+		try {
+			PartitionWriter leftOut = new PartitionWriter(numPartitions, 0);
+			PartitionWriter rightOut = new PartitionWriter(numPartitions, 0);
+			try {
+				spill(left, leftOut, leftAlreadyJoined);
+				spill(right, rightOut, rightAlreadyJoined);
+			} finally {
+				leftOut.close();
+				rightOut.close();
+			}
+			addPartitions(leftOut, rightOut, 0);
+			if (log.isInfoEnabled())
+				log.info("spilled "+leftOut.total+" left rows and "+rightOut.total+" right rows of join into "+numPartitions+" partitions");
+		} catch(IOException e) {
+			close();
+			throw new RuntimeException("Could not spill join to temp files", e);
+		}
+	}
+
+	private void spill(JoinSide side, PartitionWriter out, long alreadyJoined) throws IOException {
+		long count = 0;
+		while(true) {
+			IndexColumnInfo info = side.next();
+			if(info == null)
+				break;
+			out.write(side.primaryKey(info), new SpilledRow(info, count < alreadyJoined));
+			count++;
+		}
+	}
+
+	private void addPartitions(PartitionWriter leftOut, PartitionWriter rightOut, int depth) {
+		//added to the front in reverse so they are joined next and in order
+		for(int i = leftOut.files.length-1; i >= 0; i--) {
+			Partition p = new Partition();
+			p.leftFile = leftOut.files[i];
+			p.rightFile = rightOut.files[i];
+			p.leftRows = leftOut.counts[i];
+			p.rightRows = rightOut.counts[i];
+			p.depth = depth;
+			partitions.addFirst(p);
+		}
+	}
+
+	private static int partitionFor(ByteArray pk, int numPartitions, int depth) {
+		//mix in the depth so a partition split again does not land in one sub partition
+		int h = pk.hashCode() + depth * 0x9E3779B9;
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return (h & Integer.MAX_VALUE) % numPartitions;
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> next() {
+		try {
+			while(true) {
+				if(probe != null) {
+					SpilledRow row = readRow(probe);
+					if(row == null) {
+						finishPartition();
+						continue;
+					}
+					SpilledRow match = rightByPk.get(row.info.getPrimaryKey(leftView));
+					if(match == null)
+						continue;
+					else if(row.alreadyJoined && match.alreadyJoined)
+						continue; //the merge join before us already returned this one
+					row.info.mergeResults(match.info);
+					return new Holder<IndexColumnInfo>(row.info);
+				}
+
+				if(partitions.isEmpty())
+					return null;
+				startPartition(partitions.removeFirst());
+			}
+		} catch(IOException e) {
+			throw new RuntimeException("Could not read spilled join partition", e);
+		}
+	}
+
+	private void startPartition(Partition p) throws IOException {
+		if(p.leftRows == 0 || p.rightRows == 0) {
+			spillFiles.delete(p.leftFile);
+			spillFiles.delete(p.rightFile);
+			return;
+		} else if(p.rightRows > maxInMemoryRows && p.depth < MAX_DEPTH) {
+			split(p);
+			return;
+		}
+
+		current = p;
+		rightByPk = new HashMap<ByteArray, SpilledRow>();
+		DataInputStream in = open(p.rightFile);
+		try {
+			for(SpilledRow row = readRow(in); row != null; row = readRow(in)) {
+				ByteArray pk = row.info.getPrimaryKey(rightView);
+				if(!rightByPk.containsKey(pk))
+					rightByPk.put(pk, row);
+			}
+		} finally {
+			in.close();
+		}
+		spillFiles.delete(p.rightFile);
+		probe = open(p.leftFile);
+	}
+
+	private void split(Partition p) throws IOException {
+		long wanted = p.rightRows / maxInMemoryRows + 1;
+		int numPartitions = (int) Math.min(MAX_PARTITIONS, Math.max(2, wanted * 2));
+		int depth = p.depth+1;
+		PartitionWriter leftOut = new PartitionWriter(numPartitions, depth);
+		PartitionWriter rightOut = new PartitionWriter(numPartitions, depth);
+		try {
+			copy(p.leftFile, leftOut, leftView);
+			copy(p.rightFile, rightOut, rightView);
+		} finally {
+			leftOut.close();
+			rightOut.close();
+		}
+		spillFiles.delete(p.leftFile);
+		spillFiles.delete(p.rightFile);
+
+		addPartitions(leftOut, rightOut, depth);
+		for(int i = 0; i < numPartitions; i++) {
+			//nothing moved so every row has the same primary key, splitting again won't help
+			if(rightOut.counts[i] == p.rightRows)
+				partitions.get(i).depth = MAX_DEPTH;
+		}
+		if (log.isInfoEnabled())
+			log.info("join partition with "+p.rightRows+" right rows is too big, split it into "+numPartitions+" partitions");
+	}
+
+	private void copy(File file, PartitionWriter out, ViewInfo view) throws IOException {
+		DataInputStream in = open(file);
+		try {
+			for(SpilledRow row = readRow(in); row != null; row = readRow(in)) {
+				out.write(row.info.getPrimaryKey(view), row);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void finishPartition() throws IOException {
+		probe.close();
+		probe = null;
+		spillFiles.delete(current.leftFile);
+		current = null;
+		rightByPk = null;
+	}
+
+	private DataInputStream open(File file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+	}
+
+	private SpilledRow readRow(DataInputStream in) throws IOException {
+		boolean alreadyJoined;
+		try {
+			alreadyJoined = in.readBoolean();
+		} catch(EOFException e) {
+			//we are done reading this file
+			return null;
+		}
+		return new SpilledRow(codec.read(in), alreadyJoined);
+	}
+
+	@Override
+	public void close() {
+		if(probe != null) {
+			try {
+				probe.close();
+			} catch(IOException e) {
+				if (log.isWarnEnabled())
+					log.warn("could not close spilled join partition", e);
+			}
+			probe = null;
+		}
+		spillFiles.close();
+		partitions.clear();
+		rightByPk = null;
+	}
+
+	/**
+	 * Splits rows into numPartitions temp files by the hash of their primary key
+	 */
+	private class PartitionWriter {
+		private File[] files;
+		private DataOutputStream[] outs;
+		private long[] counts;
+		private long total;
+		private int depth;
+
+		private PartitionWriter(int numPartitions, int depth) throws IOException {
+			this.depth = depth;
+			files = new File[numPartitions];
+			outs = new DataOutputStream[numPartitions];
+			counts = new long[numPartitions];
+			try {
+				for(int i = 0; i < numPartitions; i++) {
+					files[i] = spillFiles.create();
+					outs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(files[i])));
+				}
+			} catch(IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		private void write(ByteArray pk, SpilledRow row) throws IOException {
+			int p = partitionFor(pk, files.length, depth);
+			outs[p].writeBoolean(row.alreadyJoined);
+			codec.write(outs[p], row.info);
+			counts[p]++;
+			total++;
+		}
+
+		private void close() throws IOException {
+			for(DataOutputStream out : outs) {
+				if(out != null)
+					out.close();
+			}
+		}
+	}
+
+	private static class Partition {
+		private File leftFile;
+		private File rightFile;
+		private long leftRows;
+		private long rightRows;
+		private int depth;
+	}
+
+	private static class SpilledRow {
+		private IndexColumnInfo info;
+		private boolean alreadyJoined;
+
+		private SpilledRow(IndexColumnInfo info, boolean alreadyJoined) {
+			this.info = info;
+			this.alreadyJoined = alreadyJoined;
+		}
+	}
+}
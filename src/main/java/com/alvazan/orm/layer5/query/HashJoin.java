@@ -0,0 +1,98 @@
+package com.alvazan.orm.layer5.query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+
+/**
+ * Used when one side of the AND fits in memory.  That side's primary keys are put in a HashMap
+ * and the other side is streamed through exactly once.  Either way, results come out in the
+ * order of the left side like they always have.
+ */
+public class HashJoin implements JoinPlan {
+
+	private JoinSide left;
+	private Map<ByteArray, IndexColumnInfo> rightByPk;
+	private List<IndexColumnInfo> results;
+	private int resultIndex;
+
+	private HashJoin() {}
+
+	/**
+	 * The right side is small so we build on it and stream the left side
+	 */
+	public static HashJoin buildOnRight(JoinSide left, JoinSide right) {
+		HashJoin join = new HashJoin();
+		join.left = left;
+		join.rightByPk = new HashMap<ByteArray, IndexColumnInfo>();
+		for(IndexColumnInfo info : right.getBuffer()) {
+			ByteArray pk = right.primaryKey(info);
+			if(!join.rightByPk.containsKey(pk))
+				join.rightByPk.put(pk, info);
+		}
+		return join;
+	}
+
+	/**
+	 * The left side is small so we remember which of its keys the right side also has while
+	 * streaming the right side once and then hand out the matching left rows in order
+	 */
+	public static HashJoin buildOnLeft(JoinSide left, JoinSide right) {
+		List<IndexColumnInfo> leftRows = left.getBuffer();
+		Map<ByteArray, IndexColumnInfo> matches = new HashMap<ByteArray, IndexColumnInfo>();
+		for(IndexColumnInfo info : leftRows) {
+			matches.put(left.primaryKey(info), null);
+		}
+
+		while(true) {
+			IndexColumnInfo info = right.next();
+			if(info == null)
+				break;
+			ByteArray pk = right.primaryKey(info);
+			if(matches.containsKey(pk) && matches.get(pk) == null)
+				matches.put(pk, info);
+		}
+
+		HashJoin join = new HashJoin();
+		join.results = new ArrayList<IndexColumnInfo>();
+		for(IndexColumnInfo info : leftRows) {
+			IndexColumnInfo match = matches.get(left.primaryKey(info));
+			if(match != null) {
+				info.mergeResults(match);
+				join.results.add(info);
+			}
+		}
+		return join;
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> next() {
+		if(results != null) {
+			if(resultIndex >= results.size())
+				return null;
+			return new Holder<IndexColumnInfo>(results.get(resultIndex++));
+		}
+
+		while(true) {
+			IndexColumnInfo info = left.next();
+			if(info == null)
+				return null;
+			IndexColumnInfo match = rightByPk.get(left.primaryKey(info));
+			if(match != null) {
+				info.mergeResults(match);
+				return new Holder<IndexColumnInfo>(info);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		rightByPk = null;
+		results = null;
+	}
+}
@@ -0,0 +1,124 @@
+package com.alvazan.orm.layer5.query;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z5api.IndexColumnInfo.Wrapper;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
+import com.alvazan.orm.api.z8spi.meta.ViewInfo;
+
+/**
+ * Writes IndexColumnInfo to spill files and reads it back.  Views and column meta are not
+ * serializable so they are written as a number into a table that lives as long as the join.
+ */
+public class IndexColumnInfoCodec {
+
+	private List<ViewInfo> views = new ArrayList<ViewInfo>();
+	private Map<ViewInfo, Integer> viewToId = new HashMap<ViewInfo, Integer>();
+	private List<DboColumnMeta> colMetas = new ArrayList<DboColumnMeta>();
+	private Map<DboColumnMeta, Integer> colMetaToId = new HashMap<DboColumnMeta, Integer>();
+
+	public void write(DataOutput out, IndexColumnInfo info) throws IOException {
+		out.writeInt(info.getViews().size());
+		for(ViewInfo view : info.getViews()) {
+			Wrapper wrapper = info.getIndexNode(view);
+			out.writeInt(viewId(view));
+			out.writeInt(colMetaId(wrapper.getColMeta()));
+			writeColumn(out, wrapper.getCol());
+		}
+	}
+
+	public IndexColumnInfo read(DataInput in) throws IOException {
+		IndexColumnInfo info = new IndexColumnInfo();
+		int size = in.readInt();
+		for(int i = 0; i < size; i++) {
+			ViewInfo view = views.get(in.readInt());
+			int colMetaId = in.readInt();
+			DboColumnMeta colMeta = null;
+			if(colMetaId >= 0)
+				colMeta = colMetas.get(colMetaId);
+			info.putIndexNode(view, readColumn(in), colMeta);
+		}
+		return info;
+	}
+
+	private int viewId(ViewInfo view) {
+		Integer id = viewToId.get(view);
+		if(id == null) {
+			id = views.size();
+			views.add(view);
+			viewToId.put(view, id);
+		}
+		return id;
+	}
+
+	private int colMetaId(DboColumnMeta colMeta) {
+		if(colMeta == null)
+			return -1;
+		Integer id = colMetaToId.get(colMeta);
+		if(id == null) {
+			id = colMetas.size();
+			colMetas.add(colMeta);
+			colMetaToId.put(colMeta, id);
+		}
+		return id;
+	}
+
+	private void writeColumn(DataOutput out, IndexColumn col) throws IOException {
+		writeBytes(out, col.getIndexedValue());
+		writeBytes(out, col.getPrimaryKey());
+		writeBytes(out, col.getValue());
+		out.writeBoolean(col.getTimestamp() != null);
+		if(col.getTimestamp() != null)
+			out.writeLong(col.getTimestamp());
+		out.writeBoolean(col.getTtl() != null);
+		if(col.getTtl() != null)
+			out.writeInt(col.getTtl());
+		out.writeBoolean(col.getColumnName() != null);
+		if(col.getColumnName() != null)
+			out.writeUTF(col.getColumnName());
+	}
+
+	private IndexColumn readColumn(DataInput in) throws IOException {
+		IndexColumn col = new IndexColumn();
+		byte[] indexedValue = readBytes(in);
+		if(indexedValue != null)
+			col.setIndexedValue(indexedValue);
+		byte[] pk = readBytes(in);
+		if(pk != null)
+			col.setPrimaryKey(pk);
+		col.setValue(readBytes(in));
+		if(in.readBoolean())
+			col.setTimestamp(in.readLong());
+		if(in.readBoolean())
+			col.setTtl(in.readInt());
+		if(in.readBoolean())
+			col.setColumnName(in.readUTF());
+		return col;
+	}
+
+	private void writeBytes(DataOutput out, byte[] data) throws IOException {
+		if(data == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private byte[] readBytes(DataInput in) throws IOException {
+		int len = in.readInt();
+		if(len < 0)
+			return null;
+		byte[] data = new byte[len];
+		in.readFully(data);
+		return data;
+	}
+}
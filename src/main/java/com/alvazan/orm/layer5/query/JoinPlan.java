@@ -0,0 +1,21 @@
+package com.alvazan.orm.layer5.query;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+
+/**
+ * One way of intersecting the two sides of an AND.  CursorForAnd picks the plan based on what
+ * it learns while reading the first rows of each side.
+ */
+public interface JoinPlan {
+
+	/**
+	 * @return the next joined result or null when there are no more
+	 */
+	Holder<IndexColumnInfo> next();
+
+	/**
+	 * release any memory or temp files the plan holds
+	 */
+	void close();
+}
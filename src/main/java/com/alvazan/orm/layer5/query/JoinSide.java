@@ -0,0 +1,124 @@
+package com.alvazan.orm.layer5.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.DirectCursor;
+import com.alvazan.orm.api.z8spi.meta.ViewInfo;
+
+/**
+ * One side of an AND being read in a single direction.  Rows read while deciding which join to
+ * use are buffered and handed out again first so no side is ever read from the database twice.
+ */
+public class JoinSide {
+
+	private DirectCursor<IndexColumnInfo> cursor;
+	private ViewInfo view;
+	private boolean reverse;
+	private List<IndexColumnInfo> buffer = new ArrayList<IndexColumnInfo>();
+	private int bufferIndex = 0;
+	private boolean exhausted = false;
+
+	public JoinSide(DirectCursor<IndexColumnInfo> cursor, ViewInfo view, boolean reverse) {
+		this.cursor = cursor;
+		this.view = view;
+		this.reverse = reverse;
+	}
+
+	/**
+	 * Reads rows into memory until we have maxRows of them or the side runs out
+	 */
+	public void fill(int maxRows) {
+		while(buffer.size() < maxRows) {
+			IndexColumnInfo info = readFromCursor();
+			if(info == null)
+				return;
+			buffer.add(info);
+		}
+	}
+
+	/**
+	 * Starts reading the side over from the database, dropping whatever is buffered
+	 */
+	public JoinSide restart() {
+		if(reverse)
+			cursor.afterLast();
+		else
+			cursor.beforeFirst();
+		buffer = new ArrayList<IndexColumnInfo>();
+		bufferIndex = 0;
+		exhausted = false;
+		return this;
+	}
+
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	public List<IndexColumnInfo> getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return true if the buffered rows are sorted by primary key in the direction we are reading
+	 */
+	public boolean isBufferSorted() {
+		ByteArray previous = null;
+		for(IndexColumnInfo info : buffer) {
+			ByteArray pk = primaryKey(info);
+			if(pk.getKey() == null)
+				return false;
+			if(previous != null && compare(previous, pk) > 0)
+				return false;
+			previous = pk;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares primary keys such that smaller means 'comes first in the direction we read'
+	 */
+	public int compare(ByteArray left, ByteArray right) {
+		int result = left.compareTo(right);
+		if(reverse)
+			return -result;
+		return result;
+	}
+
+	public IndexColumnInfo next() {
+		if(bufferIndex < buffer.size()) {
+			IndexColumnInfo info = buffer.get(bufferIndex);
+			//let the garbage collector have the rows we already handed out
+			buffer.set(bufferIndex, null);
+			bufferIndex++;
+			return info;
+		}
+		return readFromCursor();
+	}
+
+	private IndexColumnInfo readFromCursor() {
+		if(exhausted)
+			return null;
+		Holder<IndexColumnInfo> holder;
+		if(reverse)
+			holder = cursor.previousImpl();
+		else
+			holder = cursor.nextImpl();
+		if(holder == null) {
+			exhausted = true;
+			return null;
+		}
+		return holder.getValue();
+	}
+
+	public ByteArray primaryKey(IndexColumnInfo info) {
+		return info.getPrimaryKey(view);
+	}
+
+	public ViewInfo getView() {
+		return view;
+	}
+}
@@ -0,0 +1,129 @@
+package com.alvazan.orm.layer5.query;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+
+/**
+ * Used when both sides are too big for memory but both come back sorted by primary key(an
+ * index scan for one value returns its rows sorted by primary key).  We walk both sides once
+ * in lock step and memory use is constant.
+ *
+ * Only the first rows of each side were checked to be sorted.  If a later row is out of order
+ * we read both sides again into a GraceHashJoin.  Every row that took part in a comparison so
+ * far came before the broken row, and the merge returned every match between those rows, so
+ * we only need to tell the GraceHashJoin how many rows of each side that was to have it skip
+ * the results we already handed out.  When one side runs out we still read the rest of the
+ * other side to make sure no out of order row is hiding at its end.
+ */
+public class MergeJoin implements JoinPlan {
+
+	private static final Logger log = LoggerFactory.getLogger(MergeJoin.class);
+
+	private JoinSide left;
+	private JoinSide right;
+	private int numSpillPartitions;
+	private int maxInMemoryRows;
+	private IndexColumnInfo currentLeft;
+	private IndexColumnInfo currentRight;
+	private ByteArray lastLeftPk;
+	private ByteArray lastRightPk;
+	//how many rows of each side have been compared in case we have to fall back
+	private long leftCompared;
+	private long rightCompared;
+	private boolean currentLeftCompared;
+	private boolean currentRightCompared;
+	private JoinPlan fallback;
+
+	public MergeJoin(JoinSide left, JoinSide right, int numSpillPartitions, int maxInMemoryRows) {
+		this.left = left;
+		this.right = right;
+		this.numSpillPartitions = numSpillPartitions;
+		this.maxInMemoryRows = maxInMemoryRows;
+		currentLeft = left.next();
+		currentRight = right.next();
+	}
+
+	@Override
+	public Holder<IndexColumnInfo> next() {
+		if(fallback != null)
+			return fallback.next();
+
+		while(currentLeft != null && currentRight != null) {
+			ByteArray leftPk = left.primaryKey(currentLeft);
+			ByteArray rightPk = right.primaryKey(currentRight);
+			if(isOutOfOrder(left, lastLeftPk, leftPk) || isOutOfOrder(right, lastRightPk, rightPk))
+				return fallBack();
+			lastLeftPk = leftPk;
+			lastRightPk = rightPk;
+			if(!currentLeftCompared) {
+				leftCompared++;
+				currentLeftCompared = true;
+			}
+			if(!currentRightCompared) {
+				rightCompared++;
+				currentRightCompared = true;
+			}
+
+			int result = left.compare(leftPk, rightPk);
+			if(result < 0) {
+				currentLeft = nextLeft();
+			} else if(result > 0) {
+				currentRight = right.next();
+				currentRightCompared = false;
+			} else {
+				//only move the left side so duplicate left rows still match this right row
+				IndexColumnInfo match = currentLeft;
+				match.mergeResults(currentRight);
+				currentLeft = nextLeft();
+				return new Holder<IndexColumnInfo>(match);
+			}
+		}
+
+		//a row further down the side that is left could still be out of order and match a row we passed
+		if(currentLeft != null && !restIsSorted(left, lastLeftPk, currentLeft))
+			return fallBack();
+		else if(currentRight != null && !restIsSorted(right, lastRightPk, currentRight))
+			return fallBack();
+		currentLeft = null;
+		currentRight = null;
+		return null;
+	}
+
+	private boolean restIsSorted(JoinSide side, ByteArray previous, IndexColumnInfo current) {
+		for(IndexColumnInfo info = current; info != null; info = side.next()) {
+			ByteArray pk = side.primaryKey(info);
+			if(isOutOfOrder(side, previous, pk))
+				return false;
+			previous = pk;
+		}
+		return true;
+	}
+
+	private Holder<IndexColumnInfo> fallBack() {
+		if (log.isWarnEnabled())
+			log.warn("index scans for views="+left.getView()+","+right.getView()+" were not sorted by primary key after all, switching to grace hash join");
+		fallback = new GraceHashJoin(left.restart(), right.restart(), numSpillPartitions, maxInMemoryRows, leftCompared, rightCompared);
+		return fallback.next();
+	}
+
+	private IndexColumnInfo nextLeft() {
+		currentLeftCompared = false;
+		return left.next();
+	}
+
+	private boolean isOutOfOrder(JoinSide side, ByteArray previous, ByteArray pk) {
+		return previous != null && side.compare(previous, pk) > 0;
+	}
+
+	@Override
+	public void close() {
+		currentLeft = null;
+		currentRight = null;
+		if(fallback != null)
+			fallback.close();
+	}
+}
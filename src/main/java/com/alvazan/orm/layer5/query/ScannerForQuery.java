@@ -60,7 +60,9 @@ public class ScannerForQuery implements QueryParser {
 		InfoForWiring wiring = new InfoForWiring(query, targetTable);
 		MetaFacade facade = new MetaFacadeImpl(mgr, metaInfo);
 		ExpressionNode newTree = compiler.compileSql(query, wiring, facade);
-		
+		if(targetTable != null && wiring.getAggregates().size() > 0)
+			throw new IllegalArgumentException("Named queries return entities so they can't have COUNT, MIN, MAX or SUM, use NoSqlTypedSession.aggregate instead");
+
 		List<ViewInfo> allViews = wiring.getAllViews();
 		List<ViewInfo> joinedViews = wiring.getJoinedViews();
 		List<ViewInfo> notYetJoinedViews = new ArrayList<ViewInfo>();
@@ -74,6 +76,8 @@ public class ScannerForQuery implements QueryParser {
 		spiMetaQuery.setParameterFieldMap(wiring.getParameterFieldMap());
 		spiMetaQuery.setUpdateList(wiring.getUpdateList());
 		spiMetaQuery.setQueryType(wiring.getQueryType());
+		spiMetaQuery.setAggregates(wiring.getAggregates());
+		spiMetaQuery.setOrderBy(wiring.getOrderBy());
 		
 		return spiMetaQuery;
 	}
@@ -0,0 +1,40 @@
+package com.alvazan.orm.layer5.query;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
+
+/**
+ * The keys of one result plus the value it is sorted by.  seq is the position the result came
+ * back from the index in so equal values keep that order.
+ */
+public class SortEntry {
+
+	private byte[] rawValue;
+	private Object value;
+	private IndexColumnInfo info;
+	private long seq;
+
+	public SortEntry(byte[] rawValue, DboColumnMeta colMeta, IndexColumnInfo info, long seq) {
+		this.rawValue = rawValue;
+		if(rawValue != null)
+			this.value = colMeta.convertFromStorage2(rawValue);
+		this.info = info;
+		this.seq = seq;
+	}
+
+	public byte[] getRawValue() {
+		return rawValue;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	public IndexColumnInfo getInfo() {
+		return info;
+	}
+
+	public long getSeq() {
+		return seq;
+	}
+}
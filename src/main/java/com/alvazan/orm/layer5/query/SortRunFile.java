@@ -0,0 +1,114 @@
+package com.alvazan.orm.layer5.query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
+
+/**
+ * One sorted run of an ORDER BY that did not fit in memory, written to a temp file and read back
+ * one entry at a time while the runs are merged.
+ */
+public class SortRunFile {
+
+	private IndexColumnInfoCodec codec;
+	private DboColumnMeta orderColumn;
+	private SpillFiles spillFiles;
+	private File file;
+	private DataInputStream in;
+	private SortEntry head;
+
+	public SortRunFile(IndexColumnInfoCodec codec, DboColumnMeta orderColumn, SpillFiles spillFiles, List<SortEntry> sortedEntries) {
+		this.codec = codec;
+		this.orderColumn = orderColumn;
+		this.spillFiles = spillFiles;
+		try {
+			file = spillFiles.create();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				for(SortEntry entry : sortedEntries) {
+					out.writeBoolean(true);
+					writeBytes(out, entry.getRawValue());
+					out.writeLong(entry.getSeq());
+					codec.write(out, entry.getInfo());
+				}
+				out.writeBoolean(false);
+			} finally {
+				out.close();
+			}
+		} catch(IOException e) {
+			close();
+			throw new RuntimeException("Could not spill sort to temp file", e);
+		}
+	}
+
+	/**
+	 * Opens the run and reads its first entry
+	 */
+	public void open() {
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		} catch(IOException e) {
+			throw new RuntimeException("Could not read spilled sort file="+file, e);
+		}
+		advance();
+	}
+
+	/**
+	 * @return the current entry or null once the run is used up
+	 */
+	public SortEntry getHead() {
+		return head;
+	}
+
+	public void advance() {
+		try {
+			head = null;
+			if(in.readBoolean()) {
+				byte[] raw = readBytes(in);
+				long seq = in.readLong();
+				head = new SortEntry(raw, orderColumn, codec.read(in), seq);
+			}
+		} catch(IOException e) {
+			throw new RuntimeException("Could not read spilled sort file="+file, e);
+		}
+	}
+
+	public void close() {
+		try {
+			if(in != null)
+				in.close();
+		} catch(IOException e) {
+			throw new RuntimeException("Could not close spilled sort file="+file, e);
+		} finally {
+			in = null;
+			if(file != null)
+				spillFiles.delete(file);
+		}
+	}
+
+	private void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+		if(data == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private byte[] readBytes(DataInputStream input) throws IOException {
+		int len = input.readInt();
+		if(len < 0)
+			return null;
+		byte[] data = new byte[len];
+		input.readFully(data);
+		return data;
+	}
+}
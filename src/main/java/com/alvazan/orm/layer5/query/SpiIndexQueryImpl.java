@@ -2,11 +2,15 @@ package com.alvazan.orm.layer5.query;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import javax.inject.Inject;
+
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
@@ -14,8 +18,11 @@ import org.joda.time.LocalTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
+import com.alvazan.orm.api.base.DbTypeEnum;
 import com.alvazan.orm.api.z5api.IndexColumnInfo;
 import com.alvazan.orm.api.z5api.NoSqlSession;
+import com.alvazan.orm.api.z5api.PageToken;
+import com.alvazan.orm.api.z5api.PartialAggregate;
 import com.alvazan.orm.api.z5api.SpiQueryAdapter;
 import com.alvazan.orm.api.z8spi.Key;
 import com.alvazan.orm.api.z8spi.KeyValue;
@@ -25,10 +32,14 @@ import com.alvazan.orm.api.z8spi.action.IndexColumn;
 import com.alvazan.orm.api.z8spi.conv.ByteArray;
 import com.alvazan.orm.api.z8spi.conv.StandardConverters;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
 import com.alvazan.orm.api.z8spi.iter.IterableWrappingCursor;
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
+import com.alvazan.orm.api.z8spi.meta.AggregateTypeEnum;
 import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.api.z8spi.meta.OrderByInfo;
 import com.alvazan.orm.api.z8spi.meta.ViewInfo;
 import com.alvazan.orm.parser.antlr.ChildSide;
 import com.alvazan.orm.parser.antlr.ExpressionNode;
@@ -43,11 +54,14 @@ import com.alvazan.orm.parser.antlr.ViewInfoImpl;
 
 public class SpiIndexQueryImpl implements SpiQueryAdapter {
 
+	@Inject
+	private DbTypeEnum dbType;
 	private SpiMetaQueryImpl spiMeta;
 	private NoSqlSession session;
 	private Map<String, ByteArray> parameters = new HashMap<String, ByteArray>();
 
 	private Integer batchSize = null;
+	private Integer limit = null;
 	
 	public void setup(SpiMetaQueryImpl spiMetaQueryImpl, NoSqlSession session) {
 		this.spiMeta = spiMetaQueryImpl;
@@ -69,10 +83,110 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 
 	@Override
 	public DirectCursor<IndexColumnInfo> getResultList(Set<ViewInfo> alreadyJoinedViews, String indexedColumn) {
+		return getResultList(alreadyJoinedViews, indexedColumn, null);
+	}
+
+	@Override
+	public DirectCursor<IndexColumnInfo> getResultListAfter(Set<ViewInfo> alreadyJoinedViews, PageToken after) {
+		if(after == null)
+			return getResultList(alreadyJoinedViews, null, null);
+		ViewInfo view = spiMeta.getTargetViews().get(0);
+		ExpressionNode root = spiMeta.getASTTree();
+		if(after.getIndexedValue() == null || !canSeek(root)) {
+			DirectCursor<IndexColumnInfo> cursor = getResultList(alreadyJoinedViews, null, null);
+			return new CursorAfterToken(view, cursor, after, false, isEqSortedByPrimaryKey(root));
+		}
+		Key seekFrom = new Key(after.getIndexedValue(), true);
+		seekFrom.setAfterPrimaryKey(after.getPrimaryKey());
+		DirectCursor<IndexColumnInfo> cursor = getResultList(alreadyJoinedViews, null, seekFrom);
+		return new CursorAfterToken(view, cursor, after, true, dbType.isValueSortedByPrimaryKey());
+	}
+
+	/**
+	 * A scan of one range of one index is sorted by the indexed value(on most databases) so we can
+	 * jump to a value and the entries of one value are sorted by primary key so an EQ scan can jump
+	 * to the primary key
+	 */
+	private boolean canSeek(ExpressionNode root) {
+		if(spiMeta.getTargetViews().size() != 1 || spiMeta.getOrderBy() != null)
+			return false;
+		else if(root == null)
+			return dbType.isIndexSortedByValue();
+		else if(root.getType() == NoSqlLexer.EQ)
+			return dbType.isValueSortedByPrimaryKey() && findScannedIndex(root) != null;
+		return dbType.isIndexSortedByValue() && findScannedIndex(root) != null;
+	}
+
+	/**
+	 * @return true if the results are the entries of one index value in primary key order
+	 */
+	private boolean isEqSortedByPrimaryKey(ExpressionNode root) {
+		if(root == null || root.getType() != NoSqlLexer.EQ || !dbType.isValueSortedByPrimaryKey())
+			return false;
+		DboColumnMeta scanned = findScannedIndex(root);
+		if(scanned == null)
+			return false;
+		OrderByInfo orderBy = spiMeta.getOrderBy();
+		//ordering by the EQ column itself leaves the entries as they are
+		return orderBy == null || (!orderBy.isDescending() && scanned.getColumnName().equals(orderBy.getColumn().getColumnName()));
+	}
+
+	/**
+	 * @return the index the results of a single comparison come back sorted by or null
+	 */
+	private DboColumnMeta findScannedIndex(ExpressionNode root) {
+		if(spiMeta.getTargetViews().size() != 1)
+			return null;
+		switch (root.getType()) {
+		case NoSqlLexer.EQ:
+		case NoSqlLexer.GT:
+		case NoSqlLexer.GE:
+		case NoSqlLexer.LT:
+		case NoSqlLexer.BETWEEN:
+			DboColumnMeta colMeta = findRangeAttribute(root).getColumnInfo();
+			if(colMeta.isIndexed())
+				return colMeta;
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Streams the results in index order when the ORDER BY column is the index we scanned and the
+	 * database keeps its indexes sorted by value, otherwise sorts them
+	 */
+	private DirectCursor<IndexColumnInfo> orderResults(DirectCursor<IndexColumnInfo> cursor, DboColumnMeta scanned) {
+		OrderByInfo orderBy = spiMeta.getOrderBy();
+		if(orderBy == null)
+			return cursor;
+		else if(dbType.isIndexSortedByValue() && scanned != null && scanned.getColumnName().equals(orderBy.getColumn().getColumnName())) {
+			if(orderBy.isDescending())
+				return new CursorReversed(cursor);
+			return cursor;
+		}
+		return new CursorForSort(orderBy, cursor, session, limit, batchSize);
+	}
+
+	/**
+	 * Without a where clause we may as well scan the index of the ORDER BY column when that gives
+	 * us the rows in order
+	 */
+	private String pickIndex(DboTableMeta tableMeta, String indexedColumn) {
+		OrderByInfo orderBy = spiMeta.getOrderBy();
+		if(indexedColumn != null || orderBy == null || !dbType.isIndexSortedByValue())
+			return indexedColumn;
+		DboColumnMeta colMeta = tableMeta.getColumnMeta(orderBy.getColumn().getColumnName());
+		if(colMeta != null && colMeta.isIndexed())
+			return colMeta.getColumnName();
+		return null;
+	}
+
+	private DirectCursor<IndexColumnInfo> getResultList(Set<ViewInfo> alreadyJoinedViews, String indexedColumn, Key seekFrom) {
 		if(alreadyJoinedViews == null || alreadyJoinedViews.size() != 0)
 			throw new IllegalArgumentException("You must pass us a non-null Set that is EMPTY and not null");
 		try {
-			DirectCursor<IndexColumnInfo> cursor = getResultListImpl(alreadyJoinedViews, indexedColumn);
+			DirectCursor<IndexColumnInfo> cursor = getResultListImpl(alreadyJoinedViews, indexedColumn, seekFrom);
 			return cursor;
 		} catch(Exception e) {
 			//why, oh why is InvocationTargetException not runtime as I can't catch it here but it was thrown
@@ -85,7 +199,7 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 		}
 	}
 	
-	private DirectCursor<IndexColumnInfo> getResultListImpl(Set<ViewInfo> alreadyJoinedViews, String indexedColumn) {
+	private DirectCursor<IndexColumnInfo> getResultListImpl(Set<ViewInfo> alreadyJoinedViews, String indexedColumn, Key seekFrom) {
 		ExpressionNode root = spiMeta.getASTTree();
 		if(root == null) {
 			ViewInfoImpl tableInfo = (ViewInfoImpl) spiMeta.getTargetViews().get(0);
@@ -94,16 +208,150 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 			DboColumnMeta partColMeta = null;
 			if (partitionMeta != null)
 				partColMeta = partitionMeta.getPartitionColumn();
-			DboColumnMeta metaCol = tableMeta.getAnyIndex(indexedColumn, partColMeta);
+			DboColumnMeta metaCol = tableMeta.getAnyIndex(pickIndex(tableMeta, indexedColumn), partColMeta);
 
 			ScanInfo scanInfo = createScanInfo(tableInfo, metaCol);
 
 			alreadyJoinedViews.add(tableInfo);
-			AbstractCursor<IndexColumn> scan = session.scanIndex(scanInfo, null, null, batchSize);
-			return processKeys(tableInfo, null, scan);
-		}
+			AbstractCursor<IndexColumn> scan = session.scanIndex(scanInfo, seekFrom, null, batchSize);
+			DboColumnMeta scanned = null;
+			if(metaCol.isIndexed())
+				scanned = metaCol;
+			return orderResults(processKeys(tableInfo, null, scan), scanned);
+		} else if(seekFrom != null)
+			return processRangeExpression(root, alreadyJoinedViews, seekFrom);
 	
-		return processExpressionTree(root, alreadyJoinedViews);
+		DirectCursor<IndexColumnInfo> cursor = processExpressionTree(root, alreadyJoinedViews);
+		return orderResults(cursor, findScannedIndex(root));
+	}
+
+	@Override
+	public boolean aggregateFromIndexes(List<PartialAggregate> aggregates) {
+		ExpressionNode root = spiMeta.getASTTree();
+		StateAttribute attr = null;
+		//with joins the index of one table does not tell us which rows join
+		if(spiMeta.getTargetViews().size() == 1)
+			attr = findIndexToAggregate(root, aggregates);
+
+		if(attr != null && attr.getColumnInfo().isIndexed() && readsOnly(aggregates, attr)) {
+			DboColumnMeta colMeta = attr.getColumnInfo();
+			ScanInfo scanInfo = createScanInfo(attr.getViewInfo(), colMeta);
+			AbstractCursor<IndexColumn> scan;
+			if(root == null)
+				scan = session.scanIndex(scanInfo, null, null, batchSize);
+			else
+				scan = scanIndex(root, scanInfo, colMeta, null);
+			//IN scans one slice per value so only a single slice is sorted by value and only on
+			//backends whose index scans come back sorted at all
+			boolean sorted = dbType.isIndexSortedByValue() && (root == null || root.getType() != NoSqlLexer.IN);
+			aggregateIndex(aggregates, colMeta, scan, sorted);
+			return true;
+		}
+
+		for(PartialAggregate agg : aggregates) {
+			if(agg.getInfo().getColumn() != null)
+				return false;
+		}
+		//only COUNT(*) which needs the matching keys but never the rows
+		DirectCursor<IndexColumnInfo> cursor = getResultList(new HashSet<ViewInfo>(), null);
+		while(cursor.nextImpl() != null) {
+			for(PartialAggregate agg : aggregates) {
+				agg.add(null);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The index that can answer the aggregates on its own, which is the column of the where clause if
+	 * it is a single comparison or otherwise the aggregated column or any index for COUNT(*)
+	 */
+	private StateAttribute findIndexToAggregate(ExpressionNode root, List<PartialAggregate> aggregates) {
+		if(root != null) {
+			switch (root.getType()) {
+			case NoSqlLexer.EQ:
+			case NoSqlLexer.GT:
+			case NoSqlLexer.GE:
+			case NoSqlLexer.LT:
+			case NoSqlLexer.BETWEEN:
+			case NoSqlLexer.IN:
+				return findRangeAttribute(root);
+			default:
+				return null;
+			}
+		}
+
+		ViewInfoImpl view = (ViewInfoImpl) spiMeta.getTargetViews().get(0);
+		for(PartialAggregate agg : aggregates) {
+			AggregateInfo info = agg.getInfo();
+			if(info.getColumn() != null)
+				return new StateAttribute(view, info.getColumn(), info.getTextInSql());
+		}
+		DboColumnMeta partColMeta = null;
+		if(view.getPartition() != null)
+			partColMeta = view.getPartition().getPartitionColumn();
+		DboColumnMeta anyIndex = view.getTableMeta().getAnyIndex(null, partColMeta);
+		return new StateAttribute(view, anyIndex, null);
+	}
+
+	private StateAttribute findRangeAttribute(ExpressionNode root) {
+		if(root.getType() == NoSqlLexer.BETWEEN)
+			return (StateAttribute) root.getChild(ChildSide.LEFT).getChild(ChildSide.LEFT).getState();
+		return (StateAttribute) root.getChild(ChildSide.LEFT).getState();
+	}
+
+	private boolean readsOnly(List<PartialAggregate> aggregates, StateAttribute attr) {
+		for(PartialAggregate agg : aggregates) {
+			DboColumnMeta colMeta = agg.getInfo().getColumn();
+			if(colMeta != null && !colMeta.getColumnName().equals(attr.getColumnInfo().getColumnName()))
+				return false;
+		}
+		return true;
+	}
+
+	private void aggregateIndex(List<PartialAggregate> aggregates, DboColumnMeta colMeta, AbstractCursor<IndexColumn> scan, boolean sorted) {
+		boolean onlyMinMax = sorted;
+		for(PartialAggregate agg : aggregates) {
+			AggregateTypeEnum type = agg.getInfo().getType();
+			if(type != AggregateTypeEnum.MIN && type != AggregateTypeEnum.MAX)
+				onlyMinMax = false;
+		}
+
+		if(onlyMinMax) {
+			//the slice is sorted by value so the answer is the first or last value in it
+			for(PartialAggregate agg : aggregates) {
+				boolean forward = agg.getInfo().getType() == AggregateTypeEnum.MIN;
+				if(forward)
+					scan.beforeFirst();
+				else
+					scan.afterLast();
+				agg.add(endOfSlice(scan, colMeta, forward));
+			}
+			return;
+		}
+
+		for(Holder<IndexColumn> holder = scan.nextImpl(); holder != null; holder = scan.nextImpl()) {
+			Object value = colMeta.convertFromStorage2(holder.getValue().getIndexedValue());
+			for(PartialAggregate agg : aggregates) {
+				agg.add(value);
+			}
+		}
+	}
+
+	private Object endOfSlice(AbstractCursor<IndexColumn> scan, DboColumnMeta colMeta, boolean forward) {
+		while(true) {
+			Holder<IndexColumn> holder;
+			if(forward)
+				holder = scan.nextImpl();
+			else
+				holder = scan.previousImpl();
+			if(holder == null)
+				return null;
+			//rows with no value are in the index too but don't count for MIN or MAX
+			Object value = colMeta.convertFromStorage2(holder.getValue().getIndexedValue());
+			if(value != null)
+				return value;
+		}
 	}
 
 	private ScanInfo createScanInfo(ViewInfoImpl tableInfo, DboColumnMeta metaCol) {
@@ -136,7 +384,7 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 		case NoSqlLexer.LE:
 		case NoSqlLexer.BETWEEN:
 		case NoSqlLexer.IN:
-			return processRangeExpression(parent, alreadyJoinedViews);
+			return processRangeExpression(parent, alreadyJoinedViews, null);
 		default:
 			throw new UnsupportedOperationException("bug, unsupported type="+type);
 		}
@@ -175,6 +423,7 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 		
 		if(root.getType() == NoSqlLexer.AND) {
 			CursorForAnd cursor = new CursorForAnd(leftView, leftResults, rightView, rightResults);
+			cursor.setOrderedByPrimaryKey(isOrderedByPrimaryKey(leftResults), isOrderedByPrimaryKey(rightResults));
 			//AND always returns LESS results(or same) than the left or right sides, 
 			//sooooo, we cache results if there is less than 500 results
 			return new CachingCursor<IndexColumnInfo>(cursor);
@@ -186,7 +435,13 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 		}
 	}
 	
-	private DirectCursor<IndexColumnInfo> processRangeExpression(ExpressionNode root, Set<ViewInfo> alreadyJoinedViews) {
+	private boolean isOrderedByPrimaryKey(DirectCursor<IndexColumnInfo> results) {
+		if(results instanceof CachingCursor)
+			return ((CachingCursor<?>) results).isOrderedByPrimaryKey();
+		return false;
+	}
+
+	private DirectCursor<IndexColumnInfo> processRangeExpression(ExpressionNode root, Set<ViewInfo> alreadyJoinedViews, Key seekFrom) {
 		StateAttribute attr;
 		if(root.getType() == NoSqlLexer.BETWEEN) {
 			ExpressionNode grandChild = root.getChild(ChildSide.LEFT).getChild(ChildSide.LEFT);
@@ -205,7 +460,7 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 		
 		if(info.isIndexed()) {
 			//its an indexed column
-			return processIndexColumn(root, scanInfo, viewInfo, info);
+			return processIndexColumn(root, scanInfo, viewInfo, info, seekFrom);
 		} else if (info.getOwner().getIdColumnMeta().getColumnName().equals(info.getColumnName())) {
 			//its a non-indexed primary key
 			return  processPrimaryKey(root, scanInfo, viewInfo, info);
@@ -213,12 +468,27 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 			throw new IllegalArgumentException("You cannot have '"+info.getColumnName() + "' in your sql query since "+info.getColumnName()+" is neither a Primary Key nor a column with @Index annotation on the field in the entity");			
 	}
 
-	private DirectCursor<IndexColumnInfo> processIndexColumn(ExpressionNode root, ScanInfo scanInfo, ViewInfoImpl viewInfo, DboColumnMeta info) {
+	private DirectCursor<IndexColumnInfo> processIndexColumn(ExpressionNode root, ScanInfo scanInfo, ViewInfoImpl viewInfo, DboColumnMeta info, Key seekFrom) {
+		AbstractCursor<IndexColumn> scan = scanIndex(root, scanInfo, info, seekFrom);
+		CachingCursor<IndexColumnInfo> processKeys = processKeys(viewInfo, info, scan);
+		//on most databases index rows for one value are sorted by primary key so AND can merge join them
+		processKeys.setOrderedByPrimaryKey(root.getType() == NoSqlLexer.EQ && dbType.isValueSortedByPrimaryKey());
+		return processKeys;
+	}
+
+	/**
+	 * @param seekFrom where to start a range scan instead of its lower bound or null
+	 */
+	private AbstractCursor<IndexColumn> scanIndex(ExpressionNode root, ScanInfo scanInfo, DboColumnMeta info, Key seekFrom) {
 		AbstractCursor<IndexColumn> scan;
 		if(root.getType() == NoSqlLexer.EQ) {
 			byte[] data = retrieveValue(info, root.getChild(ChildSide.RIGHT));
 			Key key = new Key(data, true);
-			scan = session.scanIndex(scanInfo, key, key, batchSize);
+			Key from = key;
+			//a page token of this value lets the database start right after the token's entry
+			if(seekFrom != null && Arrays.equals(seekFrom.getKey(), data))
+				from = seekFrom;
+			scan = session.scanIndex(scanInfo, from, key, batchSize);
 		} else if(root.getType() == NoSqlLexer.GT
 				|| root.getType() == NoSqlLexer.GE
 				|| root.getType() == NoSqlLexer.LT
@@ -238,6 +508,8 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 				to = createRightKey(root, info);
 			} else
 				throw new UnsupportedOperationException("not done yet here");
+			if(seekFrom != null)
+				from = seekFrom;
 			scan = session.scanIndex(scanInfo, from, to, batchSize);
 		} else if(root.getType() == NoSqlLexer.IN) {
 			List<byte[]> values = new ArrayList<byte[]>();
@@ -249,8 +521,7 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 			scan = session.scanIndex(scanInfo, values);			
 		} else
 			throw new UnsupportedOperationException("not supported yet. type="+root.getType());
-		DirectCursor<IndexColumnInfo> processKeys = processKeys(viewInfo, info, scan);
-		return processKeys;
+		return scan;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -275,7 +546,9 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 			scan = session.find(info.getOwner(), new IterableWrappingCursor<byte[]>(keyList), false, true, batchSize);
 		} else
 			throw new UnsupportedOperationException("Other operations not supported yet for Primary Key. Use @NoSQLIndexed for Primary Key.type="+root.getType());
-		DirectCursor<IndexColumnInfo> processKeys = processKeysforPK(viewInfo, info, scan);
+		CachingCursor<IndexColumnInfo> processKeys = processKeysforPK(viewInfo, info, scan);
+		//a single key is always sorted
+		processKeys.setOrderedByPrimaryKey(root.getType() == NoSqlLexer.EQ);
 		return processKeys;
 	}
 
@@ -299,12 +572,12 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 			throw new RuntimeException("bug, should never happen, but should be easy to fix this one. type="+node.getType());	
 	}
 
-	private DirectCursor<IndexColumnInfo> processKeys(ViewInfo viewInfo, DboColumnMeta info, AbstractCursor<IndexColumn> scan) {
+	private CachingCursor<IndexColumnInfo> processKeys(ViewInfo viewInfo, DboColumnMeta info, AbstractCursor<IndexColumn> scan) {
 		DirectCursor<IndexColumnInfo> cursor = new CursorSimpleTranslator(viewInfo, info, scan);
 		return new CachingCursor<IndexColumnInfo>(cursor);
 	}
 
-	private DirectCursor<IndexColumnInfo> processKeysforPK(ViewInfo viewInfo, DboColumnMeta info, AbstractCursor<KeyValue<Row>> scan) {
+	private CachingCursor<IndexColumnInfo> processKeysforPK(ViewInfo viewInfo, DboColumnMeta info, AbstractCursor<KeyValue<Row>> scan) {
 		DirectCursor<IndexColumnInfo> cursor = new CursorForPrimaryKey(viewInfo, info, scan);
 		return new CachingCursor<IndexColumnInfo>(cursor);
 	}
@@ -357,4 +630,9 @@ public class SpiIndexQueryImpl implements SpiQueryAdapter {
 		this.batchSize = batchSize;
 	}
 
+	@Override
+	public void setLimit(Integer limit) {
+		this.limit = limit;
+	}
+
 }
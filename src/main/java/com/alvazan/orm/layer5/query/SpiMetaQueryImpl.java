@@ -10,6 +10,8 @@ import javax.inject.Provider;
 import com.alvazan.orm.api.z5api.NoSqlSession;
 import com.alvazan.orm.api.z5api.SpiMetaQuery;
 import com.alvazan.orm.api.z5api.SpiQueryAdapter;
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
+import com.alvazan.orm.api.z8spi.meta.OrderByInfo;
 import com.alvazan.orm.api.z8spi.meta.TypeInfo;
 import com.alvazan.orm.api.z8spi.meta.TypedColumn;
 import com.alvazan.orm.api.z8spi.meta.ViewInfo;
@@ -26,6 +28,8 @@ public class SpiMetaQueryImpl implements SpiMetaQuery {
 	private List<ViewInfo> viewsEagerJoin;
 	private List<ViewInfo> viewsDelayedJoin;
 	private List<ViewInfo> views = new ArrayList<ViewInfo>();
+	private List<AggregateInfo> aggregates;
+	private OrderByInfo orderBy;
 	
 	@Override
 	public SpiQueryAdapter createQueryInstanceFromQuery(NoSqlSession session) {
@@ -99,4 +103,22 @@ public class SpiMetaQueryImpl implements SpiMetaQuery {
 	public void setQueryType(String queryType) {
 		this.queryType = queryType;
 	}
+
+	@Override
+	public List<AggregateInfo> getAggregates() {
+		return aggregates;
+	}
+
+	public void setAggregates(List<AggregateInfo> aggregates) {
+		this.aggregates = aggregates;
+	}
+
+	@Override
+	public OrderByInfo getOrderBy() {
+		return orderBy;
+	}
+
+	public void setOrderBy(OrderByInfo orderBy) {
+		this.orderBy = orderBy;
+	}
 }
@@ -0,0 +1,73 @@
+package com.alvazan.orm.layer5.query;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The temp files a join or sort spills to.  close() deletes them, but cursors are often dropped
+ * part way through without anyone telling us so the files are also deleted once their owner is
+ * garbage collected.  That is checked whenever new SpillFiles are created so no thread is needed.
+ */
+public final class SpillFiles extends PhantomReference<Object> {
+
+	private static final ReferenceQueue<Object> ABANDONED = new ReferenceQueue<Object>();
+	//the references must stay reachable themselves until they are enqueued
+	private static final Set<SpillFiles> LIVE = Collections.synchronizedSet(new HashSet<SpillFiles>());
+
+	private String prefix;
+	private List<File> files = new ArrayList<File>();
+
+	public SpillFiles(Object owner, String prefix) {
+		super(owner, ABANDONED);
+		this.prefix = prefix;
+		deleteAbandoned();
+		LIVE.add(this);
+	}
+
+	private static void deleteAbandoned() {
+		for(Reference<?> ref = ABANDONED.poll(); ref != null; ref = ABANDONED.poll()) {
+			SpillFiles spill = (SpillFiles) ref;
+			spill.close();
+			LIVE.remove(spill);
+		}
+	}
+
+	public synchronized File create() throws IOException {
+		File file = File.createTempFile(prefix, ".spill");
+		files.add(file);
+		return file;
+	}
+
+	public synchronized void delete(File file) {
+		file.delete();
+		files.remove(file);
+	}
+
+	/**
+	 * Deletes every file created so far, more can be created afterwards
+	 */
+	public synchronized void close() {
+		for(File file : files) {
+			file.delete();
+		}
+		files.clear();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+}
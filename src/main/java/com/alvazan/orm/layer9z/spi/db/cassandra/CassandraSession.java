@@ -1,5 +1,6 @@
 package com.alvazan.orm.layer9z.spi.db.cassandra;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -19,6 +20,7 @@ import com.alvazan.orm.api.z8spi.MetaLookup;
 import com.alvazan.orm.api.z8spi.NoSqlRawSession;
 import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.ScanInfo;
+import com.alvazan.orm.api.z8spi.SpiConstants;
 import com.alvazan.orm.api.z8spi.action.Action;
 import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
@@ -58,14 +60,23 @@ public class CassandraSession implements NoSqlRawSession {
 	private ColumnFamilyHelper columnFamilies;
 	@Inject
 	private Provider<Row> rowProvider;
+	private int prefetchDepth = 0;
+	private long prefetchMaxBytes = 16*1024*1024;
+	private int findParallelism = 1;
+	private TokenRing ring;
 	
 	@Override
 	public void start(Map<String, Object> properties) {
+		prefetchDepth = (int) SpiConstants.readLong(properties, SpiConstants.CASSANDRA_PREFETCH_DEPTH, prefetchDepth);
+		prefetchMaxBytes = SpiConstants.readLong(properties, SpiConstants.CASSANDRA_PREFETCH_MAX_BYTES, prefetchMaxBytes);
+		findParallelism = (int) SpiConstants.readLong(properties, SpiConstants.CASSANDRA_FIND_PARALLELISM, findParallelism);
 		try {
 			columnFamilies.start(properties);
 		} catch (ConnectionException e) {
 			throw new RuntimeException(e);
 		}
+		if(findParallelism > 1)
+			ring = TokenRing.load(columnFamilies.getKeyspace());
 	}
 
 	@Override
@@ -90,6 +101,8 @@ public class CassandraSession implements NoSqlRawSession {
 		Keyspace keyspace = columnFamilies.getKeyspace();
 		CursorKeysToRows2 cursor = new CursorKeysToRows2(rowKeys, batchSize, list, rowProvider);
 		cursor.setupMore(keyspace, colFamily, info, cache);
+		cursor.setupPrefetch(prefetchDepth, prefetchMaxBytes);
+		cursor.setupFanOut(ring, findParallelism);
 		return cursor;
 	}
 
@@ -407,6 +420,13 @@ public class CassandraSession implements NoSqlRawSession {
 	public static CompositeRangeBuilder setupRangeBuilder(Key from, Key to, Info info1, boolean reverse) {
 		AnnotatedCompositeSerializer serializer = info1.getCompositeSerializer();
 		CompositeRangeBuilder range = serializer.buildRange();
+		if(from != null && from.getAfterPrimaryKey() != null && to != null && Arrays.equals(from.getKey(), to.getKey())) {
+			//one value, the prefix bounds both ends and we start after the primary key
+			range = range.withPrefix(from.getKey()).greaterThan(from.getAfterPrimaryKey());
+			if (reverse)
+				range = range.reverse();
+			return range;
+		}
 		if(from != null) {
 			if(from.isInclusive())
 				range = range.greaterThanEquals(from.getKey());
@@ -3,9 +3,12 @@ package com.alvazan.orm.layer9z.spi.db.cassandra;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.inject.Provider;
 
@@ -30,10 +33,20 @@ import com.netflix.astyanax.model.Rows;
 import com.netflix.astyanax.query.ColumnFamilyQuery;
 import com.netflix.astyanax.query.RowSliceQuery;
 
+/**
+ * Translates row keys into rows one batch at a time.  With a prefetch depth greater than 0, the
+ * reads for the next batches are already on the wire while the caller works through the current
+ * batch.  We stop issuing reads once prefetchDepth batches are in flight or the rows in flight
+ * are estimated(from the size of rows we already read) to be more than maxPrefetchBytes.
+ *
+ * With a parallelism greater than 1, the keys of a batch are split by token range into sub
+ * batches that are read concurrently(at most parallelism at once) and merged back in the order
+ * the keys were asked for.
+ */
 public class CursorKeysToRows2 extends AbstractCursor<KeyValue<Row>> {
 
 	private static final Logger log = LoggerFactory.getLogger(CursorKeysToRows2.class);
-	
+
 	private Info info;
 	private DirectCursor<byte[]> rowKeys;
 	private int batchSize;
@@ -44,6 +57,16 @@ public class CursorKeysToRows2 extends AbstractCursor<KeyValue<Row>> {
 	private Cache cache;
 	private DboTableMeta cf;
 
+	private int prefetchDepth = 0;
+	private long maxPrefetchBytes = Long.MAX_VALUE;
+	private LinkedList<Batch> prefetched = new LinkedList<Batch>();
+	private boolean prefetchedReverse;
+	private boolean keysExhausted;
+	private long bytesRead;
+	private long rowsRead;
+	private TokenRing ring;
+	private int parallelism = 1;
+
 	public CursorKeysToRows2(DirectCursor<byte[]> rowKeys, int batchSize,
 			BatchListener list, Provider<Row> rowProvider) {
 		this.rowProvider = rowProvider;
@@ -62,7 +85,7 @@ public class CursorKeysToRows2 extends AbstractCursor<KeyValue<Row>> {
 		StringLocal.set(tabs.length());
 		return retVal;
 	}
-	
+
 	public void setupMore(Keyspace keyspace, DboTableMeta cf, Info info, Cache cache) {
 		if(cache == null || keyspace == null || cf == null | info == null)
 			throw new IllegalArgumentException("no params can be null but one was null");
@@ -72,16 +95,44 @@ public class CursorKeysToRows2 extends AbstractCursor<KeyValue<Row>> {
 		this.keyspace = keyspace;
 		beforeFirst();
 	}
+
+	/**
+	 * @param prefetchDepth number of batches to read ahead of the caller, 0 turns prefetching off
+	 * @param maxPrefetchBytes estimated bytes of rows we allow in flight at once
+	 */
+	public void setupPrefetch(int prefetchDepth, long maxPrefetchBytes) {
+		if(prefetchDepth < 0 || maxPrefetchBytes <= 0)
+			throw new IllegalArgumentException("prefetchDepth must be 0 or more and maxPrefetchBytes must be greater than 0");
+		this.prefetchDepth = prefetchDepth;
+		this.maxPrefetchBytes = maxPrefetchBytes;
+	}
+
+	/**
+	 * @param ring the token ring of the keyspace or null to split keys evenly
+	 * @param parallelism max number of sub batches of one batch being read at once, 1 reads
+	 * every batch with a single request
+	 */
+	public void setupFanOut(TokenRing ring, int parallelism) {
+		if(parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be 1 or greater");
+		this.ring = ring;
+		this.parallelism = parallelism;
+	}
+
 	@Override
 	public void beforeFirst() {
+		cancelPrefetch();
 		rowKeys.beforeFirst();
 		cachedRows = null;
+		keysExhausted = false;
 	}
-	
+
 	@Override
 	public void afterLast() {
+		cancelPrefetch();
 		rowKeys.afterLast();
 		cachedRows = null;
+		keysExhausted = false;
 	}
 
 	@Override
@@ -89,192 +140,264 @@ public class CursorKeysToRows2 extends AbstractCursor<KeyValue<Row>> {
 		loadCache();
 		if(cachedRows == null || !cachedRows.hasNext())
 			return null;
-		
+
 		return new Holder<KeyValue<Row>>(cachedRows.next());
 	}
-	
+
 	@Override
 	public com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder<KeyValue<Row>> previousImpl() {
 		loadCacheBackward();
 		if(cachedRows == null || !cachedRows.hasPrevious())
 			return null;
-		
+
 		return new Holder<KeyValue<Row>>(cachedRows.previous());
 	}
 
-	@SuppressWarnings("unchecked")
 	private void loadCache() {
 		if(cachedRows != null && cachedRows.hasNext())
 			return; //There are more rows so return and the code will return the next result from cache
 
-		List<RowHolder<Row>> results = new ArrayList<RowHolder<Row>>();
-		List<byte[]> keysToLookup = new ArrayList<byte[]>();
-		while(results.size() < batchSize) {
-			Holder<byte[]> keyHolder = rowKeys.nextImpl();
-			if(keyHolder == null)
-				break; //we are officially exhausted
-			
-			byte[] nextKey = keyHolder.getValue();
-			RowHolder<Row> result = cache.fromCache(cf, nextKey);
-			if(result == null)
-				keysToLookup.add(nextKey);
-			
-			results.add(result);
+		Batch batch = nextBatch(false);
+		cachedRows = batch.finish().listIterator();
+	}
+
+	private void loadCacheBackward() {
+		if(cachedRows != null && cachedRows.hasPrevious())
+			return; //There are more rows so return and the code will return the next result from cache
+
+		Batch batch = nextBatch(true);
+		cachedRows = batch.finish().listIterator();
+		while (cachedRows.hasNext()) cachedRows.next();
+	}
+
+	private Batch nextBatch(boolean reverse) {
+		if(prefetchedReverse != reverse)
+			rewindPrefetch();
+		prefetchedReverse = reverse;
+
+		Batch batch;
+		if(prefetched.isEmpty())
+			batch = startBatch(reverse);
+		else
+			batch = prefetched.removeFirst();
+
+		//kick off the reads for the batches after this one before we block on this one
+		while(prefetched.size() < prefetchDepth && !keysExhausted && estimatedBytesInFlight() < maxPrefetchBytes) {
+			Batch ahead = startBatch(reverse);
+			if(ahead.numKeysRead == 0)
+				break;
+			ahead.readAhead = true;
+			prefetched.add(ahead);
 		}
-		
-		Iterator<com.netflix.astyanax.model.Row<byte[], byte[]>> resultingRows = null;
-		if(keysToLookup.size() > 0) {
-			if(list != null)
-				list.beforeFetchingNextBatch();
-			
-			ColumnFamily<byte[], byte[]> cf = info.getColumnFamilyObj();
-			ColumnFamilyQuery<byte[], byte[]> q2 = keyspace.prepareQuery(cf);
-			RowSliceQuery<byte[], byte[]> slice = q2.getKeySlice(keysToLookup);
-			
-			long start = System.currentTimeMillis();
-			OperationResult<Rows<byte[], byte[]>> result = execute(slice);
-			if (log.isDebugEnabled())
-				log.debug("executing slice "+slice+" took "+(System.currentTimeMillis()-start));
-			
-			Rows<byte[], byte[]> rows = result.getResult();		
-			resultingRows = rows.iterator();
-			if(list != null)
-				list.afterFetchingNextBatch(rows.size());
-		} else {
-			resultingRows = new ArrayList<com.netflix.astyanax.model.Row<byte[], byte[]>>().iterator();
+		return batch;
+	}
+
+	private long estimatedBytesInFlight() {
+		if(rowsRead == 0)
+			return 0; //we have no idea yet how big rows are
+		long keysInFlight = 0;
+		for(Batch b : prefetched) {
+			keysInFlight += b.keysToLookup.size();
 		}
+		return keysInFlight * (bytesRead / rowsRead);
+	}
 
-		Map<ByteArray, KeyValue<Row>> map = new HashMap<ByteArray, KeyValue<Row>>();
-		while(resultingRows.hasNext()) {
-			com.netflix.astyanax.model.Row<byte[], byte[]> row = resultingRows.next();
-			KeyValue<Row> kv = new KeyValue<Row>();
-			kv.setKey(row.getKey());
-			if(!row.getColumns().isEmpty()) {
-				//Astyanax returns a row when there is none BUT we know if there are 0 columns there is really no row in the database
-				//then
-				Row r = rowProvider.get();
-				r.setKey(row.getKey());
-				CassandraSession.processColumns(row, r);
-				kv.setValue(r);
+	/**
+	 * The caller turned around so put the keys of the batches read ahead back so rowKeys is
+	 * where it would be without prefetching
+	 */
+	private void rewindPrefetch() {
+		while(!prefetched.isEmpty()) {
+			Batch b = prefetched.removeLast();
+			b.cancel();
+			for(int i = 0; i < b.numKeysRead; i++) {
+				if(prefetchedReverse)
+					rowKeys.nextImpl();
+				else
+					rowKeys.previousImpl();
 			}
-			
-			ByteArray b = new ByteArray(row.getKey());
-			map.put(b, kv);
-			cache.cacheRow(cf, row.getKey(), kv.getValue());
 		}
-		
-		//UNFORTUNATELY, astyanax's result is NOT ORDERED by the keys we provided so, we need to iterate over the whole thing here
-		//into our own List :( :( .
-
-		List<KeyValue<Row>> finalRes = new ArrayList<KeyValue<Row>>();
-		Iterator<byte[]> keyIter = keysToLookup.iterator();
-		for(RowHolder<Row> r : results) {
-			if(r == null) {
-				byte[] key = keyIter.next();
-				ByteArray b = new ByteArray(key);
-				KeyValue<Row> kv = map.get(b);
-				finalRes.add(kv);				
-			} else {
-				Row row = r.getValue();
-				KeyValue<Row> kv = new KeyValue<Row>();
-				kv.setKey(r.getKey());
-				kv.setValue(row);
-				finalRes.add(kv);
-			}
+		keysExhausted = false;
+	}
+
+	private void cancelPrefetch() {
+		for(Batch b : prefetched) {
+			b.cancel();
 		}
-		
-		cachedRows = finalRes.listIterator();
+		prefetched.clear();
 	}
-	
-	
-	@SuppressWarnings("unchecked")
-	private void loadCacheBackward() {
-		if(cachedRows != null && cachedRows.hasPrevious())
-			return; //There are more rows so return and the code will return the next result from cache
-		
-		List<RowHolder<Row>> results = new ArrayList<RowHolder<Row>>();
-		List<byte[]> keysToLookup = new ArrayList<byte[]>();
-		while(results.size() < batchSize) {
-			Holder<byte[]> keyHolder = rowKeys.previousImpl();
-			if(keyHolder == null)
+
+	private Batch startBatch(boolean reverse) {
+		Batch batch = new Batch();
+		while(batch.results.size() < batchSize) {
+			Holder<byte[]> keyHolder;
+			if(reverse)
+				keyHolder = rowKeys.previousImpl();
+			else
+				keyHolder = rowKeys.nextImpl();
+			if(keyHolder == null) {
+				keysExhausted = true;
 				break; //we are officially exhausted
-			
-			byte[] previousKey = keyHolder.getValue();
-			RowHolder<Row> result = cache.fromCache(cf, previousKey);
-			if(result == null)
-				keysToLookup.add(0, previousKey);
-			
-			results.add(result);
+			}
+			batch.numKeysRead++;
+
+			byte[] nextKey = keyHolder.getValue();
+			RowHolder<Row> result = cache.fromCache(cf, nextKey);
+			//batches are always kept in forward order so previous() walks them backwards
+			if(reverse) {
+				if(result == null)
+					batch.keysToLookup.add(0, nextKey);
+				batch.results.add(0, result);
+			} else {
+				if(result == null)
+					batch.keysToLookup.add(nextKey);
+				batch.results.add(result);
+			}
 		}
-	
-		Iterator<com.netflix.astyanax.model.Row<byte[], byte[]>> resultingRows = null;
-		if(keysToLookup.size() > 0) {
+
+		if(batch.keysToLookup.size() > 0) {
 			if(list != null)
 				list.beforeFetchingNextBatch();
-			
-			ColumnFamily<byte[], byte[]> cf = info.getColumnFamilyObj();
-			ColumnFamilyQuery<byte[], byte[]> q2 = keyspace.prepareQuery(cf);
-			RowSliceQuery<byte[], byte[]> slice = q2.getKeySlice(keysToLookup);
-			
-			OperationResult<Rows<byte[], byte[]>> result = execute(slice);
-			
-			Rows<byte[], byte[]> rows = result.getResult();		
-			resultingRows = rows.iterator();
-			if(list != null)
-				list.afterFetchingNextBatch(rows.size());
-		} else {
-			resultingRows = new ArrayList<com.netflix.astyanax.model.Row<byte[], byte[]>>().iterator();
+
+			batch.start = System.currentTimeMillis();
+			if(parallelism > 1)
+				batch.notStarted.addAll(TokenRing.split(batch.keysToLookup, ring, parallelism));
+			else
+				batch.notStarted.add(batch.keysToLookup);
+			batch.startMore();
 		}
+		return batch;
+	}
 
-		Map<ByteArray, KeyValue<Row>> map = new HashMap<ByteArray, KeyValue<Row>>();
-		while(resultingRows.hasNext()) {
-			com.netflix.astyanax.model.Row<byte[], byte[]> row = resultingRows.next();
-			KeyValue<Row> kv = new KeyValue<Row>();
-			kv.setKey(row.getKey());
-			if(!row.getColumns().isEmpty()) {
-				//Astyanax returns a row when there is none BUT we know if there are 0 columns there is really no row in the database
-				//then
-				Row r = rowProvider.get();
-				r.setKey(row.getKey());
-				CassandraSession.processColumns(row, r);
-				kv.setValue(r);
+	private Future<OperationResult<Rows<byte[], byte[]>>> executeAsync(
+			RowSliceQuery<byte[], byte[]> slice) {
+		try {
+			return slice.executeAsync();
+		} catch (ConnectionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private class Batch {
+		private List<RowHolder<Row>> results = new ArrayList<RowHolder<Row>>();
+		private List<byte[]> keysToLookup = new ArrayList<byte[]>();
+		private int numKeysRead;
+		//true if the rows were read in the background while the caller could still put them
+		private boolean readAhead;
+		private LinkedList<List<byte[]>> notStarted = new LinkedList<List<byte[]>>();
+		private LinkedList<Future<OperationResult<Rows<byte[], byte[]>>>> inFlight = new LinkedList<Future<OperationResult<Rows<byte[], byte[]>>>>();
+		private long start;
+
+		@SuppressWarnings("unchecked")
+		private void startMore() {
+			while(inFlight.size() < parallelism && !notStarted.isEmpty()) {
+				List<byte[]> keys = notStarted.removeFirst();
+				ColumnFamily<byte[], byte[]> cfObj = info.getColumnFamilyObj();
+				ColumnFamilyQuery<byte[], byte[]> q2 = keyspace.prepareQuery(cfObj);
+				RowSliceQuery<byte[], byte[]> slice = q2.getKeySlice(keys);
+				inFlight.add(executeAsync(slice));
 			}
-			
-			ByteArray b = new ByteArray(row.getKey());
-			map.put(b, kv);
-			cache.cacheRow(cf, row.getKey(), kv.getValue());
 		}
-		
-		//UNFORTUNATELY, astyanax's result is NOT ORDERED by the keys we provided so, we need to iterate over the whole thing here
-		//into our own List :( :( .
-
-		List<KeyValue<Row>> finalRes = new ArrayList<KeyValue<Row>>();
-		Iterator<byte[]> keyIter = keysToLookup.iterator();
-		for(RowHolder<Row> r : results) {
-			if(r == null) {
-				byte[] key = keyIter.next();
-				ByteArray b = new ByteArray(key);
-				KeyValue<Row> kv = map.get(b);
-				finalRes.add(kv);				
+
+		private void cancel() {
+			for(Future<OperationResult<Rows<byte[], byte[]>>> f : inFlight) {
+				f.cancel(true);
+			}
+			inFlight.clear();
+			notStarted.clear();
+		}
+
+		private List<com.netflix.astyanax.model.Row<byte[], byte[]>> readAll() {
+			List<com.netflix.astyanax.model.Row<byte[], byte[]>> rows = new ArrayList<com.netflix.astyanax.model.Row<byte[], byte[]>>();
+			while(!inFlight.isEmpty()) {
+				OperationResult<Rows<byte[], byte[]>> result = get(inFlight.removeFirst());
+				//as soon as one sub batch is back, the next one can go
+				startMore();
+				for(com.netflix.astyanax.model.Row<byte[], byte[]> row : result.getResult()) {
+					rows.add(row);
+				}
+			}
+			if (log.isDebugEnabled())
+				log.debug("reading "+keysToLookup.size()+" keys took "+(System.currentTimeMillis()-start));
+			return rows;
+		}
+
+		private List<KeyValue<Row>> finish() {
+			Iterator<com.netflix.astyanax.model.Row<byte[], byte[]>> resultingRows = null;
+			if(keysToLookup.size() > 0) {
+				List<com.netflix.astyanax.model.Row<byte[], byte[]>> rows = readAll();
+				resultingRows = rows.iterator();
+				if(list != null)
+					list.afterFetchingNextBatch(rows.size());
 			} else {
-				Row row = r.getValue();
+				resultingRows = new ArrayList<com.netflix.astyanax.model.Row<byte[], byte[]>>().iterator();
+			}
+
+			Map<ByteArray, KeyValue<Row>> map = new HashMap<ByteArray, KeyValue<Row>>();
+			while(resultingRows.hasNext()) {
+				com.netflix.astyanax.model.Row<byte[], byte[]> row = resultingRows.next();
 				KeyValue<Row> kv = new KeyValue<Row>();
-				kv.setKey(r.getKey());
-				kv.setValue(row);
-				finalRes.add(kv);
+				kv.setKey(row.getKey());
+				bytesRead += row.getKey().length;
+				rowsRead++;
+				Row r = null;
+				if(!row.getColumns().isEmpty()) {
+					//Astyanax returns a row when there is none BUT we know if there are 0 columns there is really no row in the database
+					//then
+					r = rowProvider.get();
+					r.setKey(row.getKey());
+					CassandraSession.processColumns(row, r);
+					for(com.netflix.astyanax.model.Column<byte[]> col : row.getColumns()) {
+						bytesRead += col.getName().length + col.getByteArrayValue().length;
+					}
+				}
+
+				//a prefetched read may have been in flight while the caller put this row so
+				//what the session has now wins over the database
+				RowHolder<Row> current = null;
+				if(readAhead)
+					current = cache.fromSessionCache(cf, row.getKey());
+				if(current != null) {
+					kv.setValue(current.getValue());
+				} else {
+					kv.setValue(r);
+					cache.cacheRow(cf, row.getKey(), r);
+				}
+
+				ByteArray b = new ByteArray(row.getKey());
+				map.put(b, kv);
 			}
+
+			//UNFORTUNATELY, astyanax's result is NOT ORDERED by the keys we provided so, we need to iterate over the whole thing here
+			//into our own List :( :( .
+
+			List<KeyValue<Row>> finalRes = new ArrayList<KeyValue<Row>>();
+			Iterator<byte[]> keyIter = keysToLookup.iterator();
+			for(RowHolder<Row> r : results) {
+				if(r == null) {
+					byte[] key = keyIter.next();
+					ByteArray b = new ByteArray(key);
+					KeyValue<Row> kv = map.get(b);
+					finalRes.add(kv);
+				} else {
+					Row row = r.getValue();
+					KeyValue<Row> kv = new KeyValue<Row>();
+					kv.setKey(r.getKey());
+					kv.setValue(row);
+					finalRes.add(kv);
+				}
+			}
+			return finalRes;
 		}
-		
-		cachedRows = finalRes.listIterator();
-		while (cachedRows.hasNext()) cachedRows.next();
-	}
 
-	private OperationResult<Rows<byte[], byte[]>> execute(
-			RowSliceQuery<byte[], byte[]> slice) {
-		try {
-			return slice.execute();
-		} catch (ConnectionException e) {
-			throw new RuntimeException(e);
+		private OperationResult<Rows<byte[], byte[]>> get(Future<OperationResult<Rows<byte[], byte[]>>> f) {
+			try {
+				return f.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e);
+			}
 		}
 	}
 
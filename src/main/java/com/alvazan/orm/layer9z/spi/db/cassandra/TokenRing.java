@@ -0,0 +1,108 @@
+package com.alvazan.orm.layer9z.spi.db.cassandra;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.connectionpool.TokenRange;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.partitioner.Partitioner;
+
+/**
+ * Knows which token range(and therefore which replicas) a row key lives in so a big multi-key
+ * find can be split into one sub batch per range instead of one huge batch to one coordinator.
+ */
+public class TokenRing {
+
+	private static final Logger log = LoggerFactory.getLogger(TokenRing.class);
+
+	private Partitioner partitioner;
+	private BigInteger[] endTokens;
+
+	private TokenRing(Partitioner partitioner, BigInteger[] endTokens) {
+		this.partitioner = partitioner;
+		this.endTokens = endTokens;
+	}
+
+	/**
+	 * @return the ring or null if we can't tell where keys live(ie. an order preserving
+	 * partitioner whose tokens are not numbers or the ring could not be read)
+	 */
+	public static TokenRing load(Keyspace keyspace) {
+		try {
+			Partitioner partitioner = keyspace.getPartitioner();
+			List<TokenRange> ranges = keyspace.describeRing();
+			BigInteger[] endTokens = new BigInteger[ranges.size()];
+			for(int i = 0; i < endTokens.length; i++) {
+				endTokens[i] = new BigInteger(ranges.get(i).getEndToken());
+			}
+			Arrays.sort(endTokens);
+			if (log.isInfoEnabled())
+				log.info("loaded token ring of keyspace="+keyspace.getKeyspaceName()+" with "+endTokens.length+" ranges");
+			return new TokenRing(partitioner, endTokens);
+		} catch(ConnectionException e) {
+			log.warn("Could not read token ring so multi-key finds will be split evenly instead", e);
+			return null;
+		} catch(NumberFormatException e) {
+			log.warn("Tokens are not numbers so multi-key finds will be split evenly instead", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Ranges own (previousEnd, end] and the first range also owns everything past the last end
+	 */
+	private int rangeFor(byte[] key) {
+		BigInteger token = new BigInteger(partitioner.getTokenForKey(ByteBuffer.wrap(key)));
+		int index = Arrays.binarySearch(endTokens, token);
+		if(index >= 0)
+			return index;
+		index = -index - 1;
+		if(index == endTokens.length)
+			return 0;
+		return index;
+	}
+
+	/**
+	 * Splits keys by token range and then splits any range with more than its share of the
+	 * keys again so no sub batch is much bigger than keys/parallelism.  Keys keep their relative
+	 * order inside every sub batch.
+	 *
+	 * @param ring may be null in which case keys are only split evenly
+	 */
+	public static List<List<byte[]>> split(List<byte[]> keys, TokenRing ring, int parallelism) {
+		List<List<byte[]>> groups = new ArrayList<List<byte[]>>();
+		if(ring == null || ring.endTokens.length == 0) {
+			groups.add(keys);
+		} else {
+			Map<Integer, List<byte[]>> byRange = new LinkedHashMap<Integer, List<byte[]>>();
+			for(byte[] key : keys) {
+				Integer range = ring.rangeFor(key);
+				List<byte[]> group = byRange.get(range);
+				if(group == null) {
+					group = new ArrayList<byte[]>();
+					byRange.put(range, group);
+				}
+				group.add(key);
+			}
+			groups.addAll(byRange.values());
+		}
+
+		int maxPerBatch = Math.max(1, (keys.size() + parallelism - 1) / parallelism);
+		List<List<byte[]>> subBatches = new ArrayList<List<byte[]>>();
+		for(List<byte[]> group : groups) {
+			for(int i = 0; i < group.size(); i += maxPerBatch) {
+				subBatches.add(group.subList(i, Math.min(group.size(), i + maxPerBatch)));
+			}
+		}
+		return subBatches;
+	}
+}
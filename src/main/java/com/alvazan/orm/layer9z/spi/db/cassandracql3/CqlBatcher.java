@@ -0,0 +1,149 @@
+package com.alvazan.orm.layer9z.spi.db.cassandracql3;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+
+/**
+ * Sends the mutations of a flush.  Mutations of the same partition and template go out together
+ * as one prepared UNLOGGED BATCH routed to a replica of that partition, and at most maxInFlight
+ * requests are outstanding at once.  The native protocol this driver speaks can't batch bound
+ * statements, so the batch itself is prepared.  Its size is always a power of two up to
+ * maxBatchSize so there are only a few of them per template to prepare and cache.
+ */
+public class CqlBatcher {
+
+    private Session session;
+    private int maxBatchSize;
+    private int maxInFlight;
+    private ConcurrentMap<String, PreparedStatement> statements = new ConcurrentHashMap<String, PreparedStatement>();
+
+    public CqlBatcher(Session session, int maxBatchSize, int maxInFlight) {
+        if (maxBatchSize < 1 || maxInFlight < 1)
+            throw new IllegalArgumentException("maxBatchSize="+maxBatchSize+" and maxInFlight="+maxInFlight+" must both be at least 1");
+        this.session = session;
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public void setSession(Session session) {
+        this.session = session;
+        statements.clear();
+    }
+
+    /**
+     * Blocks until every mutation is written and throws the first failure if any of them failed
+     */
+    public void send(List<CqlMutation> mutations) {
+        Map<String, Map<ByteBuffer, List<CqlMutation>>> byTemplate = new LinkedHashMap<String, Map<ByteBuffer, List<CqlMutation>>>();
+        for (CqlMutation m : mutations) {
+            Map<ByteBuffer, List<CqlMutation>> byPartition = byTemplate.get(m.getTemplate());
+            if (byPartition == null) {
+                byPartition = new LinkedHashMap<ByteBuffer, List<CqlMutation>>();
+                byTemplate.put(m.getTemplate(), byPartition);
+            }
+            List<CqlMutation> list = byPartition.get(m.getPartitionKey());
+            if (list == null) {
+                list = new ArrayList<CqlMutation>();
+                byPartition.put(m.getPartitionKey(), list);
+            }
+            list.add(m);
+        }
+
+        LinkedList<ResultSetFuture> inFlight = new LinkedList<ResultSetFuture>();
+        RuntimeException failure = null;
+        for (Map<ByteBuffer, List<CqlMutation>> byPartition : byTemplate.values()) {
+            for (List<CqlMutation> partition : byPartition.values()) {
+                int start = 0;
+                while (start < partition.size() && failure == null) {
+                    int size = chunkSize(partition.size() - start);
+                    if (inFlight.size() >= maxInFlight)
+                        failure = waitFor(inFlight.removeFirst(), failure);
+                    inFlight.add(session.executeAsync(bind(partition.subList(start, start+size))));
+                    start += size;
+                }
+            }
+        }
+
+        while (!inFlight.isEmpty()) {
+            failure = waitFor(inFlight.removeFirst(), failure);
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private int chunkSize(int remaining) {
+        return Integer.highestOneBit(Math.min(remaining, maxBatchSize));
+    }
+
+    private RuntimeException waitFor(ResultSetFuture future, RuntimeException failure) {
+        try {
+            future.getUninterruptibly();
+            return failure;
+        } catch (RuntimeException e) {
+            if (failure != null)
+                return failure;
+            return new RuntimeException("CQL write failed", e);
+        }
+    }
+
+    private BoundStatement bind(List<CqlMutation> chunk) {
+        CqlMutation first = chunk.get(0);
+        String cql = first.getTemplate();
+        if (chunk.size() > 1) {
+            StringBuilder batch = new StringBuilder("BEGIN UNLOGGED BATCH ");
+            for (int i = 0; i < chunk.size(); i++) {
+                batch.append(cql).append("; ");
+            }
+            cql = batch.append("APPLY BATCH").toString();
+        }
+
+        BoundStatement statement = new RoutedStatement(prepare(cql), first.getPartitionKey());
+        int index = 0;
+        for (CqlMutation m : chunk) {
+            for (ByteBuffer value : m.getValues()) {
+                statement.setBytesUnsafe(index++, value);
+            }
+        }
+        return statement;
+    }
+
+    private PreparedStatement prepare(String cql) {
+        PreparedStatement statement = statements.get(cql);
+        if (statement != null)
+            return statement;
+        statement = session.prepare(cql);
+        PreparedStatement existing = statements.putIfAbsent(cql, statement);
+        if (existing != null)
+            return existing;
+        return statement;
+    }
+
+    /**
+     * The driver can't work out the partition of a prepared batch so we tell it for the token aware
+     * load balancing
+     */
+    private static class RoutedStatement extends BoundStatement {
+        private ByteBuffer routingKey;
+
+        public RoutedStatement(PreparedStatement statement, ByteBuffer routingKey) {
+            super(statement);
+            this.routingKey = routingKey;
+        }
+
+        @Override
+        public ByteBuffer getRoutingKey() {
+            return routingKey;
+        }
+    }
+}
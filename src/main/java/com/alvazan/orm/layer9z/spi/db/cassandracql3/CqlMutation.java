@@ -0,0 +1,38 @@
+package com.alvazan.orm.layer9z.spi.db.cassandracql3;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One INSERT or DELETE of a flush.  The values are already serialized in the order of the bind
+ * markers of the template so mutations with the same template can be concatenated into one batch.
+ */
+public class CqlMutation {
+
+    private String table;
+    private String template;
+    private ByteBuffer partitionKey;
+    private ByteBuffer[] values;
+
+    public CqlMutation(String table, String template, ByteBuffer partitionKey, ByteBuffer... values) {
+        this.table = table;
+        this.template = template;
+        this.partitionKey = partitionKey;
+        this.values = values;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public ByteBuffer getPartitionKey() {
+        return partitionKey;
+    }
+
+    public ByteBuffer[] getValues() {
+        return values;
+    }
+}
@@ -1,8 +1,13 @@
 package com.alvazan.orm.layer9z.spi.db.cassandracql3;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -22,32 +27,43 @@ import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
 import com.alvazan.orm.api.z8spi.action.Persist;
 import com.alvazan.orm.api.z8spi.action.PersistIndex;
+import com.alvazan.orm.api.z8spi.action.Remove;
+import com.alvazan.orm.api.z8spi.action.RemoveColumn;
+import com.alvazan.orm.api.z8spi.action.RemoveEnum;
+import com.alvazan.orm.api.z8spi.action.RemoveIndex;
 import com.alvazan.orm.api.z8spi.conv.StandardConverters;
-import com.alvazan.orm.api.z8spi.conv.StorageTypeEnum;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
 import com.alvazan.orm.api.z8spi.iter.DirectCursor;
 import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
-import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.KeyspaceMetadata;
-import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.policies.RoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 
 public class CqlSession implements NoSqlRawSession {
+    private static final int DEFAULT_MAX_BATCH_SIZE = 16;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 64;
     private Session session = null;
     private Cluster cluster = null;
     private KeyspaceMetadata keyspaces = null;
     private String keys = "cql70";
     @Inject
     private Provider<Row> rowProvider;
+    private CqlBatcher batcher;
+    private AtomicLong lastTimestamp = new AtomicLong();
+    private Set<String> existingTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
 
     @Override
     public void start(Map<String, Object> properties) {
+        int maxBatchSize = (int) SpiConstants.readLong(properties, SpiConstants.CQL_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_SIZE);
+        int maxInFlight = (int) SpiConstants.readLong(properties, SpiConstants.CQL_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT);
 
         String cqlSeed = "localhost";
-        cluster = Cluster.builder().addContactPoint(cqlSeed).build();
+        cluster = Cluster.builder().addContactPoint(cqlSeed)
+                .withLoadBalancingPolicy(new TokenAwarePolicy(new RoundRobinPolicy())).build();
         session = cluster.connect();
         keyspaces = cluster.getMetadata().getKeyspace(keys);
         if (keyspaces == null) {
@@ -58,88 +74,155 @@ public class CqlSession implements NoSqlRawSession {
             }
         }
         session = cluster.connect(keys);
+        batcher = new CqlBatcher(session, maxBatchSize, maxInFlight);
     }
 
     @Override
     public void sendChanges(List<Action> actions, MetaLookup ormSession) {
+        List<CqlMutation> mutations = new ArrayList<CqlMutation>();
         for (Action action : actions) {
             if (action instanceof Persist) {
-                persist((Persist) action, ormSession);
+                persist((Persist) action, ormSession, mutations);
+            } else if (action instanceof Remove) {
+                remove((Remove) action, ormSession, mutations);
             } else if (action instanceof PersistIndex) {
-                persistIndex((PersistIndex) action, ormSession);
+                persistIndex((PersistIndex) action, ormSession, mutations);
+            } else if (action instanceof RemoveIndex) {
+                removeIndex((RemoveIndex) action, ormSession, mutations);
+            } else if (action instanceof RemoveColumn) {
+                removeColumn((RemoveColumn) action, ormSession, mutations);
             }
         }
+        batcher.send(mutations);
     }
 
-    private void persist(Persist action, MetaLookup ormSession) {
-        StorageTypeEnum type = action.getColFamily().getNameStorageType();
+    /**
+     * Every statement carries its own timestamp so the batches can go out in any order and still
+     * apply in the order of the actions
+     */
+    private ByteBuffer nextTimestamp() {
+        long now = System.currentTimeMillis() * 1000;
+        while (true) {
+            long last = lastTimestamp.get();
+            long next = Math.max(now, last + 1);
+            if (lastTimestamp.compareAndSet(last, next))
+                return longBytes(next);
+        }
+    }
+
+    private String insertCql(String table) {
+        return "INSERT INTO " + keys + "." + table + " (id, colname, colvalue) VALUES (?, ?, ?) USING TTL ? AND TIMESTAMP ?";
+    }
+
+    private void persist(Persist action, MetaLookup ormSession, List<CqlMutation> mutations) {
         String colFamily = action.getColFamily().getColumnFamily();
         String table = lookupOrCreate(colFamily, ormSession);
-        List<Column> s = action.getColumns();
-        byte[] rowkey = action.getRowKey();
-        byte[] nullArray  = StandardConverters.convertToBytes(SpiConstants.NULL_STRING_FORCQL3);
+        ByteBuffer id = idBytes(action.getRowKey());
+        byte[] nullArray = StandardConverters.convertToBytes(SpiConstants.NULL_STRING_FORCQL3);
+        String cql = insertCql(table);
 
-        for (Column c : s) {
-            try {
-                String colValue = StandardConverters.convertFromBytes(String.class, c.getValue());
-                PreparedStatement statement = session.prepare("INSERT INTO " + keys + "." + table + "(id, colname, colvalue) VALUES (?, ?, ?)");
-                BoundStatement boundStatement = new BoundStatement(statement);
-                if (colValue != null) {
-                    session.execute(boundStatement.bind(StandardConverters.convertFromBytes(String.class, rowkey),
-                            StandardConverters.convertFromBytes(String.class, c.getName()),
-                            ByteBuffer.wrap(c.getValue())));
-                } else {
-                    session.execute(boundStatement.bind(StandardConverters.convertFromBytes(String.class, rowkey),
-                            StandardConverters.convertFromBytes(String.class, c.getName()), ByteBuffer.wrap(nullArray)));
-                }
+        for (Column c : action.getColumns()) {
+            byte[] value = c.getValue();
+            if (value == null)
+                value = nullArray;
+            mutations.add(new CqlMutation(table, cql, id, id, idBytes(c.getName()), ByteBuffer.wrap(value),
+                    intBytes(c.getTtl()), nextTimestamp()));
+        }
+    }
 
-            } catch (Exception e) {
-                System.out.println(c.getValue() + "Exception:" + e.getMessage());
+    private void remove(Remove action, MetaLookup ormSession, List<CqlMutation> mutations) {
+        String table = lookupOrCreate(action.getColFamily().getColumnFamily(), ormSession);
+        ByteBuffer id = idBytes(action.getRowKey());
+        if (action.getAction() == RemoveEnum.REMOVE_ENTIRE_ROW) {
+            String cql = "DELETE FROM " + keys + "." + table + " USING TIMESTAMP ? WHERE id = ?";
+            mutations.add(new CqlMutation(table, cql, id, nextTimestamp(), id));
+        } else if (action.getAction() == RemoveEnum.REMOVE_COLUMNS_FROM_ROW) {
+            for (byte[] name : action.getColumns()) {
+                mutations.add(removeColumn(table, id, name));
             }
-        }
+        } else
+            throw new RuntimeException("Bug, unknown remove action="+action.getAction());
+    }
+
+    private void removeColumn(RemoveColumn action, MetaLookup ormSession, List<CqlMutation> mutations) {
+        String table = lookupOrCreate(action.getColFamily().getColumnFamily(), ormSession);
+        mutations.add(removeColumn(table, idBytes(action.getRowKey()), action.getColumn()));
+    }
 
+    /**
+     * The value is part of the primary key of the table and we don't know it here so this deletes
+     * every cql row of the column name
+     */
+    private CqlMutation removeColumn(String table, ByteBuffer id, byte[] name) {
+        String cql = "DELETE FROM " + keys + "." + table + " USING TIMESTAMP ? WHERE id = ? AND colname = ?";
+        return new CqlMutation(table, cql, id, nextTimestamp(), id, idBytes(name));
     }
 
-    private void persistIndex(PersistIndex action, MetaLookup ormSession) {
+    private void persistIndex(PersistIndex action, MetaLookup ormSession, List<CqlMutation> mutations) {
         String indexCfName = action.getIndexCfName();
         String table = lookupOrCreate(indexCfName, ormSession);
-        byte[] rowKey = action.getRowKey();
+        ByteBuffer id = idBytes(action.getRowKey());
         IndexColumn column = action.getColumn();
-        byte[] key = column.getIndexedValue();
-        byte[] value = column.getPrimaryKey();
-
-        try {
-
-            Object keyObject = null;
-            if (key != null) {
-                PreparedStatement statement = session.prepare("INSERT INTO " + keys + "." + table + "(id, colname, colvalue) VALUES (?, ?, ?)");
-                BoundStatement boundStatement = new BoundStatement(statement);
-                if (indexCfName.equalsIgnoreCase("StringIndice")) {
-                    keyObject = StandardConverters.convertFromBytes(String.class, key);
-                } else if (indexCfName.equalsIgnoreCase("IntegerIndice")) {
-                    keyObject = StandardConverters.convertFromBytes(Long.class, key);
-                } else if (indexCfName.equalsIgnoreCase("DecimalIndice")) {
-                    keyObject = StandardConverters.convertFromBytes(Float.class, key);
-                }
-                session.execute(boundStatement.bind(StandardConverters.convertFromBytes(String.class, rowKey), keyObject, ByteBuffer.wrap(value)));
-            } else {
-                PreparedStatement statement = session.prepare("INSERT INTO " + keys + "." + table + "(id, colname, colvalue) VALUES (?, ?, ?)");
-                BoundStatement boundStatement = new BoundStatement(statement);
-                if (indexCfName.equalsIgnoreCase("IntegerIndice")) {
-                    boundStatement.setString("id", StandardConverters.convertFromBytes(String.class, rowKey));
-                    boundStatement.setBytesUnsafe("colname", ByteBuffer.wrap(new byte[0]));
-                    boundStatement.setBytes("colvalue", ByteBuffer.wrap(value));
-                    session.execute(boundStatement);
-                } else
-                    session.execute(boundStatement.bind(StandardConverters.convertFromBytes(String.class, rowKey), "", ByteBuffer.wrap(value)));
-          }
-        } catch (Exception e) {
-            System.out.println(indexCfName + " Exception:" + e.getMessage());
+        Integer ttl = null;
+        if (action.getRowTtl() > 0)
+            ttl = action.getRowTtl();
+
+        mutations.add(new CqlMutation(table, insertCql(table), id, id, indexKey(indexCfName, column.getIndexedValue()),
+                ByteBuffer.wrap(column.getPrimaryKey()), intBytes(ttl), nextTimestamp()));
+    }
+
+    private void removeIndex(RemoveIndex action, MetaLookup ormSession, List<CqlMutation> mutations) {
+        String indexCfName = action.getIndexCfName();
+        String table = lookupOrCreate(indexCfName, ormSession);
+        ByteBuffer id = idBytes(action.getRowKey());
+        IndexColumn column = action.getColumn();
+        String cql = "DELETE FROM " + keys + "." + table + " USING TIMESTAMP ? WHERE id = ? AND colname = ? AND colvalue = ?";
+        mutations.add(new CqlMutation(table, cql, id, nextTimestamp(), id, indexKey(indexCfName, column.getIndexedValue()),
+                ByteBuffer.wrap(column.getPrimaryKey())));
+    }
+
+    /**
+     * Serializes the indexed value as the type of the colname column of the index table
+     */
+    private ByteBuffer indexKey(String indexCfName, byte[] key) {
+        if (key == null) {
+            if (indexCfName.equalsIgnoreCase("IntegerIndice"))
+                return ByteBuffer.wrap(new byte[0]);
+            return ByteBuffer.wrap(StandardConverters.convertToBytes(""));
+        } else if (indexCfName.equalsIgnoreCase("IntegerIndice")) {
+            return longBytes(StandardConverters.convertFromBytes(Long.class, key));
+        } else if (indexCfName.equalsIgnoreCase("DecimalIndice")) {
+            float f = StandardConverters.convertFromBytes(Float.class, key);
+            return ByteBuffer.allocate(4).putFloat(0, f);
         }
+        return idBytes(key);
+    }
+
+    /**
+     * id and colname are text columns, and the bytes are what the String we read back must be
+     */
+    private ByteBuffer idBytes(byte[] bytes) {
+        String str = StandardConverters.convertFromBytes(String.class, bytes);
+        return ByteBuffer.wrap(StandardConverters.convertToBytes(str));
+    }
 
+    private static ByteBuffer longBytes(long val) {
+        return ByteBuffer.allocate(8).putLong(0, val);
+    }
+
+    /**
+     * A ttl of 0 is no ttl
+     */
+    private static ByteBuffer intBytes(Integer val) {
+        int v = 0;
+        if (val != null)
+            v = val;
+        return ByteBuffer.allocate(4).putInt(0, v);
     }
 
     private String lookupOrCreate(String colFamily1, MetaLookup ormSession) {
+        if (existingTables.contains(colFamily1))
+            return colFamily1;
         if (cluster.getMetadata().getKeyspace(keys).getTable(colFamily1.toLowerCase()) == null) {
             try {
                 if (colFamily1.equalsIgnoreCase("StringIndice")) {
@@ -158,9 +241,10 @@ public class CqlSession implements NoSqlRawSession {
 
             } catch (Exception e) {
                 System.out.println("Excepion in creating table" + colFamily1 + " creation:" + e.getMessage());
-
+                return colFamily1;
             }
         }
+        existingTables.add(colFamily1);
         return colFamily1;
     }
 
@@ -176,6 +260,8 @@ public class CqlSession implements NoSqlRawSession {
             }
         }
         session = cluster.connect(keys);
+        existingTables.clear();
+        batcher.setSession(session);
     }
 
     @Override
@@ -2,6 +2,7 @@ package com.alvazan.orm.layer9z.spi.db.hbase;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -196,12 +197,17 @@ public class CursorOfHbaseIndexes extends AbstractCursor<IndexColumn> {
 		}
 	}
 
+	/**
+	 * The qualifier is the length of the indexed value, the indexed value and then the primary
+	 * key, see HbaseSession.indexQualifier
+	 */
 	public static IndexColumn convertToIndexCol(KeyValue col) {
-		byte[] pk = col.getQualifier();
+		byte[] qualifier = col.getQualifier();
 		byte[] indValue = col.getValue();
 		IndexColumn c = new IndexColumn();
-		if (pk != null) {
-			c.setPrimaryKey(pk);
+		if (qualifier != null) {
+			int start = Bytes.SIZEOF_INT + Bytes.toInt(qualifier, 0);
+			c.setPrimaryKey(Arrays.copyOfRange(qualifier, start, qualifier.length));
 		}
 		if (indValue != null) {
 			c.setIndexedValue(indValue);
@@ -0,0 +1,133 @@
+package com.alvazan.orm.layer9z.spi.db.hbase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+
+/**
+ * The writes of one flush merged per row in the order of the actions.  Everything is written with
+ * the same timestamp so a cell is never both put and deleted, the later action wins.  Removing a
+ * whole family is written just below the timestamp so puts after it in the same flush survive.
+ */
+public class HbaseMutations {
+
+	private long timestamp;
+	private Map<ByteArray, RowMutation> rows = new LinkedHashMap<ByteArray, RowMutation>();
+
+	public HbaseMutations(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	public void put(byte[] row, byte[] family, byte[] qualifier, byte[] value) {
+		RowMutation r = rowFor(row);
+		CellKey cell = new CellKey(family, qualifier);
+		r.deletes.remove(cell);
+		r.puts.put(cell, value);
+	}
+
+	public void deleteColumn(byte[] row, byte[] family, byte[] qualifier) {
+		RowMutation r = rowFor(row);
+		CellKey cell = new CellKey(family, qualifier);
+		r.puts.remove(cell);
+		r.deletes.add(cell);
+	}
+
+	public void deleteFamily(byte[] row, byte[] family) {
+		RowMutation r = rowFor(row);
+		ByteArray fam = new ByteArray(family);
+		removeCells(r.puts.keySet(), fam);
+		removeCells(r.deletes, fam);
+		r.deletedFamilies.add(fam);
+	}
+
+	private void removeCells(Set<CellKey> cells, ByteArray family) {
+		Iterator<CellKey> iter = cells.iterator();
+		while(iter.hasNext()) {
+			if(iter.next().family.equals(family))
+				iter.remove();
+		}
+	}
+
+	private RowMutation rowFor(byte[] row) {
+		ByteArray key = new ByteArray(row);
+		RowMutation r = rows.get(key);
+		if(r == null) {
+			r = new RowMutation();
+			rows.put(key, r);
+		}
+		return r;
+	}
+
+	public List<Put> getPuts() {
+		List<Put> puts = new ArrayList<Put>();
+		for(Map.Entry<ByteArray, RowMutation> entry : rows.entrySet()) {
+			RowMutation r = entry.getValue();
+			if(r.puts.isEmpty())
+				continue;
+			Put put = new Put(entry.getKey().getKey());
+			for(Map.Entry<CellKey, byte[]> cell : r.puts.entrySet()) {
+				CellKey c = cell.getKey();
+				put.add(c.family.getKey(), c.qualifier.getKey(), timestamp, cell.getValue());
+			}
+			puts.add(put);
+		}
+		return puts;
+	}
+
+	public List<Delete> getDeletes() {
+		List<Delete> deletes = new ArrayList<Delete>();
+		for(Map.Entry<ByteArray, RowMutation> entry : rows.entrySet()) {
+			RowMutation r = entry.getValue();
+			if(r.deletes.isEmpty() && r.deletedFamilies.isEmpty())
+				continue;
+			Delete delete = new Delete(entry.getKey().getKey());
+			for(ByteArray family : r.deletedFamilies) {
+				delete.deleteFamily(family.getKey(), timestamp-1);
+			}
+			for(CellKey c : r.deletes) {
+				delete.deleteColumns(c.family.getKey(), c.qualifier.getKey(), timestamp);
+			}
+			deletes.add(delete);
+		}
+		return deletes;
+	}
+
+	private static class RowMutation {
+		private Set<ByteArray> deletedFamilies = new HashSet<ByteArray>();
+		private Map<CellKey, byte[]> puts = new LinkedHashMap<CellKey, byte[]>();
+		private Set<CellKey> deletes = new LinkedHashSet<CellKey>();
+	}
+
+	private static class CellKey {
+		private ByteArray family;
+		private ByteArray qualifier;
+
+		public CellKey(byte[] family, byte[] qualifier) {
+			this.family = new ByteArray(family);
+			this.qualifier = new ByteArray(qualifier);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * family.hashCode() + qualifier.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof CellKey))
+				return false;
+			CellKey other = (CellKey) obj;
+			return family.equals(other.family) && qualifier.equals(other.qualifier);
+		}
+	}
+}
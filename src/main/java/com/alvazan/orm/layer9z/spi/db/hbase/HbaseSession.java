@@ -1,8 +1,6 @@
 package com.alvazan.orm.layer9z.spi.db.hbase;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,12 +42,9 @@ import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.MasterNotRunningException;
 import org.apache.hadoop.hbase.ZooKeeperConnectionException;
 import org.apache.hadoop.hbase.client.Delete;
-import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.HTablePool;
-import org.apache.hadoop.hbase.client.Put;
-import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.util.Bytes;
 
 public class HbaseSession implements NoSqlRawSession {
@@ -76,40 +71,64 @@ public class HbaseSession implements NoSqlRawSession {
 	/** The pool size. */
 	private int poolSize = 100;
 
-	@Override
-	public void sendChanges(List<Action> actions, MetaLookup ormSession) {
+	private long lastTimestamp;
 
+	/**
+	 * Merges the actions into one set of puts and deletes with no reads, buffers the puts with
+	 * autoflush off and commits once.  The table is shared so flushes take turns.
+	 */
+	@Override
+	public synchronized void sendChanges(List<Action> actions, MetaLookup ormSession) {
+		HbaseMutations mutations = new HbaseMutations(nextTimestamp());
 		for (Action action : actions) {
 			if (action instanceof Persist) {
-				persist((Persist) action, ormSession);
+				persist((Persist) action, ormSession, mutations);
 			} else if (action instanceof Remove) {
-				remove((Remove) action, ormSession);
+				remove((Remove) action, ormSession, mutations);
 			} else if (action instanceof PersistIndex) {
-				persistIndex((PersistIndex) action, ormSession);
+				persistIndex((PersistIndex) action, ormSession, mutations);
 			} else if (action instanceof RemoveIndex) {
-				removeIndex((RemoveIndex) action, ormSession);
+				removeIndex((RemoveIndex) action, ormSession, mutations);
 			} else if (action instanceof RemoveColumn) {
-				removeColumn((RemoveColumn) action, ormSession);
+				removeColumn((RemoveColumn) action, ormSession, mutations);
 			}
 		}
+
+		try {
+			hTable.setAutoFlush(false);
+			List<Delete> deletes = mutations.getDeletes();
+			if (!deletes.isEmpty())
+				hTable.delete(deletes);
+			hTable.put(mutations.getPuts());
+			hTable.flushCommits();
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write changes to hbase", e);
+		}
+	}
+
+	/**
+	 * Each flush needs its own timestamp, one higher than the last, since removing a family is
+	 * written at timestamp-1
+	 */
+	private long nextTimestamp() {
+		long now = System.currentTimeMillis();
+		lastTimestamp = Math.max(now, lastTimestamp + 1);
+		return lastTimestamp;
 	}
 
-	private void remove(Remove action, MetaLookup ormSession) {
+	private void remove(Remove action, MetaLookup ormSession, HbaseMutations mutations) {
 		byte[] rowKey = action.getRowKey();
 		if (action.getAction() == null)
 			throw new IllegalArgumentException("action param is missing ActionEnum so we know to remove entire row or just columns in the row");
+		byte[] family = familyOf(action.getColFamily().getColumnFamily(), ormSession);
 		switch (action.getAction()) {
 		case REMOVE_ENTIRE_ROW:
-			Delete delete = new Delete(rowKey);
-			try {
-				hTable.delete(delete);
-			} catch (IOException e) {
-
-				e.printStackTrace();
-			}
+			mutations.deleteFamily(rowKey, family);
 			break;
 		case REMOVE_COLUMNS_FROM_ROW:
-			removeColumns(action, ormSession);
+			for (byte[] col : action.getColumns()) {
+				mutations.deleteColumn(rowKey, family, col);
+			}
 			break;
 		default:
 			throw new RuntimeException("bug, unknown remove action="
@@ -117,102 +136,56 @@ public class HbaseSession implements NoSqlRawSession {
 		}
 	}
 
-	private void removeColumns(Remove action, MetaLookup ormSession) {
-		String colFamily = action.getColFamily().getColumnFamily();
+	private byte[] familyOf(String colFamily, MetaLookup ormSession) {
 		Info info = lookupOrCreate(colFamily, ormSession);
 		HColumnDescriptor hColumnDescriptor = info.getColFamily();
-		String tableName = hColumnDescriptor.getNameAsString();
-		byte[] colFamilyBytes = Bytes.toBytes(tableName);
-		Collection<byte[]> columns = action.getColumns();
-		List<Delete> listDelete = new ArrayList<Delete>();
-		for (byte[] col : columns) {
-			Delete delete = new Delete(action.getRowKey());
-			delete.deleteColumns(colFamilyBytes, col);
-			listDelete.add(delete);
-		}
-		try {
-			hTable.delete(listDelete);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-
+		return Bytes.toBytes(hColumnDescriptor.getNameAsString());
 	}
 
-	private void removeIndex(RemoveIndex action, MetaLookup ormSession) {
+	private void removeIndex(RemoveIndex action, MetaLookup ormSession, HbaseMutations mutations) {
 		String indexCfName = action.getIndexCfName();
-		if (indexCfName.equalsIgnoreCase("BytesIndice"))
-			return;
 		byte[] family = Bytes.toBytes(indexCfName);
-		byte[] rowKey = action.getRowKey();
 		IndexColumn column = action.getColumn();
-		byte[] value = column.getPrimaryKey();
-		Delete delete = new Delete(rowKey);
-		delete.deleteColumn(family, value);
-		try {
-			hTable.delete(delete);
-			hTable.flushCommits();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		byte[] indexedValue = indexedValue(indexCfName, column.getIndexedValue());
+		mutations.deleteColumn(action.getRowKey(), family, indexQualifier(indexedValue, column.getPrimaryKey()));
 	}
 
-	private void removeColumn(RemoveColumn action, MetaLookup ormSession) {
-		Info info = lookupOrCreate(action.getColFamily().getColumnFamily(), ormSession);
-		HColumnDescriptor hColumnDescriptor=info.getColFamily();
-		String tableName = hColumnDescriptor.getNameAsString();
-		byte[] colFamily = Bytes.toBytes(tableName);
-		byte[] c = action.getColumn();
-		Delete delete = new Delete(action.getRowKey());
-		delete.deleteColumns(colFamily, c);
-		try {
-			hTable.delete(delete);
-			hTable.flushCommits();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-
+	private void removeColumn(RemoveColumn action, MetaLookup ormSession, HbaseMutations mutations) {
+		byte[] family = familyOf(action.getColFamily().getColumnFamily(), ormSession);
+		mutations.deleteColumn(action.getRowKey(), family, action.getColumn());
 	}
 
-	private void persistIndex(PersistIndex action, MetaLookup ormSession) {
+	private void persistIndex(PersistIndex action, MetaLookup ormSession, HbaseMutations mutations) {
 		String indexCfName = action.getIndexCfName();
 		Info info = lookupOrCreate(indexCfName, ormSession);
 		HColumnDescriptor hColFamily = info.getColFamily();
-		byte[] rowKey = action.getRowKey();
 		IndexColumn column = action.getColumn();
-		byte[] key = column.getIndexedValue();
-		byte[] value = column.getPrimaryKey();
-		Get get = new Get(rowKey);
-		Object keyToPersist = null;
-		byte[] byteArr = null;
-		if (key != null) {
-			if ((indexCfName.equalsIgnoreCase("IntegerIndice"))) {
-				keyToPersist = StandardConverters.convertFromBytes(Integer.class, key);
-				int tempInt = ((Integer) keyToPersist).intValue();
-				tempInt ^= (1 << 31);
-				byteArr = Bytes.toBytes(tempInt);
-			} else
-				byteArr = key;
-		}
+		byte[] indexedValue = indexedValue(indexCfName, column.getIndexedValue());
+		mutations.put(action.getRowKey(), hColFamily.getName(), indexQualifier(indexedValue, column.getPrimaryKey()), indexedValue);
+	}
 
-		try {
-			Result result = hTable.get(get);
-			byte[] existing = result.getValue(hColFamily.getName(), value);
-			if (existing != null) {
-				if (!Bytes.equals(existing, byteArr)) {
-					Put put = new Put(rowKey);
-					put.add(hColFamily.getName(), value, byteArr);
-					hTable.put(put);
-					hTable.flushCommits();
-				}
-			} else {
-				Put put = new Put(rowKey);
-				put.add(hColFamily.getName(), value, byteArr);
-				hTable.put(put);
-				hTable.flushCommits();
-			}
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * Integers are stored with the sign bit flipped so they sort as unsigned bytes
+	 */
+	private byte[] indexedValue(String indexCfName, byte[] key) {
+		if (key == null)
+			return new byte[0];
+		else if (!indexCfName.equalsIgnoreCase("IntegerIndice"))
+			return key;
+		int tempInt = StandardConverters.convertFromBytes(Integer.class, key);
+		tempInt ^= (1 << 31);
+		return Bytes.toBytes(tempInt);
+	}
+
+	/**
+	 * The qualifier is the length of the indexed value, the indexed value and then the primary key
+	 * so one primary key can be in the index row under many values and an entry can be written or
+	 * removed without reading the row first.  Without the length, value "1" with key "23" and value
+	 * "12" with key "3" would be the same qualifier.  The cell value is the indexed value as well
+	 * so scans can filter on it.
+	 */
+	public static byte[] indexQualifier(byte[] indexedValue, byte[] primaryKey) {
+		return Bytes.add(Bytes.toBytes(indexedValue.length), indexedValue, primaryKey);
 	}
 
 
@@ -334,73 +307,25 @@ public class HbaseSession implements NoSqlRawSession {
 		return cursor;
 	}
 
-	private void persist(Persist action, MetaLookup ormSession) {
+	private void persist(Persist action, MetaLookup ormSession, HbaseMutations mutations) {
 		StorageTypeEnum type = action.getColFamily().getNameStorageType();
 		String colFamily = action.getColFamily().getColumnFamily();
 		Info info = lookupOrCreate(colFamily, ormSession);
 		HColumnDescriptor hColFamily = info.getColFamily();
 		byte[] rowKey = action.getRowKey();
-		Put put = new Put(rowKey);
-		try {
+		for (Column col : action.getColumns()) {
+			byte[] qualifier = col.getName();
 			if (type == StorageTypeEnum.INTEGER) {
-				for (Column col : action.getColumns()) {
-					byte[] qualifier = new byte[0];
-					qualifier = col.getName();
-					int fillipedNumber = StandardConverters.convertFromBytes(
-							Integer.class, qualifier);
-					fillipedNumber ^= (1 << 31);
-					qualifier = Bytes.toBytes(fillipedNumber);
-					byte[] value = new byte[0];
-					if (col.getValue() != null) {
-						value = col.getValue();
-					}
-					put.add(hColFamily.getName(), qualifier, value);
-					hTable.put(put);
-				}
-
-			} else {
-				for (Column col : action.getColumns()) {
-					byte[] qualifier = new byte[0];
-					qualifier = col.getName();
-					byte[] value = new byte[0];
-					if (col.getValue() != null) {
-						value = col.getValue();
-					}
-					put.add(hColFamily.getName(), qualifier, value);
-					hTable.put(put);
-				}
-
+				int fillipedNumber = StandardConverters.convertFromBytes(Integer.class, qualifier);
+				fillipedNumber ^= (1 << 31);
+				qualifier = Bytes.toBytes(fillipedNumber);
 			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-
-		try {
-			hTable.flushCommits();
-			// hTable.close();
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-	}
-
-	public Result findOrCreateRow(HColumnDescriptor hColFamily, byte[] key) {
-		Get get = new Get(key);
-		Result r = new Result();
-		try {
-			r = hTable.get(get);
-			if (r == null) {
-				Put put = new Put(key);
-				hTable.put(put);
-				hTable.flushCommits();
-				r = hTable.get(get);
+			byte[] value = new byte[0];
+			if (col.getValue() != null) {
+				value = col.getValue();
 			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			mutations.put(rowKey, hColFamily.getName(), qualifier, value);
 		}
-		return r;
 	}
 
 	public Info lookupOrCreate(String virtualCf, MetaLookup ormSession) {
@@ -8,6 +8,7 @@ import org.apache.hadoop.hbase.client.HTableInterface;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
 import org.apache.hadoop.hbase.util.Bytes;
 import com.alvazan.orm.api.z8spi.BatchListener;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
@@ -85,13 +86,17 @@ public class ScanHbaseDbCollection extends AbstractCursor<IndexColumn> {
 		byte[] family = Bytes.toBytes(indTable);
 		Scan scan = new Scan();
 		scan.addFamily(family);
+		// only the row keys are used
+		scan.setFilter(new FirstKeyOnlyFilter());
 		if (needToGetBatch) {
 			if (batchListener != null)
 				batchListener.beforeFetchingNextBatch();
 			ResultScanner rs;
 			List<byte[]> finalRes = new ArrayList<byte[]>();
+			// setBatch would split wide rows into several results with the same key, caching
+			// just fetches more rows per round trip
 			if (batchSize != null)
-				scan.setBatch(batchSize);
+				scan.setCaching(batchSize);
 			try {
 				rs = hTable.getScanner(scan);
 				for (Result r = rs.next(); r != null; r = rs.next()) {
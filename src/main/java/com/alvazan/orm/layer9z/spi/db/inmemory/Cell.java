@@ -0,0 +1,227 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IndexedRow.OurKey;
+
+/**
+ * One column, one index entry or a tombstone of either (or of a whole row) as kept by the memory
+ * mapped store.  Cells are written to the commit log and to segment files in the same format.
+ */
+public class Cell {
+
+	public static final byte ROW_TOMBSTONE = 0;
+	public static final byte COLUMN = 1;
+	public static final byte COLUMN_TOMBSTONE = 2;
+	public static final byte INDEX = 3;
+	public static final byte INDEX_TOMBSTONE = 4;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private byte type;
+	private byte[] rowKey;
+	//the column name or for index cells the indexed value
+	private byte[] name;
+	//the primary key for index cells
+	private byte[] postfix;
+	private byte[] value;
+	private Long timestamp;
+	private Integer ttl;
+	private long expireAt;
+	private String columnName;
+
+	private ByteArray nameArray;
+	private OurKey ourKey;
+
+	private Cell(byte type, byte[] rowKey) {
+		this.type = type;
+		this.rowKey = rowKey;
+	}
+
+	public static Cell rowTombstone(byte[] rowKey) {
+		return new Cell(ROW_TOMBSTONE, rowKey);
+	}
+
+	public static Cell column(byte[] rowKey, Column col) {
+		Cell c = new Cell(COLUMN, rowKey);
+		c.name = col.getName();
+		c.value = col.getValue();
+		c.timestamp = col.getTimestamp();
+		c.ttl = col.getTtl();
+		if(c.ttl != null && c.ttl > 0)
+			c.expireAt = System.currentTimeMillis() + 1000L * c.ttl;
+		return c;
+	}
+
+	public static Cell columnTombstone(byte[] rowKey, byte[] name) {
+		Cell c = new Cell(COLUMN_TOMBSTONE, rowKey);
+		c.name = name;
+		return c;
+	}
+
+	public static Cell index(byte[] rowKey, IndexColumn col) {
+		Cell c = new Cell(INDEX, rowKey);
+		c.name = col.getIndexedValue();
+		c.postfix = col.getPrimaryKey();
+		c.value = col.getValue();
+		c.timestamp = col.getTimestamp();
+		c.ttl = col.getTtl();
+		c.columnName = col.getColumnName();
+		return c;
+	}
+
+	public static Cell indexTombstone(byte[] rowKey, IndexColumn col) {
+		Cell c = new Cell(INDEX_TOMBSTONE, rowKey);
+		c.name = col.getIndexedValue();
+		c.postfix = col.getPrimaryKey();
+		return c;
+	}
+
+	/**
+	 * A cell that is only used to find where to start or stop reading an index row.  A null
+	 * postfix sorts after every primary key of that indexed value.
+	 */
+	public static Cell indexProbe(byte[] rowKey, byte[] indexedValue, byte[] postfix) {
+		Cell c = new Cell(INDEX, rowKey);
+		c.name = indexedValue;
+		c.postfix = postfix;
+		return c;
+	}
+
+	public static Cell columnProbe(byte[] rowKey, byte[] name) {
+		Cell c = new Cell(COLUMN, rowKey);
+		c.name = name;
+		return c;
+	}
+
+	public byte getType() {
+		return type;
+	}
+
+	public byte[] getRowKey() {
+		return rowKey;
+	}
+
+	public boolean isRowTombstone() {
+		return type == ROW_TOMBSTONE;
+	}
+
+	public boolean isTombstone() {
+		return type == ROW_TOMBSTONE || type == COLUMN_TOMBSTONE || type == INDEX_TOMBSTONE;
+	}
+
+	public boolean isExpired(long now) {
+		return expireAt > 0 && now >= expireAt;
+	}
+
+	ByteArray getNameArray() {
+		if(nameArray == null)
+			nameArray = new ByteArray(name);
+		return nameArray;
+	}
+
+	OurKey getOurKey() {
+		if(ourKey == null)
+			ourKey = new OurKey(name, postfix);
+		return ourKey;
+	}
+
+	public Column toColumn() {
+		Column c = new Column();
+		c.setName(name);
+		c.setValue(value);
+		c.setTimestamp(timestamp);
+		c.setTtl(ttl);
+		return c;
+	}
+
+	public IndexColumn toIndexColumn() {
+		IndexColumn c = new IndexColumn();
+		c.setIndexedValue(name);
+		c.setPrimaryKey(postfix);
+		c.setValue(value);
+		c.setTimestamp(timestamp);
+		c.setTtl(ttl);
+		c.setColumnName(columnName);
+		return c;
+	}
+
+	/**
+	 * rough number of bytes this cell takes on the heap
+	 */
+	public int sizeEstimate() {
+		return 64 + length(rowKey) + length(name) + length(postfix) + length(value);
+	}
+
+	private static int length(byte[] data) {
+		if(data == null)
+			return 0;
+		return data.length;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(type);
+		writeBytes(out, rowKey);
+		writeBytes(out, name);
+		writeBytes(out, postfix);
+		writeBytes(out, value);
+		out.writeLong(timestamp == null ? Long.MIN_VALUE : timestamp);
+		out.writeInt(ttl == null ? Integer.MIN_VALUE : ttl);
+		out.writeLong(expireAt);
+		writeBytes(out, columnName == null ? null : columnName.getBytes(UTF8));
+	}
+
+	/**
+	 * Reads the cell at the buffer's position and moves the position past it.  Throws
+	 * BufferUnderflowException if the buffer ends in the middle of the cell.
+	 */
+	public static Cell read(ByteBuffer buf) {
+		byte type = buf.get();
+		if(type < ROW_TOMBSTONE || type > INDEX_TOMBSTONE)
+			throw new IllegalStateException("corrupt cell, unknown type="+type+" at position="+(buf.position()-1));
+		Cell c = new Cell(type, readBytes(buf));
+		c.name = readBytes(buf);
+		c.postfix = readBytes(buf);
+		c.value = readBytes(buf);
+		long time = buf.getLong();
+		if(time != Long.MIN_VALUE)
+			c.timestamp = time;
+		int t = buf.getInt();
+		if(t != Integer.MIN_VALUE)
+			c.ttl = t;
+		c.expireAt = buf.getLong();
+		byte[] colName = readBytes(buf);
+		if(colName != null)
+			c.columnName = new String(colName, UTF8);
+		return c;
+	}
+
+	static void writeBytes(DataOutput out, byte[] data) throws IOException {
+		if(data == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	static byte[] readBytes(ByteBuffer buf) {
+		int len = buf.getInt();
+		if(len < 0)
+			return null;
+		byte[] data = new byte[len];
+		buf.get(data);
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "type="+type+" rowKey="+new ByteArray(rowKey)+" name="+new ByteArray(name);
+	}
+}
@@ -0,0 +1,45 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.util.Comparator;
+
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IndexedRow.OurKey;
+
+/**
+ * Orders cells by row key and then by column the same way the heap rows of the SortType do.  A
+ * row tombstone sorts before every column of its row.
+ */
+public class CellComparator implements Comparator<Cell> {
+
+	private Comparator<ByteArray> columnComparator;
+	private Comparator<OurKey> prefixComparator;
+
+	public CellComparator(SortType sortType) {
+		this.columnComparator = Table.columnComparator(sortType);
+		this.prefixComparator = Table.prefixComparator(sortType);
+	}
+
+	@Override
+	public int compare(Cell o1, Cell o2) {
+		int result = ByteArray.compare(o1.getRowKey(), o2.getRowKey());
+		if(result != 0)
+			return result;
+		return compareInRow(o1, o2);
+	}
+
+	public int compareRowKey(Cell o1, Cell o2) {
+		return ByteArray.compare(o1.getRowKey(), o2.getRowKey());
+	}
+
+	public int compareInRow(Cell o1, Cell o2) {
+		if(o1.isRowTombstone())
+			return o2.isRowTombstone() ? 0 : -1;
+		else if(o2.isRowTombstone())
+			return 1;
+		else if(prefixComparator != null)
+			return prefixComparator.compare(o1.getOurKey(), o2.getOurKey());
+		else if(columnComparator != null)
+			return columnComparator.compare(o1.getNameArray(), o2.getNameArray());
+		return o1.getNameArray().compareTo(o2.getNameArray());
+	}
+}
@@ -0,0 +1,145 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Merges sorted cell sources where the first source is the newest.  For cells with the same key
+ * only the one from the newest source is kept, and a row tombstone hides every cell of that row
+ * in sources older than the one it is in.  Without keepTombstones, tombstones and expired cells
+ * are dropped so only live data comes out.
+ */
+public class CellMerger {
+
+	private PriorityQueue<Head> heads;
+	private CellComparator comparator;
+	private boolean keepTombstones;
+	private byte[] onlyRow;
+	private Cell end;
+	private boolean endInclusive = true;
+	private long now = System.currentTimeMillis();
+
+	private byte[] currentRow;
+	private int rowTombstoneSource = Integer.MAX_VALUE;
+	private Cell next;
+	private boolean done;
+
+	/**
+	 * @param onlyRow stop at the end of this row or null to read through all rows
+	 * @param end stop after this cell or null to read to the end
+	 */
+	public CellMerger(List<Iterator<Cell>> sources, final CellComparator comparator, boolean keepTombstones, byte[] onlyRow, Cell end) {
+		this.comparator = comparator;
+		this.keepTombstones = keepTombstones;
+		this.onlyRow = onlyRow;
+		this.end = end;
+		heads = new PriorityQueue<Head>(Math.max(1, sources.size()), new Comparator<Head>() {
+			@Override
+			public int compare(Head o1, Head o2) {
+				int result = comparator.compare(o1.cell, o2.cell);
+				if(result != 0)
+					return result;
+				return o1.source - o2.source;
+			}
+		});
+		for(int i = 0; i < sources.size(); i++) {
+			Iterator<Cell> iter = sources.get(i);
+			if(iter.hasNext())
+				heads.add(new Head(iter.next(), i, iter));
+		}
+	}
+
+	/**
+	 * Stop before end instead of after it
+	 */
+	public void setEndExclusive() {
+		endInclusive = false;
+	}
+
+	public boolean hasNext() {
+		return peek() != null;
+	}
+
+	public Cell peek() {
+		if(next == null && !done)
+			next = advance();
+		return next;
+	}
+
+	public Cell next() {
+		Cell c = peek();
+		if(c == null)
+			throw new NoSuchElementException();
+		next = null;
+		return c;
+	}
+
+	private Cell advance() {
+		while(!heads.isEmpty()) {
+			Head newest = heads.poll();
+			Cell cell = newest.cell;
+			if(isPastEnd(cell)) {
+				heads.clear();
+				break;
+			}
+			moveOn(newest);
+			//older versions of the same cell lose
+			while(!heads.isEmpty() && comparator.compare(heads.peek().cell, cell) == 0) {
+				moveOn(heads.poll());
+			}
+
+			if(currentRow == null || !Arrays.equals(currentRow, cell.getRowKey())) {
+				currentRow = cell.getRowKey();
+				rowTombstoneSource = Integer.MAX_VALUE;
+			}
+
+			if(cell.isRowTombstone()) {
+				rowTombstoneSource = newest.source;
+				if(keepTombstones)
+					return cell;
+			} else if(newest.source <= rowTombstoneSource && isLive(cell)) {
+				return cell;
+			}
+		}
+		done = true;
+		return null;
+	}
+
+	private boolean isLive(Cell cell) {
+		if(keepTombstones)
+			return true;
+		return !cell.isTombstone() && !cell.isExpired(now);
+	}
+
+	private boolean isPastEnd(Cell cell) {
+		if(onlyRow != null && !Arrays.equals(onlyRow, cell.getRowKey()))
+			return true;
+		if(end == null)
+			return false;
+		int result = comparator.compare(cell, end);
+		return result > 0 || (result == 0 && !endInclusive);
+	}
+
+	private void moveOn(Head head) {
+		if(!head.iter.hasNext())
+			return;
+		head.cell = head.iter.next();
+		heads.add(head);
+	}
+
+	private static class Head {
+		private Cell cell;
+		private int source;
+		private Iterator<Cell> iter;
+
+		public Head(Cell cell, int source, Iterator<Cell> iter) {
+			this.cell = cell;
+			this.source = source;
+			this.iter = iter;
+		}
+	}
+}
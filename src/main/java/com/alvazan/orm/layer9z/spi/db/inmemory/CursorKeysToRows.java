@@ -207,6 +207,15 @@ public class CursorKeysToRows extends AbstractCursor<KeyValue<Row>> {
 	
 
 	public List<KeyValue<Row>> fetchRows() {
+		return database.read(new NoSqlDatabase.Reader<List<KeyValue<Row>>>() {
+			@Override
+			public List<KeyValue<Row>> read() {
+				return fetchRowsImpl();
+			}
+		});
+	}
+
+	private List<KeyValue<Row>> fetchRowsImpl() {
 		List<KeyValue<Row>> rows = new ArrayList<KeyValue<Row>>();
 		Table table = database.findTable(colFamily.getColumnFamily());
 		rowKeys.beforeFirst();
@@ -233,6 +242,15 @@ public class CursorKeysToRows extends AbstractCursor<KeyValue<Row>> {
 	}
 	
 	public List<KeyValue<Row>> fetchRowsBackward() {
+		return database.read(new NoSqlDatabase.Reader<List<KeyValue<Row>>>() {
+			@Override
+			public List<KeyValue<Row>> read() {
+				return fetchRowsBackwardImpl();
+			}
+		});
+	}
+
+	private List<KeyValue<Row>> fetchRowsBackwardImpl() {
 		List<KeyValue<Row>> rows = new ArrayList<KeyValue<Row>>();
 		Table table = database.findTable(colFamily.getColumnFamily());
 		rowKeys.afterLast();
@@ -6,8 +6,22 @@ import java.util.Comparator;
 import com.alvazan.orm.api.z8spi.conv.ByteArray;
 import com.alvazan.orm.api.z8spi.conv.StandardConverters;
 
+/**
+ * Orders BigDecimal byte form (4 byte scale then the unscaled BigInteger) off the bytes.  Different
+ * signs, equal scales and unscaled values that fit a long are done without decoding, only huge
+ * values with different scales still go through BigDecimal.
+ */
 public class DecimalComparator implements Comparator<ByteArray> {
 
+	private static final int NO_RESULT = Integer.MIN_VALUE;
+	private static final long[] POWERS_OF_TEN = new long[19];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1]*10;
+		}
+	}
+
 	@Override
 	public int compare(ByteArray o1, ByteArray o2) {
 		if(o1.getKey() == null && o2.getKey() != null)
@@ -16,10 +30,82 @@ public class DecimalComparator implements Comparator<ByteArray> {
 			return 1;
 		else if(o2.getKey() == null && o1.getKey() == null)
 			return 0;
-		
-		BigDecimal left = StandardConverters.convertFromBytes(BigDecimal.class, o1.getKey());
-		BigDecimal right = StandardConverters.convertFromBytes(BigDecimal.class, o2.getKey());
-		return left.compareTo(right);
+
+		byte[] left = o1.getKey();
+		byte[] right = o2.getKey();
+		if(left.length < 4 || right.length < 4)
+			return decode(left).compareTo(decode(right)); //not a decimal, fails the same way it always did
+
+		int leftSignum = signum(left);
+		int rightSignum = signum(right);
+		if(leftSignum != rightSignum || leftSignum == 0)
+			return compareLongs(leftSignum, rightSignum);
+
+		int leftScale = readInt(left);
+		int rightScale = readInt(right);
+		if(leftScale == rightScale)
+			return IntegerComparator.compare(left, 4, left.length-4, right, 4, right.length-4);
+
+		int result = compareAsLongs(left, leftScale, right, rightScale);
+		if(result != NO_RESULT)
+			return result;
+		return decode(left).compareTo(decode(right));
+	}
+
+	/**
+	 * Brings both to the bigger scale if that fits in a long
+	 */
+	private static int compareAsLongs(byte[] left, int leftScale, byte[] right, int rightScale) {
+		if(left.length > 12 || right.length > 12)
+			return NO_RESULT;
+		long leftVal = readLong(left);
+		long rightVal = readLong(right);
+		long diff = (long) leftScale - rightScale;
+		if(diff > 0 && diff < POWERS_OF_TEN.length && fits(rightVal, POWERS_OF_TEN[(int) diff]))
+			return compareLongs(leftVal, rightVal*POWERS_OF_TEN[(int) diff]);
+		else if(diff < 0 && -diff < POWERS_OF_TEN.length && fits(leftVal, POWERS_OF_TEN[(int) -diff]))
+			return compareLongs(leftVal*POWERS_OF_TEN[(int) -diff], rightVal);
+		return NO_RESULT;
+	}
+
+	private static BigDecimal decode(byte[] bytes) {
+		return StandardConverters.convertFromBytes(BigDecimal.class, bytes);
+	}
+
+	private static int signum(byte[] bytes) {
+		if(IntegerComparator.signByte(bytes, 4, bytes.length-4) != 0)
+			return -1;
+		for(int i = 4; i < bytes.length; i++) {
+			if(bytes[i] != 0)
+				return 1;
+		}
+		return 0;
+	}
+
+	private static int readInt(byte[] bytes) {
+		return (bytes[0] << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+	}
+
+	/**
+	 * Reads the unscaled value, only called when it is 8 bytes or less
+	 */
+	private static long readLong(byte[] bytes) {
+		long val = bytes[4]; //sign extends
+		for(int i = 5; i < bytes.length; i++) {
+			val = (val << 8) | (bytes[i] & 0xFF);
+		}
+		return val;
+	}
+
+	private static boolean fits(long val, long multiplier) {
+		//abs of Long.MIN_VALUE is still negative
+		return val != Long.MIN_VALUE && Math.abs(val) <= Long.MAX_VALUE / multiplier;
+	}
+
+	private static int compareLongs(long left, long right) {
+		if(left < right)
+			return -1;
+		return left == right ? 0 : 1;
 	}
 
 }
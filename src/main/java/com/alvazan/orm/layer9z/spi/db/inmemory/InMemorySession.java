@@ -1,5 +1,6 @@
 package com.alvazan.orm.layer9z.spi.db.inmemory;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -11,7 +12,7 @@ import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.Bootstrap;
 import com.alvazan.orm.api.z8spi.BatchListener;
 import com.alvazan.orm.api.z8spi.Cache;
 import com.alvazan.orm.api.z8spi.ColumnSliceInfo;
@@ -21,6 +22,7 @@ import com.alvazan.orm.api.z8spi.MetaLookup;
 import com.alvazan.orm.api.z8spi.NoSqlRawSession;
 import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.ScanInfo;
+import com.alvazan.orm.api.z8spi.SpiConstants;
 import com.alvazan.orm.api.z8spi.action.Action;
 import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
@@ -57,49 +59,47 @@ public class InMemorySession implements NoSqlRawSession {
 
 	@Override
 	public void sendChanges(List<Action> actions, MetaLookup ormSession) {
-		sendChangesImpl(actions, ormSession);
+		database.beginBatch();
+		try {
+			sendChangesImpl(actions, ormSession);
+		} finally {
+			database.endBatch();
+		}
 	}
 	
-	public void sendChangesImpl(List<Action> actions, Object ormSession) {
+	public void sendChangesImpl(List<Action> actions, MetaLookup ormSession) {
 		for(Action action : actions) {
 			if(action instanceof Persist) {
-				persist((Persist)action, (NoSqlEntityManager) ormSession);
+				persist((Persist)action, ormSession);
 			} else if(action instanceof Remove) {
-				remove((Remove)action, (NoSqlEntityManager) ormSession);
+				remove((Remove)action, ormSession);
 			} else if(action instanceof PersistIndex) {
-				persistIndex((PersistIndex) action, (NoSqlEntityManager) ormSession);
+				persistIndex((PersistIndex) action, ormSession);
 			} else if(action instanceof RemoveIndex) {
-				removeIndex((RemoveIndex) action, (NoSqlEntityManager) ormSession);
+				removeIndex((RemoveIndex) action, ormSession);
 			} else if(action instanceof RemoveColumn) {
-				removeColumn((RemoveColumn) action, (NoSqlEntityManager) ormSession);
+				removeColumn((RemoveColumn) action, ormSession);
 			}
 		}
 	}
 	
-	private void persistIndex(PersistIndex action, NoSqlEntityManager ormSession) {
+	private void persistIndex(PersistIndex action, MetaLookup ormSession) {
 		String colFamily = action.getIndexCfName();
-		Table table = lookupColFamily(colFamily, (NoSqlEntityManager) ormSession);
-		byte[] rowKey = action.getRowKey();
-		IndexColumn column = action.getColumn();
-		IndexedRow row = (IndexedRow) table.findOrCreateRow(rowKey);
-		row.addIndexedColumn(column.copy());
+		Table table = lookupColFamily(colFamily, ormSession);
+		table.addIndexedColumn(action.getRowKey(), action.getColumn().copy());
 	}
 
 
 
-	private void removeIndex(RemoveIndex action, NoSqlEntityManager ormSession) {
+	private void removeIndex(RemoveIndex action, MetaLookup ormSession) {
 		String colFamily = action.getIndexCfName();
 		if (colFamily.equalsIgnoreCase("BytesIndice"))
 			return;
-		Table table = lookupColFamily(colFamily, (NoSqlEntityManager) ormSession);
-		
-		byte[] rowKey = action.getRowKey();
-		IndexColumn column = action.getColumn();
-		IndexedRow row = (IndexedRow) table.findOrCreateRow(rowKey);
-		row.removeIndexedColumn(column.copy());		
+		Table table = lookupColFamily(colFamily, ormSession);
+		table.removeIndexedColumn(action.getRowKey(), action.getColumn().copy());
 	}
 	
-	private Table lookupColFamily(String colFamily, NoSqlEntityManager mgr) {
+	private Table lookupColFamily(String colFamily, MetaLookup mgr) {
 		Table table = database.findTable(colFamily);
 		if(table != null)
 			return table;
@@ -158,15 +158,12 @@ public class InMemorySession implements NoSqlRawSession {
 			}
 		}
 		
-		table = new Table(colFamily, sortType);
-		database.putTable(colFamily, table);
-		
-		return table;
+		return database.putTableIfAbsent(colFamily, database.createTable(colFamily, sortType));
 	}
 
-	private void remove(Remove action, NoSqlEntityManager ormSession) {
+	private void remove(Remove action, MetaLookup ormSession) {
 		String colFamily = action.getColFamily().getColumnFamily();
-		Table table = lookupColFamily(colFamily, (NoSqlEntityManager) ormSession);
+		Table table = lookupColFamily(colFamily, ormSession);
 		if(action.getAction() == null)
 			throw new IllegalArgumentException("action param is missing ActionEnum so we know to remove entire row or just columns in the row");
 		switch(action.getAction()) {
@@ -182,33 +179,23 @@ public class InMemorySession implements NoSqlRawSession {
 	}
 
 	private void removeColumns(Remove action, Table table) {
-		Row row = table.getRow(action.getRowKey());
-		if(row == null)
-			return;
-		
 		for(byte[] name : action.getColumns()) {
-			row.remove(name);
+			table.removeColumn(action.getRowKey(), name);
 		}
 	}
 
-	private void removeColumn(RemoveColumn action, NoSqlEntityManager ormSession) {
+	private void removeColumn(RemoveColumn action, MetaLookup ormSession) {
 
 		String colFamily = action.getColFamily().getColumnFamily();
-		Table table = lookupColFamily(colFamily, (NoSqlEntityManager) ormSession);
-		Row row = table.getRow(action.getRowKey());
-		if(row == null)
-			return;
-		byte[] name = action.getColumn();
-			row.remove(name);
+		Table table = lookupColFamily(colFamily, ormSession);
+		table.removeColumn(action.getRowKey(), action.getColumn());
 	}
 
-	private void persist(Persist action, NoSqlEntityManager ormSession) {
+	private void persist(Persist action, MetaLookup ormSession) {
 		String colFamily = action.getColFamily().getColumnFamily();
-		Table table = lookupColFamily(colFamily, (NoSqlEntityManager) ormSession);
-		Row row = table.findOrCreateRow(action.getRowKey());
-		
+		Table table = lookupColFamily(colFamily, ormSession);
 		for(Column col : action.getColumns()) {
-			row.put(col.copy());
+			table.put(action.getRowKey(), col.copy());
 		}
 	}
 
@@ -219,39 +206,61 @@ public class InMemorySession implements NoSqlRawSession {
 
 	@Override
 	public void start(Map<String, Object> properties) {
-		
+		Object sortable = properties.get(Bootstrap.IN_MEMORY_SORTABLE_KEYS);
+		if(sortable instanceof Boolean)
+			database.setSortableKeys((Boolean) sortable);
+		else if(sortable instanceof String)
+			database.setSortableKeys(Boolean.parseBoolean((String) sortable));
+		else if(sortable != null)
+			throw new IllegalArgumentException(Bootstrap.IN_MEMORY_SORTABLE_KEYS+" key in map has a value of type="+sortable.getClass()+" but that must be a String or a Boolean");
+
+		long tickMillis = SpiConstants.readLong(properties, Bootstrap.IN_MEMORY_TTL_TICK_MILLIS, NoSqlDatabase.DEFAULT_TTL_TICK_MILLIS);
+		if(tickMillis <= 0)
+			throw new IllegalArgumentException(Bootstrap.IN_MEMORY_TTL_TICK_MILLIS+" must be 1 or greater");
+		database.setTtlTickMillis(tickMillis);
+
+		Object dir = properties.get(Bootstrap.IN_MEMORY_DATA_DIR);
+		if(dir == null)
+			return;
+		long memtableBytes = SpiConstants.readLong(properties, Bootstrap.IN_MEMORY_MEMTABLE_BYTES, 32*1024*1024);
+		long maxSegments = SpiConstants.readLong(properties, Bootstrap.IN_MEMORY_MAX_SEGMENTS, 8);
+		if(memtableBytes <= 0 || maxSegments < 1 || maxSegments > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(Bootstrap.IN_MEMORY_MEMTABLE_BYTES+" and "+Bootstrap.IN_MEMORY_MAX_SEGMENTS+" must be 1 or greater");
+		database.open(new File(""+dir), memtableBytes, (int) maxSegments);
 	}
 
-	public Collection<Column> columnSliceImpl(DboTableMeta colFamily, byte[] rowKey,
-			byte[] from, byte[] to, Integer batchSize, BatchListener l) {
-		Table table = database.findTable(colFamily.getColumnFamily());
-		if(table == null) {
-			return new HashSet<Column>();
-		}
-		Row row = table.findOrCreateRow(rowKey);
-		if(row == null)
-			return new HashSet<Column>();
-		
-		return row.columnSlice(from, to);
+	public Collection<Column> columnSliceImpl(final DboTableMeta colFamily, final byte[] rowKey,
+			final byte[] from, final byte[] to, Integer batchSize, BatchListener l) {
+		return database.read(new NoSqlDatabase.Reader<Collection<Column>>() {
+			@Override
+			public Collection<Column> read() {
+				Table table = database.findTable(colFamily.getColumnFamily());
+				if(table == null) {
+					return new HashSet<Column>();
+				}
+				return table.columnSlice(rowKey, from, to);
+			}
+		});
 	}
 	
-	public Collection<IndexColumn> scanIndexImpl(ScanInfo info, Key from, Key to, Integer batchSize, BatchListener l) {
-		String colFamily = info.getIndexColFamily();
-		byte[] rowKey = info.getRowKey();
-		Table table = database.findTable(colFamily);
-		if(table == null) {
-			return new HashSet<IndexColumn>();
-		}
-		Row row = table.findOrCreateRow(rowKey);
-		if(row == null)
-			return new HashSet<IndexColumn>();
-		
-		return row.columnSlice(from, to);
+	public Collection<IndexColumn> scanIndexImpl(ScanInfo info, final Key from, final Key to, Integer batchSize, BatchListener l) {
+		final String colFamily = info.getIndexColFamily();
+		final byte[] rowKey = info.getRowKey();
+		return database.read(new NoSqlDatabase.Reader<Collection<IndexColumn>>() {
+			@Override
+			public Collection<IndexColumn> read() {
+				Table table = database.findTable(colFamily);
+				if(table == null) {
+					return new HashSet<IndexColumn>();
+				}
+				return table.indexSlice(rowKey, from, to);
+			}
+		});
 	}
 
 	@Override
 	public void close() {
-		
+		database.close();
 	}
 
 	@Override
@@ -263,7 +272,6 @@ public class InMemorySession implements NoSqlRawSession {
 	@Override
 	public AbstractCursor<IndexColumn> scanIndex(ScanInfo scan, Key from, Key to,
 			Integer batchSize, BatchListener l, MetaLookup mgr) {
-		Collection<IndexColumn> iter = scanIndexImpl(scan, from, to, batchSize, l);
 		if (!scan.getEntityColFamily().isVirtualCf() && from == null && to == null
 				&& !scan.getEntityColFamily().hasIndexedField()
 				&& !(scan.getColumnName() instanceof DboColumnToManyMeta)
@@ -273,7 +281,21 @@ public class InMemorySession implements NoSqlRawSession {
 			scanner.beforeFirst();
 			return scanner;
 		}
-		return new ProxyTempCursor<IndexColumn>(iter);
+		return scanIndexCursor(scan, from, to);
+	}
+
+	private AbstractCursor<IndexColumn> scanIndexCursor(ScanInfo info, final Key from, final Key to) {
+		final String colFamily = info.getIndexColFamily();
+		final byte[] rowKey = info.getRowKey();
+		return database.read(new NoSqlDatabase.Reader<AbstractCursor<IndexColumn>>() {
+			@Override
+			public AbstractCursor<IndexColumn> read() {
+				Table table = database.findTable(colFamily);
+				if(table == null)
+					return new ProxyTempCursor<IndexColumn>(new ArrayList<IndexColumn>());
+				return table.indexCursor(rowKey, from, to);
+			}
+		});
 	}
 
 	@Override
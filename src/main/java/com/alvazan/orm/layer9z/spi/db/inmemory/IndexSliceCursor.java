@@ -0,0 +1,77 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IndexedRow.OurKey;
+
+/**
+ * Streams a slice of an index row straight off the live map view.  Nothing is copied, the
+ * IndexColumns handed out are the ones stored in the row so callers must treat them as read only.
+ * Like the rest of the row this is weakly consistent so entries added or removed during the scan
+ * may or may not show up.
+ */
+public class IndexSliceCursor extends AbstractCursor<IndexColumn> {
+
+	private NavigableMap<OurKey, IndexColumn> view;
+	private Iterator<Map.Entry<OurKey, IndexColumn>> iter;
+	private boolean forward;
+	//the last one handed out, the cursor sits right after it going forward or right before it going backward
+	private Map.Entry<OurKey, IndexColumn> last;
+
+	public IndexSliceCursor(NavigableMap<OurKey, IndexColumn> view) {
+		this.view = view;
+		beforeFirst();
+	}
+
+	@Override
+	public void beforeFirst() {
+		iter = view.entrySet().iterator();
+		forward = true;
+		last = null;
+	}
+
+	@Override
+	public void afterLast() {
+		iter = view.descendingMap().entrySet().iterator();
+		forward = false;
+		last = null;
+	}
+
+	@Override
+	public Holder<IndexColumn> nextImpl() {
+		if(!forward) {
+			if(last == null)
+				return null; //we are after the last one
+			iter = view.tailMap(last.getKey(), true).entrySet().iterator();
+			forward = true;
+		}
+		if(!iter.hasNext())
+			return null;
+		last = iter.next();
+		return new Holder<IndexColumn>(last.getValue());
+	}
+
+	@Override
+	public Holder<IndexColumn> previousImpl() {
+		if(forward) {
+			if(last == null)
+				return null; //we are before the first one
+			iter = view.headMap(last.getKey(), true).descendingMap().entrySet().iterator();
+			forward = false;
+		}
+		if(!iter.hasNext())
+			return null;
+		last = iter.next();
+		return new Holder<IndexColumn>(last.getValue());
+	}
+
+	@Override
+	public String toString() {
+		//no size here since counting a skip list view walks all of it
+		return "IndexSliceCursor(inmemoryIndexSlice)";
+	}
+}
@@ -1,8 +1,7 @@
 package com.alvazan.orm.layer9z.spi.db.inmemory;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Collections;
 import java.util.NavigableMap;
 import java.util.TreeMap;
 
@@ -14,66 +13,83 @@ import com.alvazan.orm.api.z8spi.conv.ByteArray;
 public class IndexedRow extends RowImpl {
 	
 	private NavigableMap<OurKey, IndexColumn> columns = new TreeMap<OurKey, IndexColumn>();
+	//null unless the keys of columns hold SortableEncoding values
+	private SortType encodeAs;
 	
-	public IndexedRow(TreeMap<OurKey, IndexColumn> map) {
+	public IndexedRow(NavigableMap<OurKey, IndexColumn> map) {
 		this.columns = map;
 	}
 
+	public IndexedRow(NavigableMap<OurKey, IndexColumn> map, SortType encodeAs) {
+		this.columns = map;
+		this.encodeAs = encodeAs;
+	}
+
 	public void addIndexedColumn(IndexColumn column) {
-		OurKey key = new OurKey(column.getIndexedValue(), column.getPrimaryKey());
+		OurKey key = createKey(column.getIndexedValue(), column.getPrimaryKey());
 		columns.put(key, column);
 	}
 	public void removeIndexedColumn(IndexColumn column) {
-		OurKey key = new OurKey(column.getIndexedValue(), column.getPrimaryKey());
+		OurKey key = createKey(column.getIndexedValue(), column.getPrimaryKey());
 		columns.remove(key);
 	}
+
+	/**
+	 * Removes col only if it is the very entry this row holds for its value and primary key
+	 * @return true if it was removed
+	 */
+	boolean removeIfSame(IndexColumn col) {
+		OurKey key = createKey(col.getIndexedValue(), col.getPrimaryKey());
+		if(columns.get(key) != col)
+			return false;
+		columns.remove(key);
+		return true;
+	}
+
+	@Override
+	boolean isEmpty() {
+		return columns.isEmpty();
+	}
+
+	private OurKey createKey(byte[] indexedValue, byte[] primaryKey) {
+		if(encodeAs == null)
+			return new OurKey(indexedValue, primaryKey);
+		return new OurKey(SortableEncoding.encode(encodeAs, indexedValue), primaryKey);
+	}
 	
 	
 	
-	@Override
-	public Collection<IndexColumn> columnSlice(Key from, Key to) {
+	/**
+	 * The entries from/to as a live view of this row so nothing is copied.  The bounds are done by the
+	 * comparator alone, a probe key with a null primary key sorts after every entry of its indexed value
+	 * and one with an empty primary key sorts before them.
+	 */
+	public NavigableMap<OurKey, IndexColumn> slice(Key from, Key to) {
 		NavigableMap<OurKey, IndexColumn> resultMap = columns;
 		if(from != null) {
-			OurKey fromKey = new OurKey(from.getKey(), new byte[0]);
-			resultMap = columns.tailMap(fromKey, from.isInclusive());
+			if(from.getAfterPrimaryKey() != null)
+				resultMap = resultMap.tailMap(createKey(from.getKey(), from.getAfterPrimaryKey()), false);
+			else if(from.isInclusive())
+				resultMap = resultMap.tailMap(createKey(from.getKey(), new byte[0]), true);
+			else
+				resultMap = resultMap.tailMap(createKey(from.getKey(), null), false);
 		}
-		
+
 		if(to != null) {
-			OurKey toKey = new OurKey(to.getKey(), null);
-			resultMap = resultMap.headMap(toKey, to.isInclusive());
-		}
-		
-		List<IndexColumn> results = new ArrayList<IndexColumn>();
-		for(IndexColumn c : resultMap.values()) {
-			//HACK since I am not sure how to make this work and it is not too important...strip off
-			//the ones that have the prefix passed in
-			if(from != null && !from.isInclusive()) {
-				if(isMatch(from, c))
-					continue; //skip this value
-			}
-			if(to != null && !to.isInclusive()) {
-				if(isMatch(to, c))
-					continue; //skip this value since we are exclusive
-			}
-			
-			results.add(c);
-		}
-		
-		List<IndexColumn> cols = new ArrayList<IndexColumn>();
-		for(IndexColumn c2 : results) {
-			cols.add(c2.copy());
+			if(to.isInclusive())
+				resultMap = resultMap.headMap(createKey(to.getKey(), null), false);
+			else
+				resultMap = resultMap.headMap(createKey(to.getKey(), new byte[0]), false);
 		}
-		
-		return cols;
+		return resultMap;
 	}
 
-	private boolean isMatch(Key from, IndexColumn c) {
-		boolean isMatch = false;
-		ByteArray b = new ByteArray(from.getKey());
-		ByteArray val = new ByteArray(c.getIndexedValue());
-		if(b.equals(val))
-			isMatch = true;
-		return isMatch;
+	/**
+	 * @return a read only view of the entries, callers must not change the IndexColumns either
+	 */
+	@Override
+	public Collection<IndexColumn> columnSlice(Key from, Key to) {
+		return Collections.unmodifiableCollection(slice(from, to).values());
 	}
 
 	@Override
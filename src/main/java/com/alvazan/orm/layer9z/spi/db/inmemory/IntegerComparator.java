@@ -1,11 +1,13 @@
 package com.alvazan.orm.layer9z.spi.db.inmemory;
 
-import java.math.BigInteger;
 import java.util.Comparator;
 
 import com.alvazan.orm.api.z8spi.conv.ByteArray;
-import com.alvazan.orm.api.z8spi.conv.StandardConverters;
 
+/**
+ * Orders BigInteger byte form (big endian two's complement) straight off the bytes without
+ * decoding, the shorter one is sign extended so non minimal forms still compare right.
+ */
 public class IntegerComparator implements Comparator<ByteArray> {
 
 	@Override
@@ -16,11 +18,38 @@ public class IntegerComparator implements Comparator<ByteArray> {
 			return 1;
 		else if(o2.getKey() == null && o1.getKey() == null)
 			return 0;
-		
-		BigInteger left = StandardConverters.convertFromBytes(BigInteger.class, o1.getKey());
-		BigInteger right = StandardConverters.convertFromBytes(BigInteger.class, o2.getKey());
-		
-		return left.compareTo(right);
+
+		byte[] left = o1.getKey();
+		byte[] right = o2.getKey();
+		return compare(left, 0, left.length, right, 0, right.length);
+	}
+
+	public static int compare(byte[] left, int leftOff, int leftLen, byte[] right, int rightOff, int rightLen) {
+		int leftSign = signByte(left, leftOff, leftLen);
+		int rightSign = signByte(right, rightOff, rightLen);
+		if(leftSign != rightSign)
+			return leftSign == 0 ? 1 : -1;
+
+		//same sign and same length so comparing the unsigned bytes gives the numeric order
+		int len = Math.max(leftLen, rightLen);
+		int leftPad = len - leftLen;
+		int rightPad = len - rightLen;
+		for(int i = 0; i < len; i++) {
+			int l = i < leftPad ? leftSign : left[leftOff+i-leftPad] & 0xFF;
+			int r = i < rightPad ? rightSign : right[rightOff+i-rightPad] & 0xFF;
+			if(l != r)
+				return l < r ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the byte a negative number is sign extended with, 0xFF, or 0 otherwise
+	 */
+	static int signByte(byte[] bytes, int off, int len) {
+		if(len == 0 || bytes[off] >= 0)
+			return 0;
+		return 0xFF;
 	}
 
 }
@@ -0,0 +1,366 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the in memory database in a directory so it survives restarts and can grow past the heap.
+ * <ul>
+ *   <li>every batch is appended to the commit log and applied to the memtables on the heap</li>
+ *   <li>once the memtables hold memtableMaxBytes they are written to memory mapped segment files and
+ *   the commit log starts over</li>
+ *   <li>a table with more than maxSegments segments gets them merged into one</li>
+ *   <li>the manifest lists the tables with their SortType and the live segments of each, it is
+ *   replaced in one rename so a crash leaves either the old or the new list</li>
+ * </ul>
+ * On startup we read the manifest, map the segments (reading only their sparse index) and replay
+ * the complete batches of the commit log.  Everything here runs while holding the batch lock of
+ * NoSqlDatabase except open() which runs before anyone can read.
+ */
+public class MappedStore {
+
+	private static final Logger log = LoggerFactory.getLogger(MappedStore.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String MANIFEST = "manifest";
+	private static final String COMMIT_LOG = "commit.log";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final long MAX_SEGMENT_BYTES = 1024L*1024*1024;
+	private static final byte RECORD = 'R';
+	private static final byte END_OF_BATCH = 'E';
+
+	private File dir;
+	private long memtableMaxBytes;
+	private int maxSegments;
+	private long nextSegmentId;
+	private FileOutputStream logFile;
+	private DataOutputStream logOut;
+	private boolean batchWritten;
+
+	public MappedStore(File dir, long memtableMaxBytes, int maxSegments) {
+		this.dir = dir;
+		this.memtableMaxBytes = memtableMaxBytes;
+		this.maxSegments = maxSegments;
+	}
+
+	public Map<String, MappedTable> open() throws IOException {
+		if(!dir.exists() && !dir.mkdirs())
+			throw new IllegalArgumentException("could not create data directory="+dir);
+		Map<String, MappedTable> tables = readManifest();
+		deleteUnlistedSegments(tables.values());
+		long logEnd = replayLog(tables);
+		truncateLog(logEnd);
+		openLog(true);
+		if (log.isInfoEnabled())
+			log.info("opened in memory store in dir="+dir+" tables="+tables.size());
+		return tables;
+	}
+
+	public MappedTable createTable(String name, SortType sortType) {
+		return new MappedTable(name, sortType, this);
+	}
+
+	File newSegmentFile() {
+		return new File(dir, (nextSegmentId++)+SEGMENT_SUFFIX);
+	}
+
+	void log(MappedTable table, Cell cell) {
+		try {
+			logOut.writeByte(RECORD);
+			Cell.writeBytes(logOut, table.getColumnFamilyName().getBytes(UTF8));
+			Cell.writeBytes(logOut, table.getColumnSortType().name().getBytes(UTF8));
+			cell.write(logOut);
+			batchWritten = true;
+		} catch (IOException e) {
+			throw new RuntimeException("could not write to commit log in dir="+dir, e);
+		}
+	}
+
+	/**
+	 * Marks the batch complete in the commit log and writes the memtables out if they got too big
+	 */
+	public void endBatch(Collection<Table> tables) {
+		try {
+			if(batchWritten) {
+				logOut.writeByte(END_OF_BATCH);
+				logOut.flush();
+				batchWritten = false;
+			}
+
+			long memBytes = 0;
+			for(Table t : tables) {
+				if(t instanceof MappedTable)
+					memBytes += ((MappedTable) t).getMemtableBytes();
+			}
+			if(memBytes >= memtableMaxBytes)
+				flush(tables);
+		} catch (IOException e) {
+			throw new RuntimeException("could not write to dir="+dir, e);
+		}
+	}
+
+	public void flush(Collection<Table> tables) throws IOException {
+		List<Segment> obsolete = new ArrayList<Segment>();
+		Map<MappedTable, List<Segment>> compacted = new HashMap<MappedTable, List<Segment>>();
+		for(Table t : tables) {
+			MappedTable table = (MappedTable) t;
+			table.flushMemtable(newSegmentFile());
+			if(table.getSegments().size() > maxSegments) {
+				obsolete.addAll(table.getSegments());
+				compacted.put(table, table.compact(MAX_SEGMENT_BYTES));
+			}
+		}
+		for(Map.Entry<MappedTable, List<Segment>> entry : compacted.entrySet()) {
+			entry.getKey().setSegments(entry.getValue());
+		}
+
+		writeManifest(tables);
+		//the commit log is all in segments now
+		logOut.close();
+		openLog(false);
+		for(Segment s : obsolete) {
+			delete(s.getFile());
+		}
+		if (log.isInfoEnabled())
+			log.info("flushed memtables to segments in dir="+dir+" compacted tables="+compacted.size());
+	}
+
+	public void clear() {
+		try {
+			logOut.close();
+			File[] files = dir.listFiles();
+			if(files != null) {
+				for(File f : files) {
+					delete(f);
+				}
+			}
+			openLog(false);
+		} catch (IOException e) {
+			throw new RuntimeException("could not clear dir="+dir, e);
+		}
+	}
+
+	public void close() {
+		try {
+			logOut.close();
+		} catch (IOException e) {
+			throw new RuntimeException("could not close commit log in dir="+dir, e);
+		}
+	}
+
+	private void openLog(boolean append) throws IOException {
+		logFile = new FileOutputStream(new File(dir, COMMIT_LOG), append);
+		logOut = new DataOutputStream(new BufferedOutputStream(logFile, 64*1024));
+	}
+
+	/**
+	 * Cuts off a batch that was not completely written so new batches don't land behind its
+	 * records and get mixed up with them on the next replay
+	 */
+	private void truncateLog(long length) throws IOException {
+		File file = new File(dir, COMMIT_LOG);
+		if(!file.exists() || file.length() == length)
+			return;
+		if (log.isWarnEnabled())
+			log.warn("cutting commit log in dir="+dir+" from "+file.length()+" to "+length+" bytes");
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private void delete(File f) {
+		//a reader may still have the segment mapped.  That is fine on unix, elsewhere the next
+		//startup deletes it since it is not in the manifest anymore
+		if(!f.delete())
+			f.deleteOnExit();
+	}
+
+	private void writeManifest(Collection<Table> tables) throws IOException {
+		File tmp = new File(dir, MANIFEST+".tmp");
+		FileOutputStream fos = new FileOutputStream(tmp);
+		try {
+			Writer w = new OutputStreamWriter(new BufferedOutputStream(fos), UTF8);
+			for(Table t : tables) {
+				MappedTable table = (MappedTable) t;
+				w.write("table\t"+table.getColumnSortType()+"\t"+table.getColumnFamilyName()+"\n");
+				for(Segment s : table.getSegments()) {
+					w.write("segment\t"+s.getFile().getName()+"\t"+table.getColumnFamilyName()+"\n");
+				}
+			}
+			w.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+		File manifest = new File(dir, MANIFEST);
+		if(!tmp.renameTo(manifest)) {
+			//windows won't rename over an existing file
+			manifest.delete();
+			if(!tmp.renameTo(manifest))
+				throw new IOException("could not rename "+tmp+" to "+manifest);
+		}
+	}
+
+	private Map<String, MappedTable> readManifest() throws IOException {
+		Map<String, MappedTable> tables = new HashMap<String, MappedTable>();
+		File manifest = new File(dir, MANIFEST);
+		if(!manifest.exists())
+			manifest = new File(dir, MANIFEST+".tmp"); //we crashed between the delete and the rename
+		if(!manifest.exists())
+			return tables;
+
+		Map<String, List<Segment>> segments = new HashMap<String, List<Segment>>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), UTF8));
+		try {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t", 3);
+				if("table".equals(parts[0])) {
+					MappedTable table = createTable(parts[2], SortType.valueOf(parts[1]));
+					tables.put(parts[2], table);
+					segments.put(parts[2], new ArrayList<Segment>());
+				} else if("segment".equals(parts[0])) {
+					MappedTable table = tables.get(parts[2]);
+					File f = new File(dir, parts[1]);
+					segments.get(parts[2]).add(Segment.open(f, new CellComparator(table.getColumnSortType())));
+					nextSegmentId = Math.max(nextSegmentId, segmentId(f)+1);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		for(Map.Entry<String, List<Segment>> entry : segments.entrySet()) {
+			tables.get(entry.getKey()).setSegments(entry.getValue());
+		}
+		return tables;
+	}
+
+	private void deleteUnlistedSegments(Collection<MappedTable> tables) {
+		Set<String> live = new HashSet<String>();
+		for(MappedTable t : tables) {
+			for(Segment s : t.getSegments()) {
+				live.add(s.getFile().getName());
+			}
+		}
+		File[] files = dir.listFiles();
+		if(files == null)
+			return;
+		for(File f : files) {
+			if(f.getName().endsWith(SEGMENT_SUFFIX) && !live.contains(f.getName())) {
+				nextSegmentId = Math.max(nextSegmentId, segmentId(f)+1);
+				delete(f);
+			}
+		}
+	}
+
+	private long segmentId(File f) {
+		String name = f.getName();
+		try {
+			return Long.parseLong(name.substring(0, name.length()-SEGMENT_SUFFIX.length()));
+		} catch(NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Applies every batch of the commit log that was completely written.  A batch cut off by a crash
+	 * is dropped.
+	 * @return the length of the log up to and including the last complete batch
+	 */
+	private long replayLog(Map<String, MappedTable> tables) throws IOException {
+		File file = new File(dir, COMMIT_LOG);
+		if(!file.exists() || file.length() == 0)
+			return 0;
+
+		//read onto the heap rather than mapped since we may have to cut the file afterwards and
+		//windows won't do that while the file is still mapped
+		ByteBuffer buf;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			buf = ByteBuffer.allocate((int) channel.size());
+			while(buf.hasRemaining()) {
+				if(channel.read(buf) < 0)
+					break;
+			}
+			buf.flip();
+		} finally {
+			raf.close();
+		}
+
+		int batches = 0;
+		long end = 0;
+		List<MappedTable> pendingTables = new ArrayList<MappedTable>();
+		List<Cell> pendingCells = new ArrayList<Cell>();
+		try {
+			while(buf.hasRemaining()) {
+				byte type = buf.get();
+				if(type == END_OF_BATCH) {
+					for(int i = 0; i < pendingCells.size(); i++) {
+						pendingTables.get(i).applyToMemtable(pendingCells.get(i));
+					}
+					pendingTables.clear();
+					pendingCells.clear();
+					batches++;
+					end = buf.position();
+					continue;
+				} else if(type != RECORD) {
+					break;
+				}
+
+				String name = new String(Cell.readBytes(buf), UTF8);
+				SortType sortType = SortType.valueOf(new String(Cell.readBytes(buf), UTF8));
+				MappedTable table = tables.get(name);
+				if(table == null) {
+					table = createTable(name, sortType);
+					tables.put(name, table);
+				}
+				pendingTables.add(table);
+				pendingCells.add(Cell.read(buf));
+			}
+		} catch(BufferUnderflowException e) {
+			if (log.isWarnEnabled())
+				log.warn("commit log in dir="+dir+" ends in the middle of a batch, dropping that batch");
+		} catch(IllegalArgumentException e) {
+			//a record cut off part way through its sort type
+			if (log.isWarnEnabled())
+				log.warn("commit log in dir="+dir+" ends in a corrupt record, dropping that batch", e);
+		} catch(IllegalStateException e) {
+			//a record cut off part way through its cell
+			if (log.isWarnEnabled())
+				log.warn("commit log in dir="+dir+" ends in a corrupt record, dropping that batch", e);
+		}
+
+		if(pendingCells.size() > 0 && log.isWarnEnabled())
+			log.warn("dropped "+pendingCells.size()+" changes of a batch that was not completely written to the commit log");
+		if (log.isInfoEnabled())
+			log.info("replayed "+batches+" batches of the commit log in dir="+dir);
+		return end;
+	}
+}
@@ -0,0 +1,265 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alvazan.orm.api.z8spi.Key;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.iter.ProxyTempCursor;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IndexedRow.OurKey;
+
+/**
+ * A table of the memory mapped store.  Recent writes sit in a sorted memtable on the heap (and in
+ * the commit log) until MappedStore writes the memtable out to a new segment.  Reads merge the
+ * memtable with the segments, newest first.  Writes only happen inside a batch of NoSqlDatabase
+ * and readers go through NoSqlDatabase.read so they never see a memtable half flushed.
+ */
+public class MappedTable extends Table {
+
+	private MappedStore store;
+	private CellComparator comparator;
+	private ConcurrentSkipListMap<Cell, Cell> memtable;
+	private AtomicLong memtableBytes = new AtomicLong();
+	//newest first and replaced as a whole when segments are written or merged
+	private volatile List<Segment> segments = Collections.emptyList();
+
+	public MappedTable(String columnFamily, SortType sortType, MappedStore store) {
+		super(columnFamily, sortType);
+		this.store = store;
+		this.comparator = new CellComparator(sortType);
+		this.memtable = new ConcurrentSkipListMap<Cell, Cell>(comparator);
+	}
+
+	@Override
+	public void put(byte[] rowKey, Column col) {
+		apply(Cell.column(rowKey, col));
+	}
+
+	@Override
+	public void removeColumn(byte[] rowKey, byte[] name) {
+		apply(Cell.columnTombstone(rowKey, name));
+	}
+
+	@Override
+	public void addIndexedColumn(byte[] rowKey, IndexColumn column) {
+		apply(Cell.index(rowKey, column));
+	}
+
+	@Override
+	public void removeIndexedColumn(byte[] rowKey, IndexColumn column) {
+		apply(Cell.indexTombstone(rowKey, column));
+	}
+
+	@Override
+	public void removeRow(byte[] rowKey) {
+		apply(Cell.rowTombstone(rowKey));
+	}
+
+	@Override
+	public Row findOrCreateRow(byte[] key) {
+		throw new UnsupportedOperationException("rows of a memory mapped table can't be changed in place");
+	}
+
+	private void apply(Cell cell) {
+		store.log(this, cell);
+		applyToMemtable(cell);
+	}
+
+	void applyToMemtable(Cell cell) {
+		if(cell.isRowTombstone()) {
+			//everything we have for this row is older than the tombstone
+			Iterator<Cell> iter = memtable.tailMap(cell, true).values().iterator();
+			while(iter.hasNext()) {
+				Cell c = iter.next();
+				if(comparator.compareRowKey(c, cell) != 0)
+					break;
+				iter.remove();
+				memtableBytes.addAndGet(-c.sizeEstimate());
+			}
+		}
+		Cell old = memtable.put(cell, cell);
+		long delta = cell.sizeEstimate();
+		if(old != null)
+			delta -= old.sizeEstimate();
+		memtableBytes.addAndGet(delta);
+	}
+
+	long getMemtableBytes() {
+		return memtableBytes.get();
+	}
+
+	List<Segment> getSegments() {
+		return segments;
+	}
+
+	void setSegments(List<Segment> segments) {
+		this.segments = segments;
+	}
+
+	/**
+	 * Writes the memtable to a new segment and empties it.  Only called while holding the batch lock.
+	 */
+	void flushMemtable(File file) throws IOException {
+		if(memtable.isEmpty())
+			return;
+		List<Iterator<Cell>> sources = new ArrayList<Iterator<Cell>>();
+		sources.add(memtable.values().iterator());
+		Segment seg = Segment.write(file, new CellMerger(sources, comparator, true, null, null), comparator, Long.MAX_VALUE);
+		List<Segment> newList = new ArrayList<Segment>();
+		newList.add(seg);
+		newList.addAll(segments);
+		segments = newList;
+		memtable.clear();
+		memtableBytes.set(0);
+	}
+
+	/**
+	 * Merges all segments into new ones of at most maxBytes that hold no tombstones or expired
+	 * cells.  The caller swaps them in once they are in the manifest.
+	 */
+	List<Segment> compact(long maxBytes) throws IOException {
+		List<Iterator<Cell>> sources = new ArrayList<Iterator<Cell>>();
+		for(Segment s : segments) {
+			sources.add(s.iterator(null));
+		}
+		CellMerger merger = new CellMerger(sources, comparator, false, null, null);
+		List<Segment> result = new ArrayList<Segment>();
+		while(merger.hasNext()) {
+			result.add(Segment.write(store.newSegmentFile(), merger, comparator, maxBytes));
+		}
+		return result;
+	}
+
+	@Override
+	public Row getRow(byte[] rowKey) {
+		Cell start = Cell.rowTombstone(rowKey);
+		CellMerger merger = new CellMerger(sources(rowKey, start), comparator, false, rowKey, null);
+		if(!merger.hasNext())
+			return null;
+
+		Row row;
+		if(getColumnSortType().name().endsWith("_PREFIX")) {
+			IndexedRow indexed = new IndexedRow(new TreeMap<OurKey, IndexColumn>(Table.prefixComparator(getColumnSortType())));
+			while(merger.hasNext()) {
+				indexed.addIndexedColumn(merger.next().toIndexColumn());
+			}
+			row = indexed;
+		} else {
+			RowImpl impl = new RowImpl(new TreeMap<ByteArray, Column>(Table.columnComparator(getColumnSortType())));
+			while(merger.hasNext()) {
+				impl.put(merger.next().toColumn());
+			}
+			row = impl;
+		}
+		row.setKey(rowKey);
+		return row;
+	}
+
+	@Override
+	public Collection<Column> columnSlice(byte[] rowKey, byte[] from, byte[] to) {
+		Cell start = Cell.rowTombstone(rowKey);
+		if(from != null)
+			start = Cell.columnProbe(rowKey, from);
+		Cell end = null;
+		if(to != null)
+			end = Cell.columnProbe(rowKey, to);
+
+		CellMerger merger = new CellMerger(sources(rowKey, start), comparator, false, rowKey, end);
+		List<Column> results = new ArrayList<Column>();
+		while(merger.hasNext()) {
+			results.add(merger.next().toColumn());
+		}
+		return results;
+	}
+
+	@Override
+	public Collection<IndexColumn> indexSlice(byte[] rowKey, Key from, Key to) {
+		//same bounds as IndexedRow.slice, a null primary key sorts after every entry of its indexed value
+		//and an empty one before them
+		Cell start = Cell.rowTombstone(rowKey);
+		if(from != null && from.isInclusive())
+			start = Cell.indexProbe(rowKey, from.getKey(), new byte[0]);
+		else if(from != null)
+			start = Cell.indexProbe(rowKey, from.getKey(), null);
+
+		Cell end = null;
+		if(to != null && to.isInclusive())
+			end = Cell.indexProbe(rowKey, to.getKey(), null);
+		else if(to != null)
+			end = Cell.indexProbe(rowKey, to.getKey(), new byte[0]);
+
+		CellMerger merger = new CellMerger(sources(rowKey, start), comparator, false, rowKey, end);
+		if(to != null && !to.isInclusive())
+			merger.setEndExclusive();
+		List<IndexColumn> results = new ArrayList<IndexColumn>();
+		while(merger.hasNext()) {
+			results.add(merger.next().toIndexColumn());
+		}
+		return results;
+	}
+
+	@Override
+	public AbstractCursor<IndexColumn> indexCursor(byte[] rowKey, Key from, Key to) {
+		//merged from the memtable and several segments so this one is not streamed
+		return new ProxyTempCursor<IndexColumn>(indexSlice(rowKey, from, to));
+	}
+
+	/**
+	 * Sources to read a row from start on.  Sources older than the newest row tombstone can't have
+	 * anything for the row so we leave them out, which also matters since reading from the middle of
+	 * a row skips right past the tombstone.
+	 */
+	private List<Iterator<Cell>> sources(byte[] rowKey, Cell start) {
+		Cell tombstone = Cell.rowTombstone(rowKey);
+		List<Iterator<Cell>> sources = new ArrayList<Iterator<Cell>>();
+		sources.add(memtable.tailMap(start, true).values().iterator());
+		if(memtable.containsKey(tombstone))
+			return sources;
+		for(Segment s : segments) {
+			sources.add(s.iterator(start));
+			if(s.contains(tombstone))
+				break;
+		}
+		return sources;
+	}
+
+	@Override
+	public Set<ByteArray> findAllKeys() {
+		List<Iterator<Cell>> sources = new ArrayList<Iterator<Cell>>();
+		sources.add(memtable.values().iterator());
+		for(Segment s : segments) {
+			sources.add(s.iterator(null));
+		}
+		CellMerger merger = new CellMerger(sources, comparator, false, null, null);
+		Set<ByteArray> keys = new LinkedHashSet<ByteArray>();
+		byte[] last = null;
+		while(merger.hasNext()) {
+			Cell c = merger.next();
+			if(last != null && ByteArray.compare(last, c.getRowKey()) == 0)
+				continue;
+			last = c.getRowKey();
+			keys.add(new ByteArray(last));
+		}
+		return keys;
+	}
+
+	@Override
+	public String toString() {
+		return "columnFamilyName="+getColumnFamilyName()+" columnSortType="+getColumnSortType()
+				+" memtableCells="+memtable.size()+" segments="+segments;
+	}
+}
@@ -1,15 +1,80 @@
 package com.alvazan.orm.layer9z.spi.db.inmemory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import javax.inject.Singleton;
 
+/**
+ * Tables, rows and index rows are all concurrent maps so readers never take a lock.  Writers
+ * apply one batch at a time between beginBatch and endBatch which bumps a version number, odd
+ * while a batch is in progress.  A reader run through read() retries when a batch landed while
+ * it was reading so it sees all of a batch or none of it.  Index scans of the heap tables are the
+ * exception, they stream off the live row (see IndexSliceCursor) and see each entry atomically.
+ * Columns and index entries of the heap tables written with a ttl are removed by a TtlReaper in the
+ * background so reads never look at the clock.
+ * 
+ * If opened with a directory, tables are MappedTables kept by a MappedStore instead of on the heap.
+ */
 @Singleton
 public class NoSqlDatabase {
 
-	private Map<String, Table> nameToTable = new HashMap<String, Table>();
-	
+	private static final int OPTIMISTIC_TRIES = 3;
+	public static final long DEFAULT_TTL_TICK_MILLIS = 100;
+
+	private ConcurrentMap<String, Table> nameToTable = new ConcurrentHashMap<String, Table>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	//only changed while holding writeLock
+	private volatile long version;
+	private MappedStore store;
+	private boolean sortableKeys;
+	private TtlReaper reaper = new TtlReaper(this, DEFAULT_TTL_TICK_MILLIS);
+
+	/**
+	 * Switches to keeping the data in dir, loading what is there already.  Called on startup before
+	 * any reads or writes.
+	 */
+	public void open(File dir, long memtableMaxBytes, int maxSegments) {
+		store = new MappedStore(dir, memtableMaxBytes, maxSegments);
+		try {
+			nameToTable.putAll(store.open());
+		} catch (IOException e) {
+			throw new RuntimeException("could not open in memory store in dir="+dir, e);
+		}
+	}
+
+	/**
+	 * Heap tables created from now on keep numeric index rows in SortableEncoding.  Called on startup
+	 * before any reads or writes.
+	 */
+	public void setSortableKeys(boolean sortableKeys) {
+		this.sortableKeys = sortableKeys;
+	}
+
+	/**
+	 * How often expired columns and index entries of the heap tables are removed.  Called on startup
+	 * before any reads or writes.
+	 */
+	public void setTtlTickMillis(long tickMillis) {
+		reaper.stop();
+		reaper = new TtlReaper(this, tickMillis);
+	}
+
+	public TtlReaper getReaper() {
+		return reaper;
+	}
+
+	public Table createTable(String name, SortType sortType) {
+		if(store != null)
+			return store.createTable(name, sortType);
+		Table table = new Table(name, sortType, sortableKeys);
+		table.setReaper(reaper);
+		return table;
+	}
+
 	public Table findTable(String name) {
 		return nameToTable.get(name);
 	}
@@ -17,9 +82,89 @@ public class NoSqlDatabase {
 	public void putTable(String name, Table table) {
 		nameToTable.put(name, table);
 	}
-	
+
+	/**
+	 * @return the table that ends up registered under name which is not the one passed in if
+	 * another thread created it first
+	 */
+	public Table putTableIfAbsent(String name, Table table) {
+		Table existing = nameToTable.putIfAbsent(name, table);
+		if(existing != null)
+			return existing;
+		return table;
+	}
+
 	public void clear() {
-		nameToTable.clear();
+		beginBatch();
+		try {
+			nameToTable.clear();
+			reaper.clear();
+			if(store != null)
+				store.clear();
+		} finally {
+			endBatch();
+		}
+	}
+
+	/**
+	 * Writes out what is only in the commit log so the next startup has nothing to replay
+	 */
+	public void close() {
+		reaper.stop();
+		if(store == null)
+			return;
+		beginBatch();
+		try {
+			store.flush(nameToTable.values());
+			store.close();
+		} catch (IOException e) {
+			throw new RuntimeException("could not flush in memory store", e);
+		} finally {
+			endBatch();
+		}
+	}
+
+	public void beginBatch() {
+		writeLock.lock();
+		version++;
+	}
+
+	public void endBatch() {
+		try {
+			if(store != null)
+				store.endBatch(nameToTable.values());
+		} finally {
+			version++;
+			writeLock.unlock();
+		}
+	}
+
+	public <T> T read(Reader<T> reader) {
+		if(writeLock.isHeldByCurrentThread())
+			return reader.read(); //reading while applying our own batch (ie. looking up meta data)
+
+		for(int i = 0; i < OPTIMISTIC_TRIES; i++) {
+			long before = version;
+			if((before & 1) == 0) {
+				T result = reader.read();
+				if(version == before)
+					return result;
+			} else {
+				Thread.yield();
+			}
+		}
+
+		//writers keep getting in the way so wait for the current batch and read while holding the lock
+		writeLock.lock();
+		try {
+			return reader.read();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	public interface Reader<T> {
+		T read();
 	}
 
 	@Override
@@ -30,5 +175,5 @@ public class NoSqlDatabase {
 		}
 		return db;
 	}
-	
+
 }
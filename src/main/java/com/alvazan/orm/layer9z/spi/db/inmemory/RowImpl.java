@@ -2,7 +2,6 @@ package com.alvazan.orm.layer9z.spi.db.inmemory;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
@@ -17,35 +16,29 @@ import com.alvazan.orm.api.z8spi.conv.ByteArray;
 public class RowImpl implements Row {
 	private byte[] key;
 	private NavigableMap<ByteArray, Column> columns = new TreeMap<ByteArray, Column>();
-	private long expire;
 
 	public RowImpl() {
-		expire = 0L;
 	}
 
-	public RowImpl(TreeMap<ByteArray, Column> map) {
+	public RowImpl(NavigableMap<ByteArray, Column> map) {
 		this.columns = map;
-		if(!map.isEmpty()) {
-			updateExpire(map.values().iterator().next());
-		}
 	}
 
-	private void updateExpire(Column c) {
-		if (c == null) return;
-
-		Integer ttl = c.getTtl();
-
-		if (ttl != null && ttl > 0)
-			expire = System.currentTimeMillis() + 1000L * ttl;
-		else
-			expire = 0L;
+	/**
+	 * Removes col only if it is the very column this row holds under its name so one written over
+	 * it since stays
+	 * @return true if it was removed
+	 */
+	boolean removeIfSame(Column col) {
+		ByteArray name = new ByteArray(col.getName());
+		if(columns.get(name) != col)
+			return false;
+		columns.remove(name);
+		return true;
 	}
 
-	public boolean isExpired() {
-		return ( expire > 0 && System.currentTimeMillis() >= expire );
-			/*return true;
-		else
-			return false;*/
+	boolean isEmpty() {
+		return columns.isEmpty();
 	}
 
 	@Override
@@ -74,10 +67,7 @@ public class RowImpl implements Row {
 	 */
 	@Override
 	public Collection<Column> getColumns() {
-		if (isExpired())
-			return Collections.emptyList();
-		else
-			return columns.values();
+		return columns.values();
 	}
 
 	/* (non-Javadoc)
@@ -85,8 +75,6 @@ public class RowImpl implements Row {
 	 */
 	@Override
 	public Column getColumn(byte[] key) {
-		if (isExpired())
-			return null;
 		ByteArray bKey = new ByteArray(key);
 		return columns.get(bKey);
 	}
@@ -98,7 +86,6 @@ public class RowImpl implements Row {
 	public void put(Column col) {
 		ByteArray key = new ByteArray(col.getName());
 		columns.put(key, col);
-		updateExpire(col);
 	}
 
 	/* (non-Javadoc)
@@ -119,9 +106,6 @@ public class RowImpl implements Row {
 	}
 
 	public Collection<Column> columnSlice(byte[] from, byte[] to) {
-		if (isExpired())
-			return Collections.emptyList();
-
 		NavigableMap<ByteArray, Column> map = columns;
 		if(from != null) {
 			ByteArray fromArray = new ByteArray(from);
@@ -151,9 +135,6 @@ public class RowImpl implements Row {
 	 */
 	@Override
 	public Collection<Column> columnByPrefix(byte[] prefix) {
-		if (isExpired())
-			return Collections.emptyList();
-
 		List<Column> prefixed = new ArrayList<Column>();
 		boolean started = false;
 		for(Entry<ByteArray, Column> col : columns.entrySet()) {
@@ -171,7 +152,6 @@ public class RowImpl implements Row {
 		for(Column c : cols) {
 			ByteArray b = new ByteArray(c.getName());
 			columns.put(b, c);
-			updateExpire(c);
 		}
 	}
 
@@ -182,7 +162,6 @@ public class RowImpl implements Row {
 		for(Entry<ByteArray, Column> s : columns.entrySet()) {
 			impl.columns.put(s.getKey(), s.getValue().copy());
 		}
-		impl.expire = expire;
 		return impl;
 	}
 
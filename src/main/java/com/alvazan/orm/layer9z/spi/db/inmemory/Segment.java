@@ -0,0 +1,204 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable file of cells sorted by CellComparator that is memory mapped so the cells live off
+ * the heap.  Only every SPARSE_EVERY'th cell key is kept on the heap, a read binary searches those
+ * and then decodes forward from that spot in the file.
+ * <pre>
+ * [cell]...[cell] [sparse count][offset, cell]...[offset, cell] [footer start][MAGIC]
+ * </pre>
+ */
+public class Segment {
+
+	private static final int MAGIC = 0x506c6179;
+	private static final int SPARSE_EVERY = 128;
+	//one mapped buffer can't be bigger than this
+	private static final int MAX_FILE_BYTES = Integer.MAX_VALUE - 64*1024*1024;
+
+	private File file;
+	private ByteBuffer data;
+	private int dataEnd;
+	private List<Cell> sparseKeys = new ArrayList<Cell>();
+	private int[] sparseOffsets;
+	private CellComparator comparator;
+
+	private Segment(File file, CellComparator comparator) {
+		this.file = file;
+		this.comparator = comparator;
+	}
+
+	/**
+	 * Writes cells from the merger until it runs out or the file passed maxBytes.  We only stop
+	 * between rows so a row is never split over two segments.
+	 */
+	public static Segment write(File file, CellMerger cells, CellComparator comparator, long maxBytes) throws IOException {
+		FileOutputStream fos = new FileOutputStream(file);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 64*1024));
+			List<Cell> keys = new ArrayList<Cell>();
+			List<Integer> offsets = new ArrayList<Integer>();
+			int count = 0;
+			Cell last = null;
+			while(cells.hasNext()) {
+				Cell next = cells.peek();
+				boolean newRow = last == null || comparator.compareRowKey(last, next) != 0;
+				if(newRow && out.size() >= maxBytes)
+					break;
+				cells.next();
+				if(count % SPARSE_EVERY == 0) {
+					keys.add(next);
+					offsets.add(out.size());
+				}
+				next.write(out);
+				if(out.size() > MAX_FILE_BYTES)
+					throw new IllegalStateException("row="+next+" does not fit in one segment file="+file);
+				count++;
+				last = next;
+			}
+
+			int footerStart = out.size();
+			out.writeInt(keys.size());
+			for(int i = 0; i < keys.size(); i++) {
+				out.writeInt(offsets.get(i));
+				keys.get(i).write(out);
+			}
+			out.writeInt(footerStart);
+			out.writeInt(MAGIC);
+			out.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+		return open(file, comparator);
+	}
+
+	public static Segment open(File file, CellComparator comparator) throws IOException {
+		Segment seg = new Segment(file, comparator);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if(size > Integer.MAX_VALUE || size < 8)
+				throw new IllegalStateException("segment file="+file+" has a bad size="+size);
+			//the mapping stays valid after the channel is closed
+			seg.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			raf.close();
+		}
+
+		ByteBuffer buf = seg.data.duplicate();
+		int size = buf.limit();
+		if(buf.getInt(size-4) != MAGIC)
+			throw new IllegalStateException("segment file="+file+" is corrupt or was not completely written");
+		seg.dataEnd = buf.getInt(size-8);
+		buf.position(seg.dataEnd);
+		int numKeys = buf.getInt();
+		seg.sparseOffsets = new int[numKeys];
+		for(int i = 0; i < numKeys; i++) {
+			seg.sparseOffsets[i] = buf.getInt();
+			seg.sparseKeys.add(Cell.read(buf));
+		}
+		return seg;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public boolean isEmpty() {
+		return dataEnd == 0;
+	}
+
+	public boolean contains(Cell key) {
+		Iterator<Cell> iter = iterator(key);
+		return iter.hasNext() && comparator.compare(iter.next(), key) == 0;
+	}
+
+	/**
+	 * @param start the first cell to return is the first one that is not smaller than this or null
+	 * to start at the beginning
+	 */
+	public Iterator<Cell> iterator(Cell start) {
+		ByteBuffer buf = data.duplicate();
+		buf.position(findStart(start));
+		buf.limit(dataEnd);
+		return new SegmentIterator(buf, start);
+	}
+
+	private int findStart(Cell start) {
+		if(start == null)
+			return 0;
+		//find the last sparse key that is smaller than start
+		int low = 0;
+		int high = sparseKeys.size()-1;
+		int found = -1;
+		while(low <= high) {
+			int mid = (low + high) >>> 1;
+			if(comparator.compare(sparseKeys.get(mid), start) < 0) {
+				found = mid;
+				low = mid+1;
+			} else {
+				high = mid-1;
+			}
+		}
+		if(found < 0)
+			return 0;
+		return sparseOffsets[found];
+	}
+
+	private class SegmentIterator implements Iterator<Cell> {
+		private ByteBuffer buf;
+		private Cell next;
+
+		public SegmentIterator(ByteBuffer buf, Cell start) {
+			this.buf = buf;
+			next = readNext();
+			while(start != null && next != null && comparator.compare(next, start) < 0) {
+				next = readNext();
+			}
+		}
+
+		private Cell readNext() {
+			if(!buf.hasRemaining())
+				return null;
+			return Cell.read(buf);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Cell next() {
+			if(next == null)
+				throw new NoSuchElementException();
+			Cell c = next;
+			next = readNext();
+			return c;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("segments are read only");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Segment["+file.getName()+" bytes="+dataEnd+"]";
+	}
+}
@@ -0,0 +1,24 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.util.Comparator;
+
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+
+/**
+ * Plain unsigned byte order which is all values in SortableEncoding need
+ */
+public class SortableComparator implements Comparator<ByteArray> {
+
+	@Override
+	public int compare(ByteArray o1, ByteArray o2) {
+		if(o1.getKey() == null && o2.getKey() != null)
+			return -1;
+		else if(o2.getKey() == null && o1.getKey() != null)
+			return 1;
+		else if(o2.getKey() == null && o1.getKey() == null)
+			return 0;
+
+		return ByteArray.compare(o1.getKey(), o2.getKey());
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.math.BigDecimal;
+
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+
+/**
+ * Re-encodes INTEGER and DECIMAL index values so comparing the bytes unsigned gives the numeric
+ * order, letting an index row use a plain byte compare.  Equal numbers (1.0 and 1.00) encode the
+ * same.  Only the keys of the row are encoded, the IndexColumns keep the bytes they came with.
+ * <ul>
+ *   <li>integer: 1 for positive or zero else 0, the length (inverted when negative) then the
+ *   minimal two's complement bytes</li>
+ *   <li>decimal: 0 negative, 1 zero or 2 positive, then for 0.digits x 10^exponent the exponent
+ *   and the digits packed two per byte, all inverted and ended with 0xFF when negative</li>
+ * </ul>
+ */
+public final class SortableEncoding {
+
+	private SortableEncoding() {
+	}
+
+	/**
+	 * @return the encoded value or the value itself for sort types we don't encode
+	 */
+	public static byte[] encode(SortType sortType, byte[] value) {
+		if(value == null)
+			return null;
+		switch (sortType) {
+		case INTEGER_PREFIX:
+			return encodeInteger(value);
+		case DECIMAL_PREFIX:
+			return encodeDecimal(value);
+		default:
+			return value;
+		}
+	}
+
+	public static boolean isEncoded(SortType sortType) {
+		return sortType == SortType.INTEGER_PREFIX || sortType == SortType.DECIMAL_PREFIX;
+	}
+
+	static byte[] encodeInteger(byte[] value) {
+		int sign = IntegerComparator.signByte(value, 0, value.length);
+		int start = 0;
+		//drop the bytes that only sign extend so equal numbers encode the same
+		while(value.length - start > 1 && (value[start] & 0xFF) == sign && (value[start+1] & 0x80) == (sign & 0x80)) {
+			start++;
+		}
+		int len = Math.max(1, value.length - start); //no bytes at all is zero
+
+		byte[] out = new byte[5+len];
+		int lenField = len;
+		if(sign == 0) {
+			out[0] = 1;
+		} else {
+			lenField = ~len; //longer is more negative
+		}
+		writeInt(out, 1, lenField);
+		System.arraycopy(value, start, out, 5+len-(value.length-start), value.length-start);
+		return out;
+	}
+
+	static byte[] encodeDecimal(byte[] value) {
+		BigDecimal dec = StandardConverters.convertFromBytes(BigDecimal.class, value);
+		int signum = dec.signum();
+		if(signum == 0)
+			return new byte[] {1};
+
+		dec = dec.stripTrailingZeros();
+		String digits = dec.unscaledValue().abs().toString();
+		long exponent = (long) digits.length() - dec.scale();
+		int digitBytes = (digits.length()+1)/2;
+		byte[] out = new byte[1+8+digitBytes+(signum < 0 ? 1 : 0)];
+		out[0] = (byte) (signum < 0 ? 0 : 2);
+		writeLong(out, 1, exponent ^ Long.MIN_VALUE);
+		for(int i = 0; i < digits.length(); i++) {
+			//1 to 10 so a shorter run of digits, padded with 0, sorts first
+			int nibble = digits.charAt(i) - '0' + 1;
+			if(i % 2 == 0)
+				out[9+i/2] = (byte) (nibble << 4);
+			else
+				out[9+i/2] |= nibble;
+		}
+
+		if(signum < 0) {
+			//inverted the shorter one would sort first, the extra byte at the end turns into 0xFF to stop that
+			for(int i = 1; i < out.length; i++) {
+				out[i] = (byte) ~out[i];
+			}
+		}
+		return out;
+	}
+
+	private static void writeInt(byte[] out, int off, int val) {
+		for(int i = 0; i < 4; i++) {
+			out[off+i] = (byte) (val >>> (24 - 8*i));
+		}
+	}
+
+	private static void writeLong(byte[] out, int off, long val) {
+		for(int i = 0; i < 8; i++) {
+			out[off+i] = (byte) (val >>> (56 - 8*i));
+		}
+	}
+}
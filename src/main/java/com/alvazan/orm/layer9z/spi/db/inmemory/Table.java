@@ -1,75 +1,194 @@
 package com.alvazan.orm.layer9z.spi.db.inmemory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
+import com.alvazan.orm.api.z8spi.Key;
 import com.alvazan.orm.api.z8spi.Row;
 import com.alvazan.orm.api.z8spi.action.Column;
 import com.alvazan.orm.api.z8spi.action.IndexColumn;
 import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
+import com.alvazan.orm.api.z8spi.iter.ProxyTempCursor;
 import com.alvazan.orm.layer9z.spi.db.inmemory.IndexedRow.OurKey;
 
 public class Table {
 
-	private Map<ByteArray, Row> keyToRow = new HashMap<ByteArray, Row>();
+	private ConcurrentMap<ByteArray, Row> keyToRow = new ConcurrentHashMap<ByteArray, Row>();
 	private String columnFamilyName;
 	private SortType columnSortType;
+	private boolean sortableKeys;
+	//null for tables that expire columns some other way
+	private TtlReaper reaper;
 	static final Comparator<ByteArray> UTF_COMPARATOR = new Utf8Comparator();
 	static final Comparator<ByteArray> INTEGER_COMPARATOR = new IntegerComparator();
 	static final Comparator<ByteArray> DECIMAL_COMPARATOR = new DecimalComparator();
 	private static Comparator<OurKey> utfPrefixComparator = new PrefixComparator(UTF_COMPARATOR);
 	private static Comparator<OurKey> integerPrefixComparator = new PrefixComparator(INTEGER_COMPARATOR);
 	private static Comparator<OurKey> decimalPrefixComparator = new PrefixComparator(DECIMAL_COMPARATOR);
+	private static Comparator<OurKey> sortablePrefixComparator = new PrefixComparator(new SortableComparator());
 	
 	public Table(String columnFamily, SortType sortType) {
 		this.columnSortType = sortType;
 		this.columnFamilyName = columnFamily;
 	}
 
+	/**
+	 * @param sortableKeys keep INTEGER_PREFIX and DECIMAL_PREFIX index rows in SortableEncoding so
+	 * they are ordered with a plain byte compare
+	 */
+	public Table(String columnFamily, SortType sortType, boolean sortableKeys) {
+		this(columnFamily, sortType);
+		this.sortableKeys = sortableKeys && SortableEncoding.isEncoded(sortType);
+	}
+
+	/**
+	 * Columns and index entries put with a ttl from now on are removed by reaper once they expire
+	 */
+	public void setReaper(TtlReaper reaper) {
+		this.reaper = reaper;
+	}
+
+	public String getColumnFamilyName() {
+		return columnFamilyName;
+	}
+
+	public SortType getColumnSortType() {
+		return columnSortType;
+	}
+
+	/**
+	 * @return how column names of a row sort or null for plain byte order
+	 */
+	static Comparator<ByteArray> columnComparator(SortType sortType) {
+		switch (sortType) {
+		case UTF8:
+			return UTF_COMPARATOR;
+		case INTEGER:
+			return INTEGER_COMPARATOR;
+		case DECIMAL:
+			return DECIMAL_COMPARATOR;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return how the entries of an index row sort or null if this is not an index table
+	 */
+	static Comparator<OurKey> prefixComparator(SortType sortType) {
+		switch (sortType) {
+		case UTF8_PREFIX:
+			return utfPrefixComparator;
+		case INTEGER_PREFIX:
+			return integerPrefixComparator;
+		case DECIMAL_PREFIX:
+			return decimalPrefixComparator;
+		default:
+			return null;
+		}
+	}
+
+	public void put(byte[] rowKey, Column col) {
+		findOrCreateRow(rowKey).put(col);
+		if(reaper != null)
+			reaper.schedule(this, rowKey, col);
+	}
+
+	public void removeColumn(byte[] rowKey, byte[] name) {
+		Row row = getRow(rowKey);
+		if(row == null)
+			return;
+		row.remove(name);
+	}
+
+	public void addIndexedColumn(byte[] rowKey, IndexColumn column) {
+		IndexedRow row = (IndexedRow) findOrCreateRow(rowKey);
+		row.addIndexedColumn(column);
+		if(reaper != null)
+			reaper.schedule(this, rowKey, column);
+	}
+
+	public void removeIndexedColumn(byte[] rowKey, IndexColumn column) {
+		IndexedRow row = (IndexedRow) findOrCreateRow(rowKey);
+		row.removeIndexedColumn(column);
+	}
+
+	public Collection<Column> columnSlice(byte[] rowKey, byte[] from, byte[] to) {
+		//getRow and not findOrCreateRow so reads never add empty rows that full table scans would find
+		Row row = getRow(rowKey);
+		if(row == null)
+			return new HashSet<Column>();
+		return row.columnSlice(from, to);
+	}
+
+	public Collection<IndexColumn> indexSlice(byte[] rowKey, Key from, Key to) {
+		Row row = getRow(rowKey);
+		if(row == null)
+			return new HashSet<IndexColumn>();
+		return row.columnSlice(from, to);
+	}
+
+	public AbstractCursor<IndexColumn> indexCursor(byte[] rowKey, Key from, Key to) {
+		Row row = getRow(rowKey);
+		if(row == null)
+			return new ProxyTempCursor<IndexColumn>(new ArrayList<IndexColumn>());
+		return new IndexSliceCursor(((IndexedRow) row).slice(from, to));
+	}
+
 	public Row findOrCreateRow(byte[] key) {
 		ByteArray array = new ByteArray(key);
 		Row row = keyToRow.get(array);
-		if(row == null) {
-			row = createSortedMap();
-			row.setKey(key);
-			keyToRow.put(new ByteArray(key), row);
-		}
+		if(row != null)
+			return row;
+
+		row = createSortedMap();
+		row.setKey(key);
+		Row existing = keyToRow.putIfAbsent(array, row);
+		if(existing != null)
+			return existing;
 		return row;
 	}
 
 	private Row createSortedMap() {
-		TreeMap<ByteArray, Column> tree;
+		if(sortableKeys)
+			return new IndexedRow(new ConcurrentSkipListMap<OurKey, IndexColumn>(sortablePrefixComparator), columnSortType);
+
+		ConcurrentSkipListMap<ByteArray, Column> tree;
 		Row row;
 		switch (columnSortType) {
 		case BYTES:
-			tree = new TreeMap<ByteArray, Column>();
+			tree = new ConcurrentSkipListMap<ByteArray, Column>();
 			row = new RowImpl(tree);
 			break;
 		case UTF8:
-			tree = new TreeMap<ByteArray, Column>(UTF_COMPARATOR);
+			tree = new ConcurrentSkipListMap<ByteArray, Column>(UTF_COMPARATOR);
 			row = new RowImpl(tree);
 			break;
 		case INTEGER:
-			tree = new TreeMap<ByteArray, Column>(INTEGER_COMPARATOR);
+			tree = new ConcurrentSkipListMap<ByteArray, Column>(INTEGER_COMPARATOR);
 			row = new RowImpl(tree);
 			break;
 		case DECIMAL:
-			tree = new TreeMap<ByteArray, Column>(DECIMAL_COMPARATOR);
+			tree = new ConcurrentSkipListMap<ByteArray, Column>(DECIMAL_COMPARATOR);
 			row = new RowImpl(tree);
 			break;
 		case DECIMAL_PREFIX:
-			TreeMap<OurKey, IndexColumn> map = new TreeMap<OurKey, IndexColumn>(decimalPrefixComparator);
+			ConcurrentSkipListMap<OurKey, IndexColumn> map = new ConcurrentSkipListMap<OurKey, IndexColumn>(decimalPrefixComparator);
 			row = new IndexedRow(map);
 			break;
 		case INTEGER_PREFIX:
-			TreeMap<OurKey, IndexColumn> map2 = new TreeMap<OurKey, IndexColumn>(integerPrefixComparator);
+			ConcurrentSkipListMap<OurKey, IndexColumn> map2 = new ConcurrentSkipListMap<OurKey, IndexColumn>(integerPrefixComparator);
 			row = new IndexedRow(map2);
 			break;
 		case UTF8_PREFIX:
-			TreeMap<OurKey, IndexColumn> map3 = new TreeMap<OurKey, IndexColumn>(utfPrefixComparator);
+			ConcurrentSkipListMap<OurKey, IndexColumn> map3 = new ConcurrentSkipListMap<OurKey, IndexColumn>(utfPrefixComparator);
 			row = new IndexedRow(map3);
 			break;
 		default:
@@ -86,14 +205,28 @@ public class Table {
 
 	public Row getRow(byte[] rowKey) {
 		ByteArray key = new ByteArray(rowKey);
-		Row row = keyToRow.get(key);
-		if (row instanceof RowImpl) {
-			if (((RowImpl) row).isExpired()) {
-				keyToRow.remove(key);
-				return null;
-			}
-		}
-		return row;
+		return keyToRow.get(key);
+	}
+
+	/**
+	 * Called by the TtlReaper, removes col if the row still has that very column and the row too
+	 * once it is empty
+	 */
+	void expireColumn(byte[] rowKey, Column col) {
+		ByteArray key = new ByteArray(rowKey);
+		RowImpl row = (RowImpl) keyToRow.get(key);
+		if(row != null && row.removeIfSame(col) && row.isEmpty())
+			keyToRow.remove(key, row);
+	}
+
+	/**
+	 * Called by the TtlReaper, removes the index entry if it is still that very IndexColumn
+	 */
+	void expireIndexedColumn(byte[] rowKey, IndexColumn col) {
+		ByteArray key = new ByteArray(rowKey);
+		IndexedRow row = (IndexedRow) keyToRow.get(key);
+		if(row != null && row.removeIfSame(col) && row.isEmpty())
+			keyToRow.remove(key, row);
 	}
 
 	@Override
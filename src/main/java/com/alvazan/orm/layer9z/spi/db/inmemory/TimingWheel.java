@@ -0,0 +1,129 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel.  Level 0 has one slot per tick and each slot of a higher level spans
+ * a whole turn of the level below, so adding and expiring an item is O(1) apart from moving it down
+ * a level as its time comes closer.  Items further out than the top level wait in an overflow list
+ * that is looked at once per turn of the top level.  Not thread safe.
+ */
+public class TimingWheel<T> {
+
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int LEVELS = 4;
+
+	private long tickMillis;
+	//every tick before this one has been expired
+	private long currentTick;
+	private List<List<List<Entry<T>>>> levels = new ArrayList<List<List<Entry<T>>>>();
+	private List<Entry<T>> overflow = new ArrayList<Entry<T>>();
+	private int size;
+
+	public TimingWheel(long tickMillis, long nowMillis) {
+		if(tickMillis <= 0)
+			throw new IllegalArgumentException("tickMillis must be 1 or greater");
+		this.tickMillis = tickMillis;
+		this.currentTick = nowMillis / tickMillis;
+		for(int i = 0; i < LEVELS; i++) {
+			List<List<Entry<T>>> slots = new ArrayList<List<Entry<T>>>();
+			for(int j = 0; j < SLOTS; j++) {
+				slots.add(new ArrayList<Entry<T>>());
+			}
+			levels.add(slots);
+		}
+	}
+
+	/**
+	 * Adds an item that advance returns once its time is reached.  A time in the past expires on the
+	 * next advance.
+	 */
+	public void add(long expireAtMillis, T item) {
+		//round up so an item never comes back before its time
+		long tick = (expireAtMillis + tickMillis - 1) / tickMillis;
+		place(new Entry<T>(Math.max(tick, currentTick), item));
+		size++;
+	}
+
+	private void place(Entry<T> entry) {
+		long delta = entry.tick - currentTick;
+		for(int level = 0; level < LEVELS; level++) {
+			if(delta < 1L << (SLOT_BITS * (level+1))) {
+				int slot = (int) ((entry.tick >>> (SLOT_BITS * level)) & (SLOTS-1));
+				levels.get(level).get(slot).add(entry);
+				return;
+			}
+		}
+		overflow.add(entry);
+	}
+
+	/**
+	 * @return the items whose time is at or before nowMillis
+	 */
+	public List<T> advance(long nowMillis) {
+		List<T> expired = new ArrayList<T>();
+		long target = nowMillis / tickMillis;
+		while(currentTick <= target) {
+			cascade();
+			List<Entry<T>> slot = levels.get(0).get((int) (currentTick & (SLOTS-1)));
+			for(Entry<T> entry : slot) {
+				expired.add(entry.item);
+			}
+			slot.clear();
+			currentTick++;
+		}
+		size -= expired.size();
+		return expired;
+	}
+
+	/**
+	 * At the start of a turn of a level, moves the items of the slot of the level above that this
+	 * turn is in down to where they belong now, highest level first
+	 */
+	private void cascade() {
+		int top = 0;
+		while(top < LEVELS-1 && (currentTick & ((1L << (SLOT_BITS * (top+1))) - 1)) == 0)
+			top++;
+		if(top == LEVELS-1) {
+			List<Entry<T>> far = overflow;
+			overflow = new ArrayList<Entry<T>>();
+			for(Entry<T> entry : far) {
+				place(entry);
+			}
+		}
+		for(int level = top; level >= 1; level--) {
+			int index = (int) ((currentTick >>> (SLOT_BITS * level)) & (SLOTS-1));
+			List<Entry<T>> slot = levels.get(level).get(index);
+			levels.get(level).set(index, new ArrayList<Entry<T>>());
+			for(Entry<T> entry : slot) {
+				place(entry);
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		for(List<List<Entry<T>>> slots : levels) {
+			for(List<Entry<T>> slot : slots) {
+				slot.clear();
+			}
+		}
+		overflow.clear();
+		size = 0;
+	}
+
+	private static class Entry<T> {
+		private long tick;
+		private T item;
+
+		public Entry(long tick, T item) {
+			this.tick = tick;
+			this.item = item;
+		}
+	}
+}
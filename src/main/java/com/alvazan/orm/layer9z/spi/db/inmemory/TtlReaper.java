@@ -0,0 +1,131 @@
+package com.alvazan.orm.layer9z.spi.db.inmemory;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+
+/**
+ * Drops the expired columns, rows and index entries of the heap tables in the background so they
+ * don't sit in memory until someone reads them.  Writes schedule whatever they put with a ttl into
+ * a TimingWheel and a daemon thread started on the first such write advances it every tick.  Only
+ * the exact Column or IndexColumn that was scheduled is removed, one written over it since has its
+ * own schedule.
+ */
+public class TtlReaper {
+
+	private static final Logger log = LoggerFactory.getLogger(TtlReaper.class);
+
+	private NoSqlDatabase database;
+	private long tickMillis;
+	private TimingWheel<Expiring> wheel;
+	private ScheduledExecutorService executor;
+
+	public TtlReaper(NoSqlDatabase database, long tickMillis) {
+		this.database = database;
+		this.tickMillis = tickMillis;
+		this.wheel = new TimingWheel<Expiring>(tickMillis, System.currentTimeMillis());
+	}
+
+	public void schedule(Table table, byte[] rowKey, Column col) {
+		schedule(col.getTtl(), new Expiring(table, rowKey, col, null));
+	}
+
+	public void schedule(Table table, byte[] rowKey, IndexColumn col) {
+		schedule(col.getTtl(), new Expiring(table, rowKey, null, col));
+	}
+
+	private synchronized void schedule(Integer ttl, Expiring expiring) {
+		if(ttl == null || ttl <= 0)
+			return;
+		wheel.add(System.currentTimeMillis() + 1000L * ttl, expiring);
+		if(executor == null)
+			start();
+	}
+
+	private void start() {
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "playorm-ttl-reaper");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reap(System.currentTimeMillis());
+				} catch(RuntimeException e) {
+					//keep going, an exception would cancel the schedule
+					log.warn("Exception removing expired columns", e);
+				}
+			}
+		}, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Removes everything that expired at or before nowMillis as one batch
+	 */
+	public void reap(long nowMillis) {
+		List<Expiring> expired;
+		synchronized(this) {
+			expired = wheel.advance(nowMillis);
+		}
+		if(expired.size() == 0)
+			return;
+
+		database.beginBatch();
+		try {
+			for(Expiring e : expired) {
+				e.expire();
+			}
+		} finally {
+			database.endBatch();
+		}
+	}
+
+	public synchronized int getScheduledCount() {
+		return wheel.size();
+	}
+
+	public synchronized void clear() {
+		wheel.clear();
+	}
+
+	public synchronized void stop() {
+		if(executor == null)
+			return;
+		executor.shutdownNow();
+		executor = null;
+	}
+
+	private static class Expiring {
+		private Table table;
+		private byte[] rowKey;
+		private Column column;
+		private IndexColumn indexColumn;
+
+		public Expiring(Table table, byte[] rowKey, Column column, IndexColumn indexColumn) {
+			this.table = table;
+			this.rowKey = rowKey;
+			this.column = column;
+			this.indexColumn = indexColumn;
+		}
+
+		public void expire() {
+			if(column != null)
+				table.expireColumn(rowKey, column);
+			else
+				table.expireIndexedColumn(rowKey, indexColumn);
+		}
+	}
+}
@@ -3,6 +3,7 @@ package com.alvazan.orm.layer9z.spi.db.mongodb;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,6 +34,7 @@ import com.alvazan.orm.api.z8spi.action.PersistIndex;
 import com.alvazan.orm.api.z8spi.action.Remove;
 import com.alvazan.orm.api.z8spi.action.RemoveColumn;
 import com.alvazan.orm.api.z8spi.action.RemoveIndex;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
 import com.alvazan.orm.api.z8spi.conv.StandardConverters;
 import com.alvazan.orm.api.z8spi.conv.StorageTypeEnum;
 import com.alvazan.orm.api.z8spi.iter.AbstractCursor;
@@ -45,8 +47,8 @@ import com.mongodb.ServerAddress;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
-import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
+import com.mongodb.WriteConcern;
 
 public class MongoDbSession implements NoSqlRawSession {
 
@@ -63,6 +65,7 @@ public class MongoDbSession implements NoSqlRawSession {
 	
 	private Map<String, Info> cfNameToMongodb = new HashMap<String, Info>();
 	private Map<String, String> virtualToCfName = new HashMap<String, String>();
+	private WriteConcern writeConcern = WriteConcern.ACKNOWLEDGED;
 
 	public DB getDb() {
 		return db;
@@ -85,22 +88,59 @@ public class MongoDbSession implements NoSqlRawSession {
 		sendChangesImpl(actions, ormSession);
 	}
 	
+	/**
+	 * Writes without reading first.  All the changes to one row are merged into a single upsert
+	 * with $set/$unset and each index entry is one upsert or remove, so nothing waits on a read.
+	 */
 	public void sendChangesImpl(List<Action> actions, MetaLookup ormSession) {
+		Map<RowId, RowChanges> rows = new LinkedHashMap<RowId, RowChanges>();
 		for(Action action : actions) {
 			if(action instanceof Persist) {
-				persist((Persist)action, ormSession);
+				persist((Persist)action, ormSession, rows);
 			} else if(action instanceof Remove) {
-				remove((Remove)action, ormSession);
+				remove((Remove)action, ormSession, rows);
 			} else if(action instanceof PersistIndex) {
 				persistIndex((PersistIndex) action, ormSession);
 			} else if(action instanceof RemoveIndex) {
 				removeIndex((RemoveIndex) action, ormSession);
 			} else if(action instanceof RemoveColumn) {
-				removeColumn((RemoveColumn) action, ormSession);
+				removeColumn((RemoveColumn) action, ormSession, rows);
 			}
 		}
+
+		for(Map.Entry<RowId, RowChanges> entry : rows.entrySet()) {
+			writeRow(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void writeRow(RowId id, RowChanges changes) {
+		DBCollection table = id.getTable();
+		BasicDBObject query = new BasicDBObject("_id", id.getKey());
+		if(changes.isRemoveRow())
+			table.remove(query, writeConcern);
+		BasicDBObject set = changes.getSet();
+		BasicDBObject unset = changes.getUnset();
+		if(set.isEmpty() && unset.isEmpty())
+			return;
+
+		BasicDBObject update = new BasicDBObject();
+		if(!set.isEmpty())
+			update.append("$set", set);
+		if(!unset.isEmpty())
+			update.append("$unset", unset);
+		//only create the row if we are putting something in it
+		table.update(query, update, !set.isEmpty(), false, writeConcern);
+	}
+
+	private RowChanges changesFor(Map<RowId, RowChanges> rows, DBCollection table, byte[] key) {
+		RowId id = new RowId(table, key);
+		RowChanges changes = rows.get(id);
+		if(changes == null) {
+			changes = new RowChanges();
+			rows.put(id, changes);
+		}
+		return changes;
 	}
-	
 
 	@Override
 	public void clearDatabase() {
@@ -109,8 +149,15 @@ public class MongoDbSession implements NoSqlRawSession {
 
 	@Override
 	public void start(Map<String, Object> properties) {
-		properties.keySet();
 		String seeds = properties.get(Bootstrap.MONGODB_SEEDS).toString();
+		Object concern = properties.get(Bootstrap.MONGODB_WRITE_CONCERN);
+		if(concern instanceof WriteConcern)
+			writeConcern = (WriteConcern) concern;
+		else if(concern != null) {
+			writeConcern = WriteConcern.valueOf(concern.toString());
+			if(writeConcern == null)
+				throw new IllegalArgumentException(Bootstrap.MONGODB_WRITE_CONCERN+" key in map has value="+concern+" which is not the name of a WriteConcern like ACKNOWLEDGED or UNACKNOWLEDGED");
+		}
 		try {
 			if (seeds == null)
 				mongoClient = new MongoClient();
@@ -208,11 +255,22 @@ public class MongoDbSession implements NoSqlRawSession {
 		String indexCfName = action.getIndexCfName();
 		Info info = lookupOrCreate2(indexCfName, ormSession);
 		DBCollection table = info.getDbObj();
-		byte[] rowKey = action.getRowKey();
-		IndexColumn column = action.getColumn();
+		BasicDBObject doc = indexEntry(indexCfName, action.getRowKey(), action.getColumn());
+		//inserts the entry unless the exact same one is already there
+		table.update(doc, doc, true, false, writeConcern);
+	}
+
+	private void removeIndex(RemoveIndex action, MetaLookup ormSession) {
+		String colFamily = action.getIndexCfName();
+		if (colFamily.equalsIgnoreCase("BytesIndice"))
+			return;
+		Info info = fetchDbCollectionInfo(colFamily, ormSession);
+		DBCollection table = info.getDbObj();
+		table.remove(indexEntry(colFamily, action.getRowKey(), action.getColumn()), writeConcern);
+	}
+
+	private BasicDBObject indexEntry(String indexCfName, byte[] rowKey, IndexColumn column) {
 		byte[] key = column.getIndexedValue();
-		byte[] value = column.getPrimaryKey();
-		BasicDBObject doc = findIndexRow(table, rowKey, value);
 		Object keyToPersist = null;
 		if (indexCfName.equalsIgnoreCase("StringIndice")) {
 			keyToPersist = StandardConverters.convertFromBytes(String.class, key);
@@ -221,40 +279,11 @@ public class MongoDbSession implements NoSqlRawSession {
 		} else if (indexCfName.equalsIgnoreCase("DecimalIndice")) {
 			keyToPersist = StandardConverters.convertFromBytes(Double.class, key);
 		}
-		if (doc != null) {
-			// Check for duplicates
-			Object indValue = doc.get("k");
-			if (indValue != null && !indValue.equals(keyToPersist))
-				insertIndex(table, rowKey, keyToPersist, value);
-		} else
-			insertIndex(table, rowKey, keyToPersist, value);
-	}
-
-	private void insertIndex(DBCollection table, byte[] rowKey,
-			Object keyToPersist, byte[] value) {
 		BasicDBObject doc = new BasicDBObject();
-		doc.append("i",	StandardConverters.convertFromBytes(String.class, rowKey));
-		doc.put("k", keyToPersist);
-		doc.append("v", value);
-		table.insert(doc);
-	}
-
-	private void removeIndex(RemoveIndex action, MetaLookup ormSession) {
-		String colFamily = action.getIndexCfName();
-		if (colFamily.equalsIgnoreCase("BytesIndice"))
-			return;
-		Info info = fetchDbCollectionInfo(colFamily, ormSession);
-		DBCollection table = info.getDbObj();
-		byte[] rowKey = action.getRowKey();
-		IndexColumn column = action.getColumn();
-		byte[] value = column.getPrimaryKey();
-		BasicDBObject doc = findIndexRow(table, rowKey, value);
-		if (doc == null) {
-			if (log.isInfoEnabled())
-				log.info("Index: " + column.toString() + " already removed.");
-		} else {
-			table.remove(doc);
-		}
+		doc.append("i", StandardConverters.convertFromBytes(String.class, rowKey));
+		doc.append("k", keyToPersist);
+		doc.append("v", column.getPrimaryKey());
+		return doc;
 	}
 
 	private synchronized Exception createColFamily(String virtualCf, MetaLookup ormSession) {
@@ -308,83 +337,45 @@ public class MongoDbSession implements NoSqlRawSession {
 		cfNameToMongodb.put(realCfLower, info);
 	}
 
-	private void remove(Remove action, MetaLookup ormSession) {
+	private void remove(Remove action, MetaLookup ormSession, Map<RowId, RowChanges> rows) {
 		String colFamily = action.getColFamily().getColumnFamily();
 		Info info = fetchDbCollectionInfo(colFamily, ormSession);
 		DBCollection table = info.getDbObj();
 		if(action.getAction() == null)
 			throw new IllegalArgumentException("action param is missing ActionEnum so we know to remove entire row or just columns in the row");
+		RowChanges changes = changesFor(rows, table, action.getRowKey());
 		switch(action.getAction()) {
 		case REMOVE_ENTIRE_ROW:
-			DBObject row = table.findOne(action.getRowKey());
-			table.remove(row);
+			changes.removeRow();
 			break;
 		case REMOVE_COLUMNS_FROM_ROW:
-			removeColumns(action, table);
+			for (byte[] name : action.getColumns()) {
+				changes.unset(StandardConverters.convertToString(name));
+			}
 			break;
 		default:
 			throw new RuntimeException("bug, unknown remove action="+action.getAction());
 		}
 	}
 
-	private void removeColumns(Remove action, DBCollection table) {
-		DBObject row = table.findOne(action.getRowKey());
-		if (row != null) {
-			BasicDBObject docToRemove = new BasicDBObject();
-			for (byte[] name : action.getColumns()) {
-				docToRemove.append(StandardConverters.convertToString(name), 1);
-			}
-			table.update(row, new BasicDBObject("$unset", docToRemove));
-		}
-	}
-
-	private void removeColumn(RemoveColumn action, MetaLookup ormSession) {
-
+	private void removeColumn(RemoveColumn action, MetaLookup ormSession, Map<RowId, RowChanges> rows) {
 		String colFamily = action.getColFamily().getColumnFamily();
 		Info info = fetchDbCollectionInfo(colFamily, ormSession);
 		DBCollection table = info.getDbObj();
-		DBObject row = table.findOne(action.getRowKey());
-		BasicDBObject docToRemove = new BasicDBObject();
-		docToRemove.put(StandardConverters.convertToString(action.getColumn()), 1);
-		if (row != null)
-			table.update(row, new BasicDBObject("$unset", docToRemove));
+		changesFor(rows, table, action.getRowKey()).unset(StandardConverters.convertToString(action.getColumn()));
 	}
 
-	private void persist(Persist action, MetaLookup ormSession) {
+	private void persist(Persist action, MetaLookup ormSession, Map<RowId, RowChanges> rows) {
 		String colFamily = action.getColFamily().getColumnFamily();
 		Info info = lookupOrCreate2(colFamily, ormSession);
 		DBCollection table = info.getDbObj();
-		BasicDBObject row = findOrCreateRow(table, action.getRowKey());
-		BasicDBObject doc = new BasicDBObject();
+		RowChanges changes = changesFor(rows, table, action.getRowKey());
 		for(Column col : action.getColumns()) {
 			byte[] value = new byte[0];
 			if(col.getValue() != null)
 				value = col.getValue();
-			doc.append(StandardConverters.convertToString(col.getName()), value);
-		}
-		table.update(row, new BasicDBObject("$set", doc));
-	}
-
-	public BasicDBObject findOrCreateRow(DBCollection table, byte[] key) {
-		DBObject row = table.findOne(key);
-		if(row == null) {
-			BasicDBObject basicRow = new BasicDBObject();
-			basicRow.append("_id", key);
-			table.insert(basicRow);
-			return basicRow;
-		}
-		else return (BasicDBObject)row;
-	}
-
-	public BasicDBObject findIndexRow(DBCollection table, byte[] indexKey, byte[] key) {
-		BasicDBObject basicRow = new BasicDBObject();
-		basicRow.append("i", StandardConverters.convertFromBytes(String.class, indexKey));
-		basicRow.append("v", key);
-		DBObject row = table.findOne(basicRow);
-		if(row == null) {
-			return null;
+			changes.set(StandardConverters.convertToString(col.getName()), value);
 		}
-		else return (BasicDBObject)row;
 	}
 
 	private void findExistingCollections() {
@@ -554,4 +545,75 @@ public class MongoDbSession implements NoSqlRawSession {
 	public Object getDriverHelper() {
 		throw new UnsupportedOperationException("not supported yet");
 	}
+
+	private static class RowId {
+		private DBCollection table;
+		private byte[] key;
+		private ByteArray keyForEquals;
+
+		public RowId(DBCollection table, byte[] key) {
+			this.table = table;
+			this.key = key;
+			this.keyForEquals = new ByteArray(key);
+		}
+
+		public DBCollection getTable() {
+			return table;
+		}
+
+		public byte[] getKey() {
+			return key;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * table.getName().hashCode() + keyForEquals.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof RowId))
+				return false;
+			RowId other = (RowId) obj;
+			return table.getName().equals(other.table.getName()) && keyForEquals.equals(other.keyForEquals);
+		}
+	}
+
+	/**
+	 * What a flush does to one row in the order of the actions.  A column is never in both $set and
+	 * $unset since MongoDb rejects that, the later action wins.
+	 */
+	private static class RowChanges {
+		private boolean removeRow;
+		private BasicDBObject set = new BasicDBObject();
+		private BasicDBObject unset = new BasicDBObject();
+
+		public void removeRow() {
+			removeRow = true;
+			set.clear();
+			unset.clear();
+		}
+
+		public void set(String name, byte[] value) {
+			unset.remove(name);
+			set.put(name, value);
+		}
+
+		public void unset(String name) {
+			set.remove(name);
+			unset.put(name, 1);
+		}
+
+		public boolean isRemoveRow() {
+			return removeRow;
+		}
+
+		public BasicDBObject getSet() {
+			return set;
+		}
+
+		public BasicDBObject getUnset() {
+			return unset;
+		}
+	}
 }
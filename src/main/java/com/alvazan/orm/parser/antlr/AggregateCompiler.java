@@ -0,0 +1,39 @@
+package com.alvazan.orm.parser.antlr;
+
+import com.alvazan.orm.api.z8spi.conv.StorageTypeEnum;
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
+import com.alvazan.orm.api.z8spi.meta.AggregateTypeEnum;
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
+import com.alvazan.orm.api.z8spi.meta.DboColumnToManyMeta;
+
+/**
+ * Checks a COUNT, MIN, MAX or SUM of the select clause can be used with its column
+ */
+public class AggregateCompiler {
+
+	/**
+	 * @param attr the column of the aggregate or null for *
+	 */
+	public AggregateInfo compile(String functionText, StateAttribute attr, String query) {
+		String function = functionText.toUpperCase();
+		AggregateTypeEnum type = AggregateTypeEnum.lookup(function);
+		if(type == null)
+			throw new IllegalArgumentException("The select portion has function="+function+" but only COUNT, MIN, MAX and SUM are supported.  query="+query);
+		else if(attr == null && type != AggregateTypeEnum.COUNT)
+			throw new IllegalArgumentException("Only COUNT can take * but the query has "+function+"(*).  query="+query);
+		else if(attr == null)
+			return new AggregateInfo(type, null, null, function+"(*)");
+
+		DboColumnMeta colMeta = attr.getColumnInfo();
+		String text = function+"("+attr.getTextInSql()+")";
+		StorageTypeEnum storageType = colMeta.getStorageType();
+		if(colMeta instanceof DboColumnToManyMeta)
+			throw new IllegalArgumentException("Cannot use column="+colMeta.getColumnName()+" in "+text+" since that is a toMany relationship");
+		else if(type == AggregateTypeEnum.SUM && (colMeta.isJodaType() 
+				|| (storageType != StorageTypeEnum.INTEGER && storageType != StorageTypeEnum.DECIMAL)))
+			throw new IllegalArgumentException("Cannot use "+text+" since column="+colMeta.getColumnName()+" is not a number");
+		else if(storageType == StorageTypeEnum.BYTES)
+			throw new IllegalArgumentException("Cannot use "+text+" since column="+colMeta.getColumnName()+" is stored as bytes which can't be compared");
+		return new AggregateInfo(type, attr.getViewInfo(), colMeta, text);
+	}
+}
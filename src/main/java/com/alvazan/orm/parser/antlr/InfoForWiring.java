@@ -5,6 +5,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.antlr.runtime.tree.CommonTree;
+
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
+import com.alvazan.orm.api.z8spi.meta.OrderByInfo;
+import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
 import com.alvazan.orm.api.z8spi.meta.TypeInfo;
 import com.alvazan.orm.api.z8spi.meta.TypedColumn;
@@ -25,6 +30,8 @@ public class InfoForWiring {
 	private Map<String, Integer> attributeUsedCount = new HashMap<String, Integer>();
 	private DboTableMeta metaQueryTargetTable;
 	private List<ViewInfo> targetViews = new ArrayList<ViewInfo>();
+	private List<AggregateInfo> aggregates = new ArrayList<AggregateInfo>();
+	private OrderByInfo orderBy;
 	
 	/**
 	 * This is a list of views that will be joined during expression evaluation.  Some views can be
@@ -133,4 +140,74 @@ public class InfoForWiring {
 	public void setQueryType(String queryType) {
 		this.queryType = queryType;
 	}
+
+	public void addAggregate(AggregateInfo aggregate) {
+		aggregates.add(aggregate);
+	}
+
+	public List<AggregateInfo> getAggregates() {
+		return aggregates;
+	}
+
+	public OrderByInfo getOrderBy() {
+		return orderBy;
+	}
+
+	public void setOrderBy(OrderByInfo orderBy) {
+		this.orderBy = orderBy;
+	}
+
+	/**
+	 * Finds the table and column of an attribute like e.numShares or numShares using the aliases of the from clause
+	 */
+	public StateAttribute lookupColumn(CommonTree colNameNode, MetaFacade facade, String clause) {
+		ViewInfoImpl tableInfo;
+		
+		String columnName = colNameNode.getText();
+		String textInSql = columnName;
+		if (colNameNode.getChildCount() > 0) {
+			String aliasEntity = colNameNode.getChild(0).getText();
+			
+			tableInfo = getInfoFromAlias(aliasEntity);
+			textInSql = aliasEntity+"."+columnName;
+			if(tableInfo == null)
+				throw new RuntimeException("The "+clause+" attribute="
+						+textInSql+" has an alias that does not exist in from clause");
+		} else {
+			tableInfo = getNoAliasTable();
+			if(tableInfo == null)
+				throw new RuntimeException("The "+clause+" attribute="
+						+textInSql+" has no alias and from clause only has tables with alias");
+		}
+		
+		return lookupColumn(tableInfo, columnName, textInSql, facade);
+	}
+
+	/**
+	 * Same as lookupColumn except the alias may be left off when the table we select from has one
+	 * like in 'select * from Account as a ORDER BY name'
+	 */
+	public StateAttribute lookupOrderByColumn(CommonTree colNameNode, MetaFacade facade) {
+		if(colNameNode.getChildCount() > 0 || getNoAliasTable() != null)
+			return lookupColumn(colNameNode, facade, "order by");
+		ViewInfoImpl tableInfo = (ViewInfoImpl) targetViews.get(0);
+		String columnName = colNameNode.getText();
+		return lookupColumn(tableInfo, columnName, tableInfo.getAlias()+"."+columnName, facade);
+	}
+
+	private StateAttribute lookupColumn(ViewInfoImpl tableInfo, String columnName, String textInSql, MetaFacade facade) {
+		DboTableMeta metaClass = tableInfo.getTableMeta();
+		//At this point, we have looked up the metaClass associated with the alias
+		DboColumnMeta colMeta = facade.getColumnMeta(metaClass, columnName);
+		if (colMeta == null) {
+			//okay, there is no column found, but maybe the column name for the id matches(id is a special case)
+			colMeta = metaClass.getIdColumnMeta();
+			if(!colMeta.getColumnName().equals(columnName)) {
+				List<String> names = metaClass.getColumnNameList();
+				throw new IllegalArgumentException("There is no column=" + columnName + " that exists for table " 
+						+ metaClass.getColumnFamily()+" potential columns are="+names+"  rowkey col="+colMeta.getColumnName());
+			}
+		}
+		return new StateAttribute(tableInfo, colMeta, textInSql);
+	}
 }
@@ -16,11 +16,15 @@ import org.slf4j.LoggerFactory;
 
 import com.alvazan.orm.api.z8spi.conv.StandardConverters;
 import com.alvazan.orm.api.z8spi.conv.StorageTypeEnum;
+import com.alvazan.orm.api.z8spi.meta.AggregateInfo;
+import com.alvazan.orm.api.z8spi.meta.DboColumnEmbedMeta;
+import com.alvazan.orm.api.z8spi.meta.DboColumnEmbedSimpleMeta;
 import com.alvazan.orm.api.z8spi.meta.DboColumnIdMeta;
 import com.alvazan.orm.api.z8spi.meta.DboColumnMeta;
 import com.alvazan.orm.api.z8spi.meta.DboColumnToManyMeta;
 import com.alvazan.orm.api.z8spi.meta.DboColumnToOneMeta;
 import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.api.z8spi.meta.OrderByInfo;
 import com.alvazan.orm.api.z8spi.meta.TypeInfo;
 import com.alvazan.orm.api.z8spi.meta.ViewInfo;
 import com.alvazan.orm.api.z8spi.meta.TypedColumn;
@@ -92,7 +96,7 @@ public class ScannerSql {
 			compilePartitionsClause(tree, wiring, facade);
 			break;
 		case NoSqlLexer.SELECT_CLAUSE:
-			compileSelectClause(tree, wiring);
+			compileSelectClause(tree, wiring, facade);
 			break;
 		case NoSqlLexer.TABLE_CLAUSE:
 			compileTableClause(tree, wiring, facade);
@@ -117,6 +121,9 @@ public class ScannerSql {
 		case NoSqlLexer.DELETE:
 			compileDeleteClause(wiring);
 			break;
+		case NoSqlLexer.ORDERBY_CLAUSE:
+			compileOrderBy(tree, wiring, facade);
+			break;
 		case 0: // nil
 			List<CommonTree> childrenList = tree.getChildren();
 			for (CommonTree child : childrenList) {
@@ -294,14 +301,14 @@ public class ScannerSql {
 	
 	@SuppressWarnings("unchecked")
 	private static <T> void compileSelectClause(CommonTree tree,
-			InfoForWiring wiring) {
+			InfoForWiring wiring, MetaFacade facade) {
 
 		List<CommonTree> childrenList = tree.getChildren();
 		if (childrenList != null && childrenList.size() > 0) {
 			for (CommonTree child : childrenList) {
 				switch (child.getType()) {
 				case NoSqlLexer.SELECT_RESULTS:
-					parseSelectResults(child, wiring);
+					parseSelectResults(child, wiring, facade);
 					break;
 				default:
 					break;
@@ -379,7 +386,7 @@ public class ScannerSql {
 	// the alias part is silly due to not organize right in .g file
 	@SuppressWarnings({ "unchecked" })
 	private static <T> void parseSelectResults(CommonTree tree,
-			InfoForWiring wiring) {
+			InfoForWiring wiring, MetaFacade facade) {
 		List<CommonTree> childrenList = tree.getChildren();
 		if (childrenList == null)
 			return;
@@ -419,6 +426,9 @@ public class ScannerSql {
 				break;
 			case NoSqlLexer.ALIAS:
 				break;
+			case NoSqlLexer.AGGREGATE:
+				compileAggregate(child, wiring, facade);
+				break;
 
 			default:
 				break;
@@ -426,6 +436,24 @@ public class ScannerSql {
 		}
 	}
 
+	private static void compileAggregate(CommonTree node, InfoForWiring wiring, MetaFacade facade) {
+		CommonTree arg = (CommonTree) node.getChild(0);
+		StateAttribute attr = null;
+		if(arg.getType() != NoSqlLexer.STAR)
+			attr = wiring.lookupColumn(arg, facade, "select");
+		AggregateInfo aggregate = new AggregateCompiler().compile(node.getText(), attr, wiring.getQuery());
+		wiring.addAggregate(aggregate);
+	}
+
+	private static void compileOrderBy(CommonTree tree, InfoForWiring wiring, MetaFacade facade) {
+		StateAttribute attr = wiring.lookupOrderByColumn((CommonTree) tree.getChild(0), facade);
+		DboColumnMeta colMeta = attr.getColumnInfo();
+		if(colMeta instanceof DboColumnToManyMeta || colMeta instanceof DboColumnEmbedMeta || colMeta instanceof DboColumnEmbedSimpleMeta)
+			throw new IllegalArgumentException("Cannot ORDER BY "+attr.getTextInSql()+" since it holds many values.  query="+wiring.getQuery());
+		boolean descending = tree.getChildCount() > 1 && tree.getChild(1).getType() == NoSqlLexer.DESC;
+		wiring.setOrderBy(new OrderByInfo(attr.getViewInfo(), colMeta, descending, attr.getTextInSql()));
+	}
+
 	@SuppressWarnings("unchecked")
 	private static <T> void compileExpression(ExpressionNode node, InfoForWiring wiring, MetaFacade facade) {
 		CommonTree expression = node.getASTNode();
@@ -620,41 +648,12 @@ public class ScannerSql {
 
 	private static TypeInfo processColumnName( 
 			ExpressionNode attributeNode2, InfoForWiring wiring, TypeInfo otherSideType, MetaFacade facade) {
-		ViewInfoImpl tableInfo;
-		
-		CommonTree colNameNode = attributeNode2.getASTNode();
-		String columnName = colNameNode.getText();
-		String textInSql = columnName;
-		if (colNameNode.getChildCount() > 0) {
-			String aliasEntity = colNameNode.getChild(0).getText();
-			
-			tableInfo = wiring.getInfoFromAlias(aliasEntity);
-			textInSql = aliasEntity+"."+columnName;
-			if(tableInfo == null)
-				throw new RuntimeException("The where clause attribute="
-						+textInSql+" has an alias that does not exist in from clause");
-		} else {
-			tableInfo = wiring.getNoAliasTable();
-			if(tableInfo == null)
-				throw new RuntimeException("The where clause attribute="
-						+textInSql+" has no alias and from clause only has tables with alias");
-		}
-		
-		DboTableMeta metaClass = tableInfo.getTableMeta();
-		//At this point, we have looked up the metaClass associated with the alias
-		DboColumnMeta colMeta = facade.getColumnMeta(metaClass, columnName);
-		if (colMeta == null) {
-			//okay, there is no column found, but maybe the column name for the id matches(id is a special case)
-			colMeta = metaClass.getIdColumnMeta();
-			if(!colMeta.getColumnName().equals(columnName)) {
-				List<String> names = metaClass.getColumnNameList();
-				throw new IllegalArgumentException("There is no column=" + columnName + " that exists for table " 
-						+ metaClass.getColumnFamily()+" potential columns are="+names+"  rowkey col="+colMeta.getColumnName());
-			}
-		}
+		StateAttribute attr = wiring.lookupColumn(attributeNode2.getASTNode(), facade, "where clause");
+		ViewInfoImpl tableInfo = attr.getViewInfo();
+		DboColumnMeta colMeta = attr.getColumnInfo();
+		String textInSql = attr.getTextInSql();
 		
 		wiring.addEagerlyJoinedView(tableInfo);
-		StateAttribute attr = new StateAttribute(tableInfo, colMeta, textInSql); 
 		attributeNode2.setState(attr, textInSql);
 		wiring.incrementAttributesCount(textInSql);
 		
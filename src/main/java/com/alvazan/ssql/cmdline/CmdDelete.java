@@ -5,10 +5,13 @@ import com.alvazan.orm.api.exc.ParseException;
 import com.alvazan.orm.api.z3api.NoSqlTypedSession;
 
 public class CmdDelete {
+
+	private static final int BATCH_SIZE = 500;
+
 	void processDelete(String cmd, NoSqlEntityManager mgr) {
 		NoSqlTypedSession s = mgr.getTypedSession();
 		try {
-			int count = s.executeQuery(cmd);
+			int count = s.executeQuery(cmd, BATCH_SIZE, new PrintProgress("deleted"));
 			mgr.flush();
 			println(count + " row deleted");
 		} catch (ParseException e) {
@@ -11,6 +11,11 @@ public class CmdHelp {
 			println("");
 			println("Example: SELECT a FROM Activity as a LEFT JOIN a.trade as t WHERE a.numShares > 5");
 			println("");
+			println("COUNT, MIN, MAX and SUM print one value each instead of the rows and are read from the index");
+			println("alone when the where clause is a single comparison on the same column or there is none");
+			println("");
+			println("Example: SELECT COUNT(*), MAX(a.numShares) FROM Activity as a WHERE a.numShares > 5");
+			println("");
 			println("In general, JQL(Java Query Language) can be followed.  We are adding standard SQL as well");			
 		} else if("PARTITIONS".equalsIgnoreCase(command)) {
 			println("Select dataset matching expression in a partition");
@@ -1,9 +1,11 @@
 package com.alvazan.ssql.cmdline;
 
 import java.util.List;
+import java.util.regex.Pattern;
 
 import com.alvazan.orm.api.base.NoSqlEntityManager;
 import com.alvazan.orm.api.exc.ParseException;
+import com.alvazan.orm.api.z3api.AggregateResult;
 import com.alvazan.orm.api.z3api.NoSqlTypedSession;
 import com.alvazan.orm.api.z3api.QueryResult;
 import com.alvazan.orm.api.z8spi.iter.Cursor;
@@ -16,9 +18,18 @@ import com.alvazan.orm.api.z8spi.meta.ViewInfo;
 
 public class CmdSelect {
 
+	private static final Pattern AGGREGATE = Pattern.compile("(?is).*\\bSELECT\\s+(COUNT|MIN|MAX|SUM)\\s*\\(.*");
+
 	void processSelect(String cmd, NoSqlEntityManager mgr) {
 		NoSqlTypedSession s = mgr.getTypedSession();
 		try {
+			if(AGGREGATE.matcher(cmd).matches()) {
+				AggregateResult result = s.aggregate(cmd, 100);
+				for(int i = 0; i < result.getNames().size(); i++) {
+					println(result.getNames().get(i)+" = "+result.getValue(i));
+				}
+				return;
+			}
 			QueryResult result = s.createQueryCursor(cmd, 100);
 			Cursor<List<TypedRow>> cursor = result.getAllViewsCursor();
 
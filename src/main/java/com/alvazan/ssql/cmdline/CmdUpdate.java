@@ -6,10 +6,12 @@ import com.alvazan.orm.api.z3api.NoSqlTypedSession;
 
 public class CmdUpdate {
 
+	private static final int BATCH_SIZE = 500;
+
 	void processUpdate(String cmd, NoSqlEntityManager mgr) {
 		NoSqlTypedSession s = mgr.getTypedSession();
 		try {
-			int count = s.executeQuery(cmd);
+			int count = s.executeQuery(cmd, BATCH_SIZE, new PrintProgress("updated"));
 			mgr.flush();
 			println(count + " row updated");
 		} catch(ParseException e) {
@@ -0,0 +1,17 @@
+package com.alvazan.ssql.cmdline;
+
+import com.alvazan.orm.api.z3api.ProgressListener;
+
+public class PrintProgress implements ProgressListener {
+
+	private String verb;
+
+	public PrintProgress(String verb) {
+		this.verb = verb;
+	}
+
+	@Override
+	public void flushed(int rowCount) {
+		System.out.println(rowCount + " rows " + verb + " so far");
+	}
+}
@@ -23,16 +23,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.jboss.vfs.VirtualFile;
 
 import javassist.bytecode.AnnotationsAttribute;
+import javassist.bytecode.AttributeInfo;
 import javassist.bytecode.ClassFile;
 import javassist.bytecode.FieldInfo;
 import javassist.bytecode.MethodInfo;
@@ -142,40 +149,144 @@ public abstract class Discoverer {
      * @param cl 
      */
     public final void discover(ClassLoader cl) {
+        discover(findResources(cl));
+    }
+
+    /**
+     * Reads the resources in parallel, one jar or folder per thread, keeping only the class files
+     * with an annotation some listener wants.  The listeners are then told on this thread in the
+     * order of the resources so they don't need to be thread safe.
+     * 
+     * @param resources
+     */
+    public final void discover(URL[] resources) {
     	Set<String> processedAlready = new HashSet<String>();
-    	
-        URL[] resources = findResources(cl);
+    	List<URL> toRead = new ArrayList<URL>();
         for (URL resource : resources) {
         	if(processedAlready.contains(resource.getPath()))
         		continue;
-        	
         	processedAlready.add(resource.getPath());
-            try {
-                ResourceIterator itr = getResourceIterator(resource, getFilter());
-                
-                InputStream is = null;
-                while ((is = itr.next()) != null) {
-                	// make a data input stream
-                	DataInputStream dstream = new DataInputStream(new BufferedInputStream(is));
-                    try {
-                    	// get java-assist class file
-                    	ClassFile classFile = new ClassFile(dstream);
-                    	
-                    	// discover class-level annotations
-                    	discoverAndIntimateForClassAnnotations (classFile);
-                    	// discover field annotations
-                    	discoverAndIntimateForFieldAnnotations (classFile);
-                    	// discover method annotations
-                    	discoverAndIntimateForMethodAnnotations(classFile);
-                    } finally {
-                    	 dstream.close();
-                         is.close();
-                    }
+        	toRead.add(resource);
+        }
+
+        int threads = Math.min(toRead.size(), Runtime.getRuntime().availableProcessors());
+        if (threads <= 1) {
+        	for (URL resource : toRead) {
+        		intimate(read(resource));
+        	}
+        	return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+        	List<Future<List<ClassFile>>> futures = new ArrayList<Future<List<ClassFile>>>();
+        	for (final URL resource : toRead) {
+        		futures.add(executor.submit(new Callable<List<ClassFile>>() {
+        			@Override
+        			public List<ClassFile> call() {
+        				return read(resource);
+        			}
+        		}));
+        	}
+        	for (Future<List<ClassFile>> future : futures) {
+        		intimate(waitFor(future));
+        	}
+        } finally {
+        	executor.shutdownNow();
+        }
+    }
+
+    private List<ClassFile> waitFor(Future<List<ClassFile>> future) {
+    	try {
+    		return future.get();
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		throw new RuntimeException("interrupted while scanning the classpath", e);
+    	} catch (ExecutionException e) {
+    		if (e.getCause() instanceof RuntimeException)
+    			throw (RuntimeException) e.getCause();
+    		throw new RuntimeException(e.getCause());
+    	}
+    }
+
+    private void intimate(List<ClassFile> classFiles) {
+    	for (ClassFile classFile : classFiles) {
+        	// discover class-level annotations
+        	discoverAndIntimateForClassAnnotations (classFile);
+        	// discover field annotations
+        	discoverAndIntimateForFieldAnnotations (classFile);
+        	// discover method annotations
+        	discoverAndIntimateForMethodAnnotations(classFile);
+    	}
+    }
+
+    private List<ClassFile> read(URL resource) {
+    	List<ClassFile> wanted = new ArrayList<ClassFile>();
+        try {
+            ResourceIterator itr = getResourceIterator(resource, getFilter());
+            
+            InputStream is = null;
+            while ((is = itr.next()) != null) {
+            	// make a data input stream
+            	DataInputStream dstream = new DataInputStream(new BufferedInputStream(is));
+                try {
+                	// get java-assist class file
+                	ClassFile classFile = new ClassFile(dstream);
+                	if (isWanted(classFile))
+                		wanted.add(classFile);
+                } finally {
+                	 dstream.close();
+                     is.close();
                 }
-            } catch (IOException e) {
-            	throw new RuntimeException(e);
             }
+        } catch (IOException e) {
+        	throw new RuntimeException(e);
         }
+        return wanted;
+    }
+
+    /**
+     * True if the class, one of its fields or one of its methods has an annotation a listener wants
+     * 
+     * @param classFile
+     */
+    private boolean isWanted(ClassFile classFile) {
+    	if (hasAnnotation(classAnnotationListeners, classFile.getAttribute(AnnotationsAttribute.visibleTag), 
+    			classFile.getAttribute(AnnotationsAttribute.invisibleTag)))
+    		return true;
+
+    	@SuppressWarnings("unchecked") 
+		List<FieldInfo> fields = classFile.getFields();
+    	if (fields != null) {
+    		for (FieldInfo fieldInfo : fields) {
+    			if (hasAnnotation(fieldAnnotationListeners, fieldInfo.getAttribute(AnnotationsAttribute.visibleTag), 
+    					fieldInfo.getAttribute(AnnotationsAttribute.invisibleTag)))
+    				return true;
+    		}
+    	}
+
+    	@SuppressWarnings("unchecked") 
+		List<MethodInfo> methods = classFile.getMethods();
+    	if (methods != null) {
+    		for (MethodInfo methodInfo : methods) {
+    			if (hasAnnotation(methodAnnotationListeners, methodInfo.getAttribute(AnnotationsAttribute.visibleTag), 
+    					methodInfo.getAttribute(AnnotationsAttribute.invisibleTag)))
+    				return true;
+    		}
+    	}
+    	return false;
+    }
+
+    private boolean hasAnnotation(Map<String, ?> listeners, AttributeInfo... attributes) {
+    	for (AttributeInfo attribute : attributes) {
+    		if (attribute == null)
+    			continue;
+    		for (Annotation annotation : ((AnnotationsAttribute) attribute).getAnnotations()) {
+    			if (listeners.containsKey(annotation.getTypeName()))
+    				return true;
+    		}
+    	}
+    	return false;
     }
     
     /**
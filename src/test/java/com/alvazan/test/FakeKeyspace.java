@@ -0,0 +1,199 @@
+package com.alvazan.test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.google.common.util.concurrent.Futures;
+import com.netflix.astyanax.Keyspace;
+import com.netflix.astyanax.connectionpool.OperationResult;
+import com.netflix.astyanax.connectionpool.TokenRange;
+import com.netflix.astyanax.model.Column;
+import com.netflix.astyanax.model.ColumnList;
+import com.netflix.astyanax.model.Row;
+import com.netflix.astyanax.model.Rows;
+import com.netflix.astyanax.partitioner.Partitioner;
+import com.netflix.astyanax.query.ColumnFamilyQuery;
+import com.netflix.astyanax.query.RowSliceQuery;
+
+/**
+ * Just enough of an astyanax keyspace to answer multi-key finds from a map so the cassandra
+ * cursors can be tested without a cluster.  Like cassandra, rows come back in no particular
+ * order(we reverse them) and keys with no row come back as rows with no columns.
+ */
+public class FakeKeyspace {
+
+	private static final byte[] COLUMN_NAME = new byte[] {1};
+
+	private Map<ByteArray, byte[]> rows = new HashMap<ByteArray, byte[]>();
+	private List<List<byte[]>> slices = new ArrayList<List<byte[]>>();
+	private Map<String, Answer> keyspaceAnswers = new HashMap<String, Answer>();
+
+	public FakeKeyspace() {
+		keyspaceAnswers.put("prepareQuery", new Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return prepareQuery();
+			}
+		});
+	}
+
+	public void put(byte[] key, byte[] value) {
+		rows.put(new ByteArray(key), value);
+	}
+
+	public void answer(String keyspaceMethod, Answer answer) {
+		keyspaceAnswers.put(keyspaceMethod, answer);
+	}
+
+	/**
+	 * Sets up a ring with a range ending at each of the tokens where the token of a key is
+	 * simply its first byte
+	 */
+	public void setRing(int... endTokens) {
+		List<TokenRange> ranges = new ArrayList<TokenRange>();
+		for(int token : endTokens) {
+			Map<String, Object> range = new HashMap<String, Object>();
+			range.put("getEndToken", ""+token);
+			ranges.add(stub(TokenRange.class, values(range)));
+		}
+		Map<String, Answer> partitioner = new HashMap<String, Answer>();
+		partitioner.put("getTokenForKey", new Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return ""+(((ByteBuffer) args[0]).get(0) & 0xff);
+			}
+		});
+		Map<String, Object> ring = new HashMap<String, Object>();
+		ring.put("getPartitioner", stub(Partitioner.class, partitioner));
+		ring.put("describeRing", ranges);
+		ring.put("getKeyspaceName", "fake");
+		keyspaceAnswers.putAll(values(ring));
+	}
+
+	/**
+	 * @return the keys of every slice query executed so far in the order they were executed
+	 */
+	public List<List<byte[]>> getSlices() {
+		return slices;
+	}
+
+	public Keyspace getKeyspace() {
+		return stub(Keyspace.class, keyspaceAnswers);
+	}
+
+	public static byte[] valueOf(com.alvazan.orm.api.z8spi.Row row) {
+		return row.getColumn(COLUMN_NAME).getValue();
+	}
+
+	private ColumnFamilyQuery<?, ?> prepareQuery() {
+		Map<String, Answer> answers = new HashMap<String, Answer>();
+		answers.put("getKeySlice", new Answer() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public Object answer(Object[] args) {
+				List<byte[]> keys = new ArrayList<byte[]>((Collection<byte[]>) args[0]);
+				slices.add(keys);
+				return keySlice(keys);
+			}
+		});
+		return stub(ColumnFamilyQuery.class, answers);
+	}
+
+	private RowSliceQuery<?, ?> keySlice(final List<byte[]> keys) {
+		Map<String, Answer> answers = new HashMap<String, Answer>();
+		answers.put("executeAsync", new Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				List<Row<byte[], byte[]>> result = new ArrayList<Row<byte[], byte[]>>();
+				for(byte[] key : keys) {
+					result.add(row(key, rows.get(new ByteArray(key))));
+				}
+				Collections.reverse(result);
+				Map<String, Object> op = new HashMap<String, Object>();
+				op.put("getResult", stub(Rows.class, values("iterator", result)));
+				return Futures.immediateFuture(stub(OperationResult.class, values(op)));
+			}
+		});
+		return stub(RowSliceQuery.class, answers);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Row<byte[], byte[]> row(byte[] key, byte[] value) {
+		List<Column<byte[]>> columns = new ArrayList<Column<byte[]>>();
+		if(value != null) {
+			Map<String, Object> col = new HashMap<String, Object>();
+			col.put("getName", COLUMN_NAME);
+			col.put("getByteArrayValue", value);
+			col.put("getTimestamp", 0L);
+			col.put("getTtl", 0);
+			columns.add(stub(Column.class, values(col)));
+		}
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("getKey", key);
+		row.put("getColumns", stub(ColumnList.class, values("iterator", columns)));
+		return stub(Row.class, values(row));
+	}
+
+	private static Map<String, Answer> values(String method, final List<?> list) {
+		Map<String, Answer> answers = new HashMap<String, Answer>();
+		answers.put(method, new Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return list.iterator();
+			}
+		});
+		answers.put("isEmpty", new Answer() {
+			@Override
+			public Object answer(Object[] args) {
+				return list.isEmpty();
+			}
+		});
+		return answers;
+	}
+
+	private static Map<String, Answer> values(Map<String, Object> values) {
+		Map<String, Answer> answers = new HashMap<String, Answer>();
+		for(final Map.Entry<String, Object> entry : values.entrySet()) {
+			answers.put(entry.getKey(), new Answer() {
+				@Override
+				public Object answer(Object[] args) {
+					return entry.getValue();
+				}
+			});
+		}
+		return answers;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T stub(final Class<T> type, final Map<String, Answer> answers) {
+		return (T) Proxy.newProxyInstance(FakeKeyspace.class.getClassLoader(), new Class[] {type}, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+				if(method.getDeclaringClass() == Object.class) {
+					if(method.getName().equals("equals"))
+						return proxy == args[0];
+					else if(method.getName().equals("hashCode"))
+						return System.identityHashCode(proxy);
+					return "Fake"+type.getSimpleName();
+				}
+				Answer answer = answers.get(method.getName());
+				if(answer == null)
+					throw new UnsupportedOperationException("Fake"+type.getSimpleName()+" does not support "+method.getName());
+				return answer.answer(args);
+			}
+		});
+	}
+
+	public interface Answer {
+		Object answer(Object[] args) throws Exception;
+	}
+}
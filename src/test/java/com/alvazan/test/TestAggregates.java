@@ -0,0 +1,118 @@
+package com.alvazan.test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.exc.ParseException;
+import com.alvazan.orm.api.z3api.AggregateResult;
+import com.alvazan.orm.api.z3api.NoSqlTypedSession;
+import com.alvazan.test.db.Activity;
+
+public class TestAggregates {
+
+	private static NoSqlEntityManagerFactory factory;
+	private NoSqlEntityManager mgr;
+
+	@BeforeClass
+	public static void setup() {
+		factory = FactorySingleton.createFactoryOnce();
+	}
+
+	@Before
+	public void createEntityManager() {
+		mgr = factory.createEntityManager();
+		putActivity("act1", "dean", 5, 1.5f, "b");
+		putActivity("act2", "dean", 10, 2.5f, "a");
+		putActivity("act3", "joe", 15, 3.0f, null);
+		putActivity("act4", "joe", 20, 4.0f, "c");
+		mgr.flush();
+	}
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	private void putActivity(String id, String name, long numTimes, float myFloat, String somethingElse) {
+		Activity act = new Activity(id);
+		act.setName(name);
+		act.setNumTimes(numTimes);
+		act.setMyFloat(myFloat);
+		act.setSomethingElse(somethingElse);
+		mgr.put(act);
+	}
+
+	@Test
+	public void testWholeIndex() {
+		NoSqlTypedSession s = mgr.getTypedSession();
+		AggregateResult result = s.aggregate("select count(*), MIN(numTimes), max(numTimes), SUM(numTimes) from Activity", 2);
+		Assert.assertEquals("COUNT(*)", result.getNames().get(0));
+		Assert.assertEquals("MAX(numTimes)", result.getNames().get(2));
+		Assert.assertEquals(4L, result.getValue(0));
+		Assert.assertEquals(BigInteger.valueOf(5), result.getValue(1));
+		Assert.assertEquals(BigInteger.valueOf(20), result.getValue(2));
+		Assert.assertEquals(BigInteger.valueOf(50), result.getValue(3));
+	}
+
+	@Test
+	public void testRangeOnSameIndex() {
+		NoSqlTypedSession s = mgr.getTypedSession();
+		AggregateResult result = s.aggregate("select MIN(e.numTimes), MAX(e.numTimes) from Activity as e where e.numTimes > 5", 2);
+		Assert.assertEquals(BigInteger.valueOf(10), result.getValue(0));
+		Assert.assertEquals(BigInteger.valueOf(20), result.getValue(1));
+
+		result = s.aggregate("select COUNT(*), SUM(e.numTimes) from Activity as e where e.numTimes >= 10", 500);
+		Assert.assertEquals(3L, result.getValue(0));
+		Assert.assertEquals(BigInteger.valueOf(45), result.getValue(1));
+	}
+
+	@Test
+	public void testFromRows() {
+		NoSqlTypedSession s = mgr.getTypedSession();
+		AggregateResult result = s.aggregate("select COUNT(e.somethingElse), MIN(e.somethingElse), SUM(e.myFloat) from Activity as e where e.name = 'joe'", 500);
+		Assert.assertEquals(1L, result.getValue(0));
+		Assert.assertEquals("c", result.getValue(1));
+		Assert.assertEquals(0, new BigDecimal("7").compareTo((BigDecimal) result.getValue(2)));
+
+		result = s.aggregate("select COUNT(*) from Activity as e where e.name = 'dean' and e.numTimes > 5", 500);
+		Assert.assertEquals(1L, result.getValue(0));
+
+		result = s.aggregate("select MAX(e.numTimes) from Activity as e where e.name = 'nobody'", 500);
+		Assert.assertNull(result.getValue(0));
+	}
+
+	@Test
+	public void testCount() {
+		NoSqlTypedSession s = mgr.getTypedSession();
+		Assert.assertEquals(2, s.count("Activity", "name", "dean"));
+		Assert.assertEquals(1, s.count("Activity", "numTimes", 15L));
+	}
+
+	@Test
+	public void testInvalidAggregates() {
+		NoSqlTypedSession s = mgr.getTypedSession();
+		try {
+			s.aggregate("select SUM(e.name) from Activity as e", 500);
+			Assert.fail("SUM of a string should fail");
+		} catch(ParseException e) {
+		}
+		try {
+			s.aggregate("select AVG(e.numTimes) from Activity as e", 500);
+			Assert.fail("AVG is not supported");
+		} catch(ParseException e) {
+		}
+		try {
+			s.createQueryCursor("select COUNT(*) from Activity as e", 500);
+			Assert.fail("a cursor of rows can't have aggregates");
+		} catch(IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.alvazan.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z3api.NoSqlTypedSession;
+import com.alvazan.orm.api.z3api.ProgressListener;
+import com.alvazan.test.db.Activity;
+import com.alvazan.test.db.Email;
+
+public class TestBulkMutation {
+
+	private static NoSqlEntityManagerFactory factory;
+	private NoSqlEntityManager mgr;
+
+	@BeforeClass
+	public static void setup() {
+		factory = FactorySingleton.createFactoryOnce();
+	}
+
+	@Before
+	public void createEntityManager() {
+		mgr = factory.createEntityManager();
+	}
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	private void putActivity(String id, String name, long numTimes) {
+		Activity act = new Activity(id);
+		act.setName(name);
+		act.setNumTimes(numTimes);
+		mgr.put(act);
+	}
+
+	@Test
+	public void testUpdateOnlyChangedRows() {
+		putActivity("act1", "dean", 5);
+		putActivity("act2", "dean", 10);
+		putActivity("act3", "joe", 15);
+		mgr.flush();
+
+		NoSqlTypedSession s = mgr.getTypedSession();
+		int count = s.executeQuery("update Activity as e set (e.name='joe') where e.numTimes > 0", 2, null);
+		Assert.assertEquals(2, count);
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		List<Activity> joes = Activity.findByName(mgr2, "joe");
+		Assert.assertEquals(3, joes.size());
+		Assert.assertEquals(0, Activity.findByName(mgr2, "dean").size());
+		Assert.assertEquals(10, mgr2.find(Activity.class, "act2").getNumTimes());
+	}
+
+	@Test
+	public void testUpdateIndexBeingScanned() {
+		for(int i = 0; i < 10; i++) {
+			putActivity("act"+i, "dean", i);
+		}
+		mgr.flush();
+
+		//each new value lands further along the index being scanned so a row must not be visited twice
+		NoSqlTypedSession s = mgr.getTypedSession();
+		int count = s.executeQuery("update Activity as e set (e.numTimes=100) where e.numTimes >= 0", 3, null);
+		Assert.assertEquals(10, count);
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		Assert.assertEquals(10, Activity.findNumTimes(mgr2, 100).size());
+		Assert.assertEquals(0, Activity.findNumTimes(mgr2, 3).size());
+	}
+
+	@Test
+	public void testDeleteInBatches() {
+		for(int i = 0; i < 7; i++) {
+			Email email = new Email();
+			email.setId("email"+i);
+			email.setName("dean");
+			mgr.put(email);
+		}
+		putActivity("act1", "dean", 5);
+		putActivity("act2", "joe", 6);
+		mgr.flush();
+
+		final List<Integer> progress = new ArrayList<Integer>();
+		ProgressListener listener = new ProgressListener() {
+			@Override
+			public void flushed(int rowCount) {
+				progress.add(rowCount);
+			}
+		};
+		NoSqlTypedSession s = mgr.getTypedSession();
+		int count = s.executeQuery("delete from Email as e where e.name = 'dean'", 3, listener);
+		Assert.assertEquals(7, count);
+		Assert.assertEquals(3, progress.size());
+		Assert.assertEquals(Integer.valueOf(3), progress.get(0));
+		Assert.assertEquals(Integer.valueOf(7), progress.get(2));
+
+		count = s.executeQuery("delete from Activity as e where e.name = 'dean'", 3, null);
+		Assert.assertEquals(1, count);
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		Assert.assertNull(mgr2.find(Email.class, "email4"));
+		Assert.assertEquals(0, mgr2.getTypedSession().count("Email", "name", "dean"));
+		Assert.assertEquals(0, Activity.findByName(mgr2, "dean").size());
+		Assert.assertNotNull(mgr2.find(Activity.class, "act2"));
+	}
+}
@@ -0,0 +1,84 @@
+package com.alvazan.test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.z8spi.conv.Converters;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+
+/**
+ * The primitive converters must keep writing exactly what the BigInteger and BigDecimal based
+ * ones did so existing data reads back the same
+ */
+public class TestConverters {
+
+	private Random r = new Random(3);
+
+	@Test
+	public void testIntegersMatchBigInteger() {
+		long[] edges = new long[] {0, 1, -1, 127, 128, -128, -129, 255, 256, 32767, -32768, Integer.MAX_VALUE,
+				Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+		for(long e : edges) {
+			checkLong(e);
+		}
+		for(int i = 0; i < 5000; i++) {
+			checkLong(r.nextLong() >> r.nextInt(64));
+		}
+
+		//a long stored as a BigInteger too big for it reads back its low bits like before
+		byte[] big = BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(1000)).toByteArray();
+		Assert.assertEquals(new BigInteger(big).longValue(), (long) StandardConverters.convertFromBytes(Long.class, big));
+		Assert.assertEquals(new BigInteger(big).intValue(), (int) StandardConverters.convertFromBytes(Integer.class, big));
+	}
+
+	private void checkLong(long val) {
+		byte[] expected = BigInteger.valueOf(val).toByteArray();
+		Assert.assertArrayEquals(""+val, expected, Converters.LONG_CONVERTER.convertToNoSql(val));
+		Assert.assertEquals(val, Converters.LONG_CONVERTER.convertFromNoSql(expected));
+		Assert.assertEquals((int) val, Converters.INT_CONVERTER.convertFromNoSql(expected));
+		Assert.assertEquals((short) val, Converters.SHORT_CONVERTER.convertFromNoSql(expected));
+		Assert.assertEquals((byte) val, Converters.BYTE_CONVERTER.convertFromNoSql(expected));
+		Assert.assertArrayEquals(BigInteger.valueOf((int) val).toByteArray(), Converters.INT_CONVERTER.convertToNoSql((int) val));
+		Assert.assertArrayEquals(BigInteger.valueOf((short) val).toByteArray(), Converters.SHORT_CONVERTER.convertToNoSql((short) val));
+		Assert.assertArrayEquals(BigInteger.valueOf((byte) val).toByteArray(), Converters.BYTE_CONVERTER.convertToNoSql((byte) val));
+	}
+
+	@Test
+	public void testFloatingPointMatchesBigDecimal() {
+		double[] edges = new double[] {0.0, -0.0, 1.0, -1.0, 2.33, 9999999.0, 10000000.0, -9999999.0, 1e-3, 1e-4, 0.1,
+				123456.789, 1e22, 1e23, Double.MAX_VALUE, Double.MIN_VALUE};
+		for(double d : edges) {
+			checkDouble(d);
+			if(!Float.isInfinite((float) d))
+				checkFloat((float) d);
+		}
+		for(int i = 0; i < 5000; i++) {
+			checkDouble(r.nextInt(2000000) - 1000000);
+			checkDouble((r.nextInt(2000000) - 1000000) / 100.0);
+			checkDouble(r.nextDouble() * Math.pow(10, r.nextInt(40) - 20));
+			checkFloat((r.nextInt(2000000) - 1000000) / 100.0f);
+			checkFloat((float) (r.nextDouble() * Math.pow(10, r.nextInt(20) - 10)));
+		}
+	}
+
+	private void checkDouble(double d) {
+		byte[] expected = Converters.BIGDECIMAL_CONVERTER.convertToNoSql(new BigDecimal(""+d));
+		byte[] actual = Converters.DOUBLE_CONVERTER.convertToNoSql(d);
+		Assert.assertTrue(""+d, Arrays.equals(expected, actual));
+		BigDecimal stored = (BigDecimal) Converters.BIGDECIMAL_CONVERTER.convertFromNoSql(expected);
+		Assert.assertEquals(""+d, stored.doubleValue(), (Double) Converters.DOUBLE_CONVERTER.convertFromNoSql(expected), 0);
+	}
+
+	private void checkFloat(float f) {
+		byte[] expected = Converters.BIGDECIMAL_CONVERTER.convertToNoSql(new BigDecimal(""+f));
+		byte[] actual = Converters.FLOAT_CONVERTER.convertToNoSql(f);
+		Assert.assertTrue(""+f, Arrays.equals(expected, actual));
+		BigDecimal stored = (BigDecimal) Converters.BIGDECIMAL_CONVERTER.convertFromNoSql(expected);
+		Assert.assertEquals(""+f, stored.floatValue(), (Float) Converters.FLOAT_CONVERTER.convertFromNoSql(expected), 0);
+	}
+}
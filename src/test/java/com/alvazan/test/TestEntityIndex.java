@@ -0,0 +1,43 @@
+package com.alvazan.test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.impl.meta.scan.NoSqlEntityProcessor;
+import com.alvazan.test.db.Account;
+import com.alvazan.test.db.AccountMiddle;
+import com.alvazan.test.db.EmbeddedEmail;
+
+public class TestEntityIndex {
+
+	@Test
+	public void testIndexWrittenAtCompile() throws IOException {
+		List<String> names = readIndex();
+		Assert.assertTrue(names.contains(Account.class.getName()));
+		Assert.assertTrue(names.contains(EmbeddedEmail.class.getName()));
+		//not annotated itself
+		Assert.assertFalse(names.contains(AccountMiddle.class.getName()));
+	}
+
+	private List<String> readIndex() throws IOException {
+		InputStream in = getClass().getClassLoader().getResourceAsStream(NoSqlEntityProcessor.INDEX_RESOURCE);
+		Assert.assertNotNull("the test classes were compiled without the processor", in);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		List<String> names = new ArrayList<String>();
+		try {
+			for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+				names.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return names;
+	}
+}
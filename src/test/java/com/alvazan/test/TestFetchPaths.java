@@ -0,0 +1,105 @@
+package com.alvazan.test;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.base.Query;
+import com.alvazan.orm.api.exc.RowNotFoundException;
+import com.alvazan.test.db.Account;
+import com.alvazan.test.db.Activity;
+
+public class TestFetchPaths {
+
+	private static NoSqlEntityManagerFactory factory;
+	private NoSqlEntityManager mgr;
+
+	@BeforeClass
+	public static void setup() {
+		factory = FactorySingleton.createFactoryOnce();
+	}
+
+	@Before
+	public void createEntityManager() {
+		mgr = factory.createEntityManager();
+		for(int i = 0; i < 3; i++) {
+			Account acc = new Account("acc"+i);
+			acc.setName("name"+i);
+			Activity act = new Activity("act"+i);
+			act.setNumTimes(i);
+			act.setAccount(acc);
+			acc.addActivity(act);
+			mgr.put(act);
+			mgr.put(acc);
+		}
+		mgr.flush();
+	}
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	private void removeFromDatabase(Class<?> type, String prefix) {
+		NoSqlEntityManager other = factory.createEntityManager();
+		for(int i = 0; i < 3; i++) {
+			other.remove(other.find(type, prefix+i));
+		}
+		other.flush();
+	}
+
+	@Test
+	public void testManyToOneFetchedWithResults() {
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		Query<Activity> query = mgr2.createNamedQuery(Activity.class, "findAll");
+		query.setFetchPaths("account");
+		List<Activity> activities = query.getResultList(0, null);
+		Assert.assertEquals(3, activities.size());
+
+		//the accounts were loaded along with the activities so they no longer need the database
+		removeFromDatabase(Account.class, "acc");
+		for(Activity act : activities) {
+			Assert.assertEquals("name"+act.getNumTimes(), act.getAccount().getName());
+		}
+
+		NoSqlEntityManager mgr3 = factory.createEntityManager();
+		List<Activity> lazy = Activity.findAll(mgr3, 500);
+		try {
+			lazy.get(0).getAccount().getName();
+			Assert.fail("without a fetch path the account is read when touched and it is gone");
+		} catch(RowNotFoundException e) {
+		}
+	}
+
+	@Test
+	public void testOneToManyFetchedWithResults() {
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		Query<Account> query = mgr2.createNamedQuery(Account.class, "findAll");
+		query.setFetchPaths("activities");
+		List<Account> accounts = query.getResultList(0, null);
+		Assert.assertEquals(3, accounts.size());
+
+		removeFromDatabase(Activity.class, "act");
+		for(Account acc : accounts) {
+			List<Activity> activities = acc.getActivities();
+			Assert.assertEquals(1, activities.size());
+			Assert.assertEquals("name"+activities.get(0).getNumTimes(), acc.getName());
+		}
+	}
+
+	@Test
+	public void testInvalidFetchPath() {
+		Query<Account> query = mgr.createNamedQuery(Account.class, "findAll");
+		try {
+			query.setFetchPaths("name");
+			Assert.fail("name is not a relation");
+		} catch(IllegalArgumentException e) {
+		}
+	}
+}
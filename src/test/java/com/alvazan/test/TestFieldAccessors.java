@@ -0,0 +1,80 @@
+package com.alvazan.test;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.test.db.FieldAccessEntity;
+
+public class TestFieldAccessors {
+
+	private static NoSqlEntityManagerFactory factory;
+	private NoSqlEntityManager mgr;
+
+	@Before
+	public void createEntityManager() {
+		factory = FactorySingleton.createFactoryOnce();
+		mgr = factory.createEntityManager();
+	}
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		FieldAccessEntity entity = new FieldAccessEntity();
+		entity.setCount(-70000);
+		entity.setTotal(Long.MIN_VALUE);
+		entity.setSmall((short) -129);
+		entity.setTiny((byte) -1);
+		entity.setFlag(true);
+		entity.setPrice(12.34);
+		entity.setData(new byte[] {1, 2, 3});
+		entity.setName("dean");
+		entity.setPrivateTotal(Long.MAX_VALUE);
+		mgr.put(entity);
+		mgr.flush();
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		FieldAccessEntity result = mgr2.find(FieldAccessEntity.class, entity.getId());
+		Assert.assertEquals(-70000, result.getCount());
+		Assert.assertEquals(Long.MIN_VALUE, result.getTotal());
+		Assert.assertEquals(-129, result.getSmall());
+		Assert.assertEquals(-1, result.getTiny());
+		Assert.assertTrue(result.isFlag());
+		Assert.assertEquals(12.34, result.getPrice(), 0);
+		Assert.assertNull(result.getBoxed());
+		Assert.assertArrayEquals(new byte[] {1, 2, 3}, result.getData());
+		Assert.assertEquals("dean", result.getName());
+		Assert.assertEquals(Long.MAX_VALUE, result.getPrivateTotal());
+	}
+
+	@Test
+	public void testIndexedPrimitiveChange() {
+		FieldAccessEntity entity = new FieldAccessEntity();
+		entity.setCount(5);
+		entity.setBoxed(7);
+		mgr.put(entity);
+		mgr.flush();
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		FieldAccessEntity proxy = mgr2.find(FieldAccessEntity.class, entity.getId());
+		Assert.assertEquals(Integer.valueOf(7), proxy.getBoxed());
+		proxy.setCount(6);
+		mgr2.put(proxy);
+		mgr2.flush();
+
+		NoSqlEntityManager mgr3 = factory.createEntityManager();
+		Assert.assertEquals(0, FieldAccessEntity.findByCount(mgr3, 5).size());
+		List<FieldAccessEntity> found = FieldAccessEntity.findByCount(mgr3, 6);
+		Assert.assertEquals(1, found.size());
+		Assert.assertEquals(entity.getId(), found.get(0).getId());
+	}
+}
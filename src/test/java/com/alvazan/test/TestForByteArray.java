@@ -1,5 +1,8 @@
 package com.alvazan.test;
 
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.junit.Assert;
@@ -46,6 +49,41 @@ public class TestForByteArray {
 		Assert.assertEquals(8, row.getColumns().size());
 	}
 
+	@Test
+	public void testUnsignedCompare() {
+		//longer than 8 bytes so the word at a time compare is used as well as the byte tail
+		byte[] low = StandardConverters.convertFromString(byte[].class, "000102030405060708090a");
+		byte[] high = StandardConverters.convertFromString(byte[].class, "00010203040506f708090a");
+		byte[] highTail = StandardConverters.convertFromString(byte[].class, "0001020304050607080990");
+		byte[] prefix = StandardConverters.convertFromString(byte[].class, "0001020304050607");
+
+		Assert.assertTrue(new ByteArray(low).compareTo(new ByteArray(high)) < 0);
+		Assert.assertTrue(new ByteArray(high).compareTo(new ByteArray(low)) > 0);
+		Assert.assertTrue(new ByteArray(low).compareTo(new ByteArray(highTail)) < 0);
+		Assert.assertTrue(new ByteArray(prefix).compareTo(new ByteArray(low)) < 0);
+		Assert.assertEquals(0, new ByteArray(low).compareTo(new ByteArray(low.clone())));
+	}
+
+	@Test
+	public void testHashSpreadsPermutedKeys() {
+		//the old hash summed the bytes so every permutation of the same bytes collided
+		Set<Integer> hashes = new HashSet<Integer>();
+		Random r = new Random(5);
+		byte[] base = new byte[16];
+		r.nextBytes(base);
+		for(int i = 0; i < 1000; i++) {
+			byte[] copy = base.clone();
+			int a = r.nextInt(copy.length);
+			int b = r.nextInt(copy.length);
+			byte tmp = copy[a];
+			copy[a] = copy[b];
+			copy[b] = tmp;
+			hashes.add(new ByteArray(copy).hashCode());
+		}
+		Assert.assertTrue(hashes.size() > 50);
+		Assert.assertEquals(new ByteArray(base).hashCode(), new ByteArray(base.clone()).hashCode());
+	}
+
 	private Column creteColumn(String hex, byte i) {
 		byte[] name = StandardConverters.convertFromString(byte[].class, hex);
 		byte[] value = new byte[] { i };
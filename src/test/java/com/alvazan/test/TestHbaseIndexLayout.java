@@ -0,0 +1,38 @@
+package com.alvazan.test;
+
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.layer9z.spi.db.hbase.CursorOfHbaseIndexes;
+import com.alvazan.orm.layer9z.spi.db.hbase.HbaseSession;
+
+public class TestHbaseIndexLayout {
+
+	@Test
+	public void testValueAndKeyNotAmbiguous() {
+		byte[] first = HbaseSession.indexQualifier(Bytes.toBytes("1"), Bytes.toBytes("23"));
+		byte[] second = HbaseSession.indexQualifier(Bytes.toBytes("12"), Bytes.toBytes("3"));
+		Assert.assertFalse(Bytes.equals(first, second));
+	}
+
+	@Test
+	public void testReadBack() {
+		byte[] value = Bytes.toBytes("12");
+		byte[] qualifier = HbaseSession.indexQualifier(value, Bytes.toBytes("3"));
+		KeyValue cell = new KeyValue(Bytes.toBytes("row"), Bytes.toBytes("StringIndice"), qualifier, value);
+		IndexColumn col = CursorOfHbaseIndexes.convertToIndexCol(cell);
+		Assert.assertEquals("12", Bytes.toString(col.getIndexedValue()));
+		Assert.assertEquals("3", Bytes.toString(col.getPrimaryKey()));
+	}
+
+	@Test
+	public void testEntriesOfOneValueSortedByKey() {
+		byte[] value = Bytes.toBytes("abc");
+		byte[] lower = HbaseSession.indexQualifier(value, Bytes.toBytes("k1"));
+		byte[] higher = HbaseSession.indexQualifier(value, Bytes.toBytes("k2"));
+		Assert.assertTrue(Bytes.compareTo(lower, higher) < 0);
+	}
+}
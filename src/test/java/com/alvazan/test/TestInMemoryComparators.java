@@ -0,0 +1,83 @@
+package com.alvazan.test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+import com.alvazan.orm.layer9z.spi.db.inmemory.DecimalComparator;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IntegerComparator;
+import com.alvazan.orm.layer9z.spi.db.inmemory.SortType;
+import com.alvazan.orm.layer9z.spi.db.inmemory.SortableEncoding;
+
+public class TestInMemoryComparators {
+
+	private Random r = new Random(7);
+
+	@Test
+	public void testIntegers() {
+		List<BigInteger> values = new ArrayList<BigInteger>();
+		long[] edges = new long[] {0, 1, -1, 127, 128, -128, -129, 255, 256, Long.MAX_VALUE, Long.MIN_VALUE};
+		for(long e : edges) {
+			values.add(BigInteger.valueOf(e));
+		}
+		values.add(BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.TEN));
+		values.add(BigInteger.valueOf(Long.MIN_VALUE).multiply(BigInteger.TEN));
+		for(int i = 0; i < 200; i++) {
+			values.add(BigInteger.valueOf(r.nextLong() >> r.nextInt(64)));
+		}
+
+		IntegerComparator comparator = new IntegerComparator();
+		for(BigInteger left : values) {
+			for(BigInteger right : values) {
+				byte[] l = StandardConverters.convertToBytes(left);
+				byte[] r2 = StandardConverters.convertToBytes(right);
+				int expected = Integer.signum(left.compareTo(right));
+				Assert.assertEquals(left+" vs "+right, expected, Integer.signum(comparator.compare(new ByteArray(l), new ByteArray(r2))));
+				Assert.assertEquals(left+" vs "+right, expected, sortableCompare(SortType.INTEGER_PREFIX, l, r2));
+			}
+		}
+
+		//sign extended forms are the same number
+		byte[] padded = new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0x80};
+		byte[] minimal = new byte[] {(byte) 0x80};
+		Assert.assertEquals(0, comparator.compare(new ByteArray(padded), new ByteArray(minimal)));
+		Assert.assertEquals(0, sortableCompare(SortType.INTEGER_PREFIX, padded, minimal));
+	}
+
+	@Test
+	public void testDecimals() {
+		List<BigDecimal> values = new ArrayList<BigDecimal>();
+		String[] edges = new String[] {"0", "0.00", "1", "1.0", "1.00", "-1", "-1.0", "0.1", "0.12", "0.123", "-0.1", "-0.12",
+				"-0.123", "10", "100", "1E+20", "1E-20", "-1E+20", "99.99", "100.001", "123456789012345678901234567890.5"};
+		for(String e : edges) {
+			values.add(new BigDecimal(e));
+		}
+		for(int i = 0; i < 150; i++) {
+			values.add(BigDecimal.valueOf(r.nextLong() >> r.nextInt(64), r.nextInt(40) - 20));
+		}
+
+		DecimalComparator comparator = new DecimalComparator();
+		for(BigDecimal left : values) {
+			for(BigDecimal right : values) {
+				byte[] l = StandardConverters.convertToDecimalBytes(left);
+				byte[] r2 = StandardConverters.convertToDecimalBytes(right);
+				int expected = Integer.signum(left.compareTo(right));
+				Assert.assertEquals(left+" vs "+right, expected, Integer.signum(comparator.compare(new ByteArray(l), new ByteArray(r2))));
+				Assert.assertEquals(left+" vs "+right, expected, sortableCompare(SortType.DECIMAL_PREFIX, l, r2));
+			}
+		}
+	}
+
+	private int sortableCompare(SortType type, byte[] left, byte[] right) {
+		byte[] l = SortableEncoding.encode(type, left);
+		byte[] r2 = SortableEncoding.encode(type, right);
+		return Integer.signum(ByteArray.compare(l, r2));
+	}
+}
@@ -0,0 +1,88 @@
+package com.alvazan.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.DbTypeEnum;
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.test.db.EntityWithIntKey;
+
+public class TestInMemoryConcurrency {
+
+	private static final int NUM_FLUSHES = 2000;
+	private static final int NUM_READERS = 4;
+
+	private NoSqlEntityManagerFactory factory;
+	private volatile boolean writing;
+
+	@Before
+	public void setup() {
+		factory = FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), new HashMap<String, Object>());
+	}
+
+	@After
+	public void teardown() {
+		factory.close();
+	}
+
+	@Test
+	public void testReadersSeeWholeFlushes() throws InterruptedException {
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		NoSqlEntityManager mgr = factory.createEntityManager();
+		putPair(mgr, 0);
+
+		writing = true;
+		List<Thread> readers = new ArrayList<Thread>();
+		for(int i = 0; i < NUM_READERS; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					List<Integer> keys = new ArrayList<Integer>();
+					keys.add(1);
+					keys.add(2);
+					while(writing && failure.get() == null) {
+						NoSqlEntityManager reader = factory.createEntityManager();
+						List<KeyValue<EntityWithIntKey>> rows = reader.findAllList(EntityWithIntKey.class, keys);
+						String first = rows.get(0).getValue().getSomething();
+						String second = rows.get(1).getValue().getSomething();
+						if(!first.equals(second))
+							failure.set("saw half a flush, first="+first+" second="+second);
+					}
+				}
+			});
+			t.start();
+			readers.add(t);
+		}
+
+		for(int i = 1; i <= NUM_FLUSHES; i++) {
+			putPair(mgr, i);
+		}
+		writing = false;
+		for(Thread t : readers) {
+			t.join();
+		}
+
+		Assert.assertNull(failure.get(), failure.get());
+		EntityWithIntKey e = factory.createEntityManager().find(EntityWithIntKey.class, 2);
+		Assert.assertEquals("value"+NUM_FLUSHES, e.getSomething());
+	}
+
+	private void putPair(NoSqlEntityManager mgr, int value) {
+		for(int id = 1; id <= 2; id++) {
+			EntityWithIntKey entity = new EntityWithIntKey();
+			entity.setId(id);
+			entity.setSomething("value"+value);
+			mgr.put(entity);
+		}
+		mgr.flush();
+	}
+}
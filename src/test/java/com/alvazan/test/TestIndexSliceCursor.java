@@ -0,0 +1,94 @@
+package com.alvazan.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alvazan.orm.api.z8spi.Key;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IndexSliceCursor;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IndexedRow;
+import com.alvazan.orm.layer9z.spi.db.inmemory.IndexedRow.OurKey;
+import com.alvazan.orm.layer9z.spi.db.inmemory.PrefixComparator;
+import com.alvazan.orm.layer9z.spi.db.inmemory.Utf8Comparator;
+
+public class TestIndexSliceCursor {
+
+	private IndexedRow row;
+
+	@Before
+	public void setup() {
+		row = new IndexedRow(new TreeMap<OurKey, IndexColumn>(new PrefixComparator(new Utf8Comparator())));
+		//two primary keys for each value so the bounds have to take or skip both
+		for(String value : new String[] {"a", "b", "c", "d"}) {
+			row.addIndexedColumn(createColumn(value, value+"1"));
+			row.addIndexedColumn(createColumn(value, value+"2"));
+		}
+	}
+
+	@Test
+	public void testBounds() {
+		Assert.assertEquals("b1,b2,c1,c2", readAll(key("b", true), key("c", true)));
+		Assert.assertEquals("c1,c2", readAll(key("b", false), key("c", true)));
+		Assert.assertEquals("b1,b2", readAll(key("b", true), key("c", false)));
+		Assert.assertEquals("", readAll(key("b", false), key("c", false)));
+		Assert.assertEquals("a1,a2", readAll(null, key("b", false)));
+		Assert.assertEquals("d1,d2", readAll(key("c", false), null));
+	}
+
+	@Test
+	public void testChangeDirection() {
+		IndexSliceCursor cursor = new IndexSliceCursor(row.slice(key("b", true), key("c", true)));
+		Assert.assertFalse(cursor.previous());
+		Assert.assertTrue(cursor.next());
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals("b2", primaryKey(cursor.getCurrent()));
+		Assert.assertTrue(cursor.previous());
+		Assert.assertEquals("b2", primaryKey(cursor.getCurrent()));
+		Assert.assertTrue(cursor.previous());
+		Assert.assertEquals("b1", primaryKey(cursor.getCurrent()));
+		Assert.assertFalse(cursor.previous());
+
+		cursor.afterLast();
+		Assert.assertFalse(cursor.next());
+		Assert.assertTrue(cursor.previous());
+		Assert.assertEquals("c2", primaryKey(cursor.getCurrent()));
+		Assert.assertTrue(cursor.next());
+		Assert.assertEquals("c2", primaryKey(cursor.getCurrent()));
+		Assert.assertFalse(cursor.next());
+	}
+
+	private String readAll(Key from, Key to) {
+		IndexSliceCursor cursor = new IndexSliceCursor(row.slice(from, to));
+		List<String> keys = new ArrayList<String>();
+		while(cursor.next()) {
+			keys.add(primaryKey(cursor.getCurrent()));
+		}
+		String result = "";
+		for(String k : keys) {
+			if(result.length() > 0)
+				result += ",";
+			result += k;
+		}
+		return result;
+	}
+
+	private Key key(String value, boolean inclusive) {
+		return new Key(value.getBytes(), inclusive);
+	}
+
+	private String primaryKey(IndexColumn col) {
+		return new String(col.getPrimaryKey());
+	}
+
+	private IndexColumn createColumn(String value, String pk) {
+		IndexColumn col = new IndexColumn();
+		col.setIndexedValue(value.getBytes());
+		col.setPrimaryKey(pk.getBytes());
+		return col;
+	}
+}
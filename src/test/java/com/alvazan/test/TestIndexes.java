@@ -200,11 +200,9 @@ public class TestIndexes {
 		List<Account> all2 = Account.findAll(mgr);
 		Assert.assertEquals(3, all2.size());
 		
-		//TODO:JSC  this test will fail randomly until we can specify the index to 'find' over
-		//this add these lines back in when 'order by' is done to verify it:
-//		List<Account> allbackward2 = Account.findAllBackward(mgr);
-//		Assert.assertEquals(3, allbackward2.size());
-//		Assert.assertEquals(all2.get(0).getId(), allbackward2.get(2).getId());
+		List<Account> allbackward2 = Account.findAllBackward(mgr);
+		Assert.assertEquals(3, allbackward2.size());
+		Assert.assertEquals(all2.get(0).getId(), allbackward2.get(2).getId());
 		
 		List<Activity> all3 = Activity.findAll(mgr, 100);
 		Assert.assertEquals(1, all3.size());
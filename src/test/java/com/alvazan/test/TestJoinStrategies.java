@@ -0,0 +1,297 @@
+package com.alvazan.test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.ListWrappingCursor;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.layer5.query.CursorForAnd;
+import com.alvazan.orm.layer5.query.SpillFiles;
+import com.alvazan.orm.parser.antlr.ViewInfoImpl;
+
+public class TestJoinStrategies {
+
+	private ViewInfoImpl leftView = createView("a");
+	private ViewInfoImpl rightView = createView("b");
+
+	@Test
+	public void testSmallLeftSide() {
+		CursorForAnd cursor = createCursor(range(0, 10, 1), range(0, 100, 2), false);
+		cursor.setMaxInMemoryRows(20);
+		assertKeys(cursor, range(0, 10, 2));
+	}
+
+	@Test
+	public void testSmallRightSide() {
+		CursorForAnd cursor = createCursor(range(0, 100, 3), range(0, 30, 2), false);
+		cursor.setMaxInMemoryRows(20);
+		assertKeys(cursor, range(0, 30, 6));
+	}
+
+	@Test
+	public void testMergeJoin() {
+		CursorForAnd cursor = createCursor(range(0, 300, 3), range(0, 300, 2), true);
+		cursor.setMaxInMemoryRows(10);
+		assertKeys(cursor, range(0, 300, 6));
+
+		//and backwards too
+		cursor.afterLast();
+		List<Integer> expected = range(0, 300, 6);
+		Collections.reverse(expected);
+		Assert.assertEquals(expected, readAllBackwards(cursor));
+	}
+
+	@Test
+	public void testMergeJoinChangesDirection() {
+		CursorForAnd cursor = createCursor(range(0, 300, 3), range(0, 300, 2), true);
+		cursor.setMaxInMemoryRows(10);
+
+		//off the end and back again
+		Assert.assertEquals(range(0, 300, 6), readAll(cursor));
+		List<Integer> expected = range(0, 300, 6);
+		Collections.reverse(expected);
+		Assert.assertEquals(expected, readAllBackwards(cursor));
+		Assert.assertEquals(range(0, 300, 6), readAll(cursor));
+
+		assertCannotTurnAround(cursor, range(0, 300, 6));
+	}
+
+	@Test
+	public void testGraceHashJoinChangesDirection() {
+		List<Integer> left = range(0, 300, 3);
+		List<Integer> right = range(0, 300, 2);
+		Collections.shuffle(left);
+		Collections.shuffle(right);
+		CursorForAnd cursor = createCursor(left, right, false);
+		cursor.setMaxInMemoryRows(10);
+
+		Set<Integer> expected = new HashSet<Integer>(range(0, 300, 6));
+		List<Integer> forward = readAll(cursor);
+		Assert.assertEquals(expected, new HashSet<Integer>(forward));
+		List<Integer> backwards = readAllBackwards(cursor);
+		Assert.assertEquals(forward.size(), backwards.size());
+		Assert.assertEquals(expected, new HashSet<Integer>(backwards));
+		Assert.assertEquals(0, countSpillFiles());
+
+		assertCannotTurnAround(cursor, range(0, 300, 6));
+	}
+
+	@Test
+	public void testMergeJoinFallsBackWhenOrderBreaks() {
+		//sorted for the rows CursorForAnd checks and out of order after that
+		List<Integer> left = range(0, 300, 3);
+		Collections.shuffle(left.subList(50, left.size()));
+		CursorForAnd cursor = createCursor(left, range(0, 300, 2), true);
+		cursor.setMaxInMemoryRows(10);
+
+		List<Integer> results = readAll(cursor);
+		Assert.assertEquals(new HashSet<Integer>(range(0, 300, 6)), new HashSet<Integer>(results));
+		Assert.assertEquals(range(0, 300, 6).size(), results.size());
+	}
+
+	@Test
+	public void testMergeJoinFallsBackPartWayThroughLargeJoin() {
+		//every left key twice and both sides going out of order well after the merge started
+		List<Integer> left = new ArrayList<Integer>();
+		for(Integer k : range(0, 6000, 3)) {
+			left.add(k);
+			left.add(k);
+		}
+		List<Integer> right = range(0, 6000, 2);
+		Collections.shuffle(left.subList(2000, left.size()));
+		Collections.shuffle(right.subList(1500, right.size()));
+		CursorForAnd cursor = createCursor(left, right, true);
+		cursor.setMaxInMemoryRows(100);
+
+		List<Integer> expected = new ArrayList<Integer>();
+		for(Integer k : range(0, 6000, 6)) {
+			expected.add(k);
+			expected.add(k);
+		}
+		List<Integer> results = readAll(cursor);
+		Collections.sort(results);
+		Assert.assertEquals(expected, results);
+	}
+
+	@Test
+	public void testMergeJoinChecksTheRestOfTheLongerSide() {
+		//the right side runs out before the left side goes out of order
+		List<Integer> left = range(1000, 3000, 1);
+		List<Integer> tail = range(0, 1000, 1);
+		Collections.shuffle(tail);
+		left.addAll(tail);
+		CursorForAnd cursor = createCursor(left, range(0, 600, 2), true);
+		cursor.setMaxInMemoryRows(100);
+
+		List<Integer> results = readAll(cursor);
+		Collections.sort(results);
+		Assert.assertEquals(range(0, 600, 2), results);
+	}
+
+	@Test
+	public void testGraceHashJoin() {
+		List<Integer> left = range(0, 300, 3);
+		List<Integer> right = range(0, 300, 2);
+		Collections.shuffle(left);
+		Collections.shuffle(right);
+		CursorForAnd cursor = createCursor(left, right, true);
+		cursor.setMaxInMemoryRows(10);
+
+		Set<Integer> results = new HashSet<Integer>(readAll(cursor));
+		Assert.assertEquals(new HashSet<Integer>(range(0, 300, 6)), results);
+
+		//read it again to make sure the spill files are rebuilt
+		cursor.beforeFirst();
+		Assert.assertEquals(results.size(), readAll(cursor).size());
+	}
+
+	@Test
+	public void testGraceHashJoinSplitsBigPartitions() {
+		//each of the first partitions gets far more than 10 rows so they have to be split again
+		List<Integer> left = range(0, 9000, 3);
+		List<Integer> right = range(0, 9000, 2);
+		//and a key repeated more times than fit in memory which no split can spread out
+		for(int i = 0; i < 50; i++) {
+			right.add(9000);
+		}
+		left.add(9000);
+		Collections.shuffle(left);
+		Collections.shuffle(right);
+		CursorForAnd cursor = createCursor(left, right, false);
+		cursor.setMaxInMemoryRows(10);
+
+		List<Integer> expected = range(0, 9000, 6);
+		expected.add(9000);
+		List<Integer> results = readAll(cursor);
+		Collections.sort(results);
+		Assert.assertEquals(expected, results);
+		Assert.assertEquals(0, countSpillFiles());
+	}
+
+	@Test
+	public void testAbandonedSpillFilesDeleted() throws InterruptedException {
+		List<Integer> left = range(0, 300, 3);
+		Collections.shuffle(left);
+		CursorForAnd cursor = createCursor(left, range(0, 300, 2), false);
+		cursor.setMaxInMemoryRows(10);
+		Assert.assertNotNull(cursor.nextImpl());
+		Assert.assertTrue(countSpillFiles() > 0);
+
+		//dropped part way through so nobody closes it
+		cursor = null;
+		for(int i = 0; i < 50 && countSpillFiles() > 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+			new SpillFiles(new Object(), "playorm-test-");
+		}
+		Assert.assertEquals(0, countSpillFiles());
+	}
+
+	private int countSpillFiles() {
+		File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith("playorm-join-");
+			}
+		});
+		return files.length;
+	}
+
+	private void assertCannotTurnAround(CursorForAnd cursor, List<Integer> expected) {
+		cursor.beforeFirst();
+		Integer first = key(cursor.nextImpl().getValue());
+		Integer second = key(cursor.nextImpl().getValue());
+		try {
+			cursor.previousImpl();
+			Assert.fail("turning around part way through would skip rows");
+		} catch(UnsupportedOperationException e) {
+		}
+
+		//and we carry on where we were
+		List<Integer> results = readAll(cursor);
+		results.add(first);
+		results.add(second);
+		Collections.sort(results);
+		Assert.assertEquals(expected, results);
+	}
+
+	private void assertKeys(CursorForAnd cursor, List<Integer> expected) {
+		Assert.assertEquals(expected, readAll(cursor));
+		cursor.beforeFirst();
+		Assert.assertEquals(expected, readAll(cursor));
+	}
+
+	private List<Integer> readAll(CursorForAnd cursor) {
+		List<Integer> keys = new ArrayList<Integer>();
+		while(true) {
+			Holder<IndexColumnInfo> holder = cursor.nextImpl();
+			if(holder == null)
+				break;
+			IndexColumnInfo info = holder.getValue();
+			Assert.assertNotNull(info.getIndexNode(rightView));
+			keys.add(key(info));
+		}
+		return keys;
+	}
+
+	private List<Integer> readAllBackwards(CursorForAnd cursor) {
+		List<Integer> keys = new ArrayList<Integer>();
+		while(true) {
+			Holder<IndexColumnInfo> holder = cursor.previousImpl();
+			if(holder == null)
+				break;
+			keys.add(key(holder.getValue()));
+		}
+		return keys;
+	}
+
+	private Integer key(IndexColumnInfo info) {
+		return Integer.valueOf(StandardConverters.convertFromBytes(String.class, info.getPrimaryKeyRaw(leftView)));
+	}
+
+	private CursorForAnd createCursor(List<Integer> left, List<Integer> right, boolean ordered) {
+		CursorForAnd cursor = new CursorForAnd(leftView, createRows(leftView, left), rightView, createRows(rightView, right));
+		cursor.setOrderedByPrimaryKey(ordered, ordered);
+		return cursor;
+	}
+
+	private ListWrappingCursor<IndexColumnInfo> createRows(ViewInfoImpl view, List<Integer> keys) {
+		List<IndexColumnInfo> rows = new ArrayList<IndexColumnInfo>();
+		for(Integer k : keys) {
+			IndexColumn col = new IndexColumn();
+			col.setIndexedValue(StandardConverters.convertToBytes("value"));
+			//zero padded so the bytes sort like the numbers do
+			col.setPrimaryKey(StandardConverters.convertToBytes(String.format("%04d", k)));
+			IndexColumnInfo info = new IndexColumnInfo();
+			info.putIndexNode(view, col, null);
+			rows.add(info);
+		}
+		return new ListWrappingCursor<IndexColumnInfo>(rows);
+	}
+
+	private static List<Integer> range(int from, int to, int step) {
+		List<Integer> keys = new ArrayList<Integer>();
+		for(int i = from; i < to; i += step) {
+			keys.add(i);
+		}
+		return keys;
+	}
+
+	private static ViewInfoImpl createView(String alias) {
+		DboTableMeta meta = new DboTableMeta();
+		meta.setup(null, "JoinTable", false, null);
+		return new ViewInfoImpl(alias, meta);
+	}
+}
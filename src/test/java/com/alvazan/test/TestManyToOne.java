@@ -1,5 +1,6 @@
 package com.alvazan.test;
 
+import java.lang.reflect.Field;
 import java.util.List;
 
 import org.junit.After;
@@ -189,6 +190,54 @@ public class TestManyToOne {
 		}
 	}
 
+	@Test
+	public void testProxiesOfResultsLoadedTogether() throws Exception {
+		for(int i = 0; i < 3; i++) {
+			Account acc = new Account("acc"+i);
+			acc.setName("name"+i);
+			mgr.put(acc);
+			Activity act = new Activity("act"+i);
+			act.setAccount(acc);
+			mgr.put(act);
+		}
+		Account neverSaved = new Account("acc9");
+		mgr.fillInWithKey(neverSaved);
+		Activity orphan = new Activity("act9");
+		orphan.setAccount(neverSaved);
+		mgr.put(orphan);
+		mgr.flush();
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		List<Activity> activities = Activity.findAll(mgr2, 100);
+		Assert.assertEquals(4, activities.size());
+		Account first = null;
+		for(Activity act : activities) {
+			if(!"act9".equals(act.getId())) {
+				first = act.getAccount();
+				break;
+			}
+		}
+		Assert.assertTrue(first.getName().startsWith("name"));
+
+		//touching one proxy filled in the other accounts of the results too
+		Field nameField = Account.class.getDeclaredField("name");
+		nameField.setAccessible(true);
+		for(Activity act : activities) {
+			Account acc = act.getAccount();
+			if("act9".equals(act.getId())) {
+				Assert.assertNull(nameField.get(acc));
+				try {
+					acc.getName();
+					Assert.fail("acc9 was never saved so above line should fail");
+				} catch(RowNotFoundException e) {
+					log.info("this is expected");
+				}
+			} else {
+				Assert.assertEquals("name"+act.getId().substring(3), nameField.get(acc));
+			}
+		}
+	}
+
 	//@Test
 	public void testToOneWithUUID() {
 		Account acc1 = new Account();
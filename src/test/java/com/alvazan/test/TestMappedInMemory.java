@@ -0,0 +1,172 @@
+package com.alvazan.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.base.DbTypeEnum;
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.test.db.Activity;
+
+public class TestMappedInMemory {
+
+	private File dir;
+
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("playorm", "mapped");
+		dir.delete();
+	}
+
+	@After
+	public void teardown() {
+		File[] files = dir.listFiles();
+		if(files != null) {
+			for(File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	@Test
+	public void testSurvivesRestart() {
+		//a tiny memtable so we write lots of segments and merge them
+		NoSqlEntityManagerFactory factory = createFactory(4096);
+		try {
+			NoSqlEntityManager mgr = factory.createEntityManager();
+			for(int i = 0; i < 200; i++) {
+				mgr.put(createActivity(i, i));
+				if(i % 10 == 0)
+					mgr.flush();
+			}
+			mgr.flush();
+
+			mgr.remove(mgr.find(Activity.class, "act5"));
+			Activity changed = mgr.find(Activity.class, "act6");
+			changed.setNumTimes(1000);
+			mgr.put(changed);
+			mgr.flush();
+		} finally {
+			factory.close();
+		}
+
+		NoSqlEntityManagerFactory factory2 = createFactory(4096);
+		try {
+			NoSqlEntityManager mgr = factory2.createEntityManager();
+			Assert.assertNull(mgr.find(Activity.class, "act5"));
+			Assert.assertEquals("name150", mgr.find(Activity.class, "act150").getName());
+
+			//act5 is gone and act6 moved out of the range
+			List<Activity> list = Activity.findBetween(mgr, 3, 10);
+			Assert.assertEquals(5, list.size());
+			Assert.assertEquals(1, Activity.findNumTimes(mgr, 1000).size());
+			Assert.assertEquals(1, Activity.findByName(mgr, "name199").size());
+		} finally {
+			factory2.close();
+		}
+	}
+
+	@Test
+	public void testReplaysCommitLog() throws IOException {
+		//nothing is written to segments until close so a restart has to replay the commit log
+		NoSqlEntityManagerFactory factory = createFactory(64*1024*1024);
+		NoSqlEntityManager mgr = factory.createEntityManager();
+		for(int i = 0; i < 20; i++) {
+			mgr.put(createActivity(i, i));
+		}
+		mgr.flush();
+
+		//a batch cut off in the middle by a crash
+		FileOutputStream out = new FileOutputStream(new File(dir, "commit.log"), true);
+		try {
+			out.write(new byte[] {'R', 0, 0, 0, 9, 'A'});
+		} finally {
+			out.close();
+		}
+
+		NoSqlEntityManagerFactory factory2 = createFactory(64*1024*1024);
+		try {
+			NoSqlEntityManager mgr2 = factory2.createEntityManager();
+			Assert.assertEquals("name7", mgr2.find(Activity.class, "act7").getName());
+			Assert.assertEquals(4, Activity.findBetween(mgr2, 3, 7).size());
+		} finally {
+			factory2.close();
+			factory.close();
+		}
+	}
+
+	@Test
+	public void testWritesAfterCutOffBatch() throws IOException {
+		NoSqlEntityManagerFactory factory = createFactory(64*1024*1024);
+		NoSqlEntityManagerFactory factory2 = null;
+		NoSqlEntityManagerFactory factory3 = null;
+		try {
+			NoSqlEntityManager mgr = factory.createEntityManager();
+			for(int i = 0; i < 10; i++) {
+				mgr.put(createActivity(i, i));
+			}
+			mgr.flush();
+			for(int i = 10; i < 20; i++) {
+				mgr.put(createActivity(i, i));
+			}
+			mgr.flush();
+
+			//crash in the middle of the last record of the second batch
+			RandomAccessFile raf = new RandomAccessFile(new File(dir, "commit.log"), "rw");
+			try {
+				raf.setLength(raf.length()-5);
+			} finally {
+				raf.close();
+			}
+
+			factory2 = createFactory(64*1024*1024);
+			NoSqlEntityManager mgr2 = factory2.createEntityManager();
+			Assert.assertNull(mgr2.find(Activity.class, "act15"));
+			for(int i = 20; i < 30; i++) {
+				mgr2.put(createActivity(i, i));
+			}
+			mgr2.flush();
+
+			//and crash again so the next start replays the log we appended to
+			factory3 = createFactory(64*1024*1024);
+			NoSqlEntityManager mgr3 = factory3.createEntityManager();
+			Assert.assertEquals("name5", mgr3.find(Activity.class, "act5").getName());
+			Assert.assertNull(mgr3.find(Activity.class, "act15"));
+			Assert.assertEquals("name25", mgr3.find(Activity.class, "act25").getName());
+			Assert.assertEquals(1, Activity.findByName(mgr3, "name29").size());
+		} finally {
+			if(factory3 != null)
+				factory3.close();
+			if(factory2 != null)
+				factory2.close();
+			factory.close();
+		}
+	}
+
+	private NoSqlEntityManagerFactory createFactory(int memtableBytes) {
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put(Bootstrap.IN_MEMORY_DATA_DIR, dir.getAbsolutePath());
+		props.put(Bootstrap.IN_MEMORY_MEMTABLE_BYTES, memtableBytes);
+		props.put(Bootstrap.IN_MEMORY_MAX_SEGMENTS, "2");
+		return FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), props);
+	}
+
+	private Activity createActivity(int i, long numTimes) {
+		Activity act = new Activity("act"+i);
+		act.setName("name"+i);
+		act.setNumTimes(numTimes);
+		return act;
+	}
+}
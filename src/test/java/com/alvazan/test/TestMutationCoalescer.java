@@ -0,0 +1,148 @@
+package com.alvazan.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.DbTypeEnum;
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z8spi.CoalesceStats;
+import com.alvazan.orm.api.z8spi.action.Action;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.action.Persist;
+import com.alvazan.orm.api.z8spi.action.PersistIndex;
+import com.alvazan.orm.api.z8spi.action.Remove;
+import com.alvazan.orm.api.z8spi.action.RemoveEnum;
+import com.alvazan.orm.api.z8spi.action.RemoveIndex;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.layer5.nosql.cache.MutationCoalescer;
+import com.alvazan.test.db.EntityWithIntKey;
+
+public class TestMutationCoalescer {
+
+	private DboTableMeta table = createTable();
+
+	@Test
+	public void testPersistsOfOneRowMerge() {
+		List<Action> actions = new ArrayList<Action>();
+		actions.add(persist("row1", "a", "1"));
+		actions.add(persist("row2", "a", "x"));
+		actions.add(persist("row1", "a", "2"));
+		actions.add(persist("row1", "b", "3"));
+
+		MutationCoalescer coalescer = createCoalescer();
+		List<Action> result = coalescer.coalesce(actions);
+		Assert.assertEquals(2, result.size());
+		Persist row1 = (Persist) result.get(0);
+		Assert.assertEquals(2, row1.getColumns().size());
+		Assert.assertEquals("2", StandardConverters.convertFromBytes(String.class, row1.getColumns().get(0).getValue()));
+		Assert.assertEquals(4, coalescer.getStats().getActionsIn());
+		Assert.assertEquals(2, coalescer.getStats().getActionsOut());
+		Assert.assertEquals(2, coalescer.getStats().getActionsCoalesced());
+	}
+
+	@Test
+	public void testRemoveDropsEarlierWrites() {
+		List<Action> actions = new ArrayList<Action>();
+		actions.add(persist("row1", "a", "1"));
+		actions.add(remove("row1"));
+		actions.add(persist("row1", "b", "2"));
+
+		List<Action> result = createCoalescer().coalesce(actions);
+		Assert.assertEquals(2, result.size());
+		Assert.assertTrue(result.get(0) instanceof Remove);
+		Persist p = (Persist) result.get(1);
+		Assert.assertEquals("b", StandardConverters.convertFromBytes(String.class, p.getColumns().get(0).getName()));
+	}
+
+	@Test
+	public void testIndexLastWriteWins() {
+		List<Action> actions = new ArrayList<Action>();
+		actions.add(index(new PersistIndex(), "b"));
+		//b may have been in the database before this flush(a detached entity put again) so the
+		//remove must still be sent
+		actions.add(index(new RemoveIndex(), "b"));
+		actions.add(index(new RemoveIndex(), "a"));
+		actions.add(index(new PersistIndex(), "a"));
+		actions.add(index(new RemoveIndex(), "c"));
+
+		List<Action> result = createCoalescer().coalesce(actions);
+		Assert.assertEquals(3, result.size());
+		Assert.assertFalse(result.get(0) instanceof PersistIndex);
+		Assert.assertEquals("b", StandardConverters.convertFromBytes(String.class, ((RemoveIndex) result.get(0)).getColumn().getIndexedValue()));
+		Assert.assertTrue(result.get(1) instanceof PersistIndex);
+		Assert.assertFalse(result.get(2) instanceof PersistIndex);
+	}
+
+	@Test
+	public void testStatsSeenThroughFactory() {
+		NoSqlEntityManagerFactory factory = FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), new HashMap<String, Object>());
+		try {
+			EntityWithIntKey entity = new EntityWithIntKey();
+			entity.setId(7);
+			entity.setSomething("first");
+			NoSqlEntityManager mgr = factory.createEntityManager();
+			mgr.put(entity);
+			entity.setSomething("second");
+			mgr.put(entity);
+			mgr.flush();
+
+			CoalesceStats stats = factory.getCoalesceStats();
+			Assert.assertTrue(stats.getActionsOut() > 0);
+			//the two puts of the row went out as one
+			Assert.assertTrue(stats.getActionsCoalesced() > 0);
+		} finally {
+			factory.close();
+		}
+	}
+
+	private MutationCoalescer createCoalescer() {
+		MutationCoalescer coalescer = new MutationCoalescer();
+		coalescer.start(new HashMap<String, Object>());
+		return coalescer;
+	}
+
+	private Persist persist(String row, String col, String value) {
+		Column c = new Column();
+		c.setName(StandardConverters.convertToBytes(col));
+		c.setValue(StandardConverters.convertToBytes(value));
+		List<Column> cols = new ArrayList<Column>();
+		cols.add(c);
+		Persist p = new Persist();
+		p.setColFamily(table);
+		p.setRowKey(StandardConverters.convertToBytes(row));
+		p.setColumns(cols);
+		return p;
+	}
+
+	private Remove remove(String row) {
+		Remove r = new Remove();
+		r.setAction(RemoveEnum.REMOVE_ENTIRE_ROW);
+		r.setColFamily(table);
+		r.setRowKey(StandardConverters.convertToBytes(row));
+		return r;
+	}
+
+	private RemoveIndex index(RemoveIndex action, String value) {
+		IndexColumn col = new IndexColumn();
+		col.setIndexedValue(StandardConverters.convertToBytes(value));
+		col.setPrimaryKey(StandardConverters.convertToBytes("pk"));
+		action.setColFamily(table);
+		action.setIndexCfName("StringIndice");
+		action.setRowKey(StandardConverters.convertToBytes("/Coalesce/name"));
+		action.setColumn(col);
+		return action;
+	}
+
+	private static DboTableMeta createTable() {
+		DboTableMeta meta = new DboTableMeta();
+		meta.setup(null, "Coalesce", false, null);
+		return meta;
+	}
+}
@@ -0,0 +1,190 @@
+package com.alvazan.test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.base.Query;
+import com.alvazan.orm.api.z3api.NoSqlTypedSession;
+import com.alvazan.orm.api.z5api.IndexColumnInfo;
+import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.Cursor;
+import com.alvazan.orm.api.z8spi.iter.ListWrappingCursor;
+import com.alvazan.orm.api.z8spi.meta.DboColumnCommonMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.api.z8spi.meta.OrderByInfo;
+import com.alvazan.orm.api.z8spi.meta.TypedRow;
+import com.alvazan.orm.layer5.query.CursorForSort;
+import com.alvazan.orm.layer5.query.SpillFiles;
+import com.alvazan.orm.parser.antlr.ViewInfoImpl;
+import com.alvazan.test.db.Activity;
+
+public class TestOrderBy {
+
+	private static NoSqlEntityManagerFactory factory;
+	private NoSqlEntityManager mgr;
+
+	@BeforeClass
+	public static void setup() {
+		factory = FactorySingleton.createFactoryOnce();
+	}
+
+	@Before
+	public void createEntityManager() {
+		mgr = factory.createEntityManager();
+		putActivity("act1", "dean", 15, 4.0f);
+		putActivity("act2", "dean", 5, 1.5f);
+		putActivity("act3", "joe", 20, 3.0f);
+		putActivity("act4", "dean", 10, 2.5f);
+		putActivity("act5", "dean", 25, 0.5f);
+		mgr.flush();
+	}
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	private void putActivity(String id, String name, long numTimes, float myFloat) {
+		Activity act = new Activity(id);
+		act.setName(name);
+		act.setNumTimes(numTimes);
+		act.setMyFloat(myFloat);
+		mgr.put(act);
+	}
+
+	@Test
+	public void testIndexOrder() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findAllByNumTimesDesc");
+		List<Activity> results = query.getResultList(0, null);
+		Assert.assertEquals(ids("act5", "act3", "act1", "act4", "act2"), toIds(results));
+
+		NoSqlTypedSession s = mgr.getTypedSession();
+		Cursor<KeyValue<TypedRow>> cursor = s.createQueryCursor("select * from Activity as e where e.numTimes > 5 order by e.numTimes desc", 2).getPrimaryViewCursor();
+		List<String> ids = new ArrayList<String>();
+		while(cursor.next()) {
+			ids.add((String) cursor.getCurrent().getValue().getRowKey());
+		}
+		Assert.assertEquals(ids("act5", "act3", "act1", "act4"), ids);
+	}
+
+	@Test
+	public void testSortedFromRows() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findByNameOrderByFloat");
+		query.setParameter("name", "dean");
+		Assert.assertEquals(ids("act5", "act2", "act4", "act1"), toIds(query.getResultList(0, null)));
+
+		//only the top 3 are kept while sorting
+		query = mgr.createNamedQuery(Activity.class, "findByNameOrderByFloat");
+		query.setParameter("name", "dean");
+		Assert.assertEquals(ids("act2", "act4"), toIds(query.getResultList(1, 2)));
+	}
+
+	@Test
+	public void testSortSpilledToDisk() {
+		DboTableMeta meta = new DboTableMeta();
+		meta.setup(null, "SortTable", false, null);
+		DboColumnCommonMeta colMeta = new DboColumnCommonMeta();
+		colMeta.setup(meta, "num", Long.class, true, false);
+		ViewInfoImpl view = new ViewInfoImpl("a", meta);
+
+		CursorForSort cursor = createSpillingSort(colMeta, view);
+		List<Long> expected = new ArrayList<Long>();
+		for(long v : new long[] {9, 8, 7, 6, 5, 4, 3, 3, 2, 1}) {
+			expected.add(v);
+		}
+		Assert.assertEquals(expected, readValues(cursor, colMeta, view));
+
+		//the runs are deleted once read so reading again sorts again
+		cursor.beforeFirst();
+		Assert.assertEquals(expected, readValues(cursor, colMeta, view));
+	}
+
+	@Test
+	public void testAbandonedSortRunsDeleted() throws InterruptedException {
+		DboTableMeta meta = new DboTableMeta();
+		meta.setup(null, "SortTable", false, null);
+		DboColumnCommonMeta colMeta = new DboColumnCommonMeta();
+		colMeta.setup(meta, "num", Long.class, true, false);
+		ViewInfoImpl view = new ViewInfoImpl("a", meta);
+
+		CursorForSort cursor = createSpillingSort(colMeta, view);
+		Assert.assertNotNull(cursor.nextImpl());
+		Assert.assertTrue(countSortFiles() > 0);
+
+		//dropped part way through so the runs are never read to the end
+		cursor = null;
+		for(int i = 0; i < 50 && countSortFiles() > 0; i++) {
+			System.gc();
+			Thread.sleep(20);
+			new SpillFiles(new Object(), "playorm-test-");
+		}
+		Assert.assertEquals(0, countSortFiles());
+	}
+
+	private int countSortFiles() {
+		File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith("playorm-sort-");
+			}
+		});
+		return files.length;
+	}
+
+	private CursorForSort createSpillingSort(DboColumnCommonMeta colMeta, ViewInfoImpl view) {
+		List<IndexColumnInfo> rows = new ArrayList<IndexColumnInfo>();
+		long[] values = new long[] {7, 3, 9, 1, 8, 3, 2, 6, 5, 4};
+		for(int i = 0; i < values.length; i++) {
+			IndexColumn col = new IndexColumn();
+			col.setIndexedValue(colMeta.convertToStorage2(BigInteger.valueOf(values[i])));
+			col.setPrimaryKey(StandardConverters.convertToBytes("pk"+i));
+			IndexColumnInfo info = new IndexColumnInfo();
+			info.putIndexNode(view, col, colMeta);
+			rows.add(info);
+		}
+
+		OrderByInfo orderBy = new OrderByInfo(view, colMeta, true, "a.num");
+		CursorForSort cursor = new CursorForSort(orderBy, new ListWrappingCursor<IndexColumnInfo>(rows), null, null, 4);
+		cursor.setMaxInMemoryRows(3);
+		return cursor;
+	}
+
+	private List<Long> readValues(CursorForSort cursor, DboColumnCommonMeta colMeta, ViewInfoImpl view) {
+		List<Long> values = new ArrayList<Long>();
+		for(Holder<IndexColumnInfo> holder = cursor.nextImpl(); holder != null; holder = cursor.nextImpl()) {
+			byte[] value = holder.getValue().getIndexNode(view).getCol().getIndexedValue();
+			values.add(((BigInteger) colMeta.convertFromStorage2(value)).longValue());
+		}
+		return values;
+	}
+
+	private List<String> toIds(List<Activity> activities) {
+		List<String> ids = new ArrayList<String>();
+		for(Activity act : activities) {
+			ids.add(act.getId());
+		}
+		return ids;
+	}
+
+	private List<String> ids(String... ids) {
+		List<String> list = new ArrayList<String>();
+		for(String id : ids) {
+			list.add(id);
+		}
+		return list;
+	}
+}
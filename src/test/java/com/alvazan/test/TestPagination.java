@@ -0,0 +1,153 @@
+package com.alvazan.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.base.Query;
+import com.alvazan.orm.api.base.ResultPage;
+import com.alvazan.test.db.Activity;
+
+public class TestPagination {
+
+	private static NoSqlEntityManagerFactory factory;
+	private NoSqlEntityManager mgr;
+
+	@BeforeClass
+	public static void setup() {
+		factory = FactorySingleton.createFactoryOnce();
+	}
+
+	@Before
+	public void createEntityManager() {
+		mgr = factory.createEntityManager();
+		//several rows share the same numTimes so pages end in the middle of one value
+		putActivity("act1", "dean", 5);
+		putActivity("act2", "dean", 10);
+		putActivity("act3", "joe", 10);
+		putActivity("act4", "joe", 10);
+		putActivity("act5", "dean", 10);
+		putActivity("act6", "joe", 15);
+		putActivity("act7", "dean", 20);
+		mgr.flush();
+	}
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	private void putActivity(String id, String name, long numTimes) {
+		Activity act = new Activity(id);
+		act.setName(name);
+		act.setNumTimes(numTimes);
+		mgr.put(act);
+	}
+
+	@Test
+	public void testPageThroughRange() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findAbove");
+		query.setParameter("begin", 5L);
+		Set<String> ids = readAllPages(query, 2, 3);
+		Assert.assertEquals(6, ids.size());
+		Assert.assertFalse(ids.contains("act1"));
+
+		query = mgr.createNamedQuery(Activity.class, "findAll");
+		ids = readAllPages(query, 3, 3);
+		Assert.assertEquals(7, ids.size());
+	}
+
+	@Test
+	public void testPageThroughOr() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findWithOr");
+		query.setParameter("name", "dean");
+		query.setParameter("numTimes", 15L);
+		Set<String> ids = readAllPages(query, 2, 3);
+		Assert.assertEquals(5, ids.size());
+		Assert.assertTrue(ids.contains("act6"));
+	}
+
+	@Test
+	public void testPageThroughEq() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findByNumTimes");
+		query.setParameter("numTimes", 10L);
+		Set<String> ids = readAllPages(query, 1, 4);
+		Assert.assertEquals(4, ids.size());
+	}
+
+	@Test
+	public void testTokenEntryDeletedOnEq() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findByNumTimes");
+		query.setParameter("numTimes", 10L);
+		ResultPage<Activity> page = query.getPage(null, 2);
+		Activity last = page.getResults().get(1);
+		Assert.assertEquals("act3", last.getId());
+		mgr.remove(last);
+		mgr.flush();
+
+		//we pick up right after the deleted entry rather than ending the paging
+		page = query.getPage(page.getNextPageToken(), 2);
+		List<String> ids = new ArrayList<String>();
+		for(Activity act : page.getResults()) {
+			ids.add(act.getId());
+		}
+		Assert.assertEquals(2, ids.size());
+		Assert.assertTrue(ids.contains("act4"));
+		Assert.assertTrue(ids.contains("act5"));
+	}
+
+	@Test
+	public void testTokenEntryDeletedWithoutOrder() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findWithOr");
+		query.setParameter("name", "dean");
+		query.setParameter("numTimes", 15L);
+		ResultPage<Activity> page = query.getPage(null, 2);
+		mgr.remove(page.getResults().get(1));
+		mgr.flush();
+		try {
+			query.getPage(page.getNextPageToken(), 2);
+			Assert.fail("a token whose entry is gone can't be resumed without an order");
+		} catch(IllegalArgumentException e) {
+		}
+	}
+
+	private Set<String> readAllPages(Query<Activity> query, int pageSize, int expectedPages) {
+		Set<String> ids = new HashSet<String>();
+		List<String> all = new ArrayList<String>();
+		String token = null;
+		int pages = 0;
+		do {
+			ResultPage<Activity> page = query.getPage(token, pageSize);
+			Assert.assertTrue(page.getResults().size() <= pageSize);
+			for(Activity act : page.getResults()) {
+				ids.add(act.getId());
+				all.add(act.getId());
+			}
+			token = page.getNextPageToken();
+			pages++;
+		} while(token != null);
+		//no entity shows up on two pages
+		Assert.assertEquals(all.size(), ids.size());
+		Assert.assertEquals(expectedPages, pages);
+		return ids;
+	}
+
+	@Test
+	public void testBadToken() {
+		Query<Activity> query = mgr.createNamedQuery(Activity.class, "findAll");
+		try {
+			query.getPage("notatoken", 2);
+			Assert.fail("a made up token should fail");
+		} catch(IllegalArgumentException e) {
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package com.alvazan.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.z8spi.Cache;
+import com.alvazan.orm.api.z8spi.KeyValue;
+import com.alvazan.orm.api.z8spi.Row;
+import com.alvazan.orm.api.z8spi.RowHolder;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.conv.ByteArray;
+import com.alvazan.orm.api.z8spi.iter.AbstractCursor.Holder;
+import com.alvazan.orm.api.z8spi.iter.ListWrappingCursor;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.layer9z.spi.db.cassandra.CursorKeysToRows2;
+import com.alvazan.orm.layer9z.spi.db.cassandra.Info;
+import com.alvazan.orm.layer9z.spi.db.inmemory.RowImpl;
+
+public class TestPrefetch {
+
+	private static final int NUM_KEYS = 20;
+
+	private FakeKeyspace keyspace = new FakeKeyspace();
+	private MapCache cache = new MapCache();
+
+	public TestPrefetch() {
+		for(int i = 0; i < NUM_KEYS; i++) {
+			//every third key has no row so we see the empty rows come back too
+			if(i % 3 != 0)
+				keyspace.put(key(i), new byte[] {(byte) i});
+		}
+	}
+
+	@Test
+	public void testPrefetchReadsAhead() {
+		CursorKeysToRows2 cursor = createCursor(3, 2);
+		Assert.assertEquals(0, key(cursor.nextImpl()));
+		//the batch we are on plus the 2 read ahead
+		Assert.assertEquals(3, keyspace.getSlices().size());
+
+		List<Integer> keys = new ArrayList<Integer>();
+		keys.add(0);
+		for(Holder<KeyValue<Row>> h = cursor.nextImpl(); h != null; h = cursor.nextImpl()) {
+			keys.add(key(h));
+			Row row = h.getValue().getValue();
+			if(keys.size() % 3 == 1)
+				Assert.assertNull(row);
+			else
+				Assert.assertEquals(key(h), FakeKeyspace.valueOf(row)[0]);
+		}
+		Assert.assertEquals(range(0, NUM_KEYS), keys);
+		//every key was still only read once
+		Assert.assertEquals(7, keyspace.getSlices().size());
+	}
+
+	@Test
+	public void testPrefetchBoundedByBytes() {
+		CursorKeysToRows2 cursor = createCursor(3, 5);
+		cursor.setupPrefetch(5, 1);
+		cursor.nextImpl();
+		//we don't know how big rows are before the first batch is back so only the depth limits us
+		Assert.assertEquals(6, keyspace.getSlices().size());
+		for(int i = 0; i < 3; i++) {
+			cursor.nextImpl();
+		}
+		//now we know even one row is more than allowed so the read ahead is not topped up
+		Assert.assertEquals(6, keyspace.getSlices().size());
+	}
+
+	@Test
+	public void testDirectionChangesSameAsWithoutPrefetch() {
+		CursorKeysToRows2 plain = createCursor(3, 0);
+		CursorKeysToRows2 prefetching = createCursor(3, 2);
+		//turn around in the middle of batches, on batch edges and at both ends
+		int[] moves = new int[] {4, -2, 7, -9, 12, -3, 30, -40, 5};
+		for(int move : moves) {
+			for(int i = 0; i < Math.abs(move); i++) {
+				if(move > 0)
+					Assert.assertEquals(key(plain.nextImpl()), key(prefetching.nextImpl()));
+				else
+					Assert.assertEquals(key(plain.previousImpl()), key(prefetching.previousImpl()));
+			}
+		}
+	}
+
+	@Test
+	public void testRewindPrefetchAfterAllKeysRead() {
+		CursorKeysToRows2 cursor = createCursor(4, 3);
+		for(int i = 0; i < 6; i++) {
+			cursor.nextImpl();
+		}
+		//the read ahead got to the end of the keys, turning around must make them readable again
+		List<Integer> backwards = new ArrayList<Integer>();
+		for(Holder<KeyValue<Row>> h = cursor.previousImpl(); h != null; h = cursor.previousImpl()) {
+			backwards.add(key(h));
+		}
+		List<Integer> forwards = new ArrayList<Integer>();
+		for(Holder<KeyValue<Row>> h = cursor.nextImpl(); h != null; h = cursor.nextImpl()) {
+			forwards.add(key(h));
+		}
+		Assert.assertEquals(range(0, NUM_KEYS), forwards);
+		Assert.assertEquals(new Integer(0), backwards.get(backwards.size()-1));
+	}
+
+	@Test
+	public void testPutWhilePrefetchInFlightWins() {
+		CursorKeysToRows2 cursor = createCursor(3, 2);
+		cursor.nextImpl();
+		//key 4 is in a batch read ahead, the caller now writes it
+		Row written = new RowImpl();
+		written.setKey(key(4));
+		Column col = new Column();
+		col.setName(new byte[] {1});
+		col.setValue(new byte[] {44});
+		written.put(col);
+		cache.cacheRow(null, key(4), written);
+
+		for(int i = 1; i < 4; i++) {
+			cursor.nextImpl();
+		}
+		Holder<KeyValue<Row>> h = cursor.nextImpl();
+		Assert.assertEquals(4, key(h));
+		Assert.assertSame(written, h.getValue().getValue());
+		Assert.assertSame(written, cache.fromCache(null, key(4)).getValue());
+	}
+
+	@Test
+	public void testNoCacheRecheckWithoutPrefetch() {
+		CursorKeysToRows2 cursor = createCursor(3, 0);
+		int count = 0;
+		for(Holder<KeyValue<Row>> h = cursor.nextImpl(); h != null; h = cursor.nextImpl()) {
+			count++;
+		}
+		Assert.assertEquals(NUM_KEYS, count);
+		//each key is looked up once before its read and never again after
+		Assert.assertEquals(NUM_KEYS, cache.lookups);
+		Assert.assertEquals(0, cache.sessionLookups);
+	}
+
+	private CursorKeysToRows2 createCursor(int batchSize, int prefetchDepth) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for(int i = 0; i < NUM_KEYS; i++) {
+			keys.add(key(i));
+		}
+		Provider<Row> rowProvider = new Provider<Row>() {
+			@Override
+			public Row get() {
+				return new RowImpl();
+			}
+		};
+		CursorKeysToRows2 cursor = new CursorKeysToRows2(new ListWrappingCursor<byte[]>(keys), batchSize, null, rowProvider);
+		cursor.setupPrefetch(prefetchDepth, Long.MAX_VALUE);
+		cursor.setupMore(keyspace.getKeyspace(), new DboTableMeta(), new Info(), cache);
+		return cursor;
+	}
+
+	private static byte[] key(int i) {
+		return new byte[] {(byte) i};
+	}
+
+	private static int key(Holder<KeyValue<Row>> holder) {
+		if(holder == null)
+			return -1;
+		return ((byte[]) holder.getValue().getKey())[0];
+	}
+
+	private static List<Integer> range(int from, int to) {
+		List<Integer> list = new ArrayList<Integer>();
+		for(int i = from; i < to; i++) {
+			list.add(i);
+		}
+		return list;
+	}
+
+	private static class MapCache implements Cache {
+		private Map<ByteArray, RowHolder<Row>> rows = new HashMap<ByteArray, RowHolder<Row>>();
+		private int lookups;
+		private int sessionLookups;
+
+		@Override
+		public RowHolder<Row> fromCache(DboTableMeta colFamily, byte[] key) {
+			lookups++;
+			return rows.get(new ByteArray(key));
+		}
+
+		@Override
+		public RowHolder<Row> fromSessionCache(DboTableMeta colFamily, byte[] key) {
+			sessionLookups++;
+			return rows.get(new ByteArray(key));
+		}
+
+		@Override
+		public void cacheRow(DboTableMeta colFamily, byte[] key, Row value) {
+			rows.put(new ByteArray(key), new RowHolder<Row>(key, value));
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.alvazan.test;
+
+import java.math.BigDecimal;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z8spi.conv.StorageTypeEnum;
+import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+
+public class TestSchemaFingerprint {
+
+	private static NoSqlEntityManagerFactory factory;
+	private NoSqlEntityManager mgr;
+
+	@Before
+	public void createEntityManager() {
+		factory = FactorySingleton.createFactoryOnce();
+		mgr = factory.createEntityManager();
+	}
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	@Test
+	public void testOnlyChangedTablesRewritten() {
+		DboDatabaseMeta stored = mgr.find(DboDatabaseMeta.class, DboDatabaseMeta.META_DB_ROWKEY);
+		String account = stored.getFingerprint("Account");
+		String activity = stored.getFingerprint("Activity");
+		Assert.assertNotNull(account);
+		Assert.assertNotNull(activity);
+
+		//mark the stored table rows so we can tell afterwards which ones were written again
+		DboTableMeta accountTable = mgr.find(DboTableMeta.class, "Account");
+		DboTableMeta activityTable = mgr.find(DboTableMeta.class, "Activity");
+		StorageTypeEnum nameType = accountTable.getNameStorageType();
+		Assert.assertEquals(nameType, activityTable.getNameStorageType());
+		accountTable.setColNameType(BigDecimal.class);
+		activityTable.setColNameType(BigDecimal.class);
+		mgr.put(accountTable);
+		mgr.put(activityTable);
+
+		//pretend the Account table was written by an older version of the entity
+		stored.setFingerprint("Account", "stale");
+		mgr.put(stored);
+		mgr.flush();
+
+		factory.rescan(null, getClass().getClassLoader());
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		DboDatabaseMeta result = mgr2.find(DboDatabaseMeta.class, DboDatabaseMeta.META_DB_ROWKEY);
+		Assert.assertEquals(account, result.getFingerprint("Account"));
+		Assert.assertEquals(activity, result.getFingerprint("Activity"));
+
+		//Account changed so its row was written again, Activity did not so it still has our mark
+		Assert.assertEquals(nameType, mgr2.find(DboTableMeta.class, "Account").getNameStorageType());
+		Assert.assertEquals(StorageTypeEnum.DECIMAL, mgr2.find(DboTableMeta.class, "Activity").getNameStorageType());
+	}
+}
@@ -0,0 +1,122 @@
+package com.alvazan.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.base.DbTypeEnum;
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z8spi.CacheStats;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.layer5.nosql.cache.SecondLevelCacheImpl;
+import com.alvazan.orm.layer9z.spi.db.inmemory.RowImpl;
+import com.alvazan.test.db.EntityWithIntKey;
+
+public class TestSecondLevelCache {
+
+	private static NoSqlEntityManagerFactory factory;
+
+	@BeforeClass
+	public static void setup() {
+		//This test is only about the cache itself so in-memory is good enough no matter what the rest of the suite runs on
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put(Bootstrap.SECOND_LEVEL_CACHE_SIZE, "1000");
+		factory = FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), props);
+	}
+
+	@After
+	public void clearDatabase() {
+		NoSqlEntityManager other = factory.createEntityManager();
+		other.clearDatabase(true);
+	}
+
+	@Test
+	public void testRowSharedAcrossManagers() {
+		EntityWithIntKey entity = new EntityWithIntKey();
+		entity.setId(5);
+		entity.setSomething("asdf");
+		NoSqlEntityManager mgr = factory.createEntityManager();
+		mgr.put(entity);
+		mgr.flush();
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		EntityWithIntKey first = mgr2.find(EntityWithIntKey.class, 5);
+		Assert.assertEquals("asdf", first.getSomething());
+		CacheStats stats = factory.getCacheStats().get("EntityWithIntKey");
+		long hits = stats.getHits();
+
+		NoSqlEntityManager mgr3 = factory.createEntityManager();
+		EntityWithIntKey second = mgr3.find(EntityWithIntKey.class, 5);
+		Assert.assertEquals("asdf", second.getSomething());
+		Assert.assertEquals(hits+1, stats.getHits());
+	}
+
+	@Test
+	public void testFlushInvalidates() {
+		EntityWithIntKey entity = new EntityWithIntKey();
+		entity.setId(6);
+		entity.setSomething("before");
+		NoSqlEntityManager mgr = factory.createEntityManager();
+		mgr.put(entity);
+		mgr.flush();
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		EntityWithIntKey loaded = mgr2.find(EntityWithIntKey.class, 6);
+		loaded.setSomething("after");
+		mgr2.put(loaded);
+		//not flushed yet so other managers must still see the old value
+		NoSqlEntityManager mgr3 = factory.createEntityManager();
+		Assert.assertEquals("before", mgr3.find(EntityWithIntKey.class, 6).getSomething());
+
+		mgr2.flush();
+		NoSqlEntityManager mgr4 = factory.createEntityManager();
+		Assert.assertEquals("after", mgr4.find(EntityWithIntKey.class, 6).getSomething());
+	}
+
+	@Test
+	public void testRemoveInvalidates() {
+		EntityWithIntKey entity = new EntityWithIntKey();
+		entity.setId(7);
+		entity.setSomething("gone");
+		NoSqlEntityManager mgr = factory.createEntityManager();
+		mgr.put(entity);
+		mgr.flush();
+
+		NoSqlEntityManager mgr2 = factory.createEntityManager();
+		EntityWithIntKey loaded = mgr2.find(EntityWithIntKey.class, 7);
+		mgr2.remove(loaded);
+		mgr2.flush();
+
+		NoSqlEntityManager mgr3 = factory.createEntityManager();
+		Assert.assertNull(mgr3.find(EntityWithIntKey.class, 7));
+	}
+
+	@Test
+	public void testStaleFillAfterInvalidateDropped() {
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put(Bootstrap.SECOND_LEVEL_CACHE_SIZE, 100);
+		SecondLevelCacheImpl cache = new SecondLevelCacheImpl();
+		cache.start(props);
+		DboTableMeta meta = new DboTableMeta();
+		meta.setup(null, "Stale", false, null);
+		byte[] key = StandardConverters.convertToBytes("row1");
+		RowImpl row = new RowImpl();
+		row.setKey(key);
+
+		//a reader loads the row, then a writer flushes and invalidates before the reader caches it
+		long fillStamp = cache.startFill();
+		cache.invalidate(meta, key);
+		cache.cacheRow(meta, key, row, fillStamp);
+		Assert.assertNull(cache.fromCache(meta, key));
+
+		cache.cacheRow(meta, key, row, cache.startFill());
+		Assert.assertNotNull(cache.fromCache(meta, key));
+	}
+}
@@ -0,0 +1,95 @@
+package com.alvazan.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.layer9z.spi.db.cassandra.TokenRing;
+import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
+import com.netflix.astyanax.connectionpool.exceptions.TransportException;
+
+public class TestTokenRing {
+
+	@Test
+	public void testNoRingSplitsEvenly() {
+		List<List<byte[]>> batches = TokenRing.split(keys(0, 10), null, 3);
+		Assert.assertEquals(3, batches.size());
+		Assert.assertEquals(toInts(keys(0, 4)), toInts(batches.get(0)));
+		Assert.assertEquals(toInts(keys(4, 8)), toInts(batches.get(1)));
+		Assert.assertEquals(toInts(keys(8, 10)), toInts(batches.get(2)));
+	}
+
+	@Test
+	public void testSplitByRange() {
+		FakeKeyspace keyspace = new FakeKeyspace();
+		keyspace.setRing(100, 10, 50);
+		TokenRing ring = TokenRing.load(keyspace.getKeyspace());
+
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for(int i : new int[] {60, 5, 10, 200, 11, 99, 50, 100}) {
+			keys.add(new byte[] {(byte) i});
+		}
+		List<List<byte[]>> batches = TokenRing.split(keys, ring, 2);
+		//ranges own (previousEnd, end] and the first range also owns the tokens past the last end
+		Assert.assertEquals(3, batches.size());
+		Assert.assertEquals(ints(60, 99, 100), toInts(batches.get(0)));
+		Assert.assertEquals(ints(5, 10, 200), toInts(batches.get(1)));
+		Assert.assertEquals(ints(11, 50), toInts(batches.get(2)));
+	}
+
+	@Test
+	public void testBigRangeSplitAgain() {
+		FakeKeyspace keyspace = new FakeKeyspace();
+		keyspace.setRing(100, 200);
+		TokenRing ring = TokenRing.load(keyspace.getKeyspace());
+
+		//all but one key live in the first range so it is split into batches of keys/parallelism
+		List<byte[]> keys = keys(0, 9);
+		keys.add(new byte[] {(byte) 150});
+		List<List<byte[]>> batches = TokenRing.split(keys, ring, 4);
+		Assert.assertEquals(4, batches.size());
+		Assert.assertEquals(toInts(keys(0, 3)), toInts(batches.get(0)));
+		Assert.assertEquals(toInts(keys(3, 6)), toInts(batches.get(1)));
+		Assert.assertEquals(toInts(keys(6, 9)), toInts(batches.get(2)));
+		Assert.assertEquals(ints(150), toInts(batches.get(3)));
+	}
+
+	@Test
+	public void testUnreadableRingIsNull() {
+		FakeKeyspace keyspace = new FakeKeyspace();
+		keyspace.setRing(100);
+		keyspace.answer("describeRing", new FakeKeyspace.Answer() {
+			@Override
+			public Object answer(Object[] args) throws ConnectionException {
+				throw new TransportException("node is down");
+			}
+		});
+		Assert.assertNull(TokenRing.load(keyspace.getKeyspace()));
+	}
+
+	private static List<byte[]> keys(int from, int to) {
+		List<byte[]> keys = new ArrayList<byte[]>();
+		for(int i = from; i < to; i++) {
+			keys.add(new byte[] {(byte) i});
+		}
+		return keys;
+	}
+
+	private static List<Integer> ints(int... values) {
+		List<Integer> list = new ArrayList<Integer>();
+		for(int v : values) {
+			list.add(v);
+		}
+		return list;
+	}
+
+	private static List<Integer> toInts(List<byte[]> keys) {
+		List<Integer> list = new ArrayList<Integer>();
+		for(byte[] key : keys) {
+			list.add(key[0] & 0xff);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,87 @@
+package com.alvazan.test;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.z8spi.Key;
+import com.alvazan.orm.api.z8spi.action.Column;
+import com.alvazan.orm.api.z8spi.action.IndexColumn;
+import com.alvazan.orm.api.z8spi.conv.StandardConverters;
+import com.alvazan.orm.layer9z.spi.db.inmemory.NoSqlDatabase;
+import com.alvazan.orm.layer9z.spi.db.inmemory.SortType;
+import com.alvazan.orm.layer9z.spi.db.inmemory.Table;
+import com.alvazan.orm.layer9z.spi.db.inmemory.TimingWheel;
+import com.alvazan.orm.layer9z.spi.db.inmemory.TtlReaper;
+
+public class TestTtlReaper {
+
+	@Test
+	public void testWheelLevels() {
+		TimingWheel<String> wheel = new TimingWheel<String>(10, 0);
+		wheel.add(25, "soon");
+		wheel.add(5000, "level1");
+		wheel.add(900000, "level2");
+		wheel.add(30L*24*3600*1000, "overflow");
+		wheel.add(-100, "past");
+		Assert.assertEquals(5, wheel.size());
+
+		List<String> expired = wheel.advance(20);
+		Assert.assertEquals(1, expired.size());
+		Assert.assertEquals("past", expired.get(0));
+		Assert.assertEquals("soon", wheel.advance(30).get(0));
+		Assert.assertEquals(0, wheel.advance(4990).size());
+		Assert.assertEquals("level1", wheel.advance(5000).get(0));
+		Assert.assertEquals(0, wheel.advance(899990).size());
+		Assert.assertEquals("level2", wheel.advance(900005).get(0));
+		Assert.assertEquals(0, wheel.advance(30L*24*3600*1000 - 10).size());
+		Assert.assertEquals("overflow", wheel.advance(30L*24*3600*1000).get(0));
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testExpiredColumnsAndIndexRemoved() {
+		NoSqlDatabase db = new NoSqlDatabase();
+		TtlReaper reaper = new TtlReaper(db, 10);
+		Table table = new Table("User", SortType.BYTES);
+		table.setReaper(reaper);
+		Table index = new Table("StringIndice", SortType.UTF8_PREFIX);
+		index.setReaper(reaper);
+		byte[] rowKey = StandardConverters.convertToBytes("dean");
+		byte[] indexKey = StandardConverters.convertToBytes("/User/name");
+
+		table.put(rowKey, column("name", 1));
+		table.put(rowKey, column("age", null));
+		//written over so its expiry no longer applies
+		table.put(rowKey, column("email", 1));
+		table.put(rowKey, column("email", null));
+		table.put(StandardConverters.convertToBytes("joe"), column("name", 1));
+		index.addIndexedColumn(indexKey, indexColumn("dean", 1));
+		index.addIndexedColumn(indexKey, indexColumn("joe", null));
+		Assert.assertEquals(2, table.findAllKeys().size());
+
+		reaper.reap(System.currentTimeMillis() + 2000);
+		Assert.assertEquals(0, reaper.getScheduledCount());
+		Assert.assertEquals(1, table.findAllKeys().size());
+		Assert.assertEquals(2, table.getRow(rowKey).getColumns().size());
+		Assert.assertNull(table.getRow(rowKey).getColumn(StandardConverters.convertToBytes("name")));
+		Assert.assertNotNull(table.getRow(rowKey).getColumn(StandardConverters.convertToBytes("email")));
+		Assert.assertEquals(1, index.indexSlice(indexKey, (Key) null, (Key) null).size());
+		reaper.stop();
+	}
+
+	private Column column(String name, Integer ttl) {
+		Column col = new Column(StandardConverters.convertToBytes(name), StandardConverters.convertToBytes("value"));
+		col.setTtl(ttl);
+		return col;
+	}
+
+	private IndexColumn indexColumn(String value, Integer ttl) {
+		IndexColumn col = new IndexColumn();
+		col.setIndexedValue(StandardConverters.convertToBytes(value));
+		col.setPrimaryKey(StandardConverters.convertToBytes(value));
+		col.setTtl(ttl);
+		return col;
+	}
+}
@@ -0,0 +1,160 @@
+package com.alvazan.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alvazan.orm.api.base.Bootstrap;
+import com.alvazan.orm.api.base.DbTypeEnum;
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.NoSqlEntityManagerFactory;
+import com.alvazan.orm.api.z8spi.MetaLookup;
+import com.alvazan.orm.api.z8spi.action.Action;
+import com.alvazan.orm.api.z8spi.action.Persist;
+import com.alvazan.orm.api.z8spi.action.PersistIndex;
+import com.alvazan.orm.api.z8spi.meta.DboDatabaseMeta;
+import com.alvazan.orm.api.z8spi.meta.DboTableMeta;
+import com.alvazan.orm.layer5.nosql.cache.ResolvedMetaLookup;
+import com.alvazan.test.db.EntityWithIntKey;
+
+public class TestWriteBehind {
+
+	@Test
+	public void testFlushesOnItsOwn() {
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put(Bootstrap.WRITE_BEHIND_MAX_ACTIONS, "10");
+		NoSqlEntityManagerFactory factory = FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), props);
+		try {
+			NoSqlEntityManager mgr = factory.createEntityManager();
+			putEntities(mgr, 25);
+
+			//never called flush but the first batches were written already
+			NoSqlEntityManager other = factory.createEntityManager();
+			Assert.assertNotNull(other.find(EntityWithIntKey.class, 1));
+			//and we still read our own writes that are not flushed yet
+			Assert.assertEquals("value25", mgr.find(EntityWithIntKey.class, 25).getSomething());
+
+			mgr.flush();
+			NoSqlEntityManager other2 = factory.createEntityManager();
+			for(int i = 1; i <= 25; i++) {
+				Assert.assertNotNull(other2.find(EntityWithIntKey.class, i));
+			}
+		} finally {
+			factory.close();
+		}
+	}
+
+	@Test
+	public void testBackgroundFlushes() {
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put(Bootstrap.WRITE_BEHIND_MAX_ACTIONS, 7);
+		props.put(Bootstrap.WRITE_BEHIND_THREADS, 2);
+		props.put(Bootstrap.WRITE_BEHIND_MAX_PENDING_BATCHES, 1);
+		NoSqlEntityManagerFactory factory = FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), props);
+		try {
+			NoSqlEntityManager mgr = factory.createEntityManager();
+			putEntities(mgr, 100);
+			//a remove after the puts must not be overtaken by an earlier batch
+			mgr.remove(mgr.find(EntityWithIntKey.class, 3));
+			mgr.flush();
+
+			NoSqlEntityManager other = factory.createEntityManager();
+			for(int i = 1; i <= 100; i++) {
+				EntityWithIntKey e = other.find(EntityWithIntKey.class, i);
+				if(i == 3)
+					Assert.assertNull(e);
+				else
+					Assert.assertEquals("value"+i, e.getSomething());
+			}
+		} finally {
+			factory.close();
+		}
+	}
+
+	@Test
+	public void testCloseWaitsForBackgroundFlushes() throws IOException {
+		File dir = File.createTempFile("playorm", "writebehind");
+		dir.delete();
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put(Bootstrap.WRITE_BEHIND_MAX_ACTIONS, 7);
+		props.put(Bootstrap.WRITE_BEHIND_THREADS, 1);
+		props.put(Bootstrap.WRITE_BEHIND_MAX_PENDING_BATCHES, 20);
+		props.put(Bootstrap.IN_MEMORY_DATA_DIR, dir.getAbsolutePath());
+		try {
+			NoSqlEntityManagerFactory factory = FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), props);
+			//never flushed so the full batches are still queued when we close
+			putEntities(factory.createEntityManager(), 100);
+			factory.close();
+
+			NoSqlEntityManagerFactory factory2 = FactorySingleton.createFactory(new Config(DbTypeEnum.IN_MEMORY, "PlayCluster", null), props);
+			try {
+				NoSqlEntityManager mgr = factory2.createEntityManager();
+				for(int i = 1; i <= 90; i++) {
+					Assert.assertEquals("value"+i, mgr.find(EntityWithIntKey.class, i).getSomething());
+				}
+			} finally {
+				factory2.close();
+			}
+		} finally {
+			File[] files = dir.listFiles();
+			if(files != null) {
+				for(File f : files) {
+					f.delete();
+				}
+			}
+			dir.delete();
+		}
+	}
+
+	@Test
+	public void testBackgroundLookupResolvedUpFront() {
+		DboTableMeta table = new DboTableMeta();
+		table.setup(null, "SomeTable", false, null);
+		Persist persist = new Persist();
+		persist.setColFamily(table);
+		PersistIndex index = new PersistIndex();
+		index.setColFamily(table);
+		index.setIndexCfName("SomeIndex");
+		List<Action> actions = new ArrayList<Action>();
+		actions.add(persist);
+		actions.add(index);
+
+		final DboTableMeta indexTable = new DboTableMeta();
+		final List<Object> lookups = new ArrayList<Object>();
+		MetaLookup callersLookup = new MetaLookup() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T> T find(Class<T> type, Object colFamily) {
+				lookups.add(colFamily);
+				return (T) indexTable;
+			}
+		};
+		MetaLookup lookup = new ResolvedMetaLookup(actions, new DboDatabaseMeta(), callersLookup);
+		Assert.assertEquals(1, lookups.size());
+
+		//the flush thread only ever sees what was resolved on the caller's thread
+		Assert.assertSame(table, lookup.find(DboTableMeta.class, "SomeTable"));
+		Assert.assertSame(indexTable, lookup.find(DboTableMeta.class, "SomeIndex"));
+		Assert.assertEquals(1, lookups.size());
+		try {
+			lookup.find(DboTableMeta.class, "OtherTable");
+			Assert.fail("should have failed since OtherTable was never resolved");
+		} catch(IllegalStateException e) {
+		}
+	}
+
+	private void putEntities(NoSqlEntityManager mgr, int count) {
+		for(int i = 1; i <= count; i++) {
+			EntityWithIntKey entity = new EntityWithIntKey();
+			entity.setId(i);
+			entity.setSomething("value"+i);
+			mgr.put(entity);
+		}
+	}
+}
@@ -40,6 +40,8 @@ import com.eaio.uuid.UUID;
 	@NoSqlQuery(name="findById", query="select * FROM TABLE as e WHERE e.id=:id"),
 	@NoSqlQuery(name="findByCool", query="select * FROM TABLE as e WHERE e.isCool=:cool"),
 	@NoSqlQuery(name="findAll", query="select * FROM TABLE as e"),
+	@NoSqlQuery(name="findAllByNumTimesDesc", query="select * FROM TABLE as e ORDER BY e.numTimes DESC"),
+	@NoSqlQuery(name="findByNameOrderByFloat", query="select * FROM TABLE as e WHERE e.name=:name ORDER BY e.myFloat"),
 	@NoSqlQuery(name="findByLocalDateTime", query="select * from TABLE as e where e.date = :date"),
 	@NoSqlQuery(name="findByBigInt", query="select * from TABLE as e where e.bigInt = :bigInt"),
 	@NoSqlQuery(name="findByAccount", query="select * from TABLE as e where e.account = :account")
@@ -0,0 +1,129 @@
+package com.alvazan.test.db;
+
+import java.util.List;
+
+import com.alvazan.orm.api.base.NoSqlEntityManager;
+import com.alvazan.orm.api.base.Query;
+import com.alvazan.orm.api.base.anno.NoSqlEntity;
+import com.alvazan.orm.api.base.anno.NoSqlId;
+import com.alvazan.orm.api.base.anno.NoSqlIndexed;
+import com.alvazan.orm.api.base.anno.NoSqlQueries;
+import com.alvazan.orm.api.base.anno.NoSqlQuery;
+
+/**
+ * Package private fields so the generated accessors are used instead of reflection, except for
+ * the one private field
+ */
+@NoSqlEntity
+@NoSqlQueries({
+	@NoSqlQuery(name="findByCount", query="select * FROM TABLE as e WHERE e.count=:count")
+})
+public class FieldAccessEntity {
+
+	@NoSqlId
+	String id;
+
+	@NoSqlIndexed
+	int count;
+
+	long total;
+	short small;
+	byte tiny;
+	boolean flag;
+	double price;
+	Integer boxed;
+	byte[] data;
+	String name;
+
+	private long privateTotal;
+
+	public static List<FieldAccessEntity> findByCount(NoSqlEntityManager mgr, int count) {
+		Query<FieldAccessEntity> query = mgr.createNamedQuery(FieldAccessEntity.class, "findByCount");
+		query.setParameter("count", count);
+		return query.getResultList(0, null);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	public short getSmall() {
+		return small;
+	}
+
+	public void setSmall(short small) {
+		this.small = small;
+	}
+
+	public byte getTiny() {
+		return tiny;
+	}
+
+	public void setTiny(byte tiny) {
+		this.tiny = tiny;
+	}
+
+	public boolean isFlag() {
+		return flag;
+	}
+
+	public void setFlag(boolean flag) {
+		this.flag = flag;
+	}
+
+	public double getPrice() {
+		return price;
+	}
+
+	public void setPrice(double price) {
+		this.price = price;
+	}
+
+	public Integer getBoxed() {
+		return boxed;
+	}
+
+	public void setBoxed(Integer boxed) {
+		this.boxed = boxed;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	public void setData(byte[] data) {
+		this.data = data;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public long getPrivateTotal() {
+		return privateTotal;
+	}
+
+	public void setPrivateTotal(long privateTotal) {
+		this.privateTotal = privateTotal;
+	}
+}